@@ -0,0 +1,53 @@
+package org.neil.main.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of splitting the urls argument into urls, with real and escaped line ends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplitUrlsBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int urlCount;
+
+    @Param({"\n", "\\n"})
+    public String lineEnd;
+
+    private final UrlTesterApplication urlTesterApplication = new UrlTesterApplication();
+    private String urlBlock;
+
+    @Setup
+    public void setUp() {
+
+        final StringBuilder urls = new StringBuilder();
+        for (int i = 0; i < urlCount; i++) {
+            urls.append("https://www.bbc.co.uk/news/").append(i).append(lineEnd);
+        }
+        urlBlock = urls.toString();
+    }
+
+    @Benchmark
+    public List<String> splitUrls() {
+
+        return urlTesterApplication.splitUrls(urlBlock);
+    }
+}
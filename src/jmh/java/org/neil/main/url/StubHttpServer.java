@@ -0,0 +1,76 @@
+package org.neil.main.url;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process HTTP server for the end to end benchmarks, answering every path with a small body after a set
+ * delay. Runs on the loop back interface so results aren't skewed by the network.
+ */
+class StubHttpServer implements AutoCloseable {
+
+    private static final byte[] BODY = "<html><body>ok</body></html>".getBytes(StandardCharsets.UTF_8);
+    private static final int BACKLOG = 1024;
+    private static final int THREADS = 500;
+    // The server writes the headers and body separately, which without this waits on the client's delayed ACK
+    // for each kept alive response
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final HttpServer httpServer;
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    /**
+     * @param latencyMillis How long the server waits before answering each request
+     * @throws IOException If the server could not be started
+     */
+    StubHttpServer(int latencyMillis) throws IOException {
+
+        System.setProperty(NO_DELAY_PROPERTY, "true");
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BACKLOG);
+        httpServer.createContext("/", exchange -> respond(exchange, latencyMillis));
+        httpServer.setExecutor(executor);
+        httpServer.start();
+    }
+
+    /**
+     * @return The url of the server, without a trailing slash
+     */
+    String getUrl() {
+
+        return "http://localhost:" + httpServer.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+
+        httpServer.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void respond(HttpExchange exchange, int latencyMillis) throws IOException {
+
+        try {
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            exchange.getResponseHeaders().add("Date", "Tue, 25 Jul 2017 17:00:55 GMT");
+            exchange.sendResponseHeaders(200, BODY.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(BODY);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.neil.main.url;
+
+import org.neil.main.report.JsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing a report as json, which is done for every url reported. Reports are either built as a String or
+ * streamed with a JsonWriter into a channel that discards them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlReportBenchmark {
+
+    private final UrlReport testReport = new UrlTestReport(
+            "https://www.bbc.co.uk/news/world-europe-12345678", 200, 123456L, "Tue, 25 Jul 2017 17:00:55 GMT");
+    private final UrlReport errorReport = new UrlErrorReport(
+            "https://www.bbc.co.uk/news/world-europe-12345678", "Url could not be connected to");
+    private JsonWriter prettyWriter;
+    private JsonWriter ndjsonWriter;
+
+    @Setup
+    public void setUp() {
+
+        prettyWriter = new JsonWriter(new DiscardingChannel(), JsonWriter.Format.PRETTY);
+        ndjsonWriter = new JsonWriter(new DiscardingChannel(), JsonWriter.Format.NDJSON);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        prettyWriter.close();
+        ndjsonWriter.close();
+    }
+
+    @Benchmark
+    public String testReportToJson() {
+
+        return testReport.toJson();
+    }
+
+    @Benchmark
+    public String errorReportToJson() {
+
+        return errorReport.toJson();
+    }
+
+    @Benchmark
+    public void testReportPretty() throws IOException {
+
+        prettyWriter.write(testReport);
+    }
+
+    @Benchmark
+    public void testReportNdjson() throws IOException {
+
+        ndjsonWriter.write(testReport);
+    }
+
+    /**
+     * Takes every byte written without keeping it, so only the cost of formatting and encoding is measured.
+     */
+    private static class DiscardingChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer bytes) {
+
+            final int written = bytes.remaining();
+            bytes.position(bytes.limit());
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+
+            return true;
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.neil.main.url;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end time to test a list of urls against the in-process stub server, for each engine, number of urls and
+ * server latency. Every url is distinct, so none are skipped as duplicates. All of the urls are on one host, so the
+ * threaded engine is held to its connection limit per host.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UrlTesterBenchmark {
+
+    private static final int TIMEOUT = 10000;
+
+    @Param({"threaded", "nio"})
+    public String engine;
+
+    @Param({"100", "1000", "10000"})
+    public int urlCount;
+
+    @Param({"0", "10", "100"})
+    public int latencyMillis;
+
+    private final UrlBuilder urlBuilder = new SimpleUrlVerifier();
+    private StubHttpServer stubHttpServer;
+    private UrlTester urlTester;
+    private List<String> urls;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        stubHttpServer = new StubHttpServer(latencyMillis);
+        urlTester = "nio".equals(engine) ? new NioUrlTester() : new ThreadedUrlTester();
+        urls = new ArrayList<>(urlCount);
+        for (int i = 0; i < urlCount; i++) {
+            urls.add(stubHttpServer.getUrl() + "/page/" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        urlTester.close();
+        stubHttpServer.close();
+    }
+
+    @Benchmark
+    public List<UrlReport> test() {
+
+        return urlTester.test(urls, urlBuilder, TIMEOUT);
+    }
+}
@@ -0,0 +1,63 @@
+package org.neil.main.url;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of checking and building a single url, which is done for every url tested.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlVerifierBenchmark {
+
+    @Param({"http://www.bbc.co.uk", "https://www.bbc.co.uk/news/world-europe-12345678?page=2&sort=new#comments",
+            "ftp://www.bbc.co.uk", "http://www.bbc.co.uk/["})
+    public String url;
+
+    private final UrlBuilder urlBuilder = new SimpleUrlVerifier();
+
+    @Benchmark
+    public boolean verify() {
+
+        return urlBuilder.verify(url);
+    }
+
+    /**
+     * Malformed urls throw, so their cost includes building the exception.
+     */
+    @Benchmark
+    public URL build() {
+
+        try {
+            return urlBuilder.build(url);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks and builds in one pass, as the testers do, with nothing thrown for a malformed url.
+     */
+    @Benchmark
+    public Optional<URL> parse() {
+
+        return urlBuilder.parse(url);
+    }
+}
@@ -0,0 +1,115 @@
+package org.neil.main.app;
+
+import org.neil.main.report.JsonWritable;
+import org.neil.main.report.JsonWriter;
+import org.neil.main.report.StatusReport;
+import org.neil.main.url.ReportStore;
+import org.neil.main.url.UrlReport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A list of urls submitted to the server and the reports of the urls tested so far, in the order the tests
+ * finished. Reports are added from the threads performing the tests while clients read them.
+ *
+ * The reports are kept in columns rather than as objects, so the server can hold many large batches at once.
+ */
+class Batch implements JsonWritable {
+
+    private final long id;
+    private final int urls;
+    private final StatusReport statusReport = new StatusReport();
+    private final ReportStore reports = new ReportStore();
+    private boolean done;
+
+    /**
+     * @param id   The id the batch is known by
+     * @param urls The number of urls in the batch
+     */
+    Batch(long id, int urls) {
+
+        this.id = id;
+        this.urls = urls;
+    }
+
+    long getId() {
+
+        return id;
+    }
+
+    StatusReport getStatusReport() {
+
+        return statusReport;
+    }
+
+    /**
+     * The status report counts without a lock, so only the stored reports are guarded.
+     *
+     * @param urlReport The report of a url that has just finished being tested
+     */
+    void add(UrlReport urlReport) {
+
+        statusReport.incrementStatus(urlReport.getStatusCode());
+        synchronized (this) {
+            reports.add(urlReport);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Marks every url as reported, waking anything waiting for more reports.
+     */
+    synchronized void finish() {
+
+        done = true;
+        notifyAll();
+    }
+
+    synchronized boolean isDone() {
+
+        return done;
+    }
+
+    /**
+     * @param from The number of reports already read
+     * @return The reports after those already read, which may be none
+     */
+    synchronized List<UrlReport> getReports(int from) {
+
+        return from >= reports.size()
+                ? Collections.emptyList()
+                : new ArrayList<>(reports.subList(Math.max(from, 0), reports.size()));
+    }
+
+    /**
+     * Waits until there are reports after those already read, or the batch is done.
+     *
+     * @param from The number of reports already read
+     * @return The reports after those already read, only empty once the batch is done
+     * @throws InterruptedException If interrupted while waiting
+     */
+    synchronized List<UrlReport> awaitReports(int from) throws InterruptedException {
+
+        while (!done && from >= reports.size()) {
+            wait();
+        }
+        return getReports(from);
+    }
+
+    /**
+     * Writes how far the batch has got.
+     */
+    @Override
+    public synchronized void writeJson(JsonWriter jsonWriter) throws IOException {
+
+        jsonWriter.beginObject()
+                .name("Id").value(id)
+                .name("Urls").value(urls)
+                .name("Reported").value(reports.size())
+                .name("Done").value(done)
+                .endObject();
+    }
+}
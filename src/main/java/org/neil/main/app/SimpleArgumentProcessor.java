@@ -17,9 +17,33 @@ public class SimpleArgumentProcessor implements ArgumentProcessor {
         final HashMap<String, String> processedArgs = new HashMap<>();
         if (args.length > 0) {
             extractFlagArgument("--help", "-h", "help", processedArgs, args);
+            extractFlagArgument("--probe", "-p", "probe", processedArgs, args);
+            extractFlagArgument("--http2", "-H", "http2", processedArgs, args);
+            extractFlagArgument("--ndjson", "-n", "ndjson", processedArgs, args);
+            extractFlagArgument("--latency", "-l", "latency", processedArgs, args);
+            extractFlagArgument("--resume", "-u", "resume", processedArgs, args);
             if (args.length > 1) {
 
                 extractFlagArgumentWithValue("--timeout", "-t", "timeout", processedArgs, args);
+                extractFlagArgumentWithValue("--deadline", "-d", "deadline", processedArgs, args);
+                extractFlagArgumentWithValue("--engine", "-e", "engine", processedArgs, args);
+                extractFlagArgumentWithValue("--file", "-f", "file", processedArgs, args);
+                extractFlagArgumentWithValue("--in-flight", "-i", "in-flight", processedArgs, args);
+                extractFlagArgumentWithValue("--connections", "-c", "connections", processedArgs, args);
+                extractFlagArgumentWithValue("--retries", "-r", "retries", processedArgs, args);
+                extractFlagArgumentWithValue("--redirects", "-R", "redirects", processedArgs, args);
+                extractFlagArgumentWithValue("--cache", "-C", "cache", processedArgs, args);
+                extractFlagArgumentWithValue("--cache-ttl", "-T", "cache-ttl", processedArgs, args);
+                extractFlagArgumentWithValue("--monitor", "-m", "monitor", processedArgs, args);
+                extractFlagArgumentWithValue("--serve", "-s", "serve", processedArgs, args);
+                extractFlagArgumentWithValue("--bind", "-b", "bind", processedArgs, args);
+                extractFlagArgumentWithValue("--metrics", "-M", "metrics", processedArgs, args);
+                extractFlagArgumentWithValue("--metrics-file", "-O", "metrics-file", processedArgs, args);
+                extractFlagArgumentWithValue("--workers", "-w", "workers", processedArgs, args);
+                extractFlagArgumentWithValue("--journal", "-j", "journal", processedArgs, args);
+                // Only given by a coordinator to the workers it starts, so they have no short flag
+                extractFlagArgumentWithValue("--worker", "--worker", "worker", processedArgs, args);
+                extractFlagArgumentWithValue("--shard", "--shard", "shard", processedArgs, args);
             }
             processedArgs.put("default", args[args.length - 1]);
         }
@@ -29,13 +53,13 @@ public class SimpleArgumentProcessor implements ArgumentProcessor {
     private void extractFlagArgumentWithValue(String fullFlag, String shortFlag, String argumentName,
                                               Map<String, String> processedArgs, String... args) {
 
-        final int fullFlagArgIndex = Arrays.binarySearch(args, fullFlag);
-        // Try and extract the timeout flag and value
-        if (fullFlagArgIndex >= 0) {
+        final int fullFlagArgIndex = indexOf(fullFlag, args);
+        // Try and extract the flag and value
+        if (fullFlagArgIndex >= 0 && fullFlagArgIndex + 1 < args.length) {
             processedArgs.put(argumentName, args[fullFlagArgIndex + 1]);
         } else {
-            final int shortFlagArgIndex = Arrays.binarySearch(args, shortFlag);
-            if (shortFlagArgIndex >= 0) {
+            final int shortFlagArgIndex = indexOf(shortFlag, args);
+            if (shortFlagArgIndex >= 0 && shortFlagArgIndex + 1 < args.length) {
                 processedArgs.put(argumentName, args[shortFlagArgIndex + 1]);
             }
         }
@@ -44,15 +68,28 @@ public class SimpleArgumentProcessor implements ArgumentProcessor {
     private void extractFlagArgument(String fullFlag, String shortFlag, String argumentName,
                                      Map<String, String> processedArgs, String... args) {
 
-        final int fullFlagArgIndex = Arrays.binarySearch(args, fullFlag);
-        // Try and extract the timeout flag and value
+        final int fullFlagArgIndex = indexOf(fullFlag, args);
+        // Try and extract the flag
         if (fullFlagArgIndex >= 0) {
             processedArgs.put(argumentName, null);
         } else {
-            final int shortFlagArgIndex = Arrays.binarySearch(args, shortFlag);
+            final int shortFlagArgIndex = indexOf(shortFlag, args);
             if (shortFlagArgIndex >= 0) {
                 processedArgs.put(argumentName, null);
             }
         }
     }
+
+    /**
+     * Finds the position of a flag in the arguments. The arguments are in the order given on the command line so
+     * can't be binary searched.
+     *
+     * @param flag The flag to look for
+     * @param args The arguments to search
+     * @return The index of the flag or -1 if it is not present
+     */
+    private int indexOf(String flag, String... args) {
+
+        return Arrays.asList(args).indexOf(flag);
+    }
 }
@@ -0,0 +1,182 @@
+package org.neil.main.app;
+
+import org.neil.main.url.ReportSink;
+import org.neil.main.url.UrlBuilder;
+import org.neil.main.url.UrlTester;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.neil.main.util.ErrorOutput.logError;
+
+/**
+ * Tests the same urls over and over, each url once per interval, until stopped. The tester stays open between
+ * checks, so its kept alive connections, cached host addresses and compiled code are all warm for the next check.
+ *
+ * The interval is divided into ticks and each url is given a tick of its own, spread evenly across the interval,
+ * so the checks don't all fire at once. The checks are held in a delay queue and the urls due in the same tick are
+ * tested together, each tick on a thread of its own so a slow tick doesn't hold up the ticks after it. A url is
+ * only due again once its previous check has finished, and is checked straight away if that overran its next tick.
+ */
+public class UrlMonitor {
+
+    static final long TICK_MILLIS = 100;
+
+    private final UrlTester urlTester;
+    private final UrlBuilder urlBuilder;
+    private final int timeout;
+    private final int runTimeout;
+    private final long intervalNanos;
+    private final DelayQueue<Check> checks = new DelayQueue<>();
+    private final ExecutorService ticks = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "monitor-tick");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param urlTester      The tester to check the urls with, kept open for the life of the monitor
+     * @param urlBuilder     The UrlBuilder object instance to use for url string verification and conversion.
+     * @param timeout        The read and connect timeout values for the connections.
+     * @param runTimeout     The longest the checks of a single tick can take in milliseconds, or 0 for no limit
+     * @param intervalMillis How often each url is checked
+     */
+    public UrlMonitor(UrlTester urlTester, UrlBuilder urlBuilder, int timeout, int runTimeout, long intervalMillis) {
+
+        this.urlTester = urlTester;
+        this.urlBuilder = urlBuilder;
+        this.timeout = timeout;
+        this.runTimeout = runTimeout;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /**
+     * Checks the urls until stopped, passing the report of every check to the sink as soon as it finishes. Checks
+     * still running when the monitor is stopped are given as long as a request can take to finish.
+     *
+     * @param urls        The url strings to check
+     * @param reportSink  Receives the report of every check, in the order the checks finish
+     * @param intervalEnd Called from the thread running the monitor at the end of every interval
+     */
+    public void run(List<String> urls, ReportSink reportSink, Runnable intervalEnd) {
+
+        final long startNanos = System.nanoTime();
+        final long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+        final long ticksPerInterval = Math.max(1, intervalNanos / tickNanos);
+        for (int index = 0; index < urls.size(); index++) {
+            final long tick = index * ticksPerInterval / urls.size();
+            checks.add(new Check(urls.get(index), startNanos + tick * tickNanos));
+        }
+        long intervalEndNanos = startNanos + intervalNanos;
+        boolean stopping = false;
+        try {
+            while (!stopping) {
+                final Check firstDue = checks.poll(intervalEndNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (System.nanoTime() - intervalEndNanos >= 0) {
+                    intervalEnd.run();
+                    intervalEndNanos += intervalNanos;
+                }
+                if (firstDue != null) {
+                    final List<Check> due = new ArrayList<>();
+                    due.add(firstDue);
+                    checks.drainTo(due);
+                    stopping = due.removeIf(Check::isStop);
+                    if (!due.isEmpty()) {
+                        ticks.execute(() -> check(due, reportSink));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finishChecks();
+        }
+    }
+
+    /**
+     * Stops the monitor once the checks that are already due have been started. Safe to call from any thread.
+     */
+    public void stop() {
+
+        checks.add(new Check(null, System.nanoTime()));
+    }
+
+    private void check(List<Check> due, ReportSink reportSink) {
+
+        try {
+            urlTester.test(due.stream().map(check -> check.url).iterator(), urlBuilder, timeout, runTimeout,
+                    reportSink);
+        } catch (RuntimeException e) {
+            logError("Urls could not be checked: " + e.getMessage());
+        } finally {
+            final long now = System.nanoTime();
+            for (Check check : due) {
+                checks.add(check.next(now));
+            }
+        }
+    }
+
+    /**
+     * A request is cut off after twice the timeout, so the checks in progress have that long to report.
+     */
+    private void finishChecks() {
+
+        ticks.shutdown();
+        try {
+            if (timeout > 0 && !ticks.awaitTermination(timeout * 2L, TimeUnit.MILLISECONDS)) {
+                logError("Monitor stopped with urls still being checked");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The next check of a url and when it is due, as a System.nanoTime value. A check without a url stops the
+     * monitor.
+     */
+    private class Check implements Delayed {
+
+        private final String url;
+        private final long dueNanos;
+
+        Check(String url, long dueNanos) {
+
+            this.url = url;
+            this.dueNanos = dueNanos;
+        }
+
+        boolean isStop() {
+
+            return url == null;
+        }
+
+        /**
+         * @param now The current value of System.nanoTime
+         * @return The check of the url one interval on from this one, or now if that has already passed
+         */
+        Check next(long now) {
+
+            final long nextDueNanos = dueNanos + intervalNanos;
+            return new Check(url, nextDueNanos - now < 0 ? now : nextDueNanos);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+
+            // Only ever compared with the other checks in the queue, and nanoTime values are compared by difference
+            return Long.signum(dueNanos - ((Check) other).dueNanos);
+        }
+    }
+}
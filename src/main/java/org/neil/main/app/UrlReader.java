@@ -0,0 +1,70 @@
+package org.neil.main.app;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads urls one line at a time so a url can be tested as soon as it has been read, without the rest of the
+ * input having to be held in memory. Blank lines are skipped.
+ */
+public class UrlReader implements Iterator<String>, Closeable {
+
+    // Large buffer so long url lists are read in few system calls
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BufferedReader reader;
+    private String nextUrl;
+
+    /**
+     * @param reader The source of the line end separated urls, closed when this reader is closed.
+     */
+    public UrlReader(Reader reader) {
+
+        this.reader = new BufferedReader(reader, BUFFER_SIZE);
+    }
+
+    /**
+     * @return true if there is another url to read
+     * @throws UncheckedIOException If the urls could not be read
+     */
+    @Override
+    public boolean hasNext() {
+
+        try {
+            while (nextUrl == null) {
+                final String line = reader.readLine();
+                if (line == null) {
+                    return false;
+                }
+                if (!line.isEmpty()) {
+                    nextUrl = line;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String next() {
+
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final String url = nextUrl;
+        nextUrl = null;
+        return url;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        reader.close();
+    }
+}
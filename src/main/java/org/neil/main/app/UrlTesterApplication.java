@@ -1,11 +1,34 @@
 package org.neil.main.app;
 
+import org.neil.main.metrics.MetricsServer;
+import org.neil.main.metrics.TesterMetrics;
+import org.neil.main.report.JsonWriter;
+import org.neil.main.report.LatencyReport;
 import org.neil.main.report.StatusReport;
+import org.neil.main.shard.ShardCoordinator;
+import org.neil.main.shard.ShardWorker;
 import org.neil.main.url.*;
+import org.neil.main.url.dns.HostResolver;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 import static org.neil.main.util.ErrorOutput.logError;
@@ -21,8 +44,49 @@ public class UrlTesterApplication {
     private static final int TIMEOUT = 10000;
     private static final String HELP = "help";
     private static final String TIMEOUT_ARGUMENT = "timeout";
+    private static final String DEADLINE_ARGUMENT = "deadline";
+    private static final String ENGINE_ARGUMENT = "engine";
+    private static final String THREADED_ENGINE = "threaded";
+    private static final String VIRTUAL_ENGINE = "virtual";
+    private static final String NIO_ENGINE = "nio";
+    private static final String FILE_ARGUMENT = "file";
+    private static final String IN_FLIGHT_ARGUMENT = "in-flight";
+    private static final String CONNECTIONS_ARGUMENT = "connections";
+    private static final String PROBE_ARGUMENT = "probe";
+    private static final String RETRIES_ARGUMENT = "retries";
+    private static final String HTTP2_ARGUMENT = "http2";
+    private static final String REDIRECTS_ARGUMENT = "redirects";
+    private static final String CACHE_ARGUMENT = "cache";
+    private static final String CACHE_TTL_ARGUMENT = "cache-ttl";
+    private static final String NDJSON_ARGUMENT = "ndjson";
+    private static final String LATENCY_ARGUMENT = "latency";
+    private static final String MONITOR_ARGUMENT = "monitor";
+    private static final String SERVE_ARGUMENT = "serve";
+    private static final String BIND_ARGUMENT = "bind";
+    private static final String METRICS_ARGUMENT = "metrics";
+    private static final String METRICS_FILE_ARGUMENT = "metrics-file";
+    private static final String WORKERS_ARGUMENT = "workers";
+    private static final String WORKER_ARGUMENT = "worker";
+    private static final String SHARD_ARGUMENT = "shard";
+    private static final String JOURNAL_ARGUMENT = "journal";
+    private static final String RESUME_ARGUMENT = "resume";
+    // The arguments a coordinator passes on to its workers, the cache being passed on separately for each shard
+    private static final List<String> WORKER_VALUE_ARGUMENTS = Arrays.asList(TIMEOUT_ARGUMENT, DEADLINE_ARGUMENT,
+            ENGINE_ARGUMENT, IN_FLIGHT_ARGUMENT, CONNECTIONS_ARGUMENT, RETRIES_ARGUMENT, REDIRECTS_ARGUMENT,
+            CACHE_TTL_ARGUMENT);
+    private static final List<String> WORKER_FLAG_ARGUMENTS = Arrays.asList(PROBE_ARGUMENT, HTTP2_ARGUMENT);
+    // The arguments only the threaded and virtual engines act on, which the nio engine would otherwise ignore
+    private static final List<String> NIO_UNSUPPORTED_ARGUMENTS = Arrays.asList(CONNECTIONS_ARGUMENT,
+            RETRIES_ARGUMENT, REDIRECTS_ARGUMENT, HTTP2_ARGUMENT, CACHE_ARGUMENT);
+    private static final int DEFAULT_MONITOR_SECONDS = 60;
+    // How long a monitor or server being shut down has to finish the urls in progress and close the tester
+    private static final long SHUTDOWN_SECONDS = 30;
+    private static final String STANDARD_INPUT = "-";
     private static final String DEFAULT = "default";
 
+    // Counted down once the urls have been tested and the tester closed, for a monitor being shut down to wait on
+    private final CountDownLatch finished = new CountDownLatch(1);
+
     /**
      * Tests urls to see if they can be reached and outputs a report for each url.
      *
@@ -37,20 +101,420 @@ public class UrlTesterApplication {
         } else {
             if (arguments.containsKey(HELP)) {
                 logOutput(
-                        "java -jar bbc-url-tester-1.0.jar <-h | --help> <-t | --timeout [integer value]> <urls>\n" +
+                        "java -jar bbc-url-tester-1.0.jar <-h | --help> <-t | --timeout [integer value]> " +
+                                "<-d | --deadline [integer value]> " +
+                                "<-e | --engine [threaded | virtual | nio]> <-f | --file [path]> " +
+                                "<-i | --in-flight [integer value]> " +
+                                "<-c | --connections [integer value]> <-p | --probe> <-r | --retries [integer value]> " +
+                                "<-R | --redirects [integer value]> <-H | --http2> <-C | --cache [path]> " +
+                                "<-T | --cache-ttl [integer value]> <-n | --ndjson> <-l | --latency> " +
+                                "<-m | --monitor [integer value]> <-s | --serve [port]> <-b | --bind [address]> " +
+                                "<-M | --metrics [port]> " +
+                                "<-O | --metrics-file [path]> <-w | --workers [integer value]> <-j | --journal [path]> " +
+                                "<-u | --resume> <urls | ->\n" +
                                 "-h | --help   prints help message \n" +
-                                "-t | --timeout   Set a timeout in milliseconds for connecting and reading urls provided\n" +
-                                "urls   A new line separated list of urls to test");
+                                "-t | --timeout   Set a timeout in milliseconds for connecting and reading urls provided, " +
+                                "each request is cut off after twice the timeout\n" +
+                                "-d | --deadline   Set a time limit in milliseconds for the whole run, urls still being " +
+                                "tested are reported as timed out and the urls not yet tested are reported without " +
+                                "being tested\n" +
+                                "-e | --engine   Use a pooled thread per url (threaded, the default), a virtual thread per url " +
+                                "(virtual, Java 21 or later) or non blocking io (nio). The nio engine refuses to run with the " +
+                                "connections, retries, redirects, http2 or cache flags\n" +
+                                "-f | --file   Read the urls to test from a file, one per line\n" +
+                                "-i | --in-flight   Set the most urls being tested at once, each holding a socket " +
+                                "open, defaulting to the open file limit of the process less 1024 (nio engine)\n" +
+                                "-c | --connections   Set the most connections open to a single host at once, " +
+                                "connections are kept alive and reused (threaded and virtual engines)\n" +
+                                "-p | --probe   Send a HEAD request first, only sending a GET if the server rejects the " +
+                                "HEAD or leaves out headers\n" +
+                                "-r | --retries   Try a failed request again up to this many times, when it was reset, " +
+                                "refused, timed out or answered 429, 502, 503 or 504, waiting longer before each retry " +
+                                "and adding the attempts to its report (threaded and virtual engines)\n" +
+                                "-R | --redirects   Follow up to this many redirects from each url, reporting the " +
+                                "response at the end and the chain of redirects to it, urls redirected to by many urls " +
+                                "are only requested once. With 0 every url that redirects is reported as redirected too " +
+                                "many times (threaded and virtual engines)\n" +
+                                "-H | --http2   Send the requests to each host as streams over one HTTP/2 connection, " +
+                                "agreed with ALPN for https and h2c for http, falling back to HTTP/1.1 for hosts that " +
+                                "don't support it. Connections then limits the streams per host, defaulting to 100 " +
+                                "(threaded and virtual engines, Java 21 or later)\n" +
+                                "-C | --cache   Keep the results in a file between runs, urls tested recently are reported " +
+                                "from the file and older results are revalidated (threaded and virtual engines)\n" +
+                                "-T | --cache-ttl   Set how many seconds a cached result is reported without revalidating, " +
+                                "defaults to 300\n" +
+                                "-n | --ndjson   Output each report as newline delimited json, one report per line\n" +
+                                "-l | --latency   Add how long each phase of the request took to each report, in " +
+                                "microseconds, and output latency percentiles after the status report\n" +
+                                "-m | --monitor   Keep running and check every url again each interval of this many " +
+                                "seconds, with the checks spread across the interval, outputting a status report at " +
+                                "the end of each interval until stopped\n" +
+                                "-s | --serve   Keep running as an HTTP server on the port, testing the batches of urls " +
+                                "posted to /batches, any urls given are ignored. Only listens on the loopback address unless " +
+                                "bind is given\n" +
+                                "-b | --bind   Listen on this address when serving, such as 0.0.0.0 for every address. " +
+                                "The server has no authentication and requests any url it is sent\n" +
+                                "-M | --metrics   Serve metrics of the tests in progress, connections in use and request " +
+                                "latencies for Prometheus to scrape at http://localhost:[port]/metrics while running\n" +
+                                "-O | --metrics-file   Write the metrics to a file in the Prometheus text format once " +
+                                "the run ends\n" +
+                                "-w | --workers   Split the urls by host between this many worker processes, each " +
+                                "testing the hosts of its share, and merge their reports, for runs too large for " +
+                                "the connections of one process. Each worker keeps its own cache, in the cache file " +
+                                "with the worker's number added. Not used with monitor or serve\n" +
+                                "-j | --journal   Record every report in a file as the run goes, so a run that dies " +
+                                "part way can be resumed. Not used with monitor or serve\n" +
+                                "-u | --resume   Carry on from the journal of a run that didn't finish, only testing the " +
+                                "urls it didn't record and counting its reports in the status report\n" +
+                                "urls   A new line separated list of urls to test\n" +
+                                "-   Read the urls to test from standard input, one per line");
                 successful = true;
+            } else if (!getUnsupportedArguments(arguments).isEmpty()) {
+                logError("The nio engine does not support --"
+                        + String.join(", --", getUnsupportedArguments(arguments))
+                        + ", use the threaded or virtual engine");
+            } else if (isCoordinating(arguments)) {
+                try {
+                    successful = coordinateUrls(arguments);
+                } finally {
+                    finished.countDown();
+                }
             } else {
-                outputReports(new ThreadedUrlTester().test(splitUrls(arguments.get(DEFAULT)), new SimpleUrlVerifier(),
-                        getTimeout(arguments)));
-                successful = true;
+                MetricsServer metricsServer = null;
+                try (UrlTester urlTester = createUrlTester(arguments)) {
+                    metricsServer = startMetricsServer(arguments);
+                    if (arguments.containsKey(SERVE_ARGUMENT)) {
+                        successful = serveUrls(urlTester, arguments);
+                    } else if (arguments.containsKey(WORKER_ARGUMENT)) {
+                        successful = runWorker(urlTester, arguments);
+                    } else {
+                        successful = testUrls(urlTester, arguments);
+                    }
+                } catch (IOException e) {
+                    logError("Url tester could not be started: " + e.getMessage());
+                } finally {
+                    if (metricsServer != null) {
+                        metricsServer.close();
+                    }
+                    writeMetricsFile(arguments);
+                    finished.countDown();
+                }
             }
         }
         return successful;
     }
 
+    /**
+     * Serves the HTTP API for testing batches of urls until the process is shut down, when the server is closed and
+     * the tester closed after it, saving any result cache, before the process exits.
+     *
+     * @return true if the server could be started
+     */
+    private boolean serveUrls(UrlTester urlTester, Map<String, String> arguments) {
+
+        final int port;
+        try {
+            port = Integer.parseInt(arguments.get(SERVE_ARGUMENT));
+        } catch (NumberFormatException e) {
+            logError("Port not a number: " + arguments.get(SERVE_ARGUMENT));
+            return false;
+        }
+        final InetAddress address;
+        try {
+            address = arguments.containsKey(BIND_ARGUMENT)
+                    ? InetAddress.getByName(arguments.get(BIND_ARGUMENT))
+                    : InetAddress.getLoopbackAddress();
+        } catch (UnknownHostException e) {
+            logError("Bind address not known: " + arguments.get(BIND_ARGUMENT));
+            return false;
+        }
+        try (UrlTesterServer urlTesterServer = new UrlTesterServer(urlTester, address, port, getTimeout(arguments),
+                getRunTimeout(arguments))) {
+            addShutdownHook(urlTesterServer::close);
+            urlTesterServer.start();
+            logOutput("Serving on " + address.getHostAddress() + " port " + urlTesterServer.getPort());
+            urlTesterServer.awaitClose();
+            return true;
+        } catch (IOException e) {
+            logError("Server could not be started: " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    /**
+     * Starts serving the metrics on the port given as the metrics argument. The run goes ahead without the endpoint
+     * if it can't be started.
+     *
+     * @return The started server, or null if there isn't one
+     */
+    private MetricsServer startMetricsServer(Map<String, String> arguments) {
+
+        if (!arguments.containsKey(METRICS_ARGUMENT)) {
+            return null;
+        }
+        try {
+            final MetricsServer metricsServer = new MetricsServer(TesterMetrics.REGISTRY,
+                    Integer.parseInt(arguments.get(METRICS_ARGUMENT)));
+            metricsServer.start();
+            return metricsServer;
+        } catch (NumberFormatException e) {
+            logError("Metrics port not a number: " + arguments.get(METRICS_ARGUMENT));
+        } catch (IOException e) {
+            logError("Metrics server could not be started: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Writes the metrics as they stand at the end of the run to the file given as the metrics file argument, if
+     * there is one.
+     */
+    private void writeMetricsFile(Map<String, String> arguments) {
+
+        if (arguments.containsKey(METRICS_FILE_ARGUMENT)) {
+            try {
+                TesterMetrics.REGISTRY.writeTo(Paths.get(arguments.get(METRICS_FILE_ARGUMENT)));
+            } catch (IOException | RuntimeException e) {
+                logError("Metrics could not be written: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops a monitor or server when the process is shut down, and holds the process open until the urls have been
+     * tested and the tester closed, or the time allowed for shutting down has passed.
+     *
+     * @param stop Stops the monitor or server
+     */
+    private void addShutdownHook(Runnable stop) {
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stop.run();
+            try {
+                finished.await(SHUTDOWN_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "url-tester-shutdown"));
+    }
+
+    /**
+     * Tests the urls from the file, standard input or the urls argument. Urls from a file or standard input are
+     * tested as they are read.
+     *
+     * @return true if the urls could be read
+     */
+    private boolean testUrls(UrlTester urlTester, Map<String, String> arguments) {
+
+        return readUrls(arguments, urls -> testUrls(urlTester, urls, arguments));
+    }
+
+    /**
+     * Reads the urls from the file, standard input or the urls argument, passing them on to be tested as they are
+     * read.
+     *
+     * @param test Tests the urls, giving whether the run was successful
+     * @return true if the urls could be read and the run was successful
+     */
+    private boolean readUrls(Map<String, String> arguments, Predicate<Iterator<String>> test) {
+
+        try {
+            if (arguments.containsKey(FILE_ARGUMENT)) {
+                try (UrlReader urlReader = new UrlReader(new InputStreamReader(
+                        Files.newInputStream(Paths.get(arguments.get(FILE_ARGUMENT))), StandardCharsets.UTF_8))) {
+                    return test.test(urlReader);
+                }
+            } else if (STANDARD_INPUT.equals(arguments.get(DEFAULT))) {
+                // Standard input is left open as it belongs to the process
+                return test.test(new UrlReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+            } else {
+                return test.test(splitUrls(arguments.get(DEFAULT)).iterator());
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logError("Urls could not be read: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Workers are started for a single run of the urls, a monitor or server testing in this process.
+     */
+    private boolean isCoordinating(Map<String, String> arguments) {
+
+        if (!arguments.containsKey(WORKERS_ARGUMENT)) {
+            return false;
+        }
+        if (arguments.containsKey(MONITOR_ARGUMENT) || arguments.containsKey(SERVE_ARGUMENT)) {
+            logError("Workers are not used with monitor or serve, testing in this process");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Splits the urls between worker processes and outputs the reports they send back the same as a single run,
+     * followed by their status reports merged together.
+     *
+     * @return true if the urls could be read and the workers started
+     */
+    private boolean coordinateUrls(Map<String, String> arguments) {
+
+        final JsonWriter.Format format = getFormat(arguments);
+        final boolean latency = arguments.containsKey(LATENCY_ARGUMENT);
+        // Counts the reports of the run being resumed, the workers counting the rest
+        final StatusReport statusReport = new StatusReport();
+        final LatencyReport latencyReport = new LatencyReport();
+        final JsonWriter output = new JsonWriter(Channels.newChannel(System.out), format);
+        final JsonWriter errorOutput = new JsonWriter(Channels.newChannel(System.err), format);
+
+        try (ShardCoordinator shardCoordinator = new ShardCoordinator(getWorkers(arguments),
+                (port, shard) -> workerCommand(arguments, port, shard));
+             ReportJournal reportJournal = openJournal(arguments, tally(statusReport, latencyReport))) {
+            return readUrls(arguments, urls -> {
+                try {
+                    statusReport.merge(shardCoordinator.test(
+                            reportJournal == null ? urls : reportJournal.skipRecorded(urls), urlReport -> {
+                                outputReport(urlReport, output, errorOutput, latency ? latencyReport : null);
+                                if (reportJournal != null) {
+                                    reportJournal.record(urlReport);
+                                }
+                            }));
+                    errorOutput.flush();
+                    output.write(statusReport);
+                    if (latency) {
+                        output.write(latencyReport);
+                    }
+                    output.flush();
+                    return true;
+                } catch (IOException e) {
+                    logError("Workers could not be run: " + e.getMessage());
+                    return false;
+                }
+            });
+        } catch (IOException e) {
+            logError("Journal could not be kept: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Tests the urls of a shard for the coordinator that started this process.
+     *
+     * @return true if the worker could reach the coordinator and finished the shard
+     */
+    private boolean runWorker(UrlTester urlTester, Map<String, String> arguments) {
+
+        try {
+            new ShardWorker(urlTester, getTimeout(arguments), getRunTimeout(arguments)).run(
+                    Integer.parseInt(arguments.get(WORKER_ARGUMENT)), Integer.parseInt(arguments.get(SHARD_ARGUMENT)));
+            return true;
+        } catch (NumberFormatException e) {
+            logError("Worker port or shard not a number: " + e.getMessage());
+        } catch (IOException e) {
+            logError("Worker lost the coordinator: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * A worker runs in a JVM started the same way as this one, with the arguments that shape the tests passed on.
+     * Each worker has a cache file of its own, as each only tests the hosts of its shard.
+     */
+    private List<String> workerCommand(Map<String, String> arguments, int port, int shard) {
+
+        final List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), Main.class.getName()));
+        for (String argument : WORKER_VALUE_ARGUMENTS) {
+            if (arguments.containsKey(argument)) {
+                command.add("--" + argument);
+                command.add(arguments.get(argument));
+            }
+        }
+        for (String argument : WORKER_FLAG_ARGUMENTS) {
+            if (arguments.containsKey(argument)) {
+                command.add("--" + argument);
+            }
+        }
+        if (arguments.containsKey(CACHE_ARGUMENT)) {
+            command.add("--" + CACHE_ARGUMENT);
+            command.add(arguments.get(CACHE_ARGUMENT) + "." + shard);
+        }
+        command.addAll(Arrays.asList("--" + WORKER_ARGUMENT, String.valueOf(port),
+                "--" + SHARD_ARGUMENT, String.valueOf(shard)));
+        return command;
+    }
+
+    /**
+     * Tests the urls once, or in monitor mode reads every url and keeps checking them until the process is stopped.
+     *
+     * @return true unless the journal could not be opened
+     */
+    private boolean testUrls(UrlTester urlTester, Iterator<String> urls, Map<String, String> arguments) {
+
+        final JsonWriter.Format format = getFormat(arguments);
+        final boolean latency = arguments.containsKey(LATENCY_ARGUMENT);
+        if (arguments.containsKey(MONITOR_ARGUMENT)) {
+            if (arguments.containsKey(JOURNAL_ARGUMENT)) {
+                logError("The journal is not kept by a monitor");
+            }
+            final List<String> urlList = new ArrayList<>();
+            urls.forEachRemaining(urlList::add);
+            monitorUrls(new UrlMonitor(urlTester, new SimpleUrlVerifier(), getTimeout(arguments),
+                    getRunTimeout(arguments), TimeUnit.SECONDS.toMillis(getMonitorInterval(arguments))),
+                    urlList, format, latency);
+            return true;
+        }
+        final StatusReport statusReport = new StatusReport();
+        final LatencyReport latencyReport = new LatencyReport();
+        try (ReportJournal reportJournal = openJournal(arguments, tally(statusReport, latencyReport))) {
+            outputReports(urlTester, reportJournal == null ? urls : reportJournal.skipRecorded(urls),
+                    getTimeout(arguments), getRunTimeout(arguments), format, statusReport,
+                    latency ? latencyReport : null, reportJournal);
+            return true;
+        } catch (IOException e) {
+            logError("Journal could not be kept: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @param recorded Receives each report the run being resumed recorded
+     * @return The journal in the file given as the journal argument, or null if there isn't one
+     * @throws IOException If the journal could not be created, or read to resume
+     */
+    private ReportJournal openJournal(Map<String, String> arguments, ReportSink recorded) throws IOException {
+
+        if (!arguments.containsKey(JOURNAL_ARGUMENT)) {
+            if (arguments.containsKey(RESUME_ARGUMENT)) {
+                logError("Resume needs the journal of the run, testing every url");
+            }
+            return null;
+        }
+        final Path journalFile = Paths.get(arguments.get(JOURNAL_ARGUMENT));
+        return arguments.containsKey(RESUME_ARGUMENT)
+                ? ReportJournal.resume(journalFile, recorded)
+                : ReportJournal.create(journalFile);
+    }
+
+    /**
+     * @return A sink counting each report it is given in the status report and its timings in the latency report
+     */
+    private ReportSink tally(StatusReport statusReport, LatencyReport latencyReport) {
+
+        return urlReport -> {
+            statusReport.incrementStatus(urlReport.getStatusCode());
+            if (urlReport instanceof UrlTestReport) {
+                final UrlTestReport urlTestReport = (UrlTestReport) urlReport;
+                urlTestReport.getTimings().ifPresent(timings -> latencyReport.record(
+                        urlTestReport.getStatusCode(), urlTestReport.getUrl(), timings));
+            }
+        };
+    }
+
     /**
      * Splits the string on line end characters or by the escaped line end character
      * literals if thew string didn't split by the unescaped Line end character.
@@ -63,6 +527,196 @@ public class UrlTesterApplication {
         return Arrays.asList(LINE_END_REGEX.split(urlBlock));
     }
 
+    /**
+     * @return The arguments given that the engine can't act on, which is only ever the case for the nio engine
+     */
+    private List<String> getUnsupportedArguments(Map<String, String> arguments) {
+
+        final List<String> unsupported = new ArrayList<>();
+        if (NIO_ENGINE.equals(arguments.get(ENGINE_ARGUMENT))) {
+            for (String argument : NIO_UNSUPPORTED_ARGUMENTS) {
+                if (arguments.containsKey(argument)) {
+                    unsupported.add(argument);
+                }
+            }
+        }
+        return unsupported;
+    }
+
+    private UrlTester createUrlTester(Map<String, String> arguments) throws IOException {
+
+        final String engine = arguments.getOrDefault(ENGINE_ARGUMENT, THREADED_ENGINE);
+        final boolean probe = arguments.containsKey(PROBE_ARGUMENT);
+        if (NIO_ENGINE.equals(engine)) {
+            return new NioUrlTester(getMaxInFlight(arguments), probe);
+        }
+        if (arguments.containsKey(IN_FLIGHT_ARGUMENT)) {
+            logError("In flight is only set for the nio engine, ignoring it");
+        }
+        final ResultCache resultCache = loadResultCache(arguments);
+        final boolean http2 = arguments.containsKey(HTTP2_ARGUMENT);
+        final GetRequest getRequest = new GetRequest(new HostConnectionPool(
+                getConnections(arguments, http2), HostConnectionPool.DEFAULT_IDLE_SECONDS), new HostResolver(), probe,
+                getRetryPolicy(arguments), getRedirectPolicy(arguments), http2);
+        if (VIRTUAL_ENGINE.equals(engine)) {
+            return new ThreadedUrlTester(true, getRequest, resultCache);
+        }
+        if (!THREADED_ENGINE.equals(engine)) {
+            logError("Engine not recognised, defaulting to threaded");
+        }
+        return new ThreadedUrlTester(false, getRequest, resultCache);
+    }
+
+    /**
+     * @return The results cached in the file given as the cache argument, or no cache if there isn't one
+     * @throws IOException If the cache file exists but could not be read
+     */
+    private ResultCache loadResultCache(Map<String, String> arguments) throws IOException {
+
+        if (!arguments.containsKey(CACHE_ARGUMENT)) {
+            return ResultCache.none();
+        }
+        final Path cacheFile = Paths.get(arguments.get(CACHE_ARGUMENT));
+        return ResultCache.load(cacheFile, getCacheTtl(arguments));
+    }
+
+    private int getCacheTtl(Map<String, String> arguments) {
+
+        if (arguments.containsKey(CACHE_TTL_ARGUMENT)) {
+            try {
+                final int cacheTtl = Integer.parseInt(arguments.get(CACHE_TTL_ARGUMENT));
+                if (cacheTtl >= 0) {
+                    return cacheTtl;
+                }
+            } catch (NumberFormatException ex) {
+                // Reported below along with negative numbers
+            }
+            logError("Cache TTL not a number of seconds, defaulting to " + ResultCache.DEFAULT_TTL_SECONDS);
+        }
+        return ResultCache.DEFAULT_TTL_SECONDS;
+    }
+
+    private int getMaxInFlight(Map<String, String> arguments) {
+
+        if (arguments.containsKey(IN_FLIGHT_ARGUMENT)) {
+            try {
+                final int maxInFlight = Integer.parseInt(arguments.get(IN_FLIGHT_ARGUMENT));
+                if (maxInFlight > 0) {
+                    return maxInFlight;
+                }
+            } catch (NumberFormatException ex) {
+                // Reported below along with numbers that are too small
+            }
+            logError("In flight not a positive number, defaulting to " + AbstractUrlTester.DEFAULT_MAX_IN_FLIGHT);
+        }
+        return AbstractUrlTester.DEFAULT_MAX_IN_FLIGHT;
+    }
+
+    /**
+     * @param http2 The connections limit the streams on each host's connection rather than the connections
+     */
+    private int getConnections(Map<String, String> arguments, boolean http2) {
+
+        final int defaultConnections = http2
+                ? HostConnectionPool.DEFAULT_MAX_STREAMS_PER_HOST
+                : HostConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+        if (arguments.containsKey(CONNECTIONS_ARGUMENT)) {
+            try {
+                final int connections = Integer.parseInt(arguments.get(CONNECTIONS_ARGUMENT));
+                if (connections > 0) {
+                    return connections;
+                }
+            } catch (NumberFormatException ex) {
+                // Reported below along with numbers that are too small
+            }
+            logError("Connections not a positive number, defaulting to " + defaultConnections);
+        }
+        return defaultConnections;
+    }
+
+    private RetryPolicy getRetryPolicy(Map<String, String> arguments) {
+
+        if (arguments.containsKey(RETRIES_ARGUMENT)) {
+            try {
+                final int retries = Integer.parseInt(arguments.get(RETRIES_ARGUMENT));
+                if (retries >= 0) {
+                    return new RetryPolicy(retries);
+                }
+            } catch (NumberFormatException ex) {
+                // Reported below along with negative numbers
+            }
+            logError("Retries not a number, defaulting to no retries");
+        }
+        return RetryPolicy.none();
+    }
+
+    private RedirectPolicy getRedirectPolicy(Map<String, String> arguments) {
+
+        if (arguments.containsKey(REDIRECTS_ARGUMENT)) {
+            try {
+                final int redirects = Integer.parseInt(arguments.get(REDIRECTS_ARGUMENT));
+                if (redirects >= 0) {
+                    return new RedirectPolicy(redirects);
+                }
+            } catch (NumberFormatException ex) {
+                // Reported below along with negative numbers
+            }
+            logError("Redirects not a number, defaulting to " + RedirectPolicy.DEFAULT_MAX_REDIRECTS);
+            return new RedirectPolicy(RedirectPolicy.DEFAULT_MAX_REDIRECTS);
+        }
+        return RedirectPolicy.none();
+    }
+
+    private int getWorkers(Map<String, String> arguments) {
+
+        final int defaultWorkers = Runtime.getRuntime().availableProcessors();
+        try {
+            final int workers = Integer.parseInt(arguments.get(WORKERS_ARGUMENT));
+            if (workers > 0) {
+                return workers;
+            }
+        } catch (NumberFormatException ex) {
+            // Reported below along with numbers that are too small
+        }
+        logError("Workers not a positive number, defaulting to " + defaultWorkers);
+        return defaultWorkers;
+    }
+
+    private int getMonitorInterval(Map<String, String> arguments) {
+
+        try {
+            final int interval = Integer.parseInt(arguments.get(MONITOR_ARGUMENT));
+            if (interval > 0) {
+                return interval;
+            }
+        } catch (NumberFormatException ex) {
+            // Reported below along with numbers that are too small
+        }
+        logError("Monitor interval not a positive number of seconds, defaulting to " + DEFAULT_MONITOR_SECONDS);
+        return DEFAULT_MONITOR_SECONDS;
+    }
+
+    private int getRunTimeout(Map<String, String> arguments) {
+
+        if (arguments.containsKey(DEADLINE_ARGUMENT)) {
+            try {
+                final int runTimeout = Integer.parseInt(arguments.get(DEADLINE_ARGUMENT));
+                if (runTimeout > 0) {
+                    return runTimeout;
+                }
+            } catch (NumberFormatException ex) {
+                // Reported below along with numbers that are too small
+            }
+            logError("Deadline not a positive number, running without a deadline");
+        }
+        return 0;
+    }
+
+    private JsonWriter.Format getFormat(Map<String, String> arguments) {
+
+        return arguments.containsKey(NDJSON_ARGUMENT) ? JsonWriter.Format.NDJSON : JsonWriter.Format.PRETTY;
+    }
+
     private int getTimeout(Map<String, String> arguments) {
 
         if (arguments.containsKey(TIMEOUT_ARGUMENT)) {
@@ -76,27 +730,124 @@ public class UrlTesterApplication {
     }
 
     /**
-     * Print all of the url reports for the passed and failed urls.
+     * Print each url report for the passed and failed urls as soon as its test finishes. Reports are streamed into
+     * a buffer for standard output and another for standard error, which are written out in large blocks.
      *
-     * Will tally the totals seen for each status code and output a report of these tallies after the url reports.
+     * Will tally the totals seen for each status code as the reports arrive and output a report of these tallies
+     * after the url reports. With latency on, each report has the timings of its request and the percentiles of
+     * the timings are output after the tallies. With a journal, each report is recorded once it has been written.
      *
-     * @param urlReports
+     * @param urlTester     The tester to test the urls with
+     * @param urls          The urls to test
+     * @param timeout       The read and connect timeout values for the connections.
+     * @param runTimeout    The longest the whole run can take in milliseconds, or 0 for no limit
+     * @param format        How each report is laid out
+     * @param statusReport  Tallies the statuses, already holding those of any run being resumed
+     * @param latencyReport Counts the timings of the requests, or null to leave timings out
+     * @param reportJournal Records each report, or null if the run isn't journaled
      */
-    private void outputReports(List<UrlReport> urlReports) {
+    private void outputReports(UrlTester urlTester, Iterator<String> urls, int timeout, int runTimeout,
+                               JsonWriter.Format format, StatusReport statusReport, LatencyReport latencyReport,
+                               ReportJournal reportJournal) {
 
-        final StatusReport statusReport = new StatusReport();
+        // The standard streams belong to the process, so the writers are flushed but never closed
+        final JsonWriter output = new JsonWriter(Channels.newChannel(System.out), format);
+        final JsonWriter errorOutput = new JsonWriter(Channels.newChannel(System.err), format);
 
-        urlReports.forEach(urlReport -> {
-            statusReport.incrementStatus(urlReport.getStatusCode());
-            if (urlReport instanceof UrlTestReport) {
-                logOutput(urlReport.toJson());
-            } else if (urlReport instanceof UrlErrorReport) {
-                logError(urlReport.toJson());
+        try {
+            urlTester.test(urls, new SimpleUrlVerifier(), timeout, runTimeout, urlReport -> {
+                statusReport.incrementStatus(urlReport.getStatusCode());
+                outputReport(urlReport, output, errorOutput, latencyReport);
+                if (reportJournal != null) {
+                    reportJournal.record(urlReport);
+                }
+            });
+            errorOutput.flush();
+            output.write(statusReport);
+            if (latencyReport != null) {
+                output.write(latencyReport);
             }
-        });
+            output.flush();
+        } catch (IOException e) {
+            logError("Reports could not be written: " + e.getMessage());
+        }
 
-        logOutput(statusReport.toJson());
+    }
 
+    /**
+     * Outputs the report of every check as it finishes, the same as a single run, and at the end of each interval
+     * the status report, and latency report if asked for, of the checks that finished in that interval. Runs until
+     * the process is shut down, when the checks in progress are finished, everything is flushed and the tester is
+     * closed, saving any result cache, before the process exits.
+     *
+     * @param urlMonitor The monitor to check the urls with
+     * @param urls       The urls to keep checking
+     * @param format     How each report is laid out
+     * @param latency    Whether to report how long the requests took
+     */
+    private void monitorUrls(UrlMonitor urlMonitor, List<String> urls, JsonWriter.Format format, boolean latency) {
+
+        final AtomicReference<StatusReport> statusReport = new AtomicReference<>(new StatusReport());
+        final AtomicReference<LatencyReport> latencyReport = new AtomicReference<>(new LatencyReport());
+        // Held while a check is counted and while the reports are swapped, so no count lands in a written report
+        final Object intervalLock = new Object();
+        final JsonWriter output = new JsonWriter(Channels.newChannel(System.out), format);
+        final JsonWriter errorOutput = new JsonWriter(Channels.newChannel(System.err), format);
+        addShutdownHook(urlMonitor::stop);
+
+        try {
+            urlMonitor.run(urls, urlReport -> {
+                synchronized (intervalLock) {
+                    statusReport.get().incrementStatus(urlReport.getStatusCode());
+                    outputReport(urlReport, output, errorOutput, latency ? latencyReport.get() : null);
+                }
+            }, () -> {
+                try {
+                    final StatusReport intervalStatus;
+                    final LatencyReport intervalLatency;
+                    synchronized (intervalLock) {
+                        intervalStatus = statusReport.getAndSet(new StatusReport());
+                        intervalLatency = latencyReport.getAndSet(new LatencyReport());
+                    }
+                    errorOutput.flush();
+                    output.write(intervalStatus);
+                    if (latency) {
+                        output.write(intervalLatency);
+                    }
+                    output.flush();
+                } catch (IOException e) {
+                    logError("Reports could not be written: " + e.getMessage());
+                }
+            });
+            errorOutput.flush();
+            output.flush();
+        } catch (IOException e) {
+            logError("Reports could not be written: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a report to standard output, or standard error for an error.
+     *
+     * @param latencyReport Counts the timings of the report and adds them to it, or null to leave timings out
+     */
+    private void outputReport(UrlReport urlReport, JsonWriter output, JsonWriter errorOutput,
+                              LatencyReport latencyReport) {
+
+        try {
+            if (urlReport instanceof UrlTestReport && latencyReport != null) {
+                final UrlTestReport urlTestReport = (UrlTestReport) urlReport;
+                urlTestReport.getTimings().ifPresent(timings -> latencyReport.record(
+                        urlTestReport.getStatusCode(), urlTestReport.getUrl(), timings));
+                output.write(urlTestReport.withTimings());
+            } else if (urlReport instanceof UrlTestReport) {
+                output.write(urlReport);
+            } else if (urlReport instanceof UrlErrorReport) {
+                errorOutput.write(urlReport);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
 }
@@ -0,0 +1,328 @@
+package org.neil.main.app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.neil.main.report.JsonWritable;
+import org.neil.main.report.JsonWriter;
+import org.neil.main.url.SimpleUrlVerifier;
+import org.neil.main.url.UrlReport;
+import org.neil.main.url.UrlTester;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static org.neil.main.util.ErrorOutput.logError;
+
+/**
+ * A small HTTP API for testing batches of urls, so other services can submit urls without starting a JVM for each
+ * list. Every batch is tested by the same tester, so batches tested at the same time share its connections, cached
+ * host addresses and compiled code.
+ *
+ * <pre>
+ * POST   /batches              Tests the urls in the body, one per line, answering 201 with the new batch
+ * GET    /batches/{id}         How far the batch has got
+ * GET    /batches/{id}/reports The reports so far as a json array, after the first n with ?from=n, or with ?stream
+ *                              as newline delimited json, each report as its test finishes until the batch is done
+ * GET    /batches/{id}/status  The status report of the batch
+ * DELETE /batches/{id}         Forgets the batch
+ * </pre>
+ *
+ * The most recent thousand batches are kept, the oldest finished batches are forgotten after that. A batch can have
+ * at most a hundred thousand urls.
+ *
+ * There is no authentication, and the server will request any url it is given, so by default it only listens on the
+ * loopback address. Listening on another address exposes it to everyone who can reach that address.
+ */
+public class UrlTesterServer implements AutoCloseable {
+
+    static final int MAX_BATCHES = 1000;
+    static final int MAX_BATCH_URLS = 100000;
+
+    private static final String BATCHES_PATH = "/batches";
+    private static final String REPORTS = "reports";
+    private static final String STATUS = "status";
+    private static final String FROM_PARAMETER = "from=";
+    private static final String STREAM_PARAMETER = "stream";
+    private static final String JSON = "application/json";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final Pattern PATH_SEPARATOR = Pattern.compile("/");
+    private static final Pattern PARAMETER_SEPARATOR = Pattern.compile("&");
+    private static final int BACKLOG = 100;
+
+    private final UrlTester urlTester;
+    private final int timeout;
+    private final int runTimeout;
+    private final HttpServer httpServer;
+    private final ExecutorService requests = Executors.newCachedThreadPool(daemonThreads("server-request"));
+    private final ExecutorService batchTests = Executors.newCachedThreadPool(daemonThreads("server-batch"));
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Map<Long, Batch> batches = new LinkedHashMap<>();
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    /**
+     * Listens on the loopback address only.
+     *
+     * @param urlTester  The tester to test every batch with, which is not closed when the server is
+     * @param port       The port to listen on, or 0 for any free port
+     * @param timeout    The read and connect timeout values for the connections.
+     * @param runTimeout The longest a batch can take in milliseconds, or 0 for no limit
+     * @throws IOException If the server could not listen on the port
+     */
+    public UrlTesterServer(UrlTester urlTester, int port, int timeout, int runTimeout) throws IOException {
+
+        this(urlTester, InetAddress.getLoopbackAddress(), port, timeout, runTimeout);
+    }
+
+    /**
+     * @param urlTester  The tester to test every batch with, which is not closed when the server is
+     * @param address    The address to listen on
+     * @param port       The port to listen on, or 0 for any free port
+     * @param timeout    The read and connect timeout values for the connections.
+     * @param runTimeout The longest a batch can take in milliseconds, or 0 for no limit
+     * @throws IOException If the server could not listen on the address and port
+     */
+    public UrlTesterServer(UrlTester urlTester, InetAddress address, int port, int timeout, int runTimeout)
+            throws IOException {
+
+        this.urlTester = urlTester;
+        this.timeout = timeout;
+        this.runTimeout = runTimeout;
+        this.httpServer = HttpServer.create(new InetSocketAddress(address, port), BACKLOG);
+        httpServer.createContext(BATCHES_PATH, this::handle);
+        // Streams hold their request thread until their batch is done, so requests aren't limited to a fixed pool
+        httpServer.setExecutor(requests);
+    }
+
+    public void start() {
+
+        httpServer.start();
+    }
+
+    /**
+     * @return The port the server is listening on
+     */
+    public int getPort() {
+
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Waits until the server has been closed.
+     *
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void awaitClose() throws InterruptedException {
+
+        closed.await();
+    }
+
+    /**
+     * Stops listening and ends the streams still open. Batches still being tested are left to finish on their own.
+     */
+    @Override
+    public void close() {
+
+        httpServer.stop(0);
+        requests.shutdownNow();
+        batchTests.shutdown();
+        closed.countDown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        try {
+            final String[] path = PATH_SEPARATOR.split(
+                    exchange.getRequestURI().getPath().substring(BATCHES_PATH.length()), -1);
+            final String method = exchange.getRequestMethod();
+            if (path.length <= 1 || path[1].isEmpty()) {
+                if ("POST".equals(method)) {
+                    submit(exchange);
+                } else {
+                    respond(exchange, 405, error("Only POST is allowed"));
+                }
+                return;
+            }
+            final Batch batch = findBatch(path[1]);
+            if (batch == null) {
+                respond(exchange, 404, error("Batch not found"));
+            } else if (path.length == 2 && "GET".equals(method)) {
+                respond(exchange, 200, batch);
+            } else if (path.length == 2 && "DELETE".equals(method)) {
+                forget(batch);
+                exchange.sendResponseHeaders(204, -1);
+            } else if (path.length == 3 && REPORTS.equals(path[2]) && "GET".equals(method)) {
+                sendReports(exchange, batch);
+            } else if (path.length == 3 && STATUS.equals(path[2]) && "GET".equals(method)) {
+                respond(exchange, 200, batch.getStatusReport());
+            } else {
+                respond(exchange, 404, error("Not found"));
+            }
+        } catch (RuntimeException e) {
+            logError("Request could not be handled: " + e.getMessage());
+            respond(exchange, 500, error("Request could not be handled"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * The urls are read in full before the batch starts, so the number of urls is known up front. Reading stops as
+     * soon as the batch has too many, so a huge body isn't held in memory.
+     */
+    private void submit(HttpExchange exchange) throws IOException {
+
+        final List<String> urls = new ArrayList<>();
+        final UrlReader urlReader = new UrlReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        while (urlReader.hasNext()) {
+            if (urls.size() == MAX_BATCH_URLS) {
+                respond(exchange, 413, error("A batch can have at most " + MAX_BATCH_URLS + " urls"));
+                return;
+            }
+            urls.add(urlReader.next());
+        }
+        if (urls.isEmpty()) {
+            respond(exchange, 400, error("Require a body of urls, separated by new lines"));
+            return;
+        }
+        final Batch batch = new Batch(nextId.getAndIncrement(), urls.size());
+        synchronized (batches) {
+            batches.put(batch.getId(), batch);
+            forgetOldBatches();
+        }
+        batchTests.execute(() -> {
+            try {
+                urlTester.test(urls.iterator(), new SimpleUrlVerifier(), timeout, runTimeout, batch::add);
+            } catch (RuntimeException e) {
+                logError("Batch " + batch.getId() + " could not be tested: " + e.getMessage());
+            } finally {
+                batch.finish();
+            }
+        });
+        exchange.getResponseHeaders().set("Location", BATCHES_PATH + "/" + batch.getId());
+        respond(exchange, 201, batch);
+    }
+
+    /**
+     * Reports are either polled, as an array of the reports after those the client has already read, or streamed
+     * one per line as they arrive until the batch is done.
+     */
+    private void sendReports(HttpExchange exchange, Batch batch) throws IOException {
+
+        final String query = exchange.getRequestURI().getRawQuery();
+        int from = 0;
+        boolean stream = false;
+        for (String parameter : query == null ? new String[0] : PARAMETER_SEPARATOR.split(query)) {
+            if (parameter.startsWith(FROM_PARAMETER)) {
+                try {
+                    from = Integer.parseInt(parameter.substring(FROM_PARAMETER.length()));
+                } catch (NumberFormatException e) {
+                    respond(exchange, 400, error("from is not a number"));
+                    return;
+                }
+            } else if (parameter.equals(STREAM_PARAMETER)) {
+                stream = true;
+            }
+        }
+        if (!stream) {
+            final List<UrlReport> reports = batch.getReports(from);
+            respond(exchange, 200, jsonWriter -> {
+                jsonWriter.beginArray();
+                for (UrlReport report : reports) {
+                    jsonWriter.value(report);
+                }
+                jsonWriter.endArray();
+            });
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", NDJSON);
+        exchange.sendResponseHeaders(200, 0);
+        final OutputStream responseBody = exchange.getResponseBody();
+        try (JsonWriter jsonWriter = new JsonWriter(Channels.newChannel(responseBody), JsonWriter.Format.NDJSON)) {
+            List<UrlReport> reports;
+            while (!(reports = batch.awaitReports(from)).isEmpty()) {
+                for (UrlReport report : reports) {
+                    jsonWriter.write(report);
+                }
+                // The response is chunked, a chunk is only sent when the response body is flushed
+                jsonWriter.flush();
+                responseBody.flush();
+                from += reports.size();
+            }
+        } catch (InterruptedException e) {
+            // The server is closing, the stream ends where it is
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Batch findBatch(String id) {
+
+        try {
+            synchronized (batches) {
+                return batches.get(Long.parseLong(id));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void forget(Batch batch) {
+
+        synchronized (batches) {
+            batches.remove(batch.getId());
+        }
+    }
+
+    /**
+     * Batches still being tested are kept, so a client can always read the batch it has just submitted.
+     */
+    private void forgetOldBatches() {
+
+        final Iterator<Batch> oldestFirst = batches.values().iterator();
+        while (batches.size() > MAX_BATCHES && oldestFirst.hasNext()) {
+            if (oldestFirst.next().isDone()) {
+                oldestFirst.remove();
+            }
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, JsonWritable document) throws IOException {
+
+        final byte[] body = JsonWriter.toJson(document).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    private static JsonWritable error(String message) {
+
+        return jsonWriter -> jsonWriter.beginObject().name("Error").value(message).endObject();
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
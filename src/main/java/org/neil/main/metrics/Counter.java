@@ -0,0 +1,42 @@
+package org.neil.main.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up. The count is striped across cells, so threads incrementing it at once don't contend
+ * on a single value.
+ */
+public final class Counter implements Metric {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+
+        count.increment();
+    }
+
+    /**
+     * @param amount How much to add to the count, which must not be negative
+     */
+    public void add(long amount) {
+
+        count.add(amount);
+    }
+
+    public long get() {
+
+        return count.sum();
+    }
+
+    @Override
+    public String getType() {
+
+        return "counter";
+    }
+
+    @Override
+    public void writeSamples(String name, String labels, StringBuilder text) {
+
+        MetricRegistry.sample(text, name, labels, get());
+    }
+}
@@ -0,0 +1,46 @@
+package org.neil.main.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A value that goes up and down, such as the number of requests in flight.
+ */
+public final class Gauge implements Metric {
+
+    private final AtomicLong value = new AtomicLong();
+
+    public void increment() {
+
+        value.incrementAndGet();
+    }
+
+    public void decrement() {
+
+        value.decrementAndGet();
+    }
+
+    /**
+     * @param amount How much to change the value by, negative to lower it
+     */
+    public void add(long amount) {
+
+        value.addAndGet(amount);
+    }
+
+    public long get() {
+
+        return value.get();
+    }
+
+    @Override
+    public String getType() {
+
+        return "gauge";
+    }
+
+    @Override
+    public void writeSamples(String name, String labels, StringBuilder text) {
+
+        MetricRegistry.sample(text, name, labels, get());
+    }
+}
@@ -0,0 +1,84 @@
+package org.neil.main.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations into fixed buckets, from a millisecond to ten seconds, the way Prometheus expects latencies to
+ * be bucketed. Each bucket is its own striped count, so durations are observed without a lock, and the buckets are
+ * only made cumulative when written out.
+ */
+public final class Histogram implements Metric {
+
+    private static final double[] BUCKET_SECONDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5,
+            5, 10};
+    private static final long[] BUCKET_NANOS = new long[BUCKET_SECONDS.length];
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    static {
+        for (int bucket = 0; bucket < BUCKET_SECONDS.length; bucket++) {
+            BUCKET_NANOS[bucket] = (long) (BUCKET_SECONDS[bucket] * NANOS_PER_SECOND);
+        }
+    }
+
+    // The last bucket holds the durations above every bound
+    private final LongAdder[] buckets = new LongAdder[BUCKET_SECONDS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram() {
+
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            buckets[bucket] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos A duration in nanoseconds, negative durations are counted as nothing
+     */
+    public void observe(long nanos) {
+
+        final long duration = Math.max(nanos, 0);
+        int bucket = 0;
+        while (bucket < BUCKET_NANOS.length && duration > BUCKET_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        sumNanos.add(duration);
+    }
+
+    /**
+     * @return The number of durations observed
+     */
+    public long getCount() {
+
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public String getType() {
+
+        return "histogram";
+    }
+
+    /**
+     * The count is the total of the buckets as they are read, so it always matches the +Inf bucket even while
+     * durations are being observed.
+     */
+    @Override
+    public void writeSamples(String name, String labels, StringBuilder text) {
+
+        final String labelPrefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            cumulative += buckets[bucket].sum();
+            final String bound = bucket < BUCKET_SECONDS.length ? Double.toString(BUCKET_SECONDS[bucket]) : "+Inf";
+            MetricRegistry.sample(text, name + "_bucket", labelPrefix + "le=\"" + bound + "\"", cumulative);
+        }
+        MetricRegistry.sample(text, name + "_sum", labels, sumNanos.sum() / NANOS_PER_SECOND);
+        MetricRegistry.sample(text, name + "_count", labels, cumulative);
+    }
+}
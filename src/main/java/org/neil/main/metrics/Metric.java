@@ -0,0 +1,21 @@
+package org.neil.main.metrics;
+
+/**
+ * A value, or set of values, that can be written out in the Prometheus text format.
+ */
+interface Metric {
+
+    /**
+     * @return The Prometheus type of the metric, counter, gauge or histogram
+     */
+    String getType();
+
+    /**
+     * Appends a line for each sample of the metric.
+     *
+     * @param name   The name of the metric family
+     * @param labels The labels the metric was registered with, as name="value" pairs separated by commas, or empty
+     * @param text   The text to append to
+     */
+    void writeSamples(String name, String labels, StringBuilder text);
+}
@@ -0,0 +1,158 @@
+package org.neil.main.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metrics of a process, written out together in the Prometheus text format. Metrics are registered up front,
+ * then updated by the threads doing the work without any locking, the registry only locks to register a metric or
+ * to write the metrics out.
+ *
+ * Metrics registered with the same name form a family, each told apart by its label, and are written under a
+ * single HELP and TYPE line.
+ */
+public class MetricRegistry {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * @param name The name of the counter, ending in _total
+     * @param help What the counter counts
+     * @return A new counter, written out with the registry
+     */
+    public Counter counter(String name, String help) {
+
+        return register(name, help, "", new Counter());
+    }
+
+    /**
+     * @param name The name of the gauge
+     * @param help What the gauge measures
+     * @return A new gauge, written out with the registry
+     */
+    public Gauge gauge(String name, String help) {
+
+        return register(name, help, "", new Gauge());
+    }
+
+    /**
+     * @param name       The name of the histogram family, ending in _seconds
+     * @param help       What the histograms of the family time
+     * @param labelName  The label telling the histograms of the family apart
+     * @param labelValue The value of the label for this histogram
+     * @return A new histogram, written out with the registry
+     */
+    public Histogram histogram(String name, String help, String labelName, String labelValue) {
+
+        return register(name, help, labelName + "=\"" + labelValue + "\"", new Histogram());
+    }
+
+    /**
+     * @param name      The name of the counter, ending in _total
+     * @param help      What the counter counts
+     * @param labelName The label the status code is given as
+     * @return A new count of each status code, written out with the registry
+     */
+    public StatusCounter statusCounter(String name, String help, String labelName) {
+
+        return register(name, help, "", new StatusCounter(labelName));
+    }
+
+    /**
+     * @return Every metric in the Prometheus text format, in the order they were registered
+     */
+    public String toText() {
+
+        final StringBuilder text = new StringBuilder();
+        synchronized (families) {
+            for (Family family : families.values()) {
+                family.write(text);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes every metric to a file, replacing it in a single move, so a collector reading the file never sees it
+     * half written.
+     *
+     * @param file The file to write the metrics to
+     * @throws IOException If the file could not be written
+     */
+    public void writeTo(Path file) throws IOException {
+
+        final Path absoluteFile = file.toAbsolutePath();
+        final Path partFile = absoluteFile.resolveSibling(absoluteFile.getFileName() + ".part");
+        Files.write(partFile, toText().getBytes(StandardCharsets.UTF_8));
+        Files.move(partFile, absoluteFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void sample(StringBuilder text, String name, String labels, long value) {
+
+        sampleName(text, name, labels).append(value).append('\n');
+    }
+
+    static void sample(StringBuilder text, String name, String labels, double value) {
+
+        sampleName(text, name, labels).append(value).append('\n');
+    }
+
+    private static StringBuilder sampleName(StringBuilder text, String name, String labels) {
+
+        text.append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        return text.append(' ');
+    }
+
+    private <T extends Metric> T register(String name, String help, String labels, T metric) {
+
+        synchronized (families) {
+            final Family family = families.computeIfAbsent(name, key -> new Family(name, help, metric.getType()));
+            if (!family.type.equals(metric.getType())) {
+                throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+            }
+            family.labels.add(labels);
+            family.metrics.add(metric);
+        }
+        return metric;
+    }
+
+    /**
+     * The metrics sharing a name, and the labels each was registered with.
+     */
+    private static class Family {
+
+        private final String name;
+        private final String help;
+        private final String type;
+        private final List<String> labels = new ArrayList<>();
+        private final List<Metric> metrics = new ArrayList<>();
+
+        Family(String name, String help, String type) {
+
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        void write(StringBuilder text) {
+
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            for (int index = 0; index < metrics.size(); index++) {
+                metrics.get(index).writeSamples(name, labels.get(index), text);
+            }
+        }
+    }
+}
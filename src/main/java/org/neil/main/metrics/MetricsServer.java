@@ -0,0 +1,81 @@
+package org.neil.main.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the metrics of a registry at /metrics on the loopback address, for a local Prometheus or agent to scrape.
+ * Scrapes are answered one at a time on a single daemon thread, so the endpoint never competes with the tests for
+ * threads.
+ */
+public class MetricsServer implements AutoCloseable {
+
+    private static final String METRICS_PATH = "/metrics";
+
+    private final MetricRegistry metricRegistry;
+    private final HttpServer httpServer;
+    private final ExecutorService scrapes = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "metrics-scrape");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param metricRegistry The metrics to serve
+     * @param port           The port to listen on, or 0 for any free port
+     * @throws IOException If the server could not listen on the port
+     */
+    public MetricsServer(MetricRegistry metricRegistry, int port) throws IOException {
+
+        this.metricRegistry = metricRegistry;
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext(METRICS_PATH, this::handle);
+        httpServer.setExecutor(scrapes);
+    }
+
+    public void start() {
+
+        httpServer.start();
+    }
+
+    /**
+     * @return The port the server is listening on
+     */
+    public int getPort() {
+
+        return httpServer.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+
+        httpServer.stop(0);
+        scrapes.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            final byte[] body = metricRegistry.toText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", MetricRegistry.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.neil.main.metrics;
+
+import org.neil.main.report.StatusReport;
+
+/**
+ * Counts how many times each status code was seen, labelled by status code. The codes are tallied in a status
+ * report, so counting takes no lock and no map lookup. Failures without a status code, given as -1, are labelled
+ * error.
+ */
+public final class StatusCounter implements Metric {
+
+    private final String labelName;
+    private final StatusReport statusReport = new StatusReport();
+
+    /**
+     * @param labelName The name of the label the status code is given as
+     */
+    StatusCounter(String labelName) {
+
+        this.labelName = labelName;
+    }
+
+    /**
+     * @param statusCode The status code seen, or -1 for a failure without one
+     */
+    public void increment(int statusCode) {
+
+        statusReport.incrementStatus(statusCode);
+    }
+
+    /**
+     * @param statusCode A status code, or -1 for failures without one
+     * @return How many times the status code was seen
+     */
+    public long get(int statusCode) {
+
+        return statusReport.getCount(statusCode);
+    }
+
+    @Override
+    public String getType() {
+
+        return "counter";
+    }
+
+    @Override
+    public void writeSamples(String name, String labels, StringBuilder text) {
+
+        final String labelPrefix = (labels.isEmpty() ? "" : labels + ",") + labelName + "=\"";
+        statusReport.forEachStatus((status, count) -> MetricRegistry.sample(text, name,
+                labelPrefix + (status == StatusReport.ERROR_STATUS ? "error" : String.valueOf(status)) + "\"", count));
+    }
+}
@@ -0,0 +1,66 @@
+package org.neil.main.metrics;
+
+import org.neil.main.report.RequestTimings;
+
+/**
+ * The metrics the testers update as they work, so a run can be watched while it is in progress. Shared by every
+ * tester in the process, as a scrape endpoint or metrics file covers the whole process.
+ */
+public final class TesterMetrics {
+
+    public static final MetricRegistry REGISTRY = new MetricRegistry();
+
+    public static final Counter TESTS_STARTED = REGISTRY.counter("url_tests_started_total",
+            "Urls taken from the input and started testing");
+    public static final StatusCounter TESTS_COMPLETED = REGISTRY.statusCounter("url_tests_completed_total",
+            "Urls finished testing, by the status code reported or error if the url could not be tested", "status");
+    public static final Gauge TESTS_IN_FLIGHT = REGISTRY.gauge("url_tests_in_flight",
+            "Urls started testing and not yet finished");
+    public static final Gauge CONNECTIONS_IN_USE = REGISTRY.gauge("url_tester_connections_in_use",
+            "Connections to hosts currently held by a request, threaded and virtual engines");
+    public static final Gauge CONNECTIONS_WAITING = REGISTRY.gauge("url_tester_connections_waiting",
+            "Requests queued for a connection to their host to become free, threaded and virtual engines");
+    public static final Gauge CONNECTION_LIMIT = REGISTRY.gauge("url_tester_connection_limit",
+            "The total of the connection limits of the hosts in use, threaded and virtual engines");
+    public static final Counter RETRIES = REGISTRY.counter("url_request_retries_total",
+            "Failed requests tried again, threaded and virtual engines");
+    public static final Counter RETRIES_DENIED = REGISTRY.counter("url_request_retries_denied_total",
+            "Failed requests that would have been tried again but for the retry budget running out");
+
+    private static final String PHASE_NAME = "url_request_phase_seconds";
+    private static final String PHASE_HELP = "How long each phase of the requests took";
+    private static final String PHASE_LABEL = "phase";
+    private static final Histogram DNS = REGISTRY.histogram(PHASE_NAME, PHASE_HELP, PHASE_LABEL, "dns");
+    private static final Histogram WAIT = REGISTRY.histogram(PHASE_NAME, PHASE_HELP, PHASE_LABEL, "wait");
+    private static final Histogram CONNECT = REGISTRY.histogram(PHASE_NAME, PHASE_HELP, PHASE_LABEL, "connect");
+    private static final Histogram TLS = REGISTRY.histogram(PHASE_NAME, PHASE_HELP, PHASE_LABEL, "tls");
+    private static final Histogram FIRST_BYTE = REGISTRY.histogram(PHASE_NAME, PHASE_HELP, PHASE_LABEL,
+            "first_byte");
+    private static final Histogram TOTAL = REGISTRY.histogram(PHASE_NAME, PHASE_HELP, PHASE_LABEL, "total");
+
+    private TesterMetrics() {
+
+    }
+
+    /**
+     * Observes each measured phase of a request into its histogram.
+     *
+     * @param timings How long each phase of the request took
+     */
+    public static void recordTimings(RequestTimings timings) {
+
+        observe(DNS, timings.getDnsNanos());
+        observe(WAIT, timings.getWaitNanos());
+        observe(CONNECT, timings.getConnectNanos());
+        observe(TLS, timings.getTlsNanos());
+        observe(FIRST_BYTE, timings.getFirstByteNanos());
+        observe(TOTAL, timings.getTotalNanos());
+    }
+
+    private static void observe(Histogram histogram, long nanos) {
+
+        if (nanos != RequestTimings.NOT_MEASURED) {
+            histogram.observe(nanos);
+        }
+    }
+}
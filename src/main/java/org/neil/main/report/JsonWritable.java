@@ -0,0 +1,19 @@
+package org.neil.main.report;
+
+import java.io.IOException;
+
+/**
+ * Something that can write itself as a json document, straight into a JsonWriter rather than building a String.
+ */
+@FunctionalInterface
+public interface JsonWritable {
+
+    /**
+     * Writes this object as a single json value.
+     *
+     * @param jsonWriter The writer to write the value with
+     * @throws IOException If the json could not be written out
+     */
+    void writeJson(JsonWriter jsonWriter) throws IOException;
+
+}
@@ -0,0 +1,444 @@
+package org.neil.main.report;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams json documents into a channel, escaping strings as it goes. Characters are collected in a large buffer
+ * and only encoded and written out when the buffer fills, when flushed, or at most a second after they were
+ * written, so writing a report creates no Strings and takes no lock on the channel. A document left in the buffer
+ * while nothing more is written, such as the one report finished while a slow url is still being tested, is
+ * flushed by a timer shared between the writers rather than waiting for the next write.
+ *
+ * Documents are either pretty printed, with each followed by a blank line as the reports have always been output,
+ * or written as newline delimited json with each document compacted onto its own line.
+ *
+ * Whole documents are written with write, which can be called from many threads at once. The methods that write
+ * the parts of a document are for JsonWritable implementations to use from within write.
+ */
+public class JsonWriter implements Closeable, Flushable {
+
+    /**
+     * How each document is laid out.
+     */
+    public enum Format {
+        /**
+         * Indented over several lines, each document followed by a line end
+         */
+        PRETTY,
+        /**
+         * Newline delimited json, each document on a single line
+         */
+        NDJSON
+    }
+
+    private static final int BUFFER_CHARS = 64 * 1024;
+    // Enough for a single report, so building one as a String doesn't allocate a full sized buffer
+    private static final int STRING_BUFFER_CHARS = 512;
+    private static final int MAX_DEPTH = 32;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final String INDENT = "  ";
+    private static final String NULL = "null";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final ScheduledThreadPoolExecutor FLUSH_TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        final Thread thread = new Thread(runnable, "json-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        FLUSH_TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final WritableByteChannel channel;
+    private final boolean pretty;
+    private final boolean timedFlush;
+    private final String documentEnd;
+    private final char[] chars;
+    private final ByteBuffer bytes;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    // Whether the array or object at each depth has had anything written to it yet
+    private final boolean[] hasValues = new boolean[MAX_DEPTH];
+    private int length;
+    private int depth;
+    private boolean afterName;
+    private long lastFlushNanos = System.nanoTime();
+    // The flush due for the documents buffered since the last flush, null while nothing is waiting on one
+    private ScheduledFuture<?> scheduledFlush;
+    // Why the last timed flush failed, thrown by the next write or flush as there is no one to throw it to
+    private IOException flushFailure;
+
+    /**
+     * @param channel The channel to write the documents to, closed when this writer is closed
+     * @param format  How each document is laid out
+     */
+    public JsonWriter(WritableByteChannel channel, Format format) {
+
+        this(channel, format == Format.PRETTY,
+                format == Format.PRETTY ? "\n" + System.lineSeparator() : "\n", BUFFER_CHARS, true);
+    }
+
+    private JsonWriter(WritableByteChannel channel, boolean pretty, String documentEnd, int bufferChars,
+                       boolean timedFlush) {
+
+        this.channel = channel;
+        this.pretty = pretty;
+        this.timedFlush = timedFlush;
+        this.documentEnd = documentEnd;
+        this.chars = new char[bufferChars];
+        // A character takes at most three bytes in UTF-8
+        this.bytes = ByteBuffer.allocate(bufferChars * 3);
+    }
+
+    /**
+     * @param document The document to write
+     * @return The document pretty printed, ending with a new line
+     */
+    public static String toJson(JsonWritable document) {
+
+        final ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (JsonWriter jsonWriter = new JsonWriter(Channels.newChannel(json), true, "\n", STRING_BUFFER_CHARS,
+                false)) {
+            jsonWriter.write(document);
+        } catch (IOException e) {
+            // Nothing can fail writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return new String(json.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a whole document, followed by the end of document for the format. The document is written out to the
+     * channel within a second, whether or not anything more is written.
+     *
+     * @param document The document to write
+     * @throws IOException If the buffer could not be written out to the channel, now or by the last timed flush
+     */
+    public synchronized void write(JsonWritable document) throws IOException {
+
+        throwFlushFailure();
+        depth = 0;
+        afterName = false;
+        document.writeJson(this);
+        append(documentEnd);
+        final long sinceFlushNanos = System.nanoTime() - lastFlushNanos;
+        if (sinceFlushNanos >= FLUSH_INTERVAL_NANOS) {
+            flush();
+        } else if (timedFlush && scheduledFlush == null) {
+            scheduledFlush = FLUSH_TIMER.schedule(this::timedFlush, FLUSH_INTERVAL_NANOS - sinceFlushNanos,
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public JsonWriter beginObject() throws IOException {
+
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+
+        return close('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+
+        return close(']');
+    }
+
+    /**
+     * @param name The name of the next value in the object
+     * @return This writer
+     * @throws IOException If the buffer could not be written out to the channel
+     */
+    public JsonWriter name(String name) throws IOException {
+
+        beforeValue();
+        string(name);
+        append(pretty ? ": " : ":");
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * @param value A string, which is escaped, or null
+     * @return This writer
+     * @throws IOException If the buffer could not be written out to the channel
+     */
+    public JsonWriter value(String value) throws IOException {
+
+        beforeValue();
+        if (value == null) {
+            append(NULL);
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    /**
+     * @param value A number or null
+     * @return This writer
+     * @throws IOException If the buffer could not be written out to the channel
+     */
+    public JsonWriter value(Long value) throws IOException {
+
+        if (value == null) {
+            beforeValue();
+            append(NULL);
+            return this;
+        }
+        return value(value.longValue());
+    }
+
+    /**
+     * @param value A number
+     * @return This writer
+     * @throws IOException If the buffer could not be written out to the channel
+     */
+    public JsonWriter value(long value) throws IOException {
+
+        beforeValue();
+        if (value == Long.MIN_VALUE) {
+            append(Long.toString(value));
+            return this;
+        }
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            append((char) ('0' + value / divisor % 10));
+        }
+        return this;
+    }
+
+    /**
+     * @param value A boolean
+     * @return This writer
+     * @throws IOException If the buffer could not be written out to the channel
+     */
+    public JsonWriter value(boolean value) throws IOException {
+
+        beforeValue();
+        append(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * @param value An object or array that writes itself, nested in the current document, or null
+     * @return This writer
+     * @throws IOException If the buffer could not be written out to the channel
+     */
+    public JsonWriter value(JsonWritable value) throws IOException {
+
+        if (value == null) {
+            beforeValue();
+            append(NULL);
+            return this;
+        }
+        value.writeJson(this);
+        return this;
+    }
+
+    /**
+     * Encodes everything buffered and writes it to the channel.
+     *
+     * @throws IOException If the channel could not be written to
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+
+        throwFlushFailure();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        drain();
+        lastFlushNanos = System.nanoTime();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Flushes the documents left in the buffer since the last write, keeping any failure for the next write.
+     */
+    private synchronized void timedFlush() {
+
+        scheduledFlush = null;
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            flushFailure = e;
+        }
+    }
+
+    private void throwFlushFailure() throws IOException {
+
+        if (flushFailure != null) {
+            final IOException failure = flushFailure;
+            flushFailure = null;
+            throw failure;
+        }
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+
+        beforeValue();
+        append(bracket);
+        depth++;
+        hasValues[depth] = false;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+
+        if (pretty && hasValues[depth]) {
+            append('\n');
+            indent(depth - 1);
+        }
+        depth--;
+        append(bracket);
+        return this;
+    }
+
+    /**
+     * Separates the value from the one before it in its array or object, unless it follows its name.
+     */
+    private void beforeValue() throws IOException {
+
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth == 0) {
+            return;
+        }
+        if (hasValues[depth]) {
+            append(',');
+        }
+        hasValues[depth] = true;
+        if (pretty) {
+            append('\n');
+            indent(depth);
+        }
+    }
+
+    private void indent(int level) throws IOException {
+
+        for (int i = 0; i < level; i++) {
+            append(INDENT);
+        }
+    }
+
+    private void string(String value) throws IOException {
+
+        append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    append("\\\"");
+                    break;
+                case '\\':
+                    append("\\\\");
+                    break;
+                case '\n':
+                    append("\\n");
+                    break;
+                case '\r':
+                    append("\\r");
+                    break;
+                case '\t':
+                    append("\\t");
+                    break;
+                case '\b':
+                    append("\\b");
+                    break;
+                case '\f':
+                    append("\\f");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        append("\\u00");
+                        append(HEX_DIGITS[c >> 4]);
+                        append(HEX_DIGITS[c & 0xf]);
+                    } else {
+                        append(c);
+                    }
+            }
+        }
+        append('"');
+    }
+
+    private void append(String text) throws IOException {
+
+        for (int i = 0; i < text.length(); i++) {
+            append(text.charAt(i));
+        }
+    }
+
+    private void append(char c) throws IOException {
+
+        if (length == chars.length) {
+            drain();
+        }
+        chars[length++] = c;
+    }
+
+    /**
+     * Encodes the buffered characters and writes them out. A high surrogate at the very end of the buffer is kept
+     * back until the low surrogate that completes it is appended.
+     */
+    private void drain() throws IOException {
+
+        final CharBuffer buffered = CharBuffer.wrap(chars, 0, length);
+        CoderResult result;
+        do {
+            result = encoder.encode(buffered, bytes, false);
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        } while (result.isOverflow());
+        final int remaining = buffered.remaining();
+        System.arraycopy(chars, buffered.position(), chars, 0, remaining);
+        length = remaining;
+    }
+}
@@ -0,0 +1,103 @@
+package org.neil.main.report;
+
+import java.io.IOException;
+
+/**
+ * Counts latencies in buckets that grow with the latency, in the style of an HDR histogram, so percentiles are
+ * within a few percent of the true value whether the latencies are microseconds or minutes, in a fixed 8KB.
+ *
+ * Values below 64 have a bucket each. Above that, every power of two range is split into 32 buckets, so a value is
+ * never more than 1/32 away from the top of its bucket. Values are clamped to about 19 hours.
+ *
+ * Not thread safe, the report holding the histogram records into it under its own lock.
+ */
+final class LatencyHistogram implements JsonWritable {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_VALUES = SUB_BUCKETS * 2;
+    private static final long MAX_VALUE = (1L << 36) - 1;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long max;
+
+    /**
+     * @param value The latency to count, in microseconds
+     */
+    void record(long value) {
+
+        final long clamped = Math.min(Math.max(value, 0), MAX_VALUE);
+        counts[index(clamped)]++;
+        count++;
+        max = Math.max(max, clamped);
+    }
+
+    long getCount() {
+
+        return count;
+    }
+
+    long getMax() {
+
+        return max;
+    }
+
+    /**
+     * @param percentile The percentage of values to be at or below the returned value, from 0 to 100
+     * @return The highest value in the bucket holding the percentile, or 0 if nothing has been recorded
+     */
+    long getValueAtPercentile(double percentile) {
+
+        final long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            seen += counts[index];
+            if (seen >= target) {
+                return Math.min(highestValue(index), max);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void writeJson(JsonWriter jsonWriter) throws IOException {
+
+        jsonWriter.beginObject();
+        writeFields(jsonWriter);
+        jsonWriter.endObject();
+    }
+
+    /**
+     * Writes the count and percentiles into an object that has already been started, for reports that label
+     * each histogram inside its own object.
+     */
+    void writeFields(JsonWriter jsonWriter) throws IOException {
+
+        jsonWriter.name("Count").value(count)
+                .name("P50_us").value(getValueAtPercentile(50))
+                .name("P90_us").value(getValueAtPercentile(90))
+                .name("P99_us").value(getValueAtPercentile(99))
+                .name("Max_us").value(max);
+    }
+
+    private static int index(long value) {
+
+        if (value < LINEAR_VALUES) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValue(int index) {
+
+        if (index < LINEAR_VALUES) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowestValue = (long) (index - shift * SUB_BUCKETS) << shift;
+        return lowestValue + (1L << shift) - 1;
+    }
+}
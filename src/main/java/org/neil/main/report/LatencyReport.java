@@ -0,0 +1,98 @@
+package org.neil.main.report;
+
+import org.neil.main.util.UrlHost;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Percentiles of how long the urls took, for each phase of the requests, and of the whole request for each status
+ * code and each host.
+ *
+ * Only urls that were requested are counted, so errors and results reported from a cache are left out. The hosts
+ * after the first thousand are counted together, to bound the memory a run over many hosts takes.
+ */
+public class LatencyReport implements JsonWritable {
+
+    static final int MAX_HOSTS = 1000;
+    static final String OTHER_HOSTS = "other";
+
+    private final LatencyHistogram dns = new LatencyHistogram();
+    private final LatencyHistogram wait = new LatencyHistogram();
+    private final LatencyHistogram connect = new LatencyHistogram();
+    private final LatencyHistogram tls = new LatencyHistogram();
+    private final LatencyHistogram firstByte = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final Map<Integer, LatencyHistogram> statusCodes = new TreeMap<>();
+    private final Map<String, LatencyHistogram> hosts = new TreeMap<>();
+
+    /**
+     * Counts the timings of a request. Safe to call from the threads reporting test results.
+     *
+     * @param statusCode The status code of the response
+     * @param url        The url as it was given to the tester
+     * @param timings    How long each phase of the request took
+     */
+    public synchronized void record(int statusCode, String url, RequestTimings timings) {
+
+        recordPhase(dns, timings.dnsNanos);
+        recordPhase(wait, timings.waitNanos);
+        recordPhase(connect, timings.connectNanos);
+        recordPhase(tls, timings.tlsNanos);
+        recordPhase(firstByte, timings.firstByteNanos);
+        recordPhase(total, timings.totalNanos);
+        recordPhase(statusCodes.computeIfAbsent(statusCode, code -> new LatencyHistogram()), timings.totalNanos);
+        recordPhase(hostHistogram(UrlHost.of(url)), timings.totalNanos);
+    }
+
+    public String toJson() {
+
+        return JsonWriter.toJson(this);
+    }
+
+    @Override
+    public synchronized void writeJson(JsonWriter jsonWriter) throws IOException {
+
+        jsonWriter.beginObject()
+                .name("Phases").beginObject()
+                .name("Dns").value(dns)
+                .name("Wait").value(wait)
+                .name("Connect").value(connect)
+                .name("Tls").value(tls)
+                .name("First_byte").value(firstByte)
+                .name("Total").value(total)
+                .endObject();
+        jsonWriter.name("Status_codes").beginArray();
+        for (Map.Entry<Integer, LatencyHistogram> statusCode : statusCodes.entrySet()) {
+            jsonWriter.beginObject().name("Status_code").value(statusCode.getKey());
+            statusCode.getValue().writeFields(jsonWriter);
+            jsonWriter.endObject();
+        }
+        jsonWriter.endArray();
+        jsonWriter.name("Hosts").beginArray();
+        for (Map.Entry<String, LatencyHistogram> host : hosts.entrySet()) {
+            jsonWriter.beginObject().name("Host").value(host.getKey());
+            host.getValue().writeFields(jsonWriter);
+            jsonWriter.endObject();
+        }
+        jsonWriter.endArray();
+        jsonWriter.endObject();
+    }
+
+    private LatencyHistogram hostHistogram(String host) {
+
+        final LatencyHistogram histogram = hosts.get(host);
+        if (histogram != null) {
+            return histogram;
+        }
+        return hosts.computeIfAbsent(hosts.size() < MAX_HOSTS ? host : OTHER_HOSTS, name -> new LatencyHistogram());
+    }
+
+    private static void recordPhase(LatencyHistogram histogram, long nanos) {
+
+        if (nanos != RequestTimings.NOT_MEASURED) {
+            histogram.record(nanos / 1000);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.neil.main.report;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long each phase of a request took, from looking up the host to the first byte of the response.
+ *
+ * Not every engine can see every phase. A phase that wasn't measured is written as null, and a phase that wasn't
+ * needed, such as connecting when a kept alive connection was reused, is measured as close to nothing.
+ */
+public final class RequestTimings implements JsonWritable {
+
+    public static final long NOT_MEASURED = -1;
+
+    final long dnsNanos;
+    final long waitNanos;
+    final long connectNanos;
+    final long tlsNanos;
+    final long firstByteNanos;
+    final long totalNanos;
+
+    /**
+     * @param dnsNanos       Looking up the address of the host
+     * @param waitNanos      Waiting for a connection to the host, or for the engine, to become free
+     * @param connectNanos   Opening the connection
+     * @param tlsNanos       The TLS handshake of a https connection
+     * @param firstByteNanos From sending the request to the first of the response arriving
+     * @param totalNanos     From starting the request to the response arriving
+     */
+    public RequestTimings(long dnsNanos, long waitNanos, long connectNanos, long tlsNanos, long firstByteNanos,
+                          long totalNanos) {
+
+        this.dnsNanos = dnsNanos;
+        this.waitNanos = waitNanos;
+        this.connectNanos = connectNanos;
+        this.tlsNanos = tlsNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    /**
+     * @return The time looking up the address of the host in nanoseconds, or NOT_MEASURED
+     */
+    public long getDnsNanos() {
+
+        return dnsNanos;
+    }
+
+    /**
+     * @return The time waiting for a connection, or the engine, to become free in nanoseconds, or NOT_MEASURED
+     */
+    public long getWaitNanos() {
+
+        return waitNanos;
+    }
+
+    /**
+     * @return The time opening the connection in nanoseconds, or NOT_MEASURED
+     */
+    public long getConnectNanos() {
+
+        return connectNanos;
+    }
+
+    /**
+     * @return The time of the TLS handshake in nanoseconds, or NOT_MEASURED
+     */
+    public long getTlsNanos() {
+
+        return tlsNanos;
+    }
+
+    /**
+     * @return The time from sending the request to the first of the response arriving in nanoseconds, or
+     * NOT_MEASURED
+     */
+    public long getFirstByteNanos() {
+
+        return firstByteNanos;
+    }
+
+    /**
+     * @return The time from starting the request to the response arriving, in nanoseconds
+     */
+    public long getTotalNanos() {
+
+        return totalNanos;
+    }
+
+    /**
+     * @param totalNanos From starting the request to the response arriving, in place of the total measured
+     * @return The same timings with the total replaced
+     */
+    public RequestTimings withTotalNanos(long totalNanos) {
+
+        return new RequestTimings(dnsNanos, waitNanos, connectNanos, tlsNanos, firstByteNanos, totalNanos);
+    }
+
+    /**
+     * Writes each phase in microseconds.
+     */
+    @Override
+    public void writeJson(JsonWriter jsonWriter) throws IOException {
+
+        jsonWriter.beginObject()
+                .name("Dns").value(micros(dnsNanos))
+                .name("Wait").value(micros(waitNanos))
+                .name("Connect").value(micros(connectNanos))
+                .name("Tls").value(micros(tlsNanos))
+                .name("First_byte").value(micros(firstByteNanos))
+                .name("Total").value(micros(totalNanos))
+                .endObject();
+    }
+
+    @Override
+    public String toString() {
+
+        return JsonWriter.toJson(this);
+    }
+
+    private static Long micros(long nanos) {
+
+        return nanos == NOT_MEASURED ? null : TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -1,37 +1,181 @@
 package org.neil.main.report;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
-public class StatusReport {
+/**
+ * Tallies how many responses had each status code, counted straight from the threads reporting test results and
+ * readable at any time while they are counting.
+ *
+ * Each status code from 100 to 599, and the -1 of an error, has a slot in an array indexed by the code. A slot's
+ * count is created the first time its code is seen and striped across cells once threads contend on it, so
+ * counting takes no lock and a report with only a few codes seen stays small. The rare codes outside the range are
+ * tallied in a map.
+ */
+public class StatusReport implements JsonWritable {
 
-    private static final String LINE_ENDING = "\n";
+    public static final int ERROR_STATUS = -1;
 
-    private final Map<Integer, Integer> statusCount;
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+    private static final int ERROR_SLOT = MAX_STATUS - MIN_STATUS + 1;
 
-    public StatusReport() {
+    private final AtomicReferenceArray<LongAdder> statusCounts = new AtomicReferenceArray<>(ERROR_SLOT + 1);
+    private final ConcurrentMap<Integer, LongAdder> otherStatusCounts = new ConcurrentHashMap<>();
 
-        this.statusCount = new TreeMap<>();
+    /**
+     * Adds one to the tally for the status. Safe to call from the threads reporting test results.
+     *
+     * @param status The status code of a response or -1 for an error
+     */
+    public void incrementStatus(int status) {
+
+        counter(status).increment();
     }
 
-    public void incrementStatus(int status) {
+    /**
+     * Adds a number of responses to the tally for the status. Safe to call from the threads reporting test results.
+     *
+     * @param status The status code of a response or -1 for an error
+     * @param count  How many responses had the status
+     */
+    public void addStatus(int status, long count) {
+
+        counter(status).add(count);
+    }
+
+    /**
+     * Adds the tallies of another report to this one, such as the report of each part of a run tested separately.
+     * Counts still being added to in the other report are added as they stand.
+     *
+     * @param statusReport The report to add the tallies of
+     */
+    public void merge(StatusReport statusReport) {
+
+        statusReport.forEachStatus(this::addStatus);
+    }
 
-        statusCount.put(status, statusCount.computeIfAbsent(status, (x -> 0)) + 1);
+    /**
+     * @param status The status code of a response or -1 for an error
+     * @return How many times the status has been seen so far
+     */
+    public long getCount(int status) {
+
+        final int slot = slot(status);
+        final LongAdder count = slot < 0 ? otherStatusCounts.get(status) : statusCounts.get(slot);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * @return How many statuses have been seen so far
+     */
+    public long getTotal() {
+
+        final long[] total = new long[1];
+        forEachStatus((status, count) -> total[0] += count);
+        return total[0];
+    }
+
+    /**
+     * Passes the tally of every status seen so far to the consumer, in order of status code. Counts still being
+     * added to are read as they stand.
+     *
+     * @param consumer Receives each status and its tally
+     */
+    public void forEachStatus(StatusCountConsumer consumer) {
+
+        final List<Integer> otherStatuses = new ArrayList<>(otherStatusCounts.keySet());
+        Collections.sort(otherStatuses);
+        int other = 0;
+        while (other < otherStatuses.size() && otherStatuses.get(other) < ERROR_STATUS) {
+            acceptOther(otherStatuses.get(other++), consumer);
+        }
+        acceptSlot(ERROR_SLOT, ERROR_STATUS, consumer);
+        while (other < otherStatuses.size() && otherStatuses.get(other) < MIN_STATUS) {
+            acceptOther(otherStatuses.get(other++), consumer);
+        }
+        for (int status = MIN_STATUS; status <= MAX_STATUS; status++) {
+            acceptSlot(status - MIN_STATUS, status, consumer);
+        }
+        while (other < otherStatuses.size()) {
+            acceptOther(otherStatuses.get(other++), consumer);
+        }
     }
 
     public String toJson() {
 
-        final List<String> statusReport = new ArrayList<>();
-        statusCount.forEach((status, count) -> {
-            statusReport.add(
-                    "  {" + LINE_ENDING +
-                            "    \"Status_code\": " + status + "," + LINE_ENDING +
-                            "    \"Number_of_responses\": " + count + LINE_ENDING +
-                            "  }");
-        });
-        return "[" + LINE_ENDING + String.join("," + LINE_ENDING, statusReport) + LINE_ENDING + "]" + LINE_ENDING;
+        return JsonWriter.toJson(this);
+    }
+
+    @Override
+    public void writeJson(JsonWriter jsonWriter) throws IOException {
+
+        final List<long[]> statuses = new ArrayList<>();
+        forEachStatus((status, count) -> statuses.add(new long[]{status, count}));
+        jsonWriter.beginArray();
+        for (long[] status : statuses) {
+            jsonWriter.beginObject()
+                    .name("Status_code").value(status[0])
+                    .name("Number_of_responses").value(status[1])
+                    .endObject();
+        }
+        jsonWriter.endArray();
+    }
+
+    private LongAdder counter(int status) {
+
+        final int slot = slot(status);
+        if (slot < 0) {
+            return otherStatusCounts.computeIfAbsent(status, key -> new LongAdder());
+        }
+        final LongAdder count = statusCounts.get(slot);
+        if (count != null) {
+            return count;
+        }
+        statusCounts.compareAndSet(slot, null, new LongAdder());
+        return statusCounts.get(slot);
+    }
+
+    private void acceptSlot(int slot, int status, StatusCountConsumer consumer) {
+
+        final LongAdder count = statusCounts.get(slot);
+        if (count != null) {
+            consumer.accept(status, count.sum());
+        }
     }
 
+    private void acceptOther(int status, StatusCountConsumer consumer) {
+
+        consumer.accept(status, otherStatusCounts.get(status).sum());
+    }
+
+    /**
+     * @return The slot of the status in the array, or -1 if it is tallied in the map of other statuses
+     */
+    private static int slot(int status) {
+
+        if (status == ERROR_STATUS) {
+            return ERROR_SLOT;
+        }
+        return status < MIN_STATUS || status > MAX_STATUS ? -1 : status - MIN_STATUS;
+    }
+
+    /**
+     * Consumes the tally of a status code.
+     */
+    @FunctionalInterface
+    public interface StatusCountConsumer {
+
+        /**
+         * @param status The status code of a response or -1 for an error
+         * @param count  How many times the status code was seen
+         */
+        void accept(int status, long count);
+    }
 }
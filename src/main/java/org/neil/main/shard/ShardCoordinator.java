@@ -0,0 +1,320 @@
+package org.neil.main.shard;
+
+import org.neil.main.report.StatusReport;
+import org.neil.main.url.ReportCodec;
+import org.neil.main.url.ReportSink;
+import org.neil.main.url.UrlErrorReport;
+import org.neil.main.url.UrlReport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import static org.neil.main.util.ErrorOutput.logError;
+
+/**
+ * Tests urls across several worker processes, so a run isn't limited by the file descriptors and ephemeral ports
+ * of one process. The urls are split between the workers by host with a ShardRing, so each host is only connected
+ * to from one worker and the limit on connections to a host holds across the run.
+ *
+ * Each worker connects back to the coordinator on the loopback address. The coordinator sends each worker its urls
+ * as they are read, and passes each report a worker sends back to the sink as it arrives, so the reports are in
+ * the order the tests finish across all the workers. Once every worker has finished, their status reports are
+ * merged into the status report of the run.
+ *
+ * Sending to a worker that is behind waits until it takes more urls, holding back the other workers until it does,
+ * the same as a single tester stops taking urls while it is at its limit. A worker that dies part way has every url
+ * it was sent but didn't report reported as not tested, and the urls for its shard after that too.
+ */
+public class ShardCoordinator implements AutoCloseable {
+
+    static final String URL_NOT_TESTED = "Url could not be tested";
+    // Long enough for a JVM to start on a busy machine
+    static final int CONNECT_MILLIS = 60000;
+    // How often the workers are checked on while waiting for them to connect
+    static final int ACCEPT_POLL_MILLIS = 250;
+
+    // Urls are sent in batches of at least this many, so a worker isn't woken for every url
+    private static final int FLUSH_URLS = 256;
+    // How long workers that have sent everything get to exit before they are stopped
+    private static final long EXIT_SECONDS = 10;
+
+    private final ShardRing shardRing;
+    private final BiFunction<Integer, Integer, List<String>> workerCommand;
+    private final List<Process> processes = new ArrayList<>();
+
+    /**
+     * @param workers       How many worker processes to split the urls between
+     * @param workerCommand Gives the command starting the worker for a shard, from the port the coordinator is
+     *                      listening on and the shard
+     */
+    public ShardCoordinator(int workers, BiFunction<Integer, Integer, List<String>> workerCommand) {
+
+        this.shardRing = new ShardRing(workers);
+        this.workerCommand = workerCommand;
+    }
+
+    /**
+     * Starts the workers, splits the urls between them and waits until every url has been reported.
+     *
+     * @param urls       The url strings to test, sent to the workers as they are taken from the iterator
+     * @param reportSink Receives the report for every url, in the order the tests finish, from one thread per worker
+     * @return The status reports of the workers merged together
+     * @throws IOException If the workers could not be started, or didn't all connect back in time
+     */
+    public StatusReport test(Iterator<String> urls, ReportSink reportSink) throws IOException {
+
+        final Shard[] shards = new Shard[shardRing.getShards()];
+        try (ServerSocket serverSocket = new ServerSocket(0, shards.length, InetAddress.getLoopbackAddress())) {
+            for (int shard = 0; shard < shards.length; shard++) {
+                processes.add(new ProcessBuilder(workerCommand.apply(serverSocket.getLocalPort(), shard))
+                        .inheritIO()
+                        .start());
+            }
+            serverSocket.setSoTimeout(ACCEPT_POLL_MILLIS);
+            final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONNECT_MILLIS);
+            for (int connected = 0; connected < shards.length; connected++) {
+                final Socket socket = accept(serverSocket, deadlineNanos);
+                final int shard = new DataInputStream(socket.getInputStream()).readInt();
+                if (shard < 0 || shard >= shards.length || shards[shard] != null) {
+                    socket.close();
+                    throw new IOException("Worker connected for an unknown shard " + shard);
+                }
+                shards[shard] = new Shard(shard, socket, reportSink);
+            }
+        } catch (IOException e) {
+            for (Shard shard : shards) {
+                if (shard != null) {
+                    shard.lose();
+                }
+            }
+            throw e;
+        }
+
+        for (Shard shard : shards) {
+            shard.reader.start();
+        }
+        try {
+            while (urls.hasNext()) {
+                final String url = urls.next();
+                shards[shardRing.shard(url)].send(url);
+            }
+        } catch (RuntimeException e) {
+            // The urls could not be read, so the workers are stopped rather than left with part of them
+            for (Shard shard : shards) {
+                shard.lose();
+            }
+            throw e;
+        }
+        final StatusReport statusReport = new StatusReport();
+        for (Shard shard : shards) {
+            shard.finishSending();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shard.lose();
+            }
+            statusReport.merge(shard.getStatusReport());
+        }
+        return statusReport;
+    }
+
+    /**
+     * Waits for the workers to exit, stopping any that haven't within a few seconds.
+     */
+    @Override
+    public void close() {
+
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(EXIT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Waits for the next worker to connect, giving up as soon as a worker has exited without connecting rather than
+     * waiting out the time allowed.
+     */
+    private Socket accept(ServerSocket serverSocket, long deadlineNanos) throws IOException {
+
+        while (true) {
+            try {
+                final Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                return socket;
+            } catch (SocketTimeoutException e) {
+                for (Process process : processes) {
+                    if (!process.isAlive()) {
+                        throw new IOException("Worker exited before connecting, with exit code "
+                                + process.exitValue());
+                    }
+                }
+                if (System.nanoTime() - deadlineNanos > 0) {
+                    throw new IOException("Workers did not connect within " + CONNECT_MILLIS + " milliseconds");
+                }
+            }
+        }
+    }
+
+    /**
+     * The connection to the worker of a shard, with the urls sent to it that it hasn't reported yet.
+     */
+    private static class Shard {
+
+        private final int index;
+        private final Socket socket;
+        private final DataOutputStream output;
+        private final DataInputStream input;
+        private final ReportSink reportSink;
+        private final Thread reader;
+        // How many times each url is waiting on a report, a url given more than once being sent each time
+        private final Map<String, Integer> unreported = new HashMap<>();
+        // Counted as reports arrive, in case the worker dies before sending its own
+        private final StatusReport receivedStatusReport = new StatusReport();
+        private volatile StatusReport workerStatusReport;
+        private boolean lost;
+        private int unflushed;
+
+        private Shard(int index, Socket socket, ReportSink reportSink) throws IOException {
+
+            this.index = index;
+            this.socket = socket;
+            this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.reportSink = reportSink;
+            this.reader = new Thread(this::readReports, "shard-" + index);
+        }
+
+        private void send(String url) {
+
+            synchronized (this) {
+                if (lost) {
+                    reportNotTested(url);
+                    return;
+                }
+                unreported.merge(url, 1, Integer::sum);
+            }
+            try {
+                ReportCodec.writeString(output, url);
+                if (++unflushed == FLUSH_URLS) {
+                    output.flush();
+                    unflushed = 0;
+                }
+            } catch (IOException e) {
+                logError("Worker " + index + " stopped taking urls: " + e.getMessage());
+                lose();
+            }
+        }
+
+        private void finishSending() {
+
+            try {
+                output.flush();
+                socket.shutdownOutput();
+            } catch (IOException e) {
+                lose();
+            }
+        }
+
+        private void readReports() {
+
+            try {
+                int frame;
+                while ((frame = input.read()) != -1) {
+                    if (frame == ReportCodec.STATUS_REPORT) {
+                        workerStatusReport = ReportCodec.readStatusReport(input);
+                        break;
+                    }
+                    received(ReportCodec.readReport(input, frame));
+                }
+            } catch (IOException | UncheckedIOException e) {
+                if (!isLost()) {
+                    logError("Worker " + index + " failed: " + e.getMessage());
+                }
+            }
+            lose();
+        }
+
+        private void received(UrlReport urlReport) {
+
+            final String url = urlReport.getUrl();
+            synchronized (this) {
+                final Integer count = unreported.get(url);
+                if (count == null && lost) {
+                    // Already reported as not tested when the worker was lost
+                    return;
+                }
+                if (count != null) {
+                    unreported.put(url, count - 1);
+                    unreported.remove(url, 0);
+                }
+                receivedStatusReport.incrementStatus(urlReport.getStatusCode());
+            }
+            reportSink.accept(urlReport);
+        }
+
+        /**
+         * Closes the connection to the worker and reports every url it hasn't reported as not tested.
+         */
+        private synchronized void lose() {
+
+            if (lost) {
+                return;
+            }
+            lost = true;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing is only to stop the worker, which has gone already if this fails
+            }
+            for (Map.Entry<String, Integer> url : unreported.entrySet()) {
+                for (int count = 0; count < url.getValue(); count++) {
+                    reportNotTested(url.getKey());
+                }
+            }
+            unreported.clear();
+        }
+
+        private synchronized boolean isLost() {
+
+            return lost;
+        }
+
+        private void reportNotTested(String url) {
+
+            receivedStatusReport.incrementStatus(StatusReport.ERROR_STATUS);
+            reportSink.accept(new UrlErrorReport(url, URL_NOT_TESTED));
+        }
+
+        /**
+         * @return The worker's own status report, or the statuses counted here if it didn't send one
+         */
+        private StatusReport getStatusReport() {
+
+            return workerStatusReport == null ? receivedStatusReport : workerStatusReport;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.neil.main.shard;
+
+import org.neil.main.util.StableHash;
+import org.neil.main.util.UrlHost;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Splits urls between shards by a consistent hash of their host, so every url of a host is tested by the same
+ * shard, which keeps the limit on connections to each host and reuses the connections and DNS answers for it.
+ *
+ * Each shard is placed at many points on a ring of hashes, and a host belongs to the shard of the first point at or
+ * after the hash of the host. The hosts spread evenly between the shards, and adding a shard only moves the hosts
+ * the new shard takes over, so shards kept on other nodes hold on to most of their hosts as the shards change.
+ */
+public class ShardRing {
+
+    // Enough points that each shard's share of the ring is within a few percent of the others
+    static final int POINTS_PER_SHARD = 160;
+
+    private final int shards;
+    // The points on the ring in order, with the shard at each point alongside
+    private final long[] points;
+    private final int[] pointShards;
+
+    /**
+     * @param shards How many shards the hosts are split between
+     * @throws IllegalArgumentException If there isn't at least one shard
+     */
+    public ShardRing(int shards) {
+
+        if (shards < 1) {
+            throw new IllegalArgumentException("Need at least one shard, not " + shards);
+        }
+        this.shards = shards;
+        final TreeMap<Long, Integer> ring = new TreeMap<>();
+        for (int shard = 0; shard < shards; shard++) {
+            for (int point = 0; point < POINTS_PER_SHARD; point++) {
+                // On the rare clash of two points the later shard takes it, which is the same on every node
+                ring.put(StableHash.of("shard-" + shard + "#" + point), shard);
+            }
+        }
+        points = new long[ring.size()];
+        pointShards = new int[ring.size()];
+        int index = 0;
+        for (Map.Entry<Long, Integer> point : ring.entrySet()) {
+            points[index] = point.getKey();
+            pointShards[index++] = point.getValue();
+        }
+    }
+
+    /**
+     * @return How many shards the hosts are split between
+     */
+    public int getShards() {
+
+        return shards;
+    }
+
+    /**
+     * @param url The url as it was given, which need not be valid, the same text always going to the same shard
+     * @return The shard testing the host of the url, from 0 up to the number of shards
+     */
+    public int shard(String url) {
+
+        final long hash = StableHash.of(UrlHost.of(url));
+        int low = 0;
+        int high = points.length;
+        // The first point at or after the hash, in the signed order the points were sorted in
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (points[middle] < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return pointShards[low == points.length ? 0 : low];
+    }
+}
@@ -0,0 +1,138 @@
+package org.neil.main.shard;
+
+import org.neil.main.report.StatusReport;
+import org.neil.main.url.ReportCodec;
+import org.neil.main.url.SimpleUrlVerifier;
+import org.neil.main.url.UrlTester;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the urls of one shard for a coordinator in another process, taking the urls from the coordinator's socket
+ * as they arrive and sending each report back as soon as its test finishes, followed by the tally of the statuses
+ * once every url has been reported.
+ */
+public class ShardWorker {
+
+    private final UrlTester urlTester;
+    private final int timeout;
+    private final int runTimeout;
+
+    /**
+     * @param urlTester  The tester to test the urls of the shard with
+     * @param timeout    The read and connect timeout values for the connections
+     * @param runTimeout The longest the whole run can take in milliseconds, or 0 for no limit
+     */
+    public ShardWorker(UrlTester urlTester, int timeout, int runTimeout) {
+
+        this.urlTester = urlTester;
+        this.timeout = timeout;
+        this.runTimeout = runTimeout;
+    }
+
+    /**
+     * Connects to the coordinator and tests the urls it sends until it has sent them all.
+     *
+     * @param port  The port the coordinator is listening on, on the loopback address
+     * @param shard Which shard this worker tests, told to the coordinator first
+     * @throws IOException If the coordinator can't be reached or goes away part way
+     */
+    public void run(int port, int shard) throws IOException {
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.writeInt(shard);
+            output.flush();
+
+            final StatusReport statusReport = new StatusReport();
+            // Set by the first report that can't be sent, which stops the urls so the tests in progress are the last
+            final AtomicReference<IOException> sendFailure = new AtomicReference<>();
+            try {
+                urlTester.test(new UrlIterator(input, sendFailure), new SimpleUrlVerifier(), timeout, runTimeout,
+                        urlReport -> {
+                            statusReport.incrementStatus(urlReport.getStatusCode());
+                            if (sendFailure.get() != null) {
+                                return;
+                            }
+                            try {
+                                synchronized (output) {
+                                    ReportCodec.writeReport(output, urlReport);
+                                    output.flush();
+                                }
+                            } catch (IOException e) {
+                                sendFailure.compareAndSet(null, e);
+                            }
+                        });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (sendFailure.get() != null) {
+                throw sendFailure.get();
+            }
+            synchronized (output) {
+                ReportCodec.writeStatusReport(output, statusReport);
+                output.flush();
+            }
+        }
+    }
+
+    /**
+     * Reads the urls from the coordinator one at a time as the tester asks for them, the urls ending when the
+     * coordinator closes its side of the socket, or as soon as a report can't be sent back to it.
+     */
+    private static class UrlIterator implements Iterator<String> {
+
+        private final DataInputStream input;
+        private final AtomicReference<IOException> sendFailure;
+        private String next;
+        private boolean ended;
+
+        private UrlIterator(DataInputStream input, AtomicReference<IOException> sendFailure) {
+
+            this.input = input;
+            this.sendFailure = sendFailure;
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            if (sendFailure.get() != null) {
+                return false;
+            }
+            if (next == null && !ended) {
+                try {
+                    next = ReportCodec.readString(input);
+                } catch (EOFException e) {
+                    ended = true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final String url = next;
+            next = null;
+            return url;
+        }
+    }
+}
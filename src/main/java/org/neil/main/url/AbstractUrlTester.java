@@ -0,0 +1,310 @@
+package org.neil.main.url;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import org.neil.main.metrics.TesterMetrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.neil.main.util.ErrorOutput.logError;
+
+/**
+ * Shared url verification and report building for the UrlTester implementations.
+ */
+public abstract class AbstractUrlTester implements UrlTester {
+
+    protected static final String URL_MALFORMED = "URL Malformed";
+    protected static final String URL_NOT_CONNECTED = "Url could not be connected to";
+    protected static final String URL_HOST_NOT_FOUND = "Url host could not be found";
+    protected static final String URL_NOT_SECURED = "Url secure connection could not be made";
+    protected static final String URL_NOT_TESTED = "Url could not be tested";
+    protected static final String URL_TIMED_OUT = "Url test timed out";
+    protected static final String URL_NOT_STARTED = "Url not tested before the run timeout";
+    protected static final String URL_REDIRECT_LOOP = "Url redirects in a loop";
+    protected static final String URL_TOO_MANY_REDIRECTS = "Url redirected too many times";
+    // Each request in flight holds a socket open, so by default as many are in flight as the process can open
+    public static final int DEFAULT_MAX_IN_FLIGHT = defaultMaxInFlight();
+    // Kept back from the requests for the files, jars and selectors the process has open besides its sockets
+    private static final long RESERVED_FILE_DESCRIPTORS = 1024;
+    // The limit when the open file limit of the process can't be found, within common limits
+    private static final int FALLBACK_MAX_IN_FLIGHT = 50000;
+
+    /**
+     * Starts a test for each url as it is taken from the iterator. Once the limit of tests in flight is reached,
+     * waits for one to finish before taking the next url. A url that is a duplicate of one already taken, once
+     * both are normalized, isn't tested again but is given the report of the first.
+     *
+     * @param urls        The url strings to test
+     * @param urlBuilder  The UrlBuilder object instance to use for url string verification and conversion.
+     * @param maxInFlight The most tests that can be in progress at once
+     * @param urlTest     Starts the test of a single url string
+     * @return The reports for every url, in the same order as the urls
+     */
+    protected List<UrlReport> dispatch(Iterator<String> urls, UrlBuilder urlBuilder, int maxInFlight,
+                                       Function<String, CompletableFuture<UrlReport>> urlTest) {
+
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final DuplicateUrls duplicateUrls = new DuplicateUrls();
+        final List<CompletableFuture<UrlReport>> futures = new ArrayList<>();
+        while (urls.hasNext()) {
+            final String urlString = urls.next();
+            inFlight.acquireUninterruptibly();
+            futures.add(testOnce(urlString, urlBuilder, urlTest, duplicateUrls)
+                    .whenComplete((urlReport, failure) -> inFlight.release()));
+        }
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Starts a test for each url as it is taken from the iterator and passes each report to the sink as soon as
+     * its test finishes. Once the limit of tests in flight is reached, waits for one to finish before taking the
+     * next url. Returns once every test has finished. A url that is a duplicate of one already taken is given the
+     * report of the first once its test finishes.
+     *
+     * If the run timeout passes first, every url still being tested is reported as timed out and no more urls
+     * are tested. The urls not yet taken are still read, without testing them, so every url has a report. A test
+     * that finishes after its url has been reported as timed out is not reported again. A report the sink fails to
+     * take is logged and the run carries on.
+     *
+     * @param urls        The url strings to test
+     * @param urlBuilder  The UrlBuilder object instance to use for url string verification and conversion.
+     * @param maxInFlight The most tests that can be in progress at once
+     * @param runTimeout  The longest the whole run can take in milliseconds, or 0 for no limit
+     * @param urlTest     Starts the test of a single url string
+     * @param reportSink  Receives the report for every url
+     */
+    protected void dispatch(Iterator<String> urls, UrlBuilder urlBuilder, int maxInFlight, int runTimeout,
+                            Function<String, CompletableFuture<UrlReport>> urlTest, ReportSink reportSink) {
+
+        final RunDeadline runDeadline = new RunDeadline(runTimeout);
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final DuplicateUrls duplicateUrls = new DuplicateUrls();
+        final Set<PendingTest> pendingTests = ConcurrentHashMap.newKeySet();
+        while (urls.hasNext()) {
+            // The url is left in the iterator until a test can start, so one still waiting is reported as not started
+            if (!runDeadline.acquire(inFlight, 1)) {
+                break;
+            }
+            final PendingTest pendingTest = new PendingTest(urls.next());
+            pendingTests.add(pendingTest);
+            testOnce(pendingTest.url, urlBuilder, urlTest, duplicateUrls).whenComplete((urlReport, failure) -> {
+                try {
+                    if (pendingTest.finish()) {
+                        pendingTests.remove(pendingTest);
+                        if (failure != null) {
+                            logError(failure.getMessage());
+                            report(reportSink, new UrlErrorReport(pendingTest.url, URL_NOT_TESTED));
+                        } else {
+                            report(reportSink, urlReport);
+                        }
+                    }
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        // Every permit is only free again once the last test has finished
+        if (!runDeadline.acquire(inFlight, maxInFlight)) {
+            logError("Run timeout of " + runTimeout + "ms reached, urls still being tested have timed out");
+            for (PendingTest pendingTest : pendingTests) {
+                if (pendingTest.finish()) {
+                    reportSink.accept(new UrlErrorReport(pendingTest.url, URL_TIMED_OUT));
+                }
+            }
+            int notStarted = 0;
+            while (urls.hasNext()) {
+                reportSink.accept(new UrlErrorReport(urls.next(), URL_NOT_STARTED));
+                notStarted++;
+            }
+            if (notStarted > 0) {
+                logError(notStarted + " urls were not tested before the run timeout");
+            }
+        }
+    }
+
+    /**
+     * The open file limit of the process less a reserve for everything else it has open, or half the limit if the
+     * limit is so low the reserve would take most of it. Java raises the soft limit to the hard limit as it starts
+     * on Linux and macOS, so this is usually the hard limit, often hundreds of thousands or more.
+     */
+    private static int defaultMaxInFlight() {
+
+        final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+        if (!(operatingSystem instanceof UnixOperatingSystemMXBean)) {
+            return FALLBACK_MAX_IN_FLIGHT;
+        }
+        final long limit = ((UnixOperatingSystemMXBean) operatingSystem).getMaxFileDescriptorCount();
+        if (limit <= 0) {
+            return FALLBACK_MAX_IN_FLIGHT;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(limit / 2, limit - RESERVED_FILE_DESCRIPTORS));
+    }
+
+    /**
+     * Passes a report on from the thread its test finished on, where anything the sink throws would be lost with
+     * the future it was thrown into, so it is logged instead.
+     */
+    private static void report(ReportSink reportSink, UrlReport urlReport) {
+
+        try {
+            reportSink.accept(urlReport);
+        } catch (RuntimeException e) {
+            logError("Report of " + urlReport.getUrl() + " could not be passed on: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Urls that aren't valid can't be normalized, so are tested as they are to report them as malformed. Every url
+     * taken is counted in the metrics as started, then as completed with its status code once its test finishes.
+     */
+    private CompletableFuture<UrlReport> testOnce(String urlString, UrlBuilder urlBuilder,
+                                                  Function<String, CompletableFuture<UrlReport>> urlTest,
+                                                  DuplicateUrls duplicateUrls) {
+
+        TesterMetrics.TESTS_STARTED.increment();
+        TesterMetrics.TESTS_IN_FLIGHT.increment();
+        final Optional<String> normalizedUrl = UrlNormalizer.normalize(urlString, urlBuilder);
+        final CompletableFuture<UrlReport> test = normalizedUrl.isPresent()
+                ? duplicateUrls.testOnce(normalizedUrl.get(), urlString, () -> urlTest.apply(urlString))
+                : urlTest.apply(urlString);
+        return test.whenComplete((urlReport, failure) -> {
+            TesterMetrics.TESTS_IN_FLIGHT.decrement();
+            TesterMetrics.TESTS_COMPLETED.increment(failure == null ? urlReport.getStatusCode() : -1);
+        });
+    }
+
+    /**
+     * @param failure Why a request got no response
+     * @return The error reported for the url, a request that timed out or ran past its deadline being reported as
+     * timed out, a host that doesn't exist or a failed TLS handshake as that, and anything else as not connected
+     */
+    protected static String errorMessage(Failure failure) {
+
+        switch (failure) {
+            case DNS:
+                return URL_HOST_NOT_FOUND;
+            case TLS:
+                return URL_NOT_SECURED;
+            case TIMEOUT:
+            case DEADLINE:
+                return URL_TIMED_OUT;
+            case REDIRECT_LOOP:
+                return URL_REDIRECT_LOOP;
+            case TOO_MANY_REDIRECTS:
+                return URL_TOO_MANY_REDIRECTS;
+            default:
+                return URL_NOT_CONNECTED;
+        }
+    }
+
+    /**
+     * Convert a Http Response into a Url report, observing how long the request took in the metrics
+     *
+     * @param urlString    The url that this report is about
+     * @param httpResponse The Http response collected for this url
+     * @return A UrlReport of the respsonse
+     */
+    protected UrlReport buildUrlTestReport(String urlString, HttpResponse httpResponse) {
+
+        final Long contentLength = httpResponse.geContentLengthHeader().map(Long::valueOf).orElse(null);
+        httpResponse.getTimings().ifPresent(TesterMetrics::recordTimings);
+        return new UrlTestReport(
+                urlString,
+                httpResponse.getStatusCode(),
+                contentLength,
+                httpResponse.getDateHeader().orElse(null),
+                httpResponse.getTimings().orElse(null),
+                httpResponse.getAttempts(),
+                httpResponse.getRedirects());
+    }
+
+    /**
+     * Verifies and converts a string representation of a url to a URL object.
+     *
+     * @param url        The string representing a url to verify and build
+     * @param urlBuilder The object to use to build and verify the url.
+     * @return An optional of the URL object for the provided String if it is a valid url, otherwise returns an empty Optional
+     */
+    protected Optional<URL> buildUrl(String url, UrlBuilder urlBuilder) {
+
+        try {
+            return urlBuilder.parse(url);
+        } catch (RuntimeException e) {
+            logError(e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * When a run has to finish by, if it has a run timeout.
+     */
+    private static class RunDeadline {
+
+        private final boolean limited;
+        private final long deadlineNanos;
+
+        RunDeadline(int runTimeout) {
+
+            this.limited = runTimeout > 0;
+            this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(runTimeout);
+        }
+
+        /**
+         * Waits for the permits until the deadline has passed.
+         *
+         * @return false if the deadline passed, or the thread was interrupted, before the permits were acquired
+         */
+        boolean acquire(Semaphore semaphore, int permits) {
+
+            if (!limited) {
+                semaphore.acquireUninterruptibly(permits);
+                return true;
+            }
+            final long remainingNanos = deadlineNanos - System.nanoTime();
+            try {
+                return remainingNanos > 0 && semaphore.tryAcquire(permits, remainingNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * A url taken for testing whose report hasn't been passed to the sink. Its report is passed on by either its
+     * test finishing or the run timing out, whichever comes first.
+     */
+    private static class PendingTest {
+
+        private final String url;
+        private final AtomicBoolean reported = new AtomicBoolean();
+
+        PendingTest(String url) {
+
+            this.url = url;
+        }
+
+        /**
+         * @return true if the url hadn't already been reported, and so should be reported now
+         */
+        boolean finish() {
+
+            return reported.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.neil.main.url;
+
+import org.neil.main.util.StableHash;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * The tests started so far, found by their normalized url, so a url that duplicates one already seen shares its
+ * test rather than being requested again.
+ *
+ * Each url is held as a 64 bit fingerprint of its normalized form in an open addressed table, rather than as the
+ * url string, to keep a long list of urls compact. Two different urls share a fingerprint with a probability of
+ * around one in a million for ten million urls.
+ *
+ * A test is only held while it is in progress, for the duplicates found meanwhile to wait on. Once it finishes its
+ * report is moved into a ReportStore and the test dropped, so a finished url takes a row of primitives rather than
+ * a future and a report object.
+ *
+ * Only used by the thread dispatching the tests, so isn't thread safe, apart from the tests finishing on other
+ * threads, which are queued and moved into the store by the dispatching thread.
+ */
+class DuplicateUrls {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long EMPTY = 0;
+
+    private final ReportStore reports = new ReportStore();
+    private final Queue<FinishedTest> finishedTests = new ConcurrentLinkedQueue<>();
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+    // The test of each url while it is in progress, null once its report is in the store
+    private Object[] tests = new Object[INITIAL_CAPACITY];
+    // The row in the store of the report of each url whose test has finished
+    private int[] rows = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Starts the test of a url unless a url with the same normalized form has already been tested, in which case
+     * the report of that test is given for this url too once it finishes.
+     *
+     * @param normalizedUrl The normalized form of the url
+     * @param urlString     The url string as it was given to the tester
+     * @param urlTest       Starts the test of the url
+     * @return The test of the url or of the url it duplicates
+     */
+    CompletableFuture<UrlReport> testOnce(String normalizedUrl, String urlString,
+                                          Supplier<CompletableFuture<UrlReport>> urlTest) {
+
+        storeFinishedTests();
+        final long fingerprint = fingerprint(normalizedUrl);
+        int index = indexOf(fingerprint, fingerprints);
+        if (fingerprints[index] == fingerprint) {
+            if (tests[index] == null) {
+                return CompletableFuture.completedFuture(reports.get(rows[index]).forUrl(urlString));
+            }
+            return test(index).thenApply(urlReport -> urlReport.forUrl(urlString));
+        }
+        if ((size + 1) * 2 > fingerprints.length) {
+            grow();
+            index = indexOf(fingerprint, fingerprints);
+        }
+        final CompletableFuture<UrlReport> test = urlTest.get();
+        fingerprints[index] = fingerprint;
+        tests[index] = test;
+        size++;
+        // A test that fails is kept, so its duplicates fail the same way
+        test.thenAccept(urlReport -> finishedTests.add(new FinishedTest(fingerprint, urlReport)));
+        return test;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<UrlReport> test(int index) {
+
+        return (CompletableFuture<UrlReport>) tests[index];
+    }
+
+    /**
+     * Moves the reports of the tests that have finished since the last url into the store, dropping the tests.
+     */
+    private void storeFinishedTests() {
+
+        FinishedTest finishedTest;
+        while ((finishedTest = finishedTests.poll()) != null) {
+            final int index = indexOf(finishedTest.fingerprint, fingerprints);
+            rows[index] = reports.size();
+            reports.add(finishedTest.urlReport);
+            tests[index] = null;
+        }
+    }
+
+    /**
+     * @return The slot holding the fingerprint, or the empty slot it would be put in
+     */
+    private static int indexOf(long fingerprint, long[] table) {
+
+        final int mask = table.length - 1;
+        int index = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        while (table[index] != EMPTY && table[index] != fingerprint) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void grow() {
+
+        final long[] oldFingerprints = fingerprints;
+        final Object[] oldTests = tests;
+        final int[] oldRows = rows;
+        fingerprints = new long[oldFingerprints.length * 2];
+        tests = new Object[oldTests.length * 2];
+        rows = new int[oldRows.length * 2];
+        for (int i = 0; i < oldFingerprints.length; i++) {
+            if (oldFingerprints[i] != EMPTY) {
+                final int index = indexOf(oldFingerprints[i], fingerprints);
+                fingerprints[index] = oldFingerprints[i];
+                tests[index] = oldTests[i];
+                rows[index] = oldRows[i];
+            }
+        }
+    }
+
+    /**
+     * The stable hash of the url, with the value marking an empty slot moved aside.
+     */
+    private static long fingerprint(String normalizedUrl) {
+
+        final long hash = StableHash.of(normalizedUrl);
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    /**
+     * The report of a test that has finished, waiting to be moved into the store.
+     */
+    private static class FinishedTest {
+
+        private final long fingerprint;
+        private final UrlReport urlReport;
+
+        private FinishedTest(long fingerprint, UrlReport urlReport) {
+
+            this.fingerprint = fingerprint;
+            this.urlReport = urlReport;
+        }
+    }
+}
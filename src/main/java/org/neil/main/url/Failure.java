@@ -0,0 +1,78 @@
+package org.neil.main.url;
+
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+
+/**
+ * Why a request got no response, sorted by whether trying again could get one.
+ */
+enum Failure {
+
+    // The host doesn't exist, asking again gets the same answer from the cache
+    DNS(false),
+    // Nothing was listening, or the host couldn't be reached, which a restarting server or a blip in the network
+    // clears up
+    REFUSED(true),
+    // The connection was dropped part way, commonly a kept alive connection the server had already closed
+    RESET(true),
+    // The server didn't connect or answer within the timeout
+    TIMEOUT(true),
+    // The request ran past its deadline, already having taken twice the timeout
+    DEADLINE(false),
+    // The url redirected back to a url already in its chain
+    REDIRECT_LOOP(false),
+    // The url was still being redirected after the most redirects that are followed
+    TOO_MANY_REDIRECTS(false),
+    // A failed TLS handshake or a certificate that isn't trusted
+    TLS(false),
+    // Anything else that fails the same way every time
+    OTHER(false);
+
+    private final boolean retryable;
+
+    Failure(boolean retryable) {
+
+        this.retryable = retryable;
+    }
+
+    /**
+     * @return true if trying the request again could succeed
+     */
+    boolean isRetryable() {
+
+        return retryable;
+    }
+
+    /**
+     * A connect timeout is a SocketTimeoutException and a reset or an unexpected end of the response a
+     * SocketException, so the more specific exceptions are checked first.
+     *
+     * @param ioException What the request failed with
+     * @return The kind of failure the exception stands for
+     */
+    static Failure of(IOException ioException) {
+
+        if (ioException instanceof UnknownHostException) {
+            return DNS;
+        }
+        if (ioException instanceof ConnectException || ioException instanceof NoRouteToHostException) {
+            return REFUSED;
+        }
+        if (ioException instanceof InterruptedIOException) {
+            return TIMEOUT;
+        }
+        if (ioException instanceof SSLException) {
+            return TLS;
+        }
+        if (ioException instanceof SocketException || ioException instanceof EOFException) {
+            return RESET;
+        }
+        return OTHER;
+    }
+}
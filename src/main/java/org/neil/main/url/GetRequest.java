@@ -1,81 +1,362 @@
 package org.neil.main.url;
 
-import java.io.IOException;
-import java.net.HttpURLConnection;
+import org.neil.main.url.dns.HostResolver;
+
+import java.net.InetAddress;
+import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.neil.main.util.ErrorOutput.logError;
 
 /**
- * Logic for performing a HTTP GET on the provided URL.
+ * Logic for performing a HTTP GET on the provided URL. Hosts are resolved through a shared cache before a
+ * connection is requested, so a host that doesn't exist fails without waiting for a connection. The requests in
+ * progress to each host are limited by the connection pool, then carried by the transport: HTTP/1.1 over kept alive
+ * connections by default, or HTTP/2 with every request to a host multiplexed over one connection.
+ *
+ * In probe mode a HEAD request is sent first, as only the status and headers are reported. A GET is only sent if
+ * the server rejects the HEAD or leaves out headers the report needs.
+ *
+ * Redirects are left to the transport unless the redirect policy follows them, in which case the request follows
+ * each Location itself, up to the most redirects allowed and stopping at a url already in the chain. The response
+ * at the end of the chain is reported along with the redirects that led to it. The urls redirected to are
+ * requested through the policy, so a url many others redirect to is only requested once.
+ *
+ * Each request has a deadline of twice the timeout, after which it is cut off wherever it is blocked. Each response
+ * carries the time taken looking up the host, waiting for a turn from the pool, connecting where the transport can
+ * see it and waiting for the response.
+ *
+ * Requests that fail in a way that could clear up, or get a response saying the server is too busy, are tried
+ * again as the retry policy allows. The timings are of the last attempt, apart from the total, which runs from the
+ * start of the first attempt and so includes the earlier attempts and the waits between them.
  */
 public class GetRequest {
 
     private static final String HTTP = "http";
     private static final String HTTPS = "https";
+    private static final String HTTP_GET = "GET";
+    private static final String HTTP_HEAD = "HEAD";
+
+    private final HostConnectionPool connectionPool;
+    private final HostResolver hostResolver;
+    private final boolean probe;
+    private final RetryPolicy retryPolicy;
+    private final RedirectPolicy redirectPolicy;
+    private final HttpTransport transport;
+    // Counted down on close, cutting short any wait before a retry
+    private final CountDownLatch closing = new CountDownLatch(1);
+
+    /**
+     * @param connectionPool Limits the connections open to each host at once
+     * @param hostResolver   Looks up and caches the addresses of hosts, closed when this is closed
+     */
+    public GetRequest(HostConnectionPool connectionPool, HostResolver hostResolver) {
+
+        this(connectionPool, hostResolver, false);
+    }
+
+    /**
+     * @param connectionPool Limits the connections open to each host at once
+     * @param hostResolver   Looks up and caches the addresses of hosts, closed when this is closed
+     * @param probe          Send a HEAD request first, falling back to a GET when the HEAD response isn't enough
+     */
+    public GetRequest(HostConnectionPool connectionPool, HostResolver hostResolver, boolean probe) {
+
+        this(connectionPool, hostResolver, probe, RetryPolicy.none());
+    }
+
+    /**
+     * @param connectionPool Limits the connections open to each host at once
+     * @param hostResolver   Looks up and caches the addresses of hosts, closed when this is closed
+     * @param probe          Send a HEAD request first, falling back to a GET when the HEAD response isn't enough
+     * @param retryPolicy    Decides which failed requests are tried again and when, shared by every request
+     */
+    public GetRequest(HostConnectionPool connectionPool, HostResolver hostResolver, boolean probe,
+                      RetryPolicy retryPolicy) {
+
+        this(connectionPool, hostResolver, probe, retryPolicy, false);
+    }
+
+    /**
+     * @param connectionPool Limits the requests in progress to each host at once
+     * @param hostResolver   Looks up and caches the addresses of hosts, closed when this is closed
+     * @param probe          Send a HEAD request first, falling back to a GET when the HEAD response isn't enough
+     * @param retryPolicy    Decides which failed requests are tried again and when, shared by every request
+     * @param http2          Multiplex the requests to each host over one HTTP/2 connection, negotiated with ALPN
+     *                       for https and by upgrading to h2c for http, falling back to HTTP/1.1 for hosts that
+     *                       don't speak HTTP/2. Uses HTTP/1.1 throughout if the JDK doesn't support HTTP/2.
+     */
+    public GetRequest(HostConnectionPool connectionPool, HostResolver hostResolver, boolean probe,
+                      RetryPolicy retryPolicy, boolean http2) {
+
+        this(connectionPool, hostResolver, probe, retryPolicy, RedirectPolicy.none(), http2);
+    }
+
+    /**
+     * @param connectionPool Limits the requests in progress to each host at once
+     * @param hostResolver   Looks up and caches the addresses of hosts, closed when this is closed
+     * @param probe          Send a HEAD request first, falling back to a GET when the HEAD response isn't enough
+     * @param retryPolicy    Decides which failed requests are tried again and when, shared by every request
+     * @param redirectPolicy Decides how far redirects are followed and shares the responses of the urls redirected
+     *                       to, shared by every request
+     * @param http2          Multiplex the requests to each host over one HTTP/2 connection, falling back to HTTP/1.1
+     */
+    public GetRequest(HostConnectionPool connectionPool, HostResolver hostResolver, boolean probe,
+                      RetryPolicy retryPolicy, RedirectPolicy redirectPolicy, boolean http2) {
+
+        this(connectionPool, hostResolver, probe, retryPolicy, redirectPolicy,
+                createTransport(http2, !redirectPolicy.isEnabled()));
+    }
+
+    /**
+     * @param transport Carries the requests, closed when this is closed
+     */
+    GetRequest(HostConnectionPool connectionPool, HostResolver hostResolver, boolean probe,
+               RetryPolicy retryPolicy, RedirectPolicy redirectPolicy, HttpTransport transport) {
+
+        this.connectionPool = connectionPool;
+        this.hostResolver = hostResolver;
+        this.probe = probe;
+        this.retryPolicy = retryPolicy;
+        this.redirectPolicy = redirectPolicy;
+        this.transport = transport;
+    }
 
     /**
-     * Perform a GET request on the provided URL. Handles the logic for the protocols HTTP and HTTPS.
+     * Perform a GET request on the provided URL, or a HEAD request first in probe mode. Handles the logic for the
+     * protocols HTTP and HTTPS.
      *
      * @param url     The URL object to perform the GET request for.
      * @param timeout The read and connect timeout values for the connection.
-     * @return The response for the request inside an optional or an empty optional if the request fails.
+     * @return The response for the request, or why there was none, and the number of attempts it took.
      */
-    Optional<HttpResponse> getUrl(URL url, int timeout) {
+    RequestOutcome getUrl(URL url, int timeout) {
 
-        try {
-            if (url.getProtocol().equals(HTTP) || url.getProtocol().equals(HTTPS)) {
-                final URLConnection urlConnection = url.openConnection();
-                if (urlConnection instanceof HttpURLConnection) {
-                    try (GetHttpConnection getHttpConnection = new GetHttpConnection(
-                            (HttpURLConnection) urlConnection)) {
-                        return Optional.of(getHttpConnection.getResponse(timeout));
-                    }
-                }
+        return getUrl(url, timeout, Collections.emptyMap());
+    }
+
+    /**
+     * Perform a GET request on the provided URL with extra request headers, such as the validators of a
+     * conditional request. The headers are sent with the HEAD request in probe mode as well.
+     *
+     * @param url            The URL object to perform the GET request for.
+     * @param timeout        The read and connect timeout values for the connection.
+     * @param requestHeaders The headers to add to the request, keyed by name.
+     * @return The response for the request, or why there was none, and the number of attempts it took.
+     */
+    RequestOutcome getUrl(URL url, int timeout, Map<String, String> requestHeaders) {
+
+        retryPolicy.recordRequest();
+        final long startNanos = System.nanoTime();
+        for (int attempts = 1; ; attempts++) {
+            final RequestOutcome outcome = attempt(url, timeout, requestHeaders, startNanos);
+            final long delayMillis = outcome.getResponse().isPresent()
+                    ? retryPolicy.retryDelayMillis(attempts, outcome.getResponse().get())
+                    : retryPolicy.retryDelayMillis(attempts, outcome.getFailure());
+            if (delayMillis == RetryPolicy.NO_RETRY || !waitToRetry(delayMillis)) {
+                return retryPolicy.isEnabled() ? outcome.afterAttempts(attempts) : outcome;
             }
-        } catch (IOException ioException) {
-            logError(ioException.getMessage());
         }
-        return Optional.empty();
     }
 
     /**
-     * Closable class to handle disconnecting
+     * Starts looking up the hosts of the urls as they are read, ahead of them being requested.
+     *
+     * @param urls The url strings that will be requested
+     * @return The same url strings
      */
-    private class GetHttpConnection implements AutoCloseable {
+    Iterator<String> prefetchHosts(Iterator<String> urls) {
+
+        return hostResolver.prefetch(urls);
+    }
 
-        private static final String HTTP_GET = "GET";
+    /**
+     * Cuts off every request still in progress, as if its deadline had passed, and closes the host resolver.
+     */
+    void close() {
 
-        private HttpURLConnection httpURLConnection;
+        closing.countDown();
+        transport.close();
+        hostResolver.close();
+    }
 
-        GetHttpConnection(HttpURLConnection httpURLConnection) {
+    /**
+     * @param followRedirects Let the transport follow redirects itself, as they aren't followed by the request
+     */
+    private static HttpTransport createTransport(boolean http2, boolean followRedirects) {
 
-            Objects.requireNonNull(httpURLConnection);
-            this.httpURLConnection = httpURLConnection;
+        if (http2 && !Http2Transport.isSupported()) {
+            logError("HTTP/2 needs Java 21 or later, using HTTP/1.1 instead");
         }
+        return http2 && Http2Transport.isSupported()
+                ? Http2Transport.create(followRedirects)
+                : new UrlConnectionTransport(followRedirects);
+    }
 
-        HttpResponse getResponse(int timeout) throws IOException {
+    /**
+     * A single attempt at the url, following any redirects from it as far as the redirect policy allows. The
+     * request headers are only sent to the url itself, the urls redirected to are requested without them.
+     */
+    private RequestOutcome attempt(URL url, int timeout, Map<String, String> requestHeaders, long startNanos) {
 
-            return getResponse(timeout, timeout);
+        RequestOutcome outcome = fetch(url, timeout, requestHeaders, startNanos);
+        if (!redirectPolicy.isEnabled()) {
+            return outcome;
+        }
+        final List<Redirect> redirects = new ArrayList<>();
+        final Set<String> chain = new HashSet<>();
+        chain.add(url.toExternalForm());
+        URL current = url;
+        while (outcome.getResponse().isPresent() && outcome.getResponse().get().isRedirect()) {
+            final HttpResponse redirectResponse = outcome.getResponse().get();
+            final Optional<URL> location = location(current, redirectResponse);
+            if (!location.isPresent()) {
+                // A redirect that can't be followed is the answer itself
+                break;
+            }
+            redirects.add(new Redirect(redirectResponse.getStatusCode(), location.get().toExternalForm()));
+            if (!chain.add(location.get().toExternalForm())) {
+                logError("Redirect loop back to " + location.get() + " from " + url);
+                return RequestOutcome.failed(Failure.REDIRECT_LOOP);
+            }
+            if (redirects.size() > redirectPolicy.getMaxRedirects()) {
+                logError("More than " + redirectPolicy.getMaxRedirects() + " redirects from " + url);
+                return RequestOutcome.failed(Failure.TOO_MANY_REDIRECTS);
+            }
+            current = location.get();
+            outcome = redirectPolicy.requestTarget(current,
+                    target -> fetch(target, timeout, Collections.emptyMap(), startNanos));
         }
+        return redirects.isEmpty() ? outcome : RequestOutcome.responded(withRedirects(outcome, redirects, startNanos));
+    }
+
+    /**
+     * The response may have been shared from a request for another url, so its total is taken again from the start
+     * of this url's request.
+     */
+    private HttpResponse withRedirects(RequestOutcome outcome, List<Redirect> redirects, long startNanos) {
 
-        HttpResponse getResponse(int connectTimeout, int readTimeout) throws IOException {
+        final HttpResponse httpResponse = outcome.getResponse().get().withRedirects(redirects);
+        return httpResponse.getTimings()
+                .map(timings -> httpResponse.withTimings(timings.withTotalNanos(System.nanoTime() - startNanos)))
+                .orElse(httpResponse);
+    }
 
-            httpURLConnection.setConnectTimeout(connectTimeout);
-            httpURLConnection.setReadTimeout(readTimeout);
-            httpURLConnection.setRequestMethod(HTTP_GET);
-            httpURLConnection.connect();
-            return new HttpResponse(httpURLConnection.getHeaderFields(), httpURLConnection.getResponseCode());
+    /**
+     * @return The url the response redirects to, or empty if it has no Location to follow or one that isn't http
+     */
+    private Optional<URL> location(URL url, HttpResponse httpResponse) {
+
+        try {
+            if (httpResponse.getLocationHeader().isPresent()) {
+                final URL location = new URL(url, httpResponse.getLocationHeader().get());
+                if (location.getProtocol().equals(HTTP) || location.getProtocol().equals(HTTPS)) {
+                    return Optional.of(location);
+                }
+            }
+        } catch (MalformedURLException e) {
+            logError("Redirect location malformed: " + httpResponse.getLocationHeader().get());
         }
+        return Optional.empty();
+    }
 
-        @Override
-        public void close() {
+    /**
+     * A single url, the HEAD and any GET after it in probe mode. A redirect answering the HEAD is followed as it
+     * is, without a GET, when redirects are followed by the request.
+     */
+    private RequestOutcome fetch(URL url, int timeout, Map<String, String> requestHeaders, long startNanos) {
 
-            httpURLConnection.disconnect();
+        if (probe) {
+            final RequestOutcome headOutcome = request(url, timeout, HTTP_HEAD, requestHeaders, startNanos);
+            // A host that can't be reached by the HEAD won't be reached by a GET either
+            if (!headOutcome.getResponse().isPresent() || !headOutcome.getResponse().get().needsGetFallback()
+                    || redirectPolicy.isEnabled() && headOutcome.getResponse().get().isRedirect()) {
+                return headOutcome;
+            }
         }
+        return request(url, timeout, HTTP_GET, requestHeaders, startNanos);
     }
 
+    /**
+     * @return false if the wait was cut short by the request being closed or the thread interrupted
+     */
+    private boolean waitToRetry(long delayMillis) {
+
+        try {
+            return !closing.await(delayMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @param startNanos When the first request for the url started, so the total includes the HEAD of a probe
+     */
+    private RequestOutcome request(URL url, int timeout, String method, Map<String, String> requestHeaders,
+                                   long startNanos) {
+
+        try {
+            if (url.getProtocol().equals(HTTP) || url.getProtocol().equals(HTTPS)) {
+                final PhaseTimer phaseTimer = new PhaseTimer(startNanos);
+                final Optional<Failure> resolveFailure = resolve(url, timeout);
+                if (resolveFailure.isPresent()) {
+                    return RequestOutcome.failed(resolveFailure.get());
+                }
+                phaseTimer.resolvedNanos = System.nanoTime();
+                connectionPool.acquire(url);
+                phaseTimer.acquiredNanos = System.nanoTime();
+                RequestOutcome outcome = RequestOutcome.failed(Failure.OTHER);
+                try {
+                    outcome = transport.send(url, timeout, method, requestHeaders, phaseTimer);
+                    return outcome;
+                } finally {
+                    connectionPool.release(url, phaseTimer.acquiredNanos,
+                            !outcome.getResponse().isPresent() || outcome.getResponse().get().isOverloaded());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logError("Interrupted while waiting for a connection to " + url.getHost());
+        }
+        return RequestOutcome.failed(Failure.OTHER);
+    }
+
+    /**
+     * Resolving through the cache first leaves the address in the JVM's cache for the connection to use. The
+     * lookup is waited on for the request timeout, as a lookup stuck in the OS resolver is outside the transport.
+     *
+     * @return the failure if the host could not be found or its lookup timed out
+     */
+    private Optional<Failure> resolve(URL url, int timeout) throws InterruptedException {
+
+        final CompletableFuture<InetAddress> lookup = hostResolver.resolve(url.getHost());
+        try {
+            if (timeout > 0) {
+                lookup.get(timeout, TimeUnit.MILLISECONDS);
+            } else {
+                lookup.get();
+            }
+            return Optional.empty();
+        } catch (ExecutionException e) {
+            logError(e.getCause().getMessage());
+            return Optional.of(Failure.DNS);
+        } catch (TimeoutException e) {
+            logError("Lookup of " + url.getHost() + " took longer than " + timeout + "ms");
+            return Optional.of(Failure.TIMEOUT);
+        }
+    }
 }
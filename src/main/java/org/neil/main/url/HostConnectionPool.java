@@ -0,0 +1,268 @@
+package org.neil.main.url;
+
+import org.neil.main.metrics.TesterMetrics;
+
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of connections open to each host at once, so urls that share a host take turns over a few
+ * kept alive connections rather than each opening their own.
+ *
+ * The limit for each host adapts to how the host is coping, so a host is not flooded into rejecting requests.
+ * It starts low and grows by one connection once a full round of requests has finished without trouble, up to
+ * the maximum. A request that fails or is answered with 429 Too Many Requests or 503 Service Unavailable halves
+ * the limit, and a request much slower than the fastest seen stops the limit growing. Each host has its own
+ * limit, so a struggling host doesn't hold back any other.
+ *
+ * Over HTTP/2 the requests to a host share one connection, so the limit is of the streams open on it at once
+ * rather than of connections.
+ *
+ * The idle connections themselves are held by the JVM's keep-alive cache, which is sized to hold every connection
+ * the pool allows and closes connections that have been idle for too long. A host with nothing in flight for longer
+ * than that has no connections left, so its limit is forgotten too, the hosts being swept for idle limits at most
+ * once each idle time. A host requested again after that starts from the initial limit.
+ *
+ * The connections in use, the requests waiting for a connection and the limits of the hosts in use are kept in the
+ * tester metrics, so how busy the pool is can be watched during a run.
+ */
+public class HostConnectionPool {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+    // Over HTTP/2 each request to a host is a stream on one connection, most servers allowing 100 or more at once
+    public static final int DEFAULT_MAX_STREAMS_PER_HOST = 100;
+    public static final int DEFAULT_IDLE_SECONDS = 5;
+
+    private static final String MAX_CONNECTIONS_PROPERTY = "http.maxConnections";
+    private static final String IDLE_SECONDS_PROPERTY = "http.keepAlive.time.server";
+
+    private final int maxConnectionsPerHost;
+    private final long idleNanos;
+    private final ConcurrentMap<String, HostLimit> hosts = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweepNanos;
+
+    /**
+     * Creates a pool with the default limit of connections per host and idle time.
+     */
+    public HostConnectionPool() {
+
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_IDLE_SECONDS);
+    }
+
+    /**
+     * The keep-alive cache reads its settings when the first connection is made, so the pool must be created
+     * before any urls are requested. Settings given as system properties on the command line take precedence.
+     *
+     * @param maxConnectionsPerHost The most connections that can be open to a single host at once
+     * @param idleSeconds           How long an unused connection is kept open for reuse before it is closed
+     */
+    public HostConnectionPool(int maxConnectionsPerHost, int idleSeconds) {
+
+        if (maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("At least one connection per host is required");
+        }
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        this.nextSweepNanos = new AtomicLong(System.nanoTime() + idleNanos);
+        setDefaultProperty(MAX_CONNECTIONS_PROPERTY, maxConnectionsPerHost);
+        setDefaultProperty(IDLE_SECONDS_PROPERTY, idleSeconds);
+    }
+
+    /**
+     * Waits until a connection to the host of the url can be opened.
+     *
+     * @param url The url about to be requested
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    void acquire(URL url) throws InterruptedException {
+
+        // A limit forgotten after it was looked up can't be used, the host is looked up again for its new limit
+        while (!hostLimit(url).acquire()) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Lets another request use a connection to the host of the url, once a request has finished with it, and
+     * adapts the limit for the host to how the request went.
+     *
+     * @param url        The url that has been requested
+     * @param startNanos The value of System.nanoTime when the request was sent
+     * @param overloaded Whether the request failed or the host said it was too busy to answer
+     */
+    void release(URL url, long startNanos, boolean overloaded) {
+
+        hostLimit(url).release(startNanos, overloaded);
+    }
+
+    /**
+     * @param url A url on the host
+     * @return The number of connections that can currently be open to the host at once
+     */
+    int getLimit(URL url) {
+
+        return hostLimit(url).getLimit();
+    }
+
+    private HostLimit hostLimit(URL url) {
+
+        forgetIdleHosts();
+        final String host = host(url);
+        final HostLimit hostLimit = hosts.get(host);
+        if (hostLimit != null) {
+            return hostLimit;
+        }
+        return hosts.computeIfAbsent(host, key -> new HostLimit(maxConnectionsPerHost));
+    }
+
+    /**
+     * Forgets the limits of the hosts that have had nothing in flight for longer than the idle time, if the hosts
+     * haven't been swept within the idle time already.
+     */
+    private void forgetIdleHosts() {
+
+        final long now = System.nanoTime();
+        final long nextSweep = nextSweepNanos.get();
+        if (now - nextSweep >= 0 && nextSweepNanos.compareAndSet(nextSweep, now + idleNanos)) {
+            hosts.values().removeIf(hostLimit -> hostLimit.forgetIfIdle(now, idleNanos));
+        }
+    }
+
+    private String host(URL url) {
+
+        final int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        return url.getProtocol() + "://" + url.getHost() + ":" + port;
+    }
+
+    private static void setDefaultProperty(String name, int value) {
+
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, String.valueOf(value));
+        }
+    }
+
+    /**
+     * Additive increase, multiplicative decrease limit on the requests in flight to a single host.
+     */
+    private static class HostLimit {
+
+        private static final double INITIAL_LIMIT = 4;
+        private static final double MIN_LIMIT = 1;
+        private static final double DECREASE_FACTOR = 0.5;
+        // Requests slower than this multiple of the fastest request are taken as a sign the host is queueing
+        private static final long LATENCY_TOLERANCE = 2;
+
+        private final Lock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private final int maxLimit;
+        private double limit;
+        private int inFlight;
+        private long minLatencyNanos = Long.MAX_VALUE;
+        private long lastDecreaseNanos = System.nanoTime();
+        private long lastUsedNanos = lastDecreaseNanos;
+        private boolean forgotten;
+
+        HostLimit(int maxLimit) {
+
+            this.maxLimit = maxLimit;
+            this.limit = Math.min(INITIAL_LIMIT, maxLimit);
+            TesterMetrics.CONNECTION_LIMIT.add((int) limit);
+        }
+
+        /**
+         * @return false if the limit has been forgotten, without waiting
+         */
+        boolean acquire() throws InterruptedException {
+
+            lock.lock();
+            try {
+                if (forgotten) {
+                    return false;
+                }
+                if (inFlight >= (int) limit) {
+                    TesterMetrics.CONNECTIONS_WAITING.increment();
+                    try {
+                        while (inFlight >= (int) limit) {
+                            available.await();
+                        }
+                    } finally {
+                        TesterMetrics.CONNECTIONS_WAITING.decrement();
+                    }
+                }
+                inFlight++;
+                TesterMetrics.CONNECTIONS_IN_USE.increment();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(long startNanos, boolean overloaded) {
+
+            final long now = System.nanoTime();
+            lock.lock();
+            try {
+                inFlight--;
+                lastUsedNanos = now;
+                TesterMetrics.CONNECTIONS_IN_USE.decrement();
+                final int previousLimit = (int) limit;
+                if (overloaded) {
+                    // Requests sent before the last decrease were sent at the old limit, so are already accounted for
+                    if (startNanos - lastDecreaseNanos > 0) {
+                        limit = Math.max(MIN_LIMIT, limit * DECREASE_FACTOR);
+                        lastDecreaseNanos = now;
+                    }
+                } else {
+                    final long latencyNanos = now - startNanos;
+                    minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+                    if (latencyNanos <= minLatencyNanos * LATENCY_TOLERANCE) {
+                        limit = Math.min(maxLimit, limit + 1 / limit);
+                    }
+                }
+                TesterMetrics.CONNECTION_LIMIT.add((int) limit - previousLimit);
+                for (int free = (int) limit - inFlight; free > 0; free--) {
+                    available.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Forgets the limit if nothing has been in flight to the host for longer than the idle time, taking it out
+         * of the total of the limits. A host with requests waiting for a connection has every connection in use, so is
+         * never idle.
+         *
+         * @return true if the limit has been forgotten
+         */
+        boolean forgetIfIdle(long now, long idleNanos) {
+
+            lock.lock();
+            try {
+                if (!forgotten && inFlight == 0 && now - lastUsedNanos > idleNanos) {
+                    forgotten = true;
+                    TesterMetrics.CONNECTION_LIMIT.add(-(int) limit);
+                }
+                return forgotten;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int getLimit() {
+
+            lock.lock();
+            try {
+                return (int) limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
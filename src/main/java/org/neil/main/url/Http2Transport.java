@@ -0,0 +1,35 @@
+package org.neil.main.url;
+
+/**
+ * Access to the HTTP/2 transport, which needs Java 21 or later.
+ *
+ * This is the Java 8 version, which reports HTTP/2 as unsupported. The multi-release jar holds a Java 21 version
+ * of this class in src/main/java21 that takes its place on newer JDKs.
+ */
+final class Http2Transport {
+
+    private Http2Transport() {
+
+    }
+
+    /**
+     * @return true if the running JDK can make HTTP/2 requests
+     */
+    static boolean isSupported() {
+
+        return false;
+    }
+
+    /**
+     * Creates a transport that multiplexes the requests to each host over one HTTP/2 connection.
+     *
+     * @param followRedirects Let the transport follow redirects itself, reporting the response at the end of them
+     * @return The transport
+     * @throws UnsupportedOperationException If the running JDK can't make HTTP/2 requests
+     */
+    static HttpTransport create(boolean followRedirects) {
+
+        throw new UnsupportedOperationException("HTTP/2 needs Java 21 or later");
+    }
+
+}
@@ -1,20 +1,98 @@
 package org.neil.main.url;
 
+import org.neil.main.report.RequestTimings;
+
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 
 public class HttpResponse {
 
+    private static final int MOVED_PERMANENTLY = 301;
+    private static final int FOUND = 302;
+    private static final int SEE_OTHER = 303;
+    private static final int NOT_MODIFIED = 304;
+    private static final int TEMPORARY_REDIRECT = 307;
+    private static final int PERMANENT_REDIRECT = 308;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int NOT_IMPLEMENTED = 501;
+    private static final int SERVICE_UNAVAILABLE = 503;
+
     private final Map<String, List<String>> headers;
     private final int statusCode;
+    private final RequestTimings timings;
+    // Only counted when requests are retried, will be 0 otherwise
+    private final int attempts;
+    // The redirects followed to get this response, empty unless redirects are followed by the request
+    private final List<Redirect> redirects;
 
     public HttpResponse(Map<String, List<String>> headers, int statusCode) {
 
+        this(headers, statusCode, null, 0, Collections.emptyList());
+    }
+
+    private HttpResponse(Map<String, List<String>> headers, int statusCode, RequestTimings timings, int attempts,
+                         List<Redirect> redirects) {
+
         this.headers = headers;
 
         this.statusCode = statusCode;
+        this.timings = timings;
+        this.attempts = attempts;
+        this.redirects = redirects;
+    }
+
+    /**
+     * @param timings How long each phase of the request took
+     * @return The same response with the timings of its request
+     */
+    public HttpResponse withTimings(RequestTimings timings) {
+
+        return new HttpResponse(headers, statusCode, timings, attempts, redirects);
+    }
+
+    /**
+     * @param attempts How many times the request was tried to get this response
+     * @return The same response with the number of attempts it took
+     */
+    public HttpResponse withAttempts(int attempts) {
+
+        return new HttpResponse(headers, statusCode, timings, attempts, redirects);
+    }
+
+    /**
+     * @param redirects The redirects followed to get this response, in the order they were followed
+     * @return The same response with the redirects that led to it
+     */
+    public HttpResponse withRedirects(List<Redirect> redirects) {
+
+        return new HttpResponse(headers, statusCode, timings, attempts, Collections.unmodifiableList(redirects));
+    }
+
+    /**
+     * @return The redirects followed to get this response, empty if there were none or they weren't followed
+     */
+    public List<Redirect> getRedirects() {
+
+        return redirects;
+    }
+
+    /**
+     * @return How many times the request was tried to get this response, or 0 if attempts weren't counted
+     */
+    public int getAttempts() {
+
+        return attempts;
+    }
+
+    /**
+     * @return How long each phase of the request took, or empty if it wasn't timed
+     */
+    public Optional<RequestTimings> getTimings() {
+
+        return Optional.ofNullable(timings);
     }
 
     public int getStatusCode() {
@@ -24,18 +102,87 @@ public class HttpResponse {
 
     public Optional<String> getDateHeader() {
 
-        final List<String> dateValues = headers.get("Date");
-        if (Objects.nonNull(dateValues) && !dateValues.isEmpty()) {
-            return Optional.of(dateValues.get(0));
-        }
-        return Optional.empty();
+        return getFirstHeader("Date");
     }
 
     public Optional<String> geContentLengthHeader() {
 
-        final List<String> contentLengthValues = headers.get("Content-Length");
-        if (Objects.nonNull(contentLengthValues) && !contentLengthValues.isEmpty()) {
-            return Optional.of(contentLengthValues.get(0));
+        return getFirstHeader("Content-Length");
+    }
+
+    public Optional<String> getETagHeader() {
+
+        return getFirstHeader("ETag");
+    }
+
+    public Optional<String> getLastModifiedHeader() {
+
+        return getFirstHeader("Last-Modified");
+    }
+
+    /**
+     * @return The Location header, the url a redirect points to, which may be relative to the url requested
+     */
+    public Optional<String> getLocationHeader() {
+
+        return getFirstHeader("Location");
+    }
+
+    /**
+     * @return true if the server answered that the url is to be found at the location it gave
+     */
+    public boolean isRedirect() {
+
+        return statusCode == MOVED_PERMANENTLY || statusCode == FOUND || statusCode == SEE_OTHER
+                || statusCode == TEMPORARY_REDIRECT || statusCode == PERMANENT_REDIRECT;
+    }
+
+    /**
+     * @return The Retry-After header, how long the server asks to wait before trying again
+     */
+    public Optional<String> getRetryAfterHeader() {
+
+        return getFirstHeader("Retry-After");
+    }
+
+    /**
+     * Whether a HEAD response has to be followed up with a GET to report on the url. Some servers reject HEAD
+     * requests outright and others leave out headers they would send with a GET. A not modified response to a
+     * conditional request is already the answer, with no headers to add.
+     *
+     * @return true if the server rejected the request method or the content length or date headers are missing
+     */
+    public boolean needsGetFallback() {
+
+        return statusCode == METHOD_NOT_ALLOWED || statusCode == NOT_IMPLEMENTED
+                || !isNotModified() && (!geContentLengthHeader().isPresent() || !getDateHeader().isPresent());
+    }
+
+    /**
+     * @return true if the server answered a conditional request saying the url hasn't changed
+     */
+    public boolean isNotModified() {
+
+        return statusCode == NOT_MODIFIED;
+    }
+
+    /**
+     * @return true if the server answered that it is too busy to handle the request
+     */
+    public boolean isOverloaded() {
+
+        return statusCode == TOO_MANY_REQUESTS || statusCode == SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * Servers differ in how they capitalise header names, such as ETag and Etag.
+     */
+    private Optional<String> getFirstHeader(String name) {
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return Optional.of(header.getValue().get(0));
+            }
         }
         return Optional.empty();
     }
@@ -0,0 +1,53 @@
+package org.neil.main.url;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Carries a request for GetRequest over some kind of connection and reads the head of the response. GetRequest
+ * looks up the host and takes a turn from the connection pool before handing the request over, the transport only
+ * has to send it and report what came back.
+ */
+interface HttpTransport {
+
+    // Bodies up to this size are read to the end so their connection can be reused, the connection of a larger body
+    // is closed rather than downloading the rest of a body that isn't used
+    int MAX_DRAIN_BYTES = 64 * 1024;
+
+    /**
+     * @param url            The url to request
+     * @param timeout        The read and connect timeout in milliseconds, the request being cut off after twice this
+     * @param method         The request method
+     * @param requestHeaders The headers to add to the request, keyed by name
+     * @param phaseTimer     Has the end of each phase of the request set on it as the request is made
+     * @return The response, or why there was none
+     */
+    RequestOutcome send(URL url, int timeout, String method, Map<String, String> requestHeaders,
+                        PhaseTimer phaseTimer);
+
+    /**
+     * Cuts off every request still in progress and closes any connections held open.
+     */
+    void close();
+
+    /**
+     * @param body The body of a response
+     * @return true if the whole body was read, false if it is larger than the most that will be read
+     * @throws IOException If the body could not be read
+     */
+    static boolean drain(InputStream body) throws IOException {
+
+        final byte[] buffer = new byte[4096];
+        int drained = 0;
+        while (drained <= MAX_DRAIN_BYTES) {
+            final int read = body.read(buffer);
+            if (read == -1) {
+                return true;
+            }
+            drained += read;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,141 @@
+package org.neil.main.url;
+
+import org.neil.main.url.nio.NioHttpEngine;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.neil.main.util.ErrorOutput.logError;
+
+/**
+ * Tester for urls that uses a non blocking HTTP engine, so the number of requests in flight is not limited by
+ * the number of threads that can be created.
+ */
+public class NioUrlTester extends AbstractUrlTester {
+
+    private final NioHttpEngine engine;
+    private final int maxInFlight;
+    private final boolean probe;
+
+    /**
+     * @throws IOException If the HTTP engine could not be started.
+     */
+    public NioUrlTester() throws IOException {
+
+        this(false);
+    }
+
+    /**
+     * @param probe Send a HEAD request first, falling back to a GET when the HEAD response isn't enough
+     * @throws IOException If the HTTP engine could not be started.
+     */
+    public NioUrlTester(boolean probe) throws IOException {
+
+        this(DEFAULT_MAX_IN_FLIGHT, probe);
+    }
+
+    /**
+     * @param maxInFlight The most requests that can be waiting on a response at once, each holding a socket open
+     * @param probe       Send a HEAD request first, falling back to a GET when the HEAD response isn't enough
+     * @throws IOException If the HTTP engine could not be started.
+     */
+    public NioUrlTester(int maxInFlight, boolean probe) throws IOException {
+
+        this(new NioHttpEngine(), maxInFlight, probe);
+    }
+
+    /**
+     * @param engine      The engine to perform the requests with, closed when this tester is closed.
+     * @param maxInFlight The most requests that can be waiting on a response at once
+     */
+    public NioUrlTester(NioHttpEngine engine, int maxInFlight) {
+
+        this(engine, maxInFlight, false);
+    }
+
+    /**
+     * @param engine      The engine to perform the requests with, closed when this tester is closed.
+     * @param maxInFlight The most requests that can be waiting on a response at once
+     * @param probe       Send a HEAD request first, falling back to a GET when the HEAD response isn't enough
+     */
+    public NioUrlTester(NioHttpEngine engine, int maxInFlight, boolean probe) {
+
+        this.engine = engine;
+        this.maxInFlight = maxInFlight;
+        this.probe = probe;
+    }
+
+    /**
+     * Converts each URL string into a URL object and starts its GET request without waiting for earlier requests
+     * to finish. Once the most requests allowed are in flight, waits for one to finish before starting the next.
+     *
+     * @param urls       The url strings to perform GET requests on.
+     * @param urlBuilder The UrlBuilder object instance to use for url string verification and conversion.
+     * @param timeout    The read and connect timeout values for the connection.
+     * @return List of reports for every url string provided in urls, in the same order
+     */
+    @Override
+    public List<UrlReport> test(Iterator<String> urls, UrlBuilder urlBuilder, int timeout) {
+
+        return dispatch(engine.prefetchHosts(urls), urlBuilder, maxInFlight,
+                urlString -> testUrl(urlString, urlBuilder, timeout));
+    }
+
+    @Override
+    public void test(Iterator<String> urls, UrlBuilder urlBuilder, int timeout, int runTimeout,
+                     ReportSink reportSink) {
+
+        dispatch(engine.prefetchHosts(urls), urlBuilder, maxInFlight, runTimeout,
+                urlString -> testUrl(urlString, urlBuilder, timeout), reportSink);
+    }
+
+    @Override
+    public void close() {
+
+        engine.close();
+    }
+
+    private CompletableFuture<UrlReport> testUrl(String urlString, UrlBuilder urlBuilder, int timeout) {
+
+        final Optional<URL> maybeUrl = buildUrl(urlString, urlBuilder);
+        if (!maybeUrl.isPresent()) {
+            return CompletableFuture.completedFuture(new UrlErrorReport(urlString, URL_MALFORMED));
+        }
+        return request(maybeUrl.get(), timeout)
+                .handle((httpResponse, failure) -> {
+                    if (failure != null) {
+                        final Throwable cause = unwrap(failure);
+                        logError(cause.getMessage());
+                        return new UrlErrorReport(urlString, errorMessage(cause instanceof IOException
+                                ? Failure.of((IOException) cause)
+                                : Failure.OTHER));
+                    }
+                    return buildUrlTestReport(urlString, httpResponse);
+                });
+    }
+
+    /**
+     * In probe mode the GET is only sent if the HEAD response isn't enough to report on. The engine only ever
+     * reads the head of a GET response, so no body is downloaded either way.
+     */
+    private CompletableFuture<HttpResponse> request(URL url, int timeout) {
+
+        if (!probe) {
+            return engine.get(url, timeout);
+        }
+        return engine.head(url, timeout).thenCompose(headResponse -> headResponse.needsGetFallback()
+                ? engine.get(url, timeout)
+                : CompletableFuture.completedFuture(headResponse));
+    }
+
+    private Throwable unwrap(Throwable failure) {
+
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+}
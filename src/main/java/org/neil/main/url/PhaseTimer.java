@@ -0,0 +1,44 @@
+package org.neil.main.url;
+
+import org.neil.main.report.RequestTimings;
+
+/**
+ * When each phase of a request ended, as System.nanoTime values, set by the thread making the request.
+ */
+final class PhaseTimer {
+
+    // Left as this by a transport that can't see when its connection is made
+    static final long NOT_SEEN = 0;
+
+    private final long startNanos;
+    private final long requestNanos = System.nanoTime();
+    long resolvedNanos;
+    long acquiredNanos;
+    long connectedNanos = NOT_SEEN;
+    long respondedNanos;
+
+    /**
+     * @param startNanos When the first request for the url started, so the total includes any earlier requests
+     */
+    PhaseTimer(long startNanos) {
+
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * The first byte of the response is only seen once the head of the response has been read, which for a
+     * response head that fits in a packet is as good as the same time. Without a connect time the wait for the
+     * response includes any connecting.
+     */
+    RequestTimings toTimings() {
+
+        final boolean connectSeen = connectedNanos != NOT_SEEN;
+        return new RequestTimings(
+                resolvedNanos - requestNanos,
+                acquiredNanos - resolvedNanos,
+                connectSeen ? connectedNanos - acquiredNanos : RequestTimings.NOT_MEASURED,
+                RequestTimings.NOT_MEASURED,
+                respondedNanos - (connectSeen ? connectedNanos : acquiredNanos),
+                respondedNanos - startNanos);
+    }
+}
@@ -0,0 +1,74 @@
+package org.neil.main.url;
+
+import org.neil.main.report.JsonWritable;
+import org.neil.main.report.JsonWriter;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A single hop of a redirect chain, the redirect status a url was answered with and the url it pointed to.
+ */
+public final class Redirect implements JsonWritable {
+
+    private final int statusCode;
+    private final String location;
+
+    /**
+     * @param statusCode The redirect status, such as 301 or 302
+     * @param location   The url redirected to, resolved against the url that was redirected
+     */
+    public Redirect(int statusCode, String location) {
+
+        this.statusCode = statusCode;
+        this.location = location;
+    }
+
+    public int getStatusCode() {
+
+        return statusCode;
+    }
+
+    public String getLocation() {
+
+        return location;
+    }
+
+    @Override
+    public void writeJson(JsonWriter jsonWriter) throws IOException {
+
+        jsonWriter.beginObject()
+                .name("Status_code").value(statusCode)
+                .name("Location").value(location)
+                .endObject();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Redirect that = (Redirect) o;
+        return statusCode == that.statusCode &&
+                Objects.equals(location, that.location);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(statusCode, location);
+    }
+
+    @Override
+    public String toString() {
+
+        return "Redirect{" +
+                "statusCode=" + statusCode +
+                ", location='" + location + '\'' +
+                '}';
+    }
+}
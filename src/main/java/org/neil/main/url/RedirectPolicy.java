@@ -0,0 +1,147 @@
+package org.neil.main.url;
+
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Decides how far redirects are followed, and shares the responses of the urls redirected to across the run.
+ *
+ * Lists of urls often redirect to the same few places, such as every old path of a site moving to its new home
+ * page. The first request for a url redirected to is made once and its response given to every other url
+ * redirected there, including those that arrive while it is still in progress, rather than each requesting it
+ * again. A response is only shared for a short time, so a monitor or server that keeps running sees it change.
+ * Requests that fail, and responses saying the server is struggling, aren't shared, so the next url redirected
+ * there tries for itself.
+ *
+ * Only a single hop is shared, each url follows the rest of its chain itself, so urls redirecting to each other
+ * can't end up waiting on each other.
+ */
+public class RedirectPolicy {
+
+    public static final int DEFAULT_MAX_REDIRECTS = 5;
+    public static final long DEFAULT_CACHE_SECONDS = 30;
+
+    // Past this many urls redirected to, the expired responses are cleared out as new ones are added
+    private static final int PRUNE_SIZE = 10000;
+    private static final int SERVER_ERROR = 500;
+
+    private final boolean enabled;
+    private final int maxRedirects;
+    private final long cacheNanos;
+    private final ConcurrentMap<String, Target> targets = new ConcurrentHashMap<>();
+
+    /**
+     * @return A policy that leaves redirects to the transport, reporting them however it handles them
+     */
+    public static RedirectPolicy none() {
+
+        return new RedirectPolicy(false, 0, DEFAULT_CACHE_SECONDS);
+    }
+
+    /**
+     * @param maxRedirects The most redirects followed from a single url, sharing responses for the default time
+     */
+    public RedirectPolicy(int maxRedirects) {
+
+        this(maxRedirects, DEFAULT_CACHE_SECONDS);
+    }
+
+    /**
+     * @param maxRedirects The most redirects followed from a single url, beyond which it is reported as failing, so
+     *                     with 0 every url that redirects is reported as failing
+     * @param cacheSeconds How long the response of a url redirected to is shared with other urls redirected there
+     * @throws IllegalArgumentException If the most redirects is negative
+     */
+    public RedirectPolicy(int maxRedirects, long cacheSeconds) {
+
+        this(true, maxRedirects, cacheSeconds);
+        if (maxRedirects < 0) {
+            throw new IllegalArgumentException("Redirects can't be negative: " + maxRedirects);
+        }
+    }
+
+    private RedirectPolicy(boolean enabled, int maxRedirects, long cacheSeconds) {
+
+        this.enabled = enabled;
+        this.maxRedirects = maxRedirects;
+        this.cacheNanos = TimeUnit.SECONDS.toNanos(cacheSeconds);
+    }
+
+    /**
+     * @return true if redirects are followed by the request rather than the transport, however few are allowed
+     */
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * @return The most redirects followed from a single url
+     */
+    int getMaxRedirects() {
+
+        return maxRedirects;
+    }
+
+    /**
+     * Gives the shared response of a url redirected to, requesting it if no other url has recently.
+     *
+     * @param location The url redirected to
+     * @param request  Requests the url, called at most once at a time for each url
+     * @return The response of the url, or why there was none
+     */
+    RequestOutcome requestTarget(URL location, Function<URL, RequestOutcome> request) {
+
+        final String key = location.toExternalForm();
+        final long nowNanos = System.nanoTime();
+        final Target fresh = new Target(nowNanos + cacheNanos);
+        final Target target = targets.merge(key, fresh,
+                (current, added) -> current.isExpired(nowNanos) ? added : current);
+        if (target != fresh) {
+            return target.outcome.join();
+        }
+        if (targets.size() > PRUNE_SIZE) {
+            targets.values().removeIf(cached -> cached.isExpired(nowNanos));
+        }
+        RequestOutcome outcome = RequestOutcome.failed(Failure.OTHER);
+        try {
+            outcome = request.apply(location);
+            return outcome;
+        } finally {
+            if (!isShareable(outcome)) {
+                targets.remove(key, target);
+            }
+            target.outcome.complete(outcome);
+        }
+    }
+
+    private boolean isShareable(RequestOutcome outcome) {
+
+        return outcome.getResponse().isPresent()
+                && outcome.getResponse().get().getStatusCode() < SERVER_ERROR
+                && !outcome.getResponse().get().isOverloaded();
+    }
+
+    /**
+     * The response of a url redirected to, completed once the first request for it has finished.
+     */
+    private static class Target {
+
+        private final CompletableFuture<RequestOutcome> outcome = new CompletableFuture<>();
+        private final long expiresNanos;
+
+        Target(long expiresNanos) {
+
+            this.expiresNanos = expiresNanos;
+        }
+
+        boolean isExpired(long nowNanos) {
+
+            return nowNanos - expiresNanos > 0;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.neil.main.url;
+
+import org.neil.main.report.RequestTimings;
+import org.neil.main.report.StatusReport;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes and reads reports in a compact binary form, for passing them between processes and keeping them in a
+ * journal. Each report is a frame starting with its kind, and a status report is a frame of its own, so a stream
+ * can carry reports followed by the tally of their statuses.
+ *
+ * Strings are the length of their UTF-8 bytes then the bytes, a length of -1 standing for null, so urls of any
+ * length pass through. Reports keep everything they have, timings included, so a report read back is output exactly
+ * as it would have been.
+ */
+public final class ReportCodec {
+
+    public static final int TEST_REPORT = 1;
+    public static final int ERROR_REPORT = 2;
+    public static final int STATUS_REPORT = 3;
+
+    private static final int NULL_LENGTH = -1;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ReportCodec() {
+
+    }
+
+    public static void writeString(DataOutputStream output, String string) throws IOException {
+
+        if (string == null) {
+            output.writeInt(NULL_LENGTH);
+            return;
+        }
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * @throws java.io.EOFException If the stream ends before the string, which is how the end of the urls is seen
+     */
+    public static String readString(DataInputStream input) throws IOException {
+
+        final int length = input.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the report is neither a test nor an error report
+     */
+    public static void writeReport(DataOutputStream output, UrlReport urlReport) throws IOException {
+
+        if (urlReport instanceof UrlTestReport) {
+            final UrlTestReport urlTestReport = (UrlTestReport) urlReport;
+            output.writeByte(TEST_REPORT);
+            writeString(output, urlTestReport.getUrl());
+            output.writeInt(urlTestReport.getStatusCode());
+            output.writeBoolean(urlTestReport.getContentLength() != null);
+            if (urlTestReport.getContentLength() != null) {
+                output.writeLong(urlTestReport.getContentLength());
+            }
+            writeString(output, urlTestReport.getDate());
+            output.writeInt(urlTestReport.getAttempts());
+            output.writeBoolean(urlTestReport.getTimings().isPresent());
+            if (urlTestReport.getTimings().isPresent()) {
+                writeTimings(output, urlTestReport.getTimings().get());
+            }
+            output.writeInt(urlTestReport.getRedirects().size());
+            for (Redirect redirect : urlTestReport.getRedirects()) {
+                output.writeInt(redirect.getStatusCode());
+                writeString(output, redirect.getLocation());
+            }
+        } else if (urlReport instanceof UrlErrorReport) {
+            final UrlErrorReport urlErrorReport = (UrlErrorReport) urlReport;
+            output.writeByte(ERROR_REPORT);
+            writeString(output, urlErrorReport.getUrl());
+            writeString(output, urlErrorReport.getError());
+            output.writeInt(urlErrorReport.getAttempts());
+        } else {
+            throw new IllegalArgumentException("Report can't be sent: " + urlReport.getClass().getName());
+        }
+    }
+
+    /**
+     * @param frame The kind of report, already read from the start of the frame
+     * @throws IOException If the frame is not a report, or the stream ends part way through it
+     */
+    public static UrlReport readReport(DataInputStream input, int frame) throws IOException {
+
+        if (frame == TEST_REPORT) {
+            final String url = readString(input);
+            final int statusCode = input.readInt();
+            final Long contentLength = input.readBoolean() ? input.readLong() : null;
+            final String date = readString(input);
+            final int attempts = input.readInt();
+            final RequestTimings timings = input.readBoolean() ? readTimings(input) : null;
+            final int redirectCount = input.readInt();
+            final List<Redirect> redirects = redirectCount == 0
+                    ? Collections.emptyList()
+                    : new ArrayList<>(redirectCount);
+            for (int redirect = 0; redirect < redirectCount; redirect++) {
+                redirects.add(new Redirect(input.readInt(), readString(input)));
+            }
+            return new UrlTestReport(url, statusCode, contentLength, date, timings, attempts, redirects);
+        }
+        if (frame == ERROR_REPORT) {
+            return new UrlErrorReport(readString(input), readString(input), input.readInt());
+        }
+        throw new IOException("Not a report frame: " + frame);
+    }
+
+    public static void writeStatusReport(DataOutputStream output, StatusReport statusReport) throws IOException {
+
+        final List<long[]> statuses = new ArrayList<>();
+        statusReport.forEachStatus((status, count) -> statuses.add(new long[]{status, count}));
+        output.writeByte(STATUS_REPORT);
+        output.writeInt(statuses.size());
+        for (long[] status : statuses) {
+            output.writeInt((int) status[0]);
+            output.writeLong(status[1]);
+        }
+    }
+
+    /**
+     * Reads the rest of a status report frame, the kind having been read already.
+     */
+    public static StatusReport readStatusReport(DataInputStream input) throws IOException {
+
+        final StatusReport statusReport = new StatusReport();
+        final int statuses = input.readInt();
+        for (int status = 0; status < statuses; status++) {
+            statusReport.addStatus(input.readInt(), input.readLong());
+        }
+        return statusReport;
+    }
+
+    private static void writeTimings(DataOutputStream output, RequestTimings timings) throws IOException {
+
+        output.writeLong(timings.getDnsNanos());
+        output.writeLong(timings.getWaitNanos());
+        output.writeLong(timings.getConnectNanos());
+        output.writeLong(timings.getTlsNanos());
+        output.writeLong(timings.getFirstByteNanos());
+        output.writeLong(timings.getTotalNanos());
+    }
+
+    private static RequestTimings readTimings(DataInputStream input) throws IOException {
+
+        return new RequestTimings(input.readLong(), input.readLong(), input.readLong(), input.readLong(),
+                input.readLong(), input.readLong());
+    }
+}
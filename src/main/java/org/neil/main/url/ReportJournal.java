@@ -0,0 +1,350 @@
+package org.neil.main.url;
+
+import org.neil.main.util.StableHash;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Records every finished report in a file as the run goes, so a run that dies part way can be resumed, testing only
+ * the urls that weren't recorded rather than starting again.
+ *
+ * The file is a header followed by a record for each report: the length of the report, a CRC-32 of it and the
+ * report in the binary form of the ReportCodec. Records are appended to a memory mapped region of the file, which
+ * grows a region at a time, so appending is a copy into memory with no system call. The region is forced to disk
+ * after every thousand records or a second, whichever comes first, so a crash loses at most the last batch, whose
+ * urls are tested again on resuming. The records end at the first length of zero, the file past them being left
+ * zeroed rather than cut back, as a file can't be cut while it is mapped on some systems and a mapped region stays
+ * mapped until it is collected. A journal is up to a region longer than its records.
+ *
+ * Only the reports of urls the run settled are recorded. A url that timed out, couldn't be tested or couldn't be
+ * connected to, which may only have been a blip in the network, is left out so a resumed run tests it again.
+ *
+ * A crash can leave the record being written, or a batch not yet forced, torn part way. Reading stops at the first
+ * record that is cut short or doesn't match its CRC, and a resumed journal zeroes the file from there before
+ * writing over it, so nothing left of the crash can be read as part of a new record.
+ *
+ * Resuming keeps a 64 bit hash of each recorded url rather than the url, so a journal of millions of urls takes a
+ * few tens of megabytes to skip. Two urls sharing a hash is unlikely enough to be ignored, the later url would be
+ * skipped as if it had been recorded.
+ */
+public class ReportJournal implements AutoCloseable {
+
+    // "UTJ1", the first version of the url tester journal
+    private static final int MAGIC = 0x55544a31;
+    private static final int HEADER_BYTES = Integer.BYTES;
+    // The length and CRC before each report
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES * 2;
+    // Longer than any report of a sensible url, anything longer is taken to be a torn record
+    private static final int MAX_REPORT_BYTES = 1 << 24;
+    private static final long REGION_BYTES = 16L << 20;
+    private static final int FORCE_RECORDS = 1000;
+    private static final long FORCE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // The errors of urls the run didn't settle, which are tested again rather than skipped on resuming
+    private static final Set<String> UNSETTLED_ERRORS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            AbstractUrlTester.URL_TIMED_OUT, AbstractUrlTester.URL_NOT_STARTED, AbstractUrlTester.URL_NOT_TESTED,
+            AbstractUrlTester.URL_NOT_CONNECTED)));
+
+    private final FileChannel channel;
+    private final ByteArrayOutputStream reportBytes = new ByteArrayOutputStream();
+    private final DataOutputStream reportOutput = new DataOutputStream(reportBytes);
+    private final CRC32 crc = new CRC32();
+    // The sorted hashes of the recorded urls, with how many times each is still to be skipped, empty unless resumed
+    private final long[] recordedHashes;
+    private final int[] recordedCounts;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private int unforcedRecords;
+    private long lastForceNanos = System.nanoTime();
+    // Why the journal stopped recording, thrown on closing it
+    private Exception failure;
+
+    private ReportJournal(FileChannel channel, long end, long[] recordedHashes, int[] recordedCounts)
+            throws IOException {
+
+        this.channel = channel;
+        this.recordedHashes = recordedHashes;
+        this.recordedCounts = recordedCounts;
+        map(end, REGION_BYTES);
+    }
+
+    /**
+     * Starts a new journal, replacing any journal already in the file.
+     *
+     * @param file The file to record the reports in
+     * @return A journal with nothing recorded
+     * @throws IOException If the file could not be created
+     */
+    public static ReportJournal create(Path file) throws IOException {
+
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        final ReportJournal reportJournal = new ReportJournal(channel, 0, new long[0], new int[0]);
+        reportJournal.region.putInt(MAGIC);
+        reportJournal.force();
+        return reportJournal;
+    }
+
+    /**
+     * Opens a journal to carry on from, passing each report recorded in it to the sink so the tallies of the run can
+     * be rebuilt. A file that doesn't exist yet, or is empty, is started as a new journal.
+     *
+     * @param file     The file the reports were recorded in
+     * @param recorded Receives each report recorded, in the order they were recorded
+     * @return A journal that skips the urls recorded and appends after them
+     * @throws IOException If the file could not be read or isn't a journal
+     */
+    public static ReportJournal resume(Path file, ReportSink recorded) throws IOException {
+
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return create(file);
+        }
+        final RecordedUrls recordedUrls = new RecordedUrls();
+        final long end;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a journal: " + file);
+            }
+            end = HEADER_BYTES + readRecords(input, report -> {
+                recordedUrls.add(StableHash.of(report.getUrl()));
+                recorded.accept(report);
+            });
+        } catch (EOFException e) {
+            throw new IOException("Not a journal: " + file);
+        }
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final ReportJournal reportJournal = recordedUrls.toJournal(channel, end);
+        // Anything after the last whole record is torn, or the zeroes after the last record of a closed journal
+        reportJournal.clear(channel.size() - end);
+        return reportJournal;
+    }
+
+    /**
+     * @param urls The urls of the run
+     * @return The urls, leaving out as many of each as were recorded in the journal being resumed
+     */
+    public Iterator<String> skipRecorded(Iterator<String> urls) {
+
+        if (recordedHashes.length == 0) {
+            return urls;
+        }
+        return new Iterator<String>() {
+
+            private String next;
+
+            @Override
+            public boolean hasNext() {
+
+                while (next == null && urls.hasNext()) {
+                    final String url = urls.next();
+                    if (!takeRecorded(url)) {
+                        next = url;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final String url = next;
+                next = null;
+                return url;
+            }
+        };
+    }
+
+    /**
+     * Appends a report to the journal, unless the run didn't settle the url. Safe to call from the threads reporting
+     * test results, which have no one to throw to, so once a report can't be written nothing more is recorded and
+     * the failure is thrown when the journal is closed.
+     *
+     * @param urlReport The report of a url that has just finished being tested
+     */
+    public synchronized void record(UrlReport urlReport) {
+
+        if (failure != null || !isSettled(urlReport)) {
+            return;
+        }
+        try {
+            reportBytes.reset();
+            ReportCodec.writeReport(reportOutput, urlReport);
+            reportOutput.flush();
+            final byte[] bytes = reportBytes.toByteArray();
+            if (region.remaining() < RECORD_HEADER_BYTES + bytes.length) {
+                region.force();
+                map(regionStart + region.position(), Math.max(REGION_BYTES, RECORD_HEADER_BYTES + bytes.length));
+            }
+            crc.reset();
+            crc.update(bytes, 0, bytes.length);
+            region.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes);
+            if (++unforcedRecords >= FORCE_RECORDS || System.nanoTime() - lastForceNanos >= FORCE_NANOS) {
+                force();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Forces the last records to disk and closes the file.
+     *
+     * @throws IOException If the file could not be closed, or a report could not be recorded
+     */
+    @Override
+    public synchronized void close() throws IOException {
+
+        try {
+            force();
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw new IOException("Reports stopped being recorded: " + failure.getMessage(), failure);
+        }
+    }
+
+    private void force() {
+
+        region.force();
+        unforcedRecords = 0;
+        lastForceNanos = System.nanoTime();
+    }
+
+    /**
+     * Maps the region the next records are written to, growing the file to cover it.
+     */
+    private void map(long start, long bytes) throws IOException {
+
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, bytes);
+        regionStart = start;
+    }
+
+    /**
+     * @return false if the url timed out, wasn't tested in time, couldn't be tested or couldn't be connected to
+     */
+    static boolean isSettled(UrlReport urlReport) {
+
+        return !(urlReport instanceof UrlErrorReport)
+                || !UNSETTLED_ERRORS.contains(((UrlErrorReport) urlReport).getError());
+    }
+
+    /**
+     * Zeroes the bytes of the file after the last record, mapping them all first if there are more than a region.
+     */
+    private void clear(long bytes) throws IOException {
+
+        if (bytes > region.capacity()) {
+            map(regionStart, bytes);
+        }
+        final byte[] zeroes = new byte[8192];
+        for (long cleared = 0; cleared < bytes; cleared += zeroes.length) {
+            region.put(zeroes, 0, (int) Math.min(zeroes.length, bytes - cleared));
+        }
+        region.position(0);
+        force();
+    }
+
+    private boolean takeRecorded(String url) {
+
+        final int index = Arrays.binarySearch(recordedHashes, StableHash.of(url));
+        if (index < 0 || recordedCounts[index] == 0) {
+            return false;
+        }
+        recordedCounts[index]--;
+        return true;
+    }
+
+    /**
+     * Reads records until the end of the file or the first torn record.
+     *
+     * @return How many bytes of whole records were read
+     */
+    private static long readRecords(DataInputStream input, ReportSink recorded) throws IOException {
+
+        final CRC32 crc = new CRC32();
+        long bytesRead = 0;
+        try {
+            while (true) {
+                final int length = input.readInt();
+                final int expectedCrc = input.readInt();
+                if (length <= 0 || length > MAX_REPORT_BYTES) {
+                    return bytesRead;
+                }
+                final byte[] bytes = new byte[length];
+                input.readFully(bytes);
+                crc.reset();
+                crc.update(bytes, 0, length);
+                if ((int) crc.getValue() != expectedCrc) {
+                    return bytesRead;
+                }
+                final DataInputStream report = new DataInputStream(new ByteArrayInputStream(bytes));
+                recorded.accept(ReportCodec.readReport(report, report.read()));
+                bytesRead += RECORD_HEADER_BYTES + length;
+            }
+        } catch (EOFException e) {
+            return bytesRead;
+        }
+    }
+
+    /**
+     * The hashes of the urls read from a journal, gathered in an array grown as they are read and then sorted with
+     * the repeats of a url counted, so every url takes 12 bytes however long it is.
+     */
+    private static class RecordedUrls {
+
+        private long[] hashes = new long[1024];
+        private int size;
+
+        private void add(long hash) {
+
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            hashes[size++] = hash;
+        }
+
+        private ReportJournal toJournal(FileChannel channel, long end) throws IOException {
+
+            Arrays.sort(hashes, 0, size);
+            int distinct = 0;
+            for (int index = 0; index < size; index++) {
+                if (index == 0 || hashes[index] != hashes[index - 1]) {
+                    distinct++;
+                }
+            }
+            final long[] distinctHashes = new long[distinct];
+            final int[] counts = new int[distinct];
+            int next = -1;
+            for (int index = 0; index < size; index++) {
+                if (index == 0 || hashes[index] != hashes[index - 1]) {
+                    distinctHashes[++next] = hashes[index];
+                }
+                counts[next]++;
+            }
+            return new ReportJournal(channel, end, distinctHashes, counts);
+        }
+    }
+}
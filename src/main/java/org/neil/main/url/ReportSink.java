@@ -0,0 +1,16 @@
+package org.neil.main.url;
+
+/**
+ * Receives each url report as soon as its test finishes.
+ *
+ * Called from the threads performing the tests, so implementations must be thread safe.
+ */
+@FunctionalInterface
+public interface ReportSink {
+
+    /**
+     * @param urlReport The report for a url that has just finished being tested
+     */
+    void accept(UrlReport urlReport);
+
+}
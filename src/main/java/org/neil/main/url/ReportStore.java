@@ -0,0 +1,232 @@
+package org.neil.main.url;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Holds a large number of reports in columns of primitives rather than as a report object each, so keeping millions
+ * of reports takes a fraction of the memory. A report is rebuilt from its columns each time it is read.
+ *
+ * Each report takes an int for its status code, an int for its attempts, a long for its content length, a long for
+ * its date in epoch seconds and the UTF-8 bytes of its url, packed end to end in one buffer with an int for where
+ * each url ends. An error report keeps the index of its message, the messages being few and kept once each, in place
+ * of its content length, and a marker in place of its date. A date that isn't in the usual HTTP date format is kept
+ * as it was given, to the side, as are the redirects followed by a report that has any.
+ *
+ * Timings are not kept, so the reports read back have none. Not thread safe, the owner of the store guards it.
+ */
+public class ReportStore {
+
+    private static final int INITIAL_REPORTS = 16;
+    private static final int INITIAL_URL_BYTES = INITIAL_REPORTS * 64;
+    // The largest array some JVMs can allocate, a few header words short of the largest int
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    // Stands for a content length or date the report didn't have
+    private static final long NONE = Long.MIN_VALUE;
+    // Stands for a date kept as it was given, in the map of unusual dates
+    private static final long UNUSUAL_DATE = Long.MIN_VALUE + 1;
+    // In place of the date of an error report, which has none
+    private static final long ERROR = Long.MIN_VALUE + 2;
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter
+            .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH)
+            .withZone(ZoneOffset.UTC);
+
+    private int size;
+    private int[] statusCodes = new int[INITIAL_REPORTS];
+    private int[] attempts = new int[INITIAL_REPORTS];
+    private long[] contentLengths = new long[INITIAL_REPORTS];
+    private long[] dates = new long[INITIAL_REPORTS];
+    private int[] urlEnds = new int[INITIAL_REPORTS];
+    private byte[] urlBytes = new byte[INITIAL_URL_BYTES];
+    private int urlLength;
+    private final List<String> errors = new ArrayList<>();
+    private final Map<String, Integer> errorIndexes = new HashMap<>();
+    private final Map<Integer, String> unusualDates = new HashMap<>();
+    private final Map<Integer, List<Redirect>> redirects = new HashMap<>();
+
+    /**
+     * @param urlReport A test or error report to keep, any timings it has are dropped
+     * @throws IllegalArgumentException If the report is neither a test nor an error report
+     */
+    public void add(UrlReport urlReport) {
+
+        if (size == statusCodes.length) {
+            grow();
+        }
+        if (urlReport instanceof UrlTestReport) {
+            final UrlTestReport urlTestReport = (UrlTestReport) urlReport;
+            addUrl(urlTestReport.getUrl());
+            statusCodes[size] = urlTestReport.getStatusCode();
+            attempts[size] = urlTestReport.getAttempts();
+            contentLengths[size] = urlTestReport.getContentLength() == null ? NONE : urlTestReport.getContentLength();
+            dates[size] = epochSeconds(urlTestReport.getDate());
+            if (!urlTestReport.getRedirects().isEmpty()) {
+                redirects.put(size, urlTestReport.getRedirects());
+            }
+        } else if (urlReport instanceof UrlErrorReport) {
+            final UrlErrorReport urlErrorReport = (UrlErrorReport) urlReport;
+            addUrl(urlErrorReport.getUrl());
+            statusCodes[size] = urlErrorReport.getStatusCode();
+            attempts[size] = urlErrorReport.getAttempts();
+            contentLengths[size] = errorIndex(urlErrorReport.getError());
+            dates[size] = ERROR;
+        } else {
+            throw new IllegalArgumentException("Report can't be stored: " + urlReport.getClass().getName());
+        }
+        size++;
+    }
+
+    /**
+     * @return The number of reports kept
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * @param index The position of the report, in the order it was added
+     * @return The status code of the report, without rebuilding it
+     */
+    public int getStatusCode(int index) {
+
+        checkIndex(index);
+        return statusCodes[index];
+    }
+
+    /**
+     * @param index The position of the report, in the order it was added
+     * @return The report, rebuilt from its columns
+     */
+    public UrlReport get(int index) {
+
+        checkIndex(index);
+        final int urlStart = index == 0 ? 0 : urlEnds[index - 1];
+        final String url = new String(urlBytes, urlStart, urlEnds[index] - urlStart, StandardCharsets.UTF_8);
+        if (dates[index] == ERROR) {
+            return new UrlErrorReport(url, errors.get((int) contentLengths[index]), attempts[index]);
+        }
+        return new UrlTestReport(url, statusCodes[index],
+                contentLengths[index] == NONE ? null : contentLengths[index], date(index), null, attempts[index],
+                redirects.getOrDefault(index, Collections.emptyList()));
+    }
+
+    /**
+     * @param from The position of the first report
+     * @param to   The position after the last report
+     * @return A list reading the reports in the range from the store, each rebuilt as it is read
+     */
+    public List<UrlReport> subList(int from, int to) {
+
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + to + " of " + size + " reports");
+        }
+        return new AbstractList<UrlReport>() {
+
+            @Override
+            public UrlReport get(int index) {
+
+                return ReportStore.this.get(from + index);
+            }
+
+            @Override
+            public int size() {
+
+                return to - from;
+            }
+        };
+    }
+
+    private void addUrl(String url) {
+
+        final byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        if ((long) urlLength + bytes.length > urlBytes.length) {
+            urlBytes = Arrays.copyOf(urlBytes, capacity(urlBytes.length, (long) urlLength + bytes.length));
+        }
+        System.arraycopy(bytes, 0, urlBytes, urlLength, bytes.length);
+        urlLength += bytes.length;
+        urlEnds[size] = urlLength;
+    }
+
+    private int errorIndex(String error) {
+
+        return errorIndexes.computeIfAbsent(error, key -> {
+            errors.add(key);
+            return errors.size() - 1;
+        });
+    }
+
+    /**
+     * Only a date that formats back to exactly the same text is kept as epoch seconds, so every date reads back
+     * as it was given.
+     */
+    private long epochSeconds(String date) {
+
+        if (date == null) {
+            return NONE;
+        }
+        try {
+            final Instant instant = HTTP_DATE.parse(date, Instant::from);
+            if (HTTP_DATE.format(instant).equals(date)) {
+                return instant.getEpochSecond();
+            }
+        } catch (DateTimeParseException e) {
+            // Kept as it was given below
+        }
+        unusualDates.put(size, date);
+        return UNUSUAL_DATE;
+    }
+
+    private String date(int index) {
+
+        final long date = dates[index];
+        if (date == NONE) {
+            return null;
+        }
+        if (date == UNUSUAL_DATE) {
+            return unusualDates.get(index);
+        }
+        return HTTP_DATE.format(Instant.ofEpochSecond(date));
+    }
+
+    private void grow() {
+
+        final int capacity = capacity(statusCodes.length, size + 1L);
+        statusCodes = Arrays.copyOf(statusCodes, capacity);
+        attempts = Arrays.copyOf(attempts, capacity);
+        contentLengths = Arrays.copyOf(contentLengths, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+        urlEnds = Arrays.copyOf(urlEnds, capacity);
+    }
+
+    /**
+     * Doubles the length of an array, or grows it to the length needed if that is more, without overflowing.
+     *
+     * @throws IllegalStateException If the length needed is more than an array can hold
+     */
+    private static int capacity(int length, long needed) {
+
+        if (needed > MAX_ARRAY_LENGTH) {
+            throw new IllegalStateException("Report store is full, needing " + needed + " places");
+        }
+        return (int) Math.min(MAX_ARRAY_LENGTH, Math.max(length * 2L, needed));
+    }
+
+    private void checkIndex(int index) {
+
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Report " + index + " of " + size);
+        }
+    }
+}
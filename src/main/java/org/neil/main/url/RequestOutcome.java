@@ -0,0 +1,76 @@
+package org.neil.main.url;
+
+import java.util.Optional;
+
+/**
+ * What came of requesting a url, either the response or why there wasn't one, along with how many attempts it
+ * took.
+ */
+final class RequestOutcome {
+
+    // Null if the request failed
+    private final HttpResponse httpResponse;
+    // Null if the request got a response
+    private final Failure failure;
+    // Only counted when requests are retried, will be 0 otherwise
+    private final int attempts;
+
+    private RequestOutcome(HttpResponse httpResponse, Failure failure, int attempts) {
+
+        this.httpResponse = httpResponse;
+        this.failure = failure;
+        this.attempts = attempts;
+    }
+
+    /**
+     * @param httpResponse The response the request got
+     * @return The outcome of a request that got a response
+     */
+    static RequestOutcome responded(HttpResponse httpResponse) {
+
+        return new RequestOutcome(httpResponse, null, 0);
+    }
+
+    /**
+     * @param failure Why the request got no response
+     * @return The outcome of a request that failed
+     */
+    static RequestOutcome failed(Failure failure) {
+
+        return new RequestOutcome(null, failure, 0);
+    }
+
+    /**
+     * @param attempts How many times the request was tried
+     * @return The same outcome, with its response carrying the number of attempts as well
+     */
+    RequestOutcome afterAttempts(int attempts) {
+
+        return new RequestOutcome(httpResponse == null ? null : httpResponse.withAttempts(attempts), failure,
+                attempts);
+    }
+
+    /**
+     * @return The response, or empty if the request failed
+     */
+    Optional<HttpResponse> getResponse() {
+
+        return Optional.ofNullable(httpResponse);
+    }
+
+    /**
+     * @return Why the request failed, or null if it got a response
+     */
+    Failure getFailure() {
+
+        return failure;
+    }
+
+    /**
+     * @return How many times the request was tried, or 0 if attempts weren't counted
+     */
+    int getAttempts() {
+
+        return attempts;
+    }
+}
@@ -0,0 +1,277 @@
+package org.neil.main.url;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Results of earlier tests, kept in a file between runs so a url that was tested recently isn't requested again.
+ *
+ * A cached result is reported as it is until it is older than the TTL. After that the url is requested again with
+ * the ETag and date of the cached result, so a server can answer 304 Not Modified rather than sending the response
+ * again. Server errors and rate limiting are not cached as they are usually temporary.
+ *
+ * An expired result is kept for revalidating until its url hasn't been tested for a week, or the TTL if that is
+ * longer, and is dropped when the cache is saved after that, so urls that have left the lists don't build up.
+ *
+ * The file holds a line of tab separated fields per url.
+ */
+public class ResultCache {
+
+    public static final int DEFAULT_TTL_SECONDS = 300;
+    static final long RETENTION_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private static final String HEADER = "# url-tester result cache v1";
+    private static final String SEPARATOR = "\t";
+    private static final Pattern SEPARATOR_REGEX = Pattern.compile(SEPARATOR);
+    private static final Pattern UNSAFE_CHARACTERS = Pattern.compile("[\t\r\n]");
+    private static final int FIELDS = 7;
+    private static final int SERVER_ERROR = 500;
+    private static final ResultCache NONE = new ResultCache(null, 0);
+
+    private final Path file;
+    private final long ttlMillis;
+    private final long retentionMillis;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private ResultCache(Path file, int ttlSeconds) {
+
+        this.file = file;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.retentionMillis = Math.max(ttlMillis, RETENTION_MILLIS);
+    }
+
+    /**
+     * @return A cache that holds nothing, so every url is requested
+     */
+    public static ResultCache none() {
+
+        return NONE;
+    }
+
+    /**
+     * Reads the results saved by an earlier run, if the file exists. Lines that can't be read are skipped.
+     *
+     * @param file       The file the results are kept in between runs
+     * @param ttlSeconds How long a result is reported without checking the url again
+     * @return The cache of the results in the file
+     * @throws IOException If the file exists but could not be read
+     */
+    public static ResultCache load(Path file, int ttlSeconds) throws IOException {
+
+        final ResultCache resultCache = new ResultCache(file, ttlSeconds);
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    resultCache.readLine(line);
+                }
+            }
+        }
+        return resultCache;
+    }
+
+    /**
+     * Writes the results to the file, replacing it once all of the results are written so a failed save leaves
+     * the previous results in place. Results kept past their retention are dropped rather than written. Does
+     * nothing for a cache without a file.
+     *
+     * @throws IOException If the results could not be written
+     */
+    public void save() throws IOException {
+
+        if (file == null) {
+            return;
+        }
+        final long nowMillis = System.currentTimeMillis();
+        entries.values().removeIf(entry -> nowMillis - entry.storedMillis >= retentionMillis);
+        final Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writer.write(entry.getKey() + SEPARATOR + entry.getValue().toLine());
+                writer.newLine();
+            }
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param url The url that is about to be tested
+     * @return The cached result of the url, which may have expired
+     */
+    Optional<Entry> get(URL url) {
+
+        if (file == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(entries.get(key(url)));
+    }
+
+    /**
+     * Caches the response to a url, unless it is a response that will likely be different next time.
+     *
+     * @param url          The url that was tested
+     * @param httpResponse The response to the url
+     */
+    void put(URL url, HttpResponse httpResponse) {
+
+        if (file == null || httpResponse.getStatusCode() >= SERVER_ERROR || httpResponse.isOverloaded()) {
+            return;
+        }
+        entries.put(key(url), new Entry(
+                httpResponse.getStatusCode(),
+                httpResponse.geContentLengthHeader().map(Long::valueOf).orElse(null),
+                httpResponse.getDateHeader().orElse(null),
+                httpResponse.getETagHeader().orElse(null),
+                httpResponse.getLastModifiedHeader().orElse(null),
+                System.currentTimeMillis()));
+    }
+
+    /**
+     * Renews a cached result that the server has said is unchanged, taking the date of the new response.
+     *
+     * @param url          The url that was tested
+     * @param entry        The cached result the url was tested against
+     * @param notModified  The not modified response to the url
+     * @return The renewed result
+     */
+    Entry revalidate(URL url, Entry entry, HttpResponse notModified) {
+
+        final Entry revalidated = new Entry(
+                entry.statusCode,
+                entry.contentLength,
+                notModified.getDateHeader().orElse(entry.date),
+                notModified.getETagHeader().orElse(entry.eTag),
+                entry.lastModified,
+                System.currentTimeMillis());
+        if (file != null) {
+            entries.put(key(url), revalidated);
+        }
+        return revalidated;
+    }
+
+    /**
+     * The same resource can be written in different ways, so the results are kept by the normalized url.
+     */
+    private String key(URL url) {
+
+        return UrlNormalizer.normalize(url);
+    }
+
+    private void readLine(String line) {
+
+        if (line.startsWith("#")) {
+            return;
+        }
+        final String[] fields = SEPARATOR_REGEX.split(line, -1);
+        if (fields.length != FIELDS) {
+            return;
+        }
+        try {
+            entries.put(fields[0], new Entry(
+                    Integer.parseInt(fields[1]),
+                    fields[2].isEmpty() ? null : Long.valueOf(fields[2]),
+                    emptyToNull(fields[3]),
+                    emptyToNull(fields[4]),
+                    emptyToNull(fields[5]),
+                    Long.parseLong(fields[6])));
+        } catch (NumberFormatException e) {
+            // A damaged line is a url that will be tested again
+        }
+    }
+
+    private static String emptyToNull(String field) {
+
+        return field.isEmpty() ? null : field;
+    }
+
+    /**
+     * The cached result of a single url.
+     */
+    class Entry {
+
+        private final int statusCode;
+        private final Long contentLength;
+        private final String date;
+        private final String eTag;
+        private final String lastModified;
+        private final long storedMillis;
+
+        private Entry(int statusCode, Long contentLength, String date, String eTag, String lastModified,
+                      long storedMillis) {
+
+            this.statusCode = statusCode;
+            this.contentLength = contentLength;
+            this.date = date;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.storedMillis = storedMillis;
+        }
+
+        /**
+         * @return true if the result is young enough to report without checking the url again
+         */
+        boolean isFresh() {
+
+            return System.currentTimeMillis() - storedMillis < ttlMillis;
+        }
+
+        /**
+         * The headers that ask the server to only send the response if it has changed since it was cached. The
+         * last modified time is preferred to the date of the response when the server gave one.
+         *
+         * @return The conditional request headers, keyed by name
+         */
+        Map<String, String> getValidators() {
+
+            final Map<String, String> validators = new HashMap<>();
+            if (eTag != null) {
+                validators.put("If-None-Match", eTag);
+            }
+            if (lastModified != null) {
+                validators.put("If-Modified-Since", lastModified);
+            } else if (date != null) {
+                validators.put("If-Modified-Since", date);
+            }
+            return validators;
+        }
+
+        /**
+         * @param url The url as it was given to the tester
+         * @return The report of this result for the url
+         */
+        UrlTestReport toReport(String url) {
+
+            return new UrlTestReport(url, statusCode, contentLength, date);
+        }
+
+        private String toLine() {
+
+            return statusCode + SEPARATOR +
+                    (contentLength == null ? "" : contentLength) + SEPARATOR +
+                    field(date) + SEPARATOR +
+                    field(eTag) + SEPARATOR +
+                    field(lastModified) + SEPARATOR +
+                    storedMillis;
+        }
+
+        private String field(String value) {
+
+            return value == null ? "" : UNSAFE_CHARACTERS.matcher(value).replaceAll(" ");
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.neil.main.url;
+
+import org.neil.main.metrics.TesterMetrics;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a failed request is tried again and how long to wait first. Only failures that could clear up
+ * are retried: refused and reset connections, timeouts, and the 429, 502, 503 and 504 statuses. Hosts that don't
+ * exist, failed TLS handshakes and other error statuses fail the same way however many times they are tried.
+ *
+ * The wait before each retry is a random time up to a limit that doubles with each attempt, so the retries of
+ * requests that failed together don't arrive together. A server that says when to come back with a Retry-After
+ * header is waited for instead, unless it asks for a longer wait than is worth making.
+ *
+ * Retries are limited across the whole run by a budget, so that during a real outage the retries only add a small
+ * share to the load rather than multiplying it. Each request adds a fraction of a retry to the budget and each
+ * retry takes a whole one, with a few retries allowed from the start so a short run can still retry. Credit saved
+ * while every request succeeds is capped, so a long quiet spell doesn't build up a flood of retries.
+ */
+public class RetryPolicy {
+
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 100;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 5000;
+    public static final long DEFAULT_MAX_RETRY_AFTER_MILLIS = 30000;
+    public static final double DEFAULT_BUDGET_RATIO = 0.1;
+    public static final int DEFAULT_MIN_BUDGET = 10;
+    // Given when the request is not to be retried
+    static final long NO_RETRY = -1;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int BAD_GATEWAY = 502;
+    private static final int SERVICE_UNAVAILABLE = 503;
+    private static final int GATEWAY_TIMEOUT = 504;
+    // The budget is kept in thousandths of a retry, so fractions of a retry can be added without a lock
+    private static final long RETRY_TOKENS = 1000;
+    // The budget saves up at most the retries this many requests add to it, on top of those allowed from the start
+    private static final int BUDGET_CAP_REQUESTS = 1000;
+    // Past this the doubled delay is well beyond any sensible maximum, and further doubling would overflow
+    private static final int MAX_DOUBLINGS = 30;
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long maxRetryAfterMillis;
+    private final long requestTokens;
+    private final long maxBudgetTokens;
+    private final AtomicLong budgetTokens;
+
+    /**
+     * @return A policy that never retries
+     */
+    public static RetryPolicy none() {
+
+        return new RetryPolicy(0);
+    }
+
+    /**
+     * @param maxRetries The most times a single request is retried, with the default delays and budget
+     */
+    public RetryPolicy(int maxRetries) {
+
+        this(maxRetries, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, DEFAULT_MAX_RETRY_AFTER_MILLIS,
+                DEFAULT_BUDGET_RATIO, DEFAULT_MIN_BUDGET);
+    }
+
+    /**
+     * @param maxRetries          The most times a single request is retried
+     * @param baseDelayMillis     The longest wait before the first retry, doubled for each retry after it
+     * @param maxDelayMillis      The longest wait before any retry, however many there have been
+     * @param maxRetryAfterMillis The longest Retry-After that is waited for, a server asking for longer isn't retried
+     * @param budgetRatio         The retries each request adds to the budget, 0.1 allowing one retry per ten requests
+     * @param minBudget           The retries allowed before any requests have added to the budget
+     */
+    public RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis, long maxRetryAfterMillis,
+                       double budgetRatio, int minBudget) {
+
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxRetryAfterMillis = maxRetryAfterMillis;
+        this.requestTokens = Math.round(budgetRatio * RETRY_TOKENS);
+        this.maxBudgetTokens = minBudget * RETRY_TOKENS + requestTokens * BUDGET_CAP_REQUESTS;
+        this.budgetTokens = new AtomicLong(minBudget * RETRY_TOKENS);
+    }
+
+    /**
+     * @return true if requests are retried at all
+     */
+    public boolean isEnabled() {
+
+        return maxRetries > 0;
+    }
+
+    /**
+     * Adds the share of a retry each request earns to the budget, called once for each request before its first
+     * attempt.
+     */
+    void recordRequest() {
+
+        if (isEnabled()) {
+            budgetTokens.accumulateAndGet(requestTokens, (tokens, added) -> Math.min(maxBudgetTokens, tokens + added));
+        }
+    }
+
+    /**
+     * @param attempts How many times the request has been tried so far
+     * @param failure  Why the last attempt got no response
+     * @return How many milliseconds to wait before trying again, or NO_RETRY
+     */
+    long retryDelayMillis(int attempts, Failure failure) {
+
+        if (!failure.isRetryable()) {
+            return NO_RETRY;
+        }
+        return retry(attempts, backoffMillis(attempts));
+    }
+
+    /**
+     * @param attempts     How many times the request has been tried so far
+     * @param httpResponse The response to the last attempt
+     * @return How many milliseconds to wait before trying again, or NO_RETRY
+     */
+    long retryDelayMillis(int attempts, HttpResponse httpResponse) {
+
+        if (!isRetryable(httpResponse.getStatusCode())) {
+            return NO_RETRY;
+        }
+        final Optional<Long> retryAfterMillis = httpResponse.getRetryAfterHeader().flatMap(this::retryAfterMillis);
+        if (retryAfterMillis.isPresent() && retryAfterMillis.get() > maxRetryAfterMillis) {
+            return NO_RETRY;
+        }
+        return retry(attempts, retryAfterMillis.orElseGet(() -> backoffMillis(attempts)));
+    }
+
+    private long retry(int attempts, long delayMillis) {
+
+        if (attempts > maxRetries) {
+            return NO_RETRY;
+        }
+        if (!withdraw()) {
+            TesterMetrics.RETRIES_DENIED.increment();
+            return NO_RETRY;
+        }
+        TesterMetrics.RETRIES.increment();
+        return delayMillis;
+    }
+
+    private boolean isRetryable(int statusCode) {
+
+        return statusCode == TOO_MANY_REQUESTS || statusCode == BAD_GATEWAY
+                || statusCode == SERVICE_UNAVAILABLE || statusCode == GATEWAY_TIMEOUT;
+    }
+
+    /**
+     * Full jitter, any wait from nothing up to the limit for the attempt is as likely as any other.
+     */
+    private long backoffMillis(int attempts) {
+
+        final long limitMillis = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempts - 1, MAX_DOUBLINGS));
+        return ThreadLocalRandom.current().nextLong(limitMillis + 1);
+    }
+
+    /**
+     * Retry-After is either a number of seconds or the HTTP date to try again after.
+     *
+     * @return The wait asked for, or empty if the header is neither
+     */
+    private Optional<Long> retryAfterMillis(String retryAfter) {
+
+        final String value = retryAfter.trim();
+        try {
+            if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+                return Optional.of(TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+            }
+            final Instant retryAt = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return Optional.of(Math.max(0, retryAt.toEpochMilli() - System.currentTimeMillis()));
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    private boolean withdraw() {
+
+        long tokens = budgetTokens.get();
+        while (tokens >= RETRY_TOKENS) {
+            if (budgetTokens.compareAndSet(tokens, tokens - RETRY_TOKENS)) {
+                return true;
+            }
+            tokens = budgetTokens.get();
+        }
+        return false;
+    }
+}
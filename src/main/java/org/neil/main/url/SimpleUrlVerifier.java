@@ -1,59 +1,246 @@
 package org.neil.main.url;
 
 import java.net.MalformedURLException;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Optional;
 
 /**
- * Simple verify that optimistically tries to place the string into a URL object
+ * Checks urls against the syntax of RFC 3986 in a single pass over the characters, without building anything or
+ * throwing along the way, so a url that is malformed costs no more to reject than a good one costs to accept.
+ *
+ * Only absolute http and https urls with a host are accepted. The path, query and fragment may hold characters
+ * outside ASCII, other than controls and spaces, as they are sent percent encoded, but the host must be ASCII, so
+ * an international domain name has to be given in its punycode form.
  */
 public class SimpleUrlVerifier implements UrlBuilder {
 
     public static final String HTTP = "http://";
     public static final String HTTPS = "https://";
 
+    private static final int MAX_PORT = 65535;
+    // The characters allowed in each part of a url, as bits of a flag for each ASCII character
+    private static final int REG_NAME = 1;
+    private static final int USER_INFO = 1 << 1;
+    private static final int PATH = 1 << 2;
+    private static final int QUERY = 1 << 3;
+    private static final int IP_LITERAL = 1 << 4;
+    private static final int HEX_DIGIT = 1 << 5;
+    private static final byte[] ALLOWED = new byte[128];
+
+    static {
+        final String unreserved = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-._~";
+        final String subDelimiters = "!$&'()*+,;=";
+        allow(unreserved + subDelimiters, REG_NAME | USER_INFO | PATH | QUERY);
+        allow(":", USER_INFO | PATH | QUERY | IP_LITERAL);
+        allow("@", PATH | QUERY);
+        allow("/", PATH | QUERY);
+        allow("?", QUERY);
+        allow("0123456789ABCDEFabcdef", IP_LITERAL | HEX_DIGIT);
+        allow(".", IP_LITERAL);
+    }
+
     @Override
     public URL build(String urlString) throws MalformedURLException {
 
-        if (!verifyProtocol(urlString)) {
+        final int invalidAt = invalidAt(urlString);
+        if (invalidAt == 0) {
             throw new MalformedURLException("Protocol must be either http or https");
         }
-        try {
-            return new URI(urlString).toURL();
-        } catch (URISyntaxException e) {
-            throw new MalformedURLException(e.getMessage());
+        if (invalidAt > 0) {
+            throw new MalformedURLException("Illegal character at index " + invalidAt + ": " + urlString);
         }
+        return new URL(urlString);
     }
 
-    // TODO Look into regex matching for URL pattern: (http[s]?:\/\/)([\w-]+)(\.[\w-]+)+(\/)?((([\/\w-])+)*(.\w+)?(\?(((\w*(%\d{2})*\w*)=(\w*(%\d{2})*\w*)){1}(&(\w*(%\d{2})*\w*)=(\w*(%\d{2})*\w*))*)?))?(#[\/\?(%\d{2})\w]+)?
     @Override
     public boolean verify(String urlString) {
 
-        if (!verifyProtocol(urlString)) {
-            return false;
+        return invalidAt(urlString) < 0;
+    }
+
+    /**
+     * Checks the url once and builds it only if it is valid, without throwing for a url that isn't.
+     */
+    @Override
+    public Optional<URL> parse(String urlString) {
+
+        if (invalidAt(urlString) >= 0) {
+            return Optional.empty();
         }
         try {
-            final URI uri = new URI(urlString);
-            if (!uri.isAbsolute()) {
-                return false;
+            return Optional.of(new URL(urlString));
+        } catch (MalformedURLException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Scans the url from left to right, through the scheme, authority, path, query and fragment in turn.
+     *
+     * @param urlString The url string to check
+     * @return -1 if the url is valid, otherwise the index of the first character that isn't allowed where it is,
+     * 0 if the scheme isn't http or https, or the length of the url if it ends before it is complete
+     */
+    static int invalidAt(String urlString) {
+
+        final int length = urlString.length();
+        int index;
+        if (urlString.regionMatches(true, 0, HTTP, 0, HTTP.length())) {
+            index = HTTP.length();
+        } else if (urlString.regionMatches(true, 0, HTTPS, 0, HTTPS.length())) {
+            index = HTTPS.length();
+        } else {
+            return 0;
+        }
+        // The authority runs to the start of the path, query or fragment
+        int authorityEnd = index;
+        while (authorityEnd < length && "/?#".indexOf(urlString.charAt(authorityEnd)) < 0) {
+            authorityEnd++;
+        }
+        final int at = urlString.lastIndexOf('@', authorityEnd - 1);
+        if (at >= index) {
+            final int invalid = invalidIn(urlString, index, at, USER_INFO);
+            if (invalid >= 0) {
+                return invalid;
             }
-            uri.toURL();
-        } catch (URISyntaxException | MalformedURLException e) {
-            return false;
+            index = at + 1;
         }
-        return true;
+        final int hostEnd;
+        if (index < authorityEnd && urlString.charAt(index) == '[') {
+            hostEnd = urlString.indexOf(']', index);
+            if (hostEnd < 0 || hostEnd >= authorityEnd) {
+                return authorityEnd;
+            }
+            final int invalid = invalidIpLiteral(urlString, index + 1, hostEnd);
+            if (invalid >= 0) {
+                return invalid;
+            }
+            index = hostEnd + 1;
+        } else {
+            hostEnd = indexOf(urlString, ':', index, authorityEnd);
+            if (hostEnd == index) {
+                return index;
+            }
+            final int invalid = invalidIn(urlString, index, hostEnd, REG_NAME);
+            if (invalid >= 0) {
+                return invalid;
+            }
+            index = hostEnd;
+        }
+        if (index < authorityEnd) {
+            if (urlString.charAt(index) != ':') {
+                return index;
+            }
+            final int invalid = invalidPort(urlString, index + 1, authorityEnd);
+            if (invalid >= 0) {
+                return invalid;
+            }
+        }
+        final int queryStart = indexOf(urlString, '?', authorityEnd, length);
+        final int fragmentStart = indexOf(urlString, '#', authorityEnd, length);
+        final int pathEnd = Math.min(queryStart, fragmentStart);
+        int invalid = invalidIn(urlString, authorityEnd, pathEnd, PATH);
+        if (invalid < 0 && queryStart < fragmentStart) {
+            invalid = invalidIn(urlString, queryStart + 1, fragmentStart, QUERY);
+        }
+        if (invalid < 0 && fragmentStart < length) {
+            invalid = invalidIn(urlString, fragmentStart + 1, length, QUERY);
+        }
+        return invalid;
     }
 
     /**
-     * Checks that the protocol is either http:// or https://
+     * Characters outside ASCII are allowed in the path, query and fragment, other than controls and spaces.
      *
-     * @param urlString The url string to verify
-     * @return true only if the string starts with either 'http://' or 'https://'
+     * @return -1 if every character from start to end is allowed in the part, or percent encoded, otherwise the
+     * index of the first that isn't
      */
-    private boolean verifyProtocol(String urlString) {
+    private static int invalidIn(String urlString, int start, int end, int part) {
 
-        return urlString.startsWith(HTTP) || urlString.startsWith(HTTPS);
+        for (int index = start; index < end; index++) {
+            final char c = urlString.charAt(index);
+            if (c < ALLOWED.length) {
+                if (c == '%') {
+                    if (index + 2 >= end || !isHexDigit(urlString.charAt(index + 1))
+                            || !isHexDigit(urlString.charAt(index + 2))) {
+                        return index;
+                    }
+                    index += 2;
+                } else if ((ALLOWED[c] & part) == 0) {
+                    return index;
+                }
+            } else if ((part & (PATH | QUERY)) == 0 || Character.isISOControl(c) || Character.isSpaceChar(c)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks the address between the brackets is made of groups of hex digits separated by colons, shortened with
+     * a double colon at most once, with an IPv4 address allowed at the end.
+     */
+    private static int invalidIpLiteral(String urlString, int start, int end) {
+
+        boolean hasColon = false;
+        boolean hasDoubleColon = false;
+        for (int index = start; index < end; index++) {
+            final char c = urlString.charAt(index);
+            if (c >= ALLOWED.length || (ALLOWED[c] & IP_LITERAL) == 0) {
+                return index;
+            }
+            if (c == ':') {
+                if (index > start && urlString.charAt(index - 1) == ':') {
+                    if (hasDoubleColon) {
+                        return index;
+                    }
+                    hasDoubleColon = true;
+                }
+                hasColon = true;
+            }
+        }
+        return hasColon ? -1 : start;
+    }
+
+    /**
+     * An empty port is allowed, and means the default port for the scheme.
+     */
+    private static int invalidPort(String urlString, int start, int end) {
+
+        int port = 0;
+        for (int index = start; index < end; index++) {
+            final char c = urlString.charAt(index);
+            if (c < '0' || c > '9') {
+                return index;
+            }
+            port = port * 10 + (c - '0');
+            if (port > MAX_PORT) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(String urlString, char c, int start, int end) {
+
+        for (int index = start; index < end; index++) {
+            if (urlString.charAt(index) == c) {
+                return index;
+            }
+        }
+        return end;
+    }
+
+    private static boolean isHexDigit(char c) {
+
+        return c < ALLOWED.length && (ALLOWED[c] & HEX_DIGIT) != 0;
+    }
+
+    private static void allow(String characters, int parts) {
+
+        for (int index = 0; index < characters.length(); index++) {
+            ALLOWED[characters.charAt(index)] |= parts;
+        }
     }
 
 }
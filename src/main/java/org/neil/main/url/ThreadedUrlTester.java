@@ -1,114 +1,187 @@
 package org.neil.main.url;
 
+import org.neil.main.url.dns.HostResolver;
+
+import java.io.IOException;
 import java.net.URL;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
 
 import static org.neil.main.util.ErrorOutput.logError;
 
 /**
  * MultiThreaded tester for urls
  */
-public class ThreadedUrlTester implements UrlTester {
+public class ThreadedUrlTester extends AbstractUrlTester {
 
     private static final int MAX_THREADS = 10000;
 
+    private final boolean virtualThreads;
+    private final GetRequest getRequest;
+    private final ResultCache resultCache;
+
+    /**
+     * Creates a tester that runs each url on a thread from a pool of platform threads.
+     */
+    public ThreadedUrlTester() {
+
+        this(false);
+    }
+
     /**
-     * Converts the URL string into a URL object and then performs the GET request.
+     * @param virtualThreads Run each url on its own virtual thread rather than a pooled platform thread. Virtual
+     *                       threads have no fixed stack, so the number of urls in flight isn't limited by memory.
+     *                       Falls back to the platform thread pool if the JDK doesn't support virtual threads.
+     */
+    public ThreadedUrlTester(boolean virtualThreads) {
+
+        this(virtualThreads, new GetRequest(new HostConnectionPool(), new HostResolver()));
+    }
+
+    /**
+     * @param virtualThreads Run each url on its own virtual thread rather than a pooled platform thread.
+     * @param getRequest     Performs the request for each url, over connections shared between urls to the same host,
+     *                       closed when this tester is closed.
+     */
+    public ThreadedUrlTester(boolean virtualThreads, GetRequest getRequest) {
+
+        this(virtualThreads, getRequest, ResultCache.none());
+    }
+
+    /**
+     * @param virtualThreads Run each url on its own virtual thread rather than a pooled platform thread.
+     * @param getRequest     Performs the request for each url, over connections shared between urls to the same host,
+     *                       closed when this tester is closed.
+     * @param resultCache    The results of earlier runs, reported instead of requesting urls tested recently and
+     *                       saved when this tester is closed.
+     */
+    public ThreadedUrlTester(boolean virtualThreads, GetRequest getRequest, ResultCache resultCache) {
+
+        this.getRequest = getRequest;
+        this.resultCache = resultCache;
+        this.virtualThreads = virtualThreads && VirtualThreads.isSupported();
+        if (virtualThreads && !this.virtualThreads) {
+            logError("Virtual threads need Java 21 or later, using a thread pool instead");
+        }
+    }
+
+    /**
+     * Converts each URL string into a URL object and then performs the GET request.
      * Will collect response information and collate into UrlReport objects.
-     * Uses the parallelStream method to multi thread the calls, minimising the effect a slow request or non
-     * respondent endpoint has.
+     * Each url is tested on its own thread, minimising the effect a slow request or non respondent endpoint has.
+     * Pooled threads are only created as they are needed, up to the maximum. The threads are stopped once every
+     * url has been tested. The hosts of upcoming urls are looked up while earlier urls are being tested. A request
+     * is cut off once it has taken twice the timeout, however slowly the server keeps sending.
      *
-     * @param urls       The list of url strings to perform GET requests on.
+     * @param urls       The url strings to perform GET requests on.
      * @param urlBuilder The UrlBuilder object instance to use for url string verification and conversion.
      * @param timeout    The read and connect timeout values for the connection.
      * @return List of reports for every url string provided in urls
      */
-    //TODO Make a CompletableFuture complete exceptionally after a set length of time
     @Override
-    public List<UrlReport> test(List<String> urls, UrlBuilder urlBuilder, int timeout) {
-
-        ExecutorService executor = Executors.newFixedThreadPool(threadCount(urls.size()));
-        List<CompletableFuture<UrlReport>> futures =
-                urls.stream()
-                        .map(urlString -> CompletableFuture.supplyAsync(() -> {
-                            final Optional<URL> maybeUrl = buildUrl(urlString, urlBuilder);
-                            if (!maybeUrl.isPresent()) {
-                                return new UrlErrorReport(urlString, "URL Malformed");
-                            }
-                            return maybeUrl.flatMap(url -> getHttpResponse(url, timeout))
-                                    .map(httpResponse -> buildUrlTestReport(urlString, httpResponse))
-                                    .orElse(new UrlErrorReport(urlString, "Url could not be connected to"));
-                        }, executor))
-                        .collect(Collectors.toList());
-
-        return futures.stream()
-                .map(CompletableFuture::join)
-                .collect(Collectors.toList());
+    public List<UrlReport> test(Iterator<String> urls, UrlBuilder urlBuilder, int timeout) {
+
+        final ExecutorService executor = createExecutor();
+        try {
+            return dispatch(getRequest.prefetchHosts(urls), urlBuilder, maxInFlight(),
+                    urlString -> testUrl(urlString, urlBuilder, timeout, executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
 
+    @Override
+    public void test(Iterator<String> urls, UrlBuilder urlBuilder, int timeout, int runTimeout,
+                     ReportSink reportSink) {
+
+        final ExecutorService executor = createExecutor();
+        try {
+            // Tests still running after the run timeout are stopped by their request deadlines
+            dispatch(getRequest.prefetchHosts(urls), urlBuilder, maxInFlight(), runTimeout,
+                    urlString -> testUrl(urlString, urlBuilder, timeout, executor), reportSink);
+        } finally {
+            executor.shutdown();
+        }
     }
 
-    /**
-     * Limits the maximum number of threads that can be created. Prevents crashes due to memory.
-     *
-     * @param urlListSize The size of the url list
-     * @return The url list size if it is below 10000 or 10000.
-     */
-    private int threadCount(int urlListSize) {
+    @Override
+    public void close() {
 
-        return urlListSize < MAX_THREADS ? urlListSize : MAX_THREADS;
+        getRequest.close();
+        try {
+            resultCache.save();
+        } catch (IOException e) {
+            logError("Result cache could not be saved: " + e.getMessage());
+        }
+    }
+
+    private ExecutorService createExecutor() {
+
+        return virtualThreads ? VirtualThreads.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(MAX_THREADS);
     }
 
     /**
-     * Convert a Http Response into a Url report
-     *
-     * @param urlString    The url that this report is about
-     * @param httpResponse The Http response collected for this url
-     * @return A UrlReport of the respsonse
+     * Limits the number of urls in flight. Pooled platform threads are limited to prevent crashes due to memory,
+     * virtual threads are only limited by the sockets that can be open at once.
      */
-    private UrlReport buildUrlTestReport(String urlString, HttpResponse httpResponse) {
-
-        final Long contentLength = httpResponse.geContentLengthHeader().map(Long::valueOf).orElse(null);
-        return new UrlTestReport(
-                urlString,
-                httpResponse.getStatusCode(),
-                contentLength,
-                httpResponse.getDateHeader().orElse(null));
+    private int maxInFlight() {
+
+        return virtualThreads ? DEFAULT_MAX_IN_FLIGHT : MAX_THREADS;
+    }
+
+    private CompletableFuture<UrlReport> testUrl(String urlString, UrlBuilder urlBuilder, int timeout,
+                                                 Executor executor) {
+
+        return CompletableFuture.supplyAsync(() -> {
+            final Optional<URL> maybeUrl = buildUrl(urlString, urlBuilder);
+            if (!maybeUrl.isPresent()) {
+                return new UrlErrorReport(urlString, URL_MALFORMED);
+            }
+            return testUrl(urlString, maybeUrl.get(), timeout);
+        }, executor);
     }
 
     /**
-     * Attempts to connect and retrieve response for the provided URL
-     *
-     * @param url     The url to connect to
-     * @param timeout The read and connect timeout values for the connection.
-     * @return An Optional of the Http responses if it could dbe connected ot or any empty optional if the connection failed.
+     * Reports the cached result of a url tested recently without requesting it. A url whose cached result has
+     * expired is requested with the validators of that result, so an unchanged url is answered with a short not
+     * modified response and the cached result is reported again.
      */
-    private Optional<HttpResponse> getHttpResponse(URL url, int timeout) {
+    private UrlReport testUrl(String urlString, URL url, int timeout) {
 
-        return new GetRequest().getUrl(url, timeout);
+        final Optional<ResultCache.Entry> cached = resultCache.get(url);
+        if (cached.isPresent() && cached.get().isFresh()) {
+            return cached.get().toReport(urlString);
+        }
+        final RequestOutcome outcome = cached
+                .map(entry -> getRequest.getUrl(url, timeout, entry.getValidators()))
+                .orElseGet(() -> getHttpResponse(url, timeout));
+        if (!outcome.getResponse().isPresent()) {
+            return new UrlErrorReport(urlString, errorMessage(outcome.getFailure()), outcome.getAttempts());
+        }
+        final HttpResponse httpResponse = outcome.getResponse().get();
+        if (cached.isPresent() && httpResponse.isNotModified()) {
+            return resultCache.revalidate(url, cached.get(), httpResponse).toReport(urlString);
+        }
+        resultCache.put(url, httpResponse);
+        return buildUrlTestReport(urlString, httpResponse);
     }
 
     /**
-     * Verifies and converts a string representation of a url to a URL object.
+     * Attempts to connect and retrieve response for the provided URL
      *
-     * @param url        The string representing a url to verify and build
-     * @param urlBuilder The object to use to build and verify the url.
-     * @return An optional of the URL object for the provided String if it is a valid url, otherwise returns an empty Optional
+     * @param url     The url to connect to
+     * @param timeout The read and connect timeout values for the connection.
+     * @return The Http response if it could be connected to, or why the connection failed, after any retries.
      */
-    private Optional<URL> buildUrl(String url, UrlBuilder urlBuilder) {
+    private RequestOutcome getHttpResponse(URL url, int timeout) {
 
-        if (urlBuilder.verify(url)) {
-            try {
-                return Optional.of(urlBuilder.build(url));
-            } catch (Exception e) {
-                logError(e.getMessage());
-            }
-        }
-        return Optional.empty();
+        return getRequest.getUrl(url, timeout);
     }
 
 }
@@ -2,6 +2,7 @@ package org.neil.main.url;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Optional;
 
 /**
  * Functionality to verify and build a URL from a String.
@@ -26,4 +27,23 @@ public interface UrlBuilder {
      */
     boolean verify(String urlString);
 
+    /**
+     * Verifies and builds a url in one step, for a url that may well be malformed. Implementations that can check
+     * and build a url in a single pass should override this, so the url is only parsed once and nothing is thrown.
+     *
+     * @param urlString The string representing a Url
+     * @return The string as a Java URL object, or an empty Optional if it isn't a syntactically correct URL
+     */
+    default Optional<URL> parse(String urlString) {
+
+        if (!verify(urlString)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(build(urlString));
+        } catch (MalformedURLException e) {
+            return Optional.empty();
+        }
+    }
+
 }
@@ -0,0 +1,170 @@
+package org.neil.main.url;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.neil.main.util.ErrorOutput.logError;
+
+/**
+ * Sends requests over HTTP/1.1 with HttpURLConnection, one request at a time on each connection. Connections are
+ * kept alive by the JVM's keep-alive cache and reused by later requests to the same host.
+ *
+ * The timeout only limits the wait to connect and the wait between reads, so a server trickling bytes could hold a
+ * request open indefinitely. Each request also has a deadline of the connect timeout plus the read timeout, after
+ * which its connection is closed from the deadline thread, failing the request wherever it is blocked.
+ *
+ * HttpURLConnection does the TLS handshake of a https url as part of connecting, so it is timed as part of the
+ * connect rather than on its own.
+ */
+final class UrlConnectionTransport implements HttpTransport {
+
+    // A request that connects within the timeout and starts its response within the timeout is done well inside
+    // the two timeouts together
+    private static final int DEADLINE_TIMEOUTS = 2;
+
+    private final boolean followRedirects;
+    private final ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, runnable -> {
+        final Thread thread = new Thread(runnable, "request-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param followRedirects Let HttpURLConnection follow redirects to the same protocol itself, reporting the
+     *                        response at the end of the redirects as the response
+     */
+    UrlConnectionTransport(boolean followRedirects) {
+
+        this.followRedirects = followRedirects;
+        deadlines.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public RequestOutcome send(URL url, int timeout, String method, Map<String, String> requestHeaders,
+                               PhaseTimer phaseTimer) {
+
+        try {
+            final URLConnection urlConnection = url.openConnection();
+            if (urlConnection instanceof HttpURLConnection) {
+                ((HttpURLConnection) urlConnection).setInstanceFollowRedirects(followRedirects);
+                return send(url, (HttpURLConnection) urlConnection, timeout, method, requestHeaders, phaseTimer);
+            }
+        } catch (IOException ioException) {
+            logError(ioException.getMessage());
+            return RequestOutcome.failed(Failure.of(ioException));
+        }
+        return RequestOutcome.failed(Failure.OTHER);
+    }
+
+    /**
+     * Cuts off every request still in progress, as if its deadline had passed.
+     */
+    @Override
+    public void close() {
+
+        deadlines.shutdownNow().forEach(Runnable::run);
+    }
+
+    /**
+     * The deadline covers reading the rest of the body after the response, as well as the response itself.
+     */
+    private RequestOutcome send(URL url, HttpURLConnection httpURLConnection, int timeout, String method,
+                                Map<String, String> requestHeaders, PhaseTimer phaseTimer) {
+
+        final long deadlineMillis = (long) timeout * DEADLINE_TIMEOUTS;
+        final AtomicBoolean expired = new AtomicBoolean();
+        // A timeout of zero waits forever, so there is no deadline either
+        final ScheduledFuture<?> deadline = timeout <= 0 ? null : deadlines.schedule(() -> {
+            expired.set(true);
+            httpURLConnection.disconnect();
+        }, deadlineMillis, TimeUnit.MILLISECONDS);
+        try (GetHttpConnection getHttpConnection = new GetHttpConnection(httpURLConnection)) {
+            return RequestOutcome.responded(getHttpConnection.getResponse(timeout, method, requestHeaders,
+                    phaseTimer));
+        } catch (IOException ioException) {
+            logError(expired.get()
+                    ? "Request deadline of " + deadlineMillis + "ms passed: " + url
+                    : ioException.getMessage());
+            return RequestOutcome.failed(expired.get() ? Failure.DEADLINE : Failure.of(ioException));
+        } finally {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Closable class to hand the connection back for reuse, or disconnect it if no response was received
+     */
+    private static class GetHttpConnection implements AutoCloseable {
+
+        private HttpURLConnection httpURLConnection;
+        private boolean responded;
+
+        GetHttpConnection(HttpURLConnection httpURLConnection) {
+
+            Objects.requireNonNull(httpURLConnection);
+            this.httpURLConnection = httpURLConnection;
+        }
+
+        HttpResponse getResponse(int timeout, String method, Map<String, String> requestHeaders,
+                                 PhaseTimer phaseTimer) throws IOException {
+
+            return getResponse(timeout, timeout, method, requestHeaders, phaseTimer);
+        }
+
+        HttpResponse getResponse(int connectTimeout, int readTimeout, String method,
+                                 Map<String, String> requestHeaders, PhaseTimer phaseTimer) throws IOException {
+
+            httpURLConnection.setConnectTimeout(connectTimeout);
+            httpURLConnection.setReadTimeout(readTimeout);
+            httpURLConnection.setRequestMethod(method);
+            requestHeaders.forEach(httpURLConnection::setRequestProperty);
+            httpURLConnection.connect();
+            phaseTimer.connectedNanos = System.nanoTime();
+            final HttpResponse httpResponse = new HttpResponse(
+                    httpURLConnection.getHeaderFields(), httpURLConnection.getResponseCode());
+            phaseTimer.respondedNanos = System.nanoTime();
+            responded = true;
+            return httpResponse.withTimings(phaseTimer.toTimings());
+        }
+
+        /**
+         * Reading the body of a response to the end returns its connection to the keep-alive cache for the next
+         * request to the host. Bodies too large to read cheaply are cut off by closing their connection.
+         */
+        @Override
+        public void close() {
+
+            if (!responded) {
+                httpURLConnection.disconnect();
+                return;
+            }
+            try (InputStream body = responseBody()) {
+                if (body != null && !HttpTransport.drain(body)) {
+                    httpURLConnection.disconnect();
+                }
+            } catch (IOException e) {
+                httpURLConnection.disconnect();
+            }
+        }
+
+        /**
+         * Error statuses only have their body available as the error stream.
+         */
+        private InputStream responseBody() throws IOException {
+
+            final InputStream errorBody = httpURLConnection.getErrorStream();
+            return errorBody != null ? errorBody : httpURLConnection.getInputStream();
+        }
+    }
+}
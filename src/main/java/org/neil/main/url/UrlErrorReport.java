@@ -1,17 +1,30 @@
 package org.neil.main.url;
 
+import org.neil.main.report.JsonWriter;
+
+import java.io.IOException;
 import java.util.Objects;
 
 public class UrlErrorReport implements UrlReport {
 
-    private static final String LINE_ENDING = "\n";
     private final String url;
     private final String error;
+    // Only counted when requests are retried, will be 0 otherwise and for urls that weren't requested
+    private final int attempts;
 
     public UrlErrorReport(String url, String error) {
 
+        this(url, error, 0);
+    }
+
+    /**
+     * @param attempts How many times the url was requested before giving up, or 0 if attempts weren't counted
+     */
+    public UrlErrorReport(String url, String error, int attempts) {
+
         this.url = url;
         this.error = error;
+        this.attempts = attempts;
     }
 
     @Override
@@ -20,19 +33,50 @@ public class UrlErrorReport implements UrlReport {
         return -1;
     }
 
-    //TODO Setup Jackson to convert Object to json
+    @Override
+    public String getUrl() {
+
+        return url;
+    }
+
+    public String getError() {
+
+        return error;
+    }
+
     /**
-     * Returns the url and error in a simple json object
+     * @return How many times the url was requested, or 0 if attempts weren't counted
+     */
+    public int getAttempts() {
+
+        return attempts;
+    }
+
+    /**
+     * Writes the url and error as a simple json object, with the number of attempts if they were counted
      *
-     * @return the url and error in a json object
+     * @param jsonWriter The writer to write the object with
+     * @throws IOException If the json could not be written out
+     */
+    @Override
+    public void writeJson(JsonWriter jsonWriter) throws IOException {
+
+        jsonWriter.beginObject()
+                .name("Url").value(url)
+                .name("Error").value(error);
+        if (attempts > 0) {
+            jsonWriter.name("Attempts").value(attempts);
+        }
+        jsonWriter.endObject();
+    }
+
+    /**
+     * The duplicate wasn't requested itself, so it has no attempts of its own.
      */
     @Override
-    public String toJson() {
+    public UrlReport forUrl(String url) {
 
-        return "{" + LINE_ENDING +
-                "  \"Url\": \"" + url + "\"," + LINE_ENDING +
-                "  \"Error\": \"" + error + "\"" + LINE_ENDING +
-                "}" + LINE_ENDING;
+        return new UrlErrorReport(url, error);
     }
 
     @Override
@@ -45,14 +89,15 @@ public class UrlErrorReport implements UrlReport {
             return false;
         }
         UrlErrorReport that = (UrlErrorReport) o;
-        return Objects.equals(url, that.url) &&
+        return attempts == that.attempts &&
+                Objects.equals(url, that.url) &&
                 Objects.equals(error, that.error);
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(url, error);
+        return Objects.hash(url, error, attempts);
     }
 
     @Override
@@ -61,6 +106,7 @@ public class UrlErrorReport implements UrlReport {
         return "UrlErrorReport{" +
                 "url='" + url + '\'' +
                 ", error='" + error + '\'' +
+                ", attempts=" + attempts +
                 '}';
     }
 }
@@ -0,0 +1,63 @@
+package org.neil.main.url;
+
+import java.net.URL;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Reduces the different ways of writing a url to a single form, so urls that request the same resource can be
+ * recognised as duplicates.
+ *
+ * The scheme and host are lower cased, a port that is the default for the scheme is dropped, an empty path
+ * becomes / and a trailing / is dropped from any other path. The fragment is dropped as it is never sent to the
+ * server. The query is kept as it is.
+ */
+final class UrlNormalizer {
+
+    private static final String ROOT_PATH = "/";
+
+    private UrlNormalizer() {
+
+    }
+
+    /**
+     * @param urlString  The url string as it was given to the tester
+     * @param urlBuilder The UrlBuilder object instance to use for url string verification and conversion.
+     * @return The normalized form of the url, or an empty optional if it isn't a valid url
+     */
+    static Optional<String> normalize(String urlString, UrlBuilder urlBuilder) {
+
+        try {
+            return urlBuilder.parse(urlString).map(UrlNormalizer::normalize);
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param url The url to normalize
+     * @return The normalized form of the url
+     */
+    static String normalize(URL url) {
+
+        final StringBuilder normalized = new StringBuilder()
+                .append(url.getProtocol().toLowerCase(Locale.ROOT))
+                .append("://")
+                .append(url.getHost().toLowerCase(Locale.ROOT));
+        if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+            normalized.append(':').append(url.getPort());
+        }
+        final String path = url.getPath();
+        if (path.isEmpty()) {
+            normalized.append(ROOT_PATH);
+        } else if (path.length() > 1 && path.endsWith(ROOT_PATH)) {
+            normalized.append(path, 0, path.length() - 1);
+        } else {
+            normalized.append(path);
+        }
+        if (url.getQuery() != null) {
+            normalized.append('?').append(url.getQuery());
+        }
+        return normalized.toString();
+    }
+}
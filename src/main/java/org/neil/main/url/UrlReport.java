@@ -1,17 +1,37 @@
 package org.neil.main.url;
 
+import org.neil.main.report.JsonWritable;
+import org.neil.main.report.JsonWriter;
+
 /**
  * Interfaces defining that an object can be printed as a json String
  */
-public interface UrlReport {
+public interface UrlReport extends JsonWritable {
+
+    /**
+     * @return The url as it was given to the tester
+     */
+    String getUrl();
 
     int getStatusCode();
 
     /**
-     * Converts this object into a json string as the implementing class sees fit.
+     * Converts this object into a pretty printed json string. Output should be streamed with a JsonWriter instead,
+     * which doesn't build a String for each report.
      *
      * @return The json string report contained within this object.
      */
-    String toJson();
+    default String toJson() {
+
+        return JsonWriter.toJson(this);
+    }
+
+    /**
+     * Used to report the same result for every url that is a duplicate of the url that was tested.
+     *
+     * @param url The url string to report on
+     * @return A report of the same result for the url
+     */
+    UrlReport forUrl(String url);
 
 }
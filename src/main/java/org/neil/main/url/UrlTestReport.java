@@ -1,23 +1,75 @@
 package org.neil.main.url;
 
+import org.neil.main.report.JsonWritable;
+import org.neil.main.report.JsonWriter;
+import org.neil.main.report.RequestTimings;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 public class UrlTestReport implements UrlReport {
 
-    private static final String LINE_ENDING = "\n";
     private final String url;
     private final int statusCode;
     // Might not be returned in the headers, will be null in this case
     private final Long contentLength;
     // Might not be returned in the headers, will be null in this case
     private final String date;
+    // Only known for urls that were requested, will be null for cached results and duplicates
+    private final RequestTimings timings;
+    // Only counted when requests are retried, will be 0 otherwise and for cached results and duplicates
+    private final int attempts;
+    // Only known when redirects are followed by the request, empty otherwise and for cached results and duplicates
+    private final List<Redirect> redirects;
 
     public UrlTestReport(String url, int statusCode, Long contentLength, String date) {
 
+        this(url, statusCode, contentLength, date, null);
+    }
+
+    /**
+     * @param timings How long each phase of the request for the url took, or null if it wasn't requested
+     */
+    public UrlTestReport(String url, int statusCode, Long contentLength, String date, RequestTimings timings) {
+
+        this(url, statusCode, contentLength, date, timings, 0);
+    }
+
+    /**
+     * @param timings  How long each phase of the request for the url took, or null if it wasn't requested
+     * @param attempts How many times the url was requested to get the response, or 0 if attempts weren't counted
+     */
+    public UrlTestReport(String url, int statusCode, Long contentLength, String date, RequestTimings timings,
+                         int attempts) {
+
+        this(url, statusCode, contentLength, date, timings, attempts, Collections.emptyList());
+    }
+
+    /**
+     * @param timings   How long each phase of the request for the url took, or null if it wasn't requested
+     * @param attempts  How many times the url was requested to get the response, or 0 if attempts weren't counted
+     * @param redirects The redirects followed from the url to the response, in order, the last being where the
+     *                  response came from
+     */
+    public UrlTestReport(String url, int statusCode, Long contentLength, String date, RequestTimings timings,
+                         int attempts, List<Redirect> redirects) {
+
         this.url = url;
         this.statusCode = statusCode;
         this.contentLength = contentLength;
         this.date = date;
+        this.timings = timings;
+        this.attempts = attempts;
+        this.redirects = redirects;
+    }
+
+    @Override
+    public String getUrl() {
+
+        return url;
     }
 
     @Override
@@ -26,17 +78,66 @@ public class UrlTestReport implements UrlReport {
         return statusCode;
     }
 
+    public Long getContentLength() {
+
+        return contentLength;
+    }
+
+    public String getDate() {
+
+        return date;
+    }
+
+    public Optional<RequestTimings> getTimings() {
+
+        return Optional.ofNullable(timings);
+    }
+
+    /**
+     * @return How many times the url was requested, or 0 if attempts weren't counted
+     */
+    public int getAttempts() {
+
+        return attempts;
+    }
+
+    /**
+     * @return The redirects followed from the url to the response, empty if there were none or they weren't followed
+     */
+    public List<Redirect> getRedirects() {
+
+        return redirects;
+    }
+
     @Override
-    public String toJson() {
+    public void writeJson(JsonWriter jsonWriter) throws IOException {
+
+        writeJson(jsonWriter, false);
+    }
+
+    /**
+     * The timings are left out of the report unless asked for, so the report stays the same from run to run.
+     *
+     * @return This report with the timings of its request added
+     */
+    public JsonWritable withTimings() {
 
-        return "{" + LINE_ENDING +
-                "  \"Url\": \"" + url + "\"," + LINE_ENDING +
-                "  \"Status_code\": " + statusCode + "," + LINE_ENDING +
-                "  \"Content_length\": " + contentLength + "," + LINE_ENDING +
-                "  \"Date\": \"" + date + "\"" + LINE_ENDING +
-                "}" + LINE_ENDING;
+        return jsonWriter -> writeJson(jsonWriter, true);
     }
 
+    /**
+     * The duplicate wasn't requested itself, so it has no timings or attempts of its own to report or count. It
+     * was redirected the same way.
+     */
+    @Override
+    public UrlReport forUrl(String url) {
+
+        return new UrlTestReport(url, statusCode, contentLength, date, null, 0, redirects);
+    }
+
+    /**
+     * Timings differ every time a url is tested, so are left out of the comparison.
+     */
     @Override
     public boolean equals(Object o) {
 
@@ -48,15 +149,17 @@ public class UrlTestReport implements UrlReport {
         }
         UrlTestReport that = (UrlTestReport) o;
         return statusCode == that.statusCode &&
+                attempts == that.attempts &&
                 Objects.equals(url, that.url) &&
                 Objects.equals(contentLength, that.contentLength) &&
-                Objects.equals(date, that.date);
+                Objects.equals(date, that.date) &&
+                Objects.equals(redirects, that.redirects);
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(url, statusCode, contentLength, date);
+        return Objects.hash(url, statusCode, contentLength, date, attempts, redirects);
     }
 
     @Override
@@ -67,6 +170,32 @@ public class UrlTestReport implements UrlReport {
                 ", statusCode=" + statusCode +
                 ", contentLength=" + contentLength +
                 ", date='" + date + '\'' +
+                ", timings=" + timings +
+                ", attempts=" + attempts +
+                ", redirects=" + redirects +
                 '}';
     }
+
+    private void writeJson(JsonWriter jsonWriter, boolean includeTimings) throws IOException {
+
+        jsonWriter.beginObject()
+                .name("Url").value(url)
+                .name("Status_code").value(statusCode)
+                .name("Content_length").value(contentLength)
+                .name("Date").value(date);
+        if (attempts > 0) {
+            jsonWriter.name("Attempts").value(attempts);
+        }
+        if (!redirects.isEmpty()) {
+            jsonWriter.name("Redirects").beginArray();
+            for (Redirect redirect : redirects) {
+                jsonWriter.value(redirect);
+            }
+            jsonWriter.endArray();
+        }
+        if (includeTimings) {
+            jsonWriter.name("Timings_us").value(timings);
+        }
+        jsonWriter.endObject();
+    }
 }
@@ -1,9 +1,61 @@
 package org.neil.main.url;
 
+import java.util.Iterator;
 import java.util.List;
 
-public interface UrlTester {
+public interface UrlTester extends AutoCloseable {
 
-    List<UrlReport> test(List<String> urls, UrlBuilder urlBuilder, int timeout);
+    default List<UrlReport> test(List<String> urls, UrlBuilder urlBuilder, int timeout) {
+
+        return test(urls.iterator(), urlBuilder, timeout);
+    }
+
+    /**
+     * Tests each url as soon as it is taken from the iterator, so the urls don't all have to be held in memory
+     * before the first request starts. Stops taking urls while the tester is at its limit of requests in flight.
+     *
+     * @param urls       The url strings to perform GET requests on.
+     * @param urlBuilder The UrlBuilder object instance to use for url string verification and conversion.
+     * @param timeout    The read and connect timeout values for the connection.
+     * @return List of reports for every url string provided in urls, in the same order
+     */
+    List<UrlReport> test(Iterator<String> urls, UrlBuilder urlBuilder, int timeout);
+
+    /**
+     * Tests each url as soon as it is taken from the iterator and passes its report to the sink as soon as the test
+     * finishes, so a slow url doesn't hold back the reports of the urls after it. Reports are not held once they
+     * have been passed to the sink. Returns once every report has been passed to the sink.
+     *
+     * @param urls       The url strings to perform GET requests on.
+     * @param urlBuilder The UrlBuilder object instance to use for url string verification and conversion.
+     * @param timeout    The read and connect timeout values for the connection.
+     * @param reportSink Receives the report for every url, in the order the tests finish
+     */
+    default void test(Iterator<String> urls, UrlBuilder urlBuilder, int timeout, ReportSink reportSink) {
+
+        test(urls, urlBuilder, timeout, 0, reportSink);
+    }
+
+    /**
+     * Tests each url as it is taken from the iterator, passing its report to the sink as soon as the test finishes,
+     * until every url has been tested or the run timeout has passed. Once the run timeout has passed, every url still
+     * being tested is reported as timed out, no more urls are taken and the run returns without waiting for the
+     * tests in flight.
+     *
+     * @param urls       The url strings to perform GET requests on.
+     * @param urlBuilder The UrlBuilder object instance to use for url string verification and conversion.
+     * @param timeout    The read and connect timeout values for the connection.
+     * @param runTimeout The longest the whole run can take in milliseconds, or 0 for no limit
+     * @param reportSink Receives the report for every url, in the order the tests finish
+     */
+    void test(Iterator<String> urls, UrlBuilder urlBuilder, int timeout, int runTimeout, ReportSink reportSink);
+
+    /**
+     * Releases anything the tester holds on to between calls to test. Does nothing unless overridden.
+     */
+    @Override
+    default void close() {
+
+    }
 
 }
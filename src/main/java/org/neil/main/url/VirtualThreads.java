@@ -0,0 +1,36 @@
+package org.neil.main.url;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads, which need Java 21 or later.
+ *
+ * This is the Java 8 version, which reports virtual threads as unsupported. The multi-release jar holds a Java 21
+ * version of this class in src/main/java21 that takes its place on newer JDKs.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+
+    }
+
+    /**
+     * @return true if the running JDK can create virtual threads
+     */
+    static boolean isSupported() {
+
+        return false;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     *
+     * @return The executor
+     * @throws UnsupportedOperationException If the running JDK can't create virtual threads
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+
+        throw new UnsupportedOperationException("Virtual threads need Java 21 or later");
+    }
+
+}
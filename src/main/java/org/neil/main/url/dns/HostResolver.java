@@ -0,0 +1,167 @@
+package org.neil.main.url.dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up the addresses of hosts on a pool of threads, as the JVM resolver blocks, and caches the results.
+ *
+ * Successful lookups are cached for the TTL and failed lookups for the shorter negative TTL, so a host that
+ * doesn't exist is only looked up once however many urls it has. Lookups for a host already being looked up share
+ * the lookup in progress. The least recently used hosts are dropped once the cache is full.
+ *
+ * The JVM's own address cache is given the same TTLs, so connections made by HttpURLConnection to a host this
+ * resolver has looked up find the address already cached.
+ */
+public class HostResolver implements AutoCloseable {
+
+    public static final int DEFAULT_TTL_SECONDS = 30;
+    public static final int DEFAULT_NEGATIVE_TTL_SECONDS = 10;
+
+    private static final int DEFAULT_THREADS = 16;
+    private static final int MAX_CACHED_HOSTS = 10000;
+    // How many urls are read ahead of the urls being tested, so their hosts are resolved before they are needed
+    private static final int PREFETCH_LOOK_AHEAD = 1000;
+    private static final String TTL_PROPERTY = "networkaddress.cache.ttl";
+    private static final String NEGATIVE_TTL_PROPERTY = "networkaddress.cache.negative.ttl";
+
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final ExecutorService lookups;
+    private final Map<String, Resolution> cache = new LinkedHashMap<String, Resolution>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Resolution> eldest) {
+
+            return size() > MAX_CACHED_HOSTS;
+        }
+    };
+
+    /**
+     * Creates a resolver with the default TTLs and number of lookup threads.
+     */
+    public HostResolver() {
+
+        this(DEFAULT_TTL_SECONDS, DEFAULT_NEGATIVE_TTL_SECONDS, DEFAULT_THREADS);
+    }
+
+    /**
+     * The JVM address cache reads its TTLs on the first lookup, so the resolver must be created before any host
+     * is looked up. TTLs set in the java.security file or as security properties take precedence.
+     *
+     * @param ttlSeconds         How long the address of a host is cached for
+     * @param negativeTtlSeconds How long a host that could not be found is remembered as not existing
+     * @param threads            The most lookups that can be in progress at once
+     */
+    public HostResolver(int ttlSeconds, int negativeTtlSeconds, int threads) {
+
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        this.lookups = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "host-resolver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        setDefaultSecurityProperty(TTL_PROPERTY, ttlSeconds);
+        setDefaultSecurityProperty(NEGATIVE_TTL_PROPERTY, negativeTtlSeconds);
+    }
+
+    /**
+     * Finds the address of the host from the cache, looking it up if it isn't cached or has expired.
+     *
+     * @param host The name or literal address of the host
+     * @return A future of the address which completes exceptionally with an UnknownHostException if the host
+     * could not be found
+     */
+    public CompletableFuture<InetAddress> resolve(String host) {
+
+        final Resolution resolution;
+        synchronized (cache) {
+            final Resolution cached = cache.get(host);
+            if (cached != null && !cached.isExpired(System.nanoTime())) {
+                return cached.address;
+            }
+            resolution = new Resolution();
+            cache.put(host, resolution);
+        }
+        try {
+            lookups.execute(() -> lookup(host, resolution));
+        } catch (RejectedExecutionException e) {
+            resolution.expiresNanos = System.nanoTime();
+            resolution.address.completeExceptionally(new UnknownHostException("Resolver closed: " + host));
+        }
+        return resolution.address;
+    }
+
+    /**
+     * Reads ahead of the urls as they are taken, looking up the host of each url read so its address is cached
+     * by the time the url is tested. Urls are passed on in the same order, each as soon as it has been read.
+     *
+     * @param urls The url strings to look up the hosts of
+     * @return The same url strings
+     */
+    public Iterator<String> prefetch(Iterator<String> urls) {
+
+        return new PrefetchingIterator(urls, this, PREFETCH_LOOK_AHEAD);
+    }
+
+    /**
+     * Stops the lookup threads. Lookups that have not finished fail.
+     */
+    @Override
+    public void close() {
+
+        lookups.shutdownNow();
+        synchronized (cache) {
+            for (Map.Entry<String, Resolution> entry : cache.entrySet()) {
+                entry.getValue().address.completeExceptionally(
+                        new UnknownHostException("Resolver closed: " + entry.getKey()));
+            }
+        }
+    }
+
+    private void lookup(String host, Resolution resolution) {
+
+        try {
+            final InetAddress address = InetAddress.getByName(host);
+            resolution.expiresNanos = System.nanoTime() + ttlNanos;
+            resolution.address.complete(address);
+        } catch (UnknownHostException | RuntimeException e) {
+            resolution.expiresNanos = System.nanoTime() + negativeTtlNanos;
+            resolution.address.completeExceptionally(e);
+        }
+    }
+
+    private static void setDefaultSecurityProperty(String name, int value) {
+
+        if (Security.getProperty(name) == null) {
+            Security.setProperty(name, String.valueOf(value));
+        }
+    }
+
+    /**
+     * The address of a host, or the failure to find it, and when it stops being valid.
+     */
+    private static class Resolution {
+
+        private final CompletableFuture<InetAddress> address = new CompletableFuture<>();
+        private volatile long expiresNanos;
+
+        /**
+         * A lookup still in progress hasn't expired, so is shared by everything resolving the host meanwhile.
+         */
+        boolean isExpired(long now) {
+
+            return address.isDone() && now - expiresNanos >= 0;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.neil.main.url.dns;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads urls on its own thread, up to a set number ahead of the urls taken from it, starting the lookup of each
+ * url's host as it is read. While the tester is waiting for tests in flight to finish, the hosts of the urls it will
+ * test next are being looked up in parallel.
+ *
+ * Reading on a separate thread means a url is available as soon as it has been read, so urls streamed from
+ * standard input are not held back waiting for the look ahead to fill.
+ */
+class PrefetchingIterator implements Iterator<String> {
+
+    private final BlockingQueue<Next> readAhead;
+    private Next next;
+
+    /**
+     * @param urls      The url strings to read ahead of
+     * @param resolver  The resolver to look up the hosts with
+     * @param lookAhead The most urls that can be read but not yet taken
+     */
+    PrefetchingIterator(Iterator<String> urls, HostResolver resolver, int lookAhead) {
+
+        this.readAhead = new ArrayBlockingQueue<>(lookAhead);
+        final Thread reader = new Thread(() -> read(urls, resolver), "host-prefetch");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * @return true if there is another url, waiting for the next url to be read if needed
+     * @throws RuntimeException The exception thrown reading the urls, such as an UncheckedIOException
+     */
+    @Override
+    public boolean hasNext() {
+
+        if (next == null) {
+            try {
+                next = readAhead.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the next url", e);
+            }
+        }
+        if (next.failure != null) {
+            throw next.failure;
+        }
+        return next.url != null;
+    }
+
+    @Override
+    public String next() {
+
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final String url = next.url;
+        next = null;
+        return url;
+    }
+
+    private void read(Iterator<String> urls, HostResolver resolver) {
+
+        try {
+            while (urls.hasNext()) {
+                final String url = urls.next();
+                prefetch(url, resolver);
+                readAhead.put(new Next(url, null));
+            }
+            readAhead.put(new Next(null, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            try {
+                readAhead.put(new Next(null, e));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void prefetch(String url, HostResolver resolver) {
+
+        try {
+            final String host = new URL(url).getHost();
+            if (!host.isEmpty()) {
+                resolver.resolve(host);
+            }
+        } catch (MalformedURLException e) {
+            // Reported when the url is tested
+        }
+    }
+
+    /**
+     * The next url, the failure to read it, or neither once every url has been read.
+     */
+    private static class Next {
+
+        private final String url;
+        private final RuntimeException failure;
+
+        Next(String url, RuntimeException failure) {
+
+            this.url = url;
+            this.failure = failure;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.neil.main.url.nio;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single thread that drives many HTTP exchanges through one selector.
+ */
+class EventLoop implements Runnable {
+
+    // How often the loop wakes up to look for exchanges that have timed out
+    private static final long TICK_MILLIS = 50;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final Selector selector;
+    private final SSLContext sslContext;
+    private final Queue<HttpExchange> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupRequested = new AtomicBoolean();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    EventLoop(String name, SSLContext sslContext) throws IOException {
+
+        this.selector = Selector.open();
+        this.sslContext = sslContext;
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Hands an exchange over to this loop. May be called from any thread.
+     *
+     * @param exchange The exchange to start, its host must already be resolved
+     */
+    void submit(HttpExchange exchange) {
+
+        pending.add(exchange);
+        if (!running) {
+            failPending();
+        } else if (wakeupRequested.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+
+        long nextExpiry = System.nanoTime();
+        Throwable failure = new IOException("Event loop stopped");
+        try {
+            while (running) {
+                selector.select(TICK_MILLIS);
+                wakeupRequested.set(false);
+                startPending();
+                handleSelected();
+                final long now = System.nanoTime();
+                if (now - nextExpiry >= 0) {
+                    expire(now);
+                    nextExpiry = now + TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        } finally {
+            running = false;
+            failAll(failure);
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // The loop is finished with the selector either way
+            }
+        }
+    }
+
+    /**
+     * Stops the loop, failing any exchanges that have not yet finished.
+     */
+    void close() {
+
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void startPending() {
+
+        HttpExchange exchange;
+        while ((exchange = pending.poll()) != null) {
+            exchange.start(selector, sslContext, readBuffer);
+        }
+    }
+
+    private void handleSelected() {
+
+        final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            final SelectionKey key = keys.next();
+            keys.remove();
+            if (key.isValid()) {
+                ((HttpExchange) key.attachment()).handle(key, readBuffer);
+            }
+        }
+    }
+
+    private void expire(long now) {
+
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid()) {
+                ((HttpExchange) key.attachment()).expire(now);
+            }
+        }
+    }
+
+    private void failAll(Throwable failure) {
+
+        if (selector.isOpen()) {
+            for (SelectionKey key : selector.keys()) {
+                ((HttpExchange) key.attachment()).fail(failure);
+            }
+        }
+        failPending();
+    }
+
+    private void failPending() {
+
+        HttpExchange exchange;
+        while ((exchange = pending.poll()) != null) {
+            exchange.fail(new IOException("Event loop stopped"));
+        }
+    }
+}
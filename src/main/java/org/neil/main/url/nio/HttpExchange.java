@@ -0,0 +1,273 @@
+package org.neil.main.url.nio;
+
+import org.neil.main.report.RequestTimings;
+import org.neil.main.url.HttpResponse;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single HTTP request and the head of its response, sent over its own connection.
+ * All of the methods other than setAddress are called from the event loop thread that owns the exchange.
+ *
+ * The time each phase of the exchange ends is noted as it moves on, so the response carries how long the lookup,
+ * the wait for the event loop, the connect, the TLS handshake and the wait for the first byte each took.
+ */
+class HttpExchange {
+
+    private static final String HTTPS = "https";
+    private static final String USER_AGENT = "Java/" + System.getProperty("java.version");
+    // The whole exchange has the connect timeout plus the read timeout, however slowly the server keeps sending
+    private static final int DEADLINE_TIMEOUTS = 2;
+
+    private enum State {
+        CONNECTING, HANDSHAKING, WRITING, READING, DONE
+    }
+
+    private final String method;
+    private final URL url;
+    private final long timeoutNanos;
+    private final CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+    private final HttpResponseParser parser = new HttpResponseParser();
+    private final long createdNanos = System.nanoTime();
+    private InetAddress address;
+    private SocketChannel channel;
+    private Transport transport;
+    private ByteBuffer request;
+    private State state = State.CONNECTING;
+    private long deadline;
+    private long hardDeadline;
+    private long resolvedNanos;
+    private long startedNanos;
+    private long connectedNanos;
+    private long handshakenNanos;
+    private long firstByteNanos;
+
+    HttpExchange(String method, URL url, int timeout) {
+
+        this.method = method;
+        this.url = url;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    CompletableFuture<HttpResponse> getResult() {
+
+        return result;
+    }
+
+    /**
+     * Looking up the host blocks, so the address is found before the exchange is handed to an event loop.
+     *
+     * @param address The address of the url's host
+     */
+    void setAddress(InetAddress address) {
+
+        this.address = address;
+        resolvedNanos = System.nanoTime();
+    }
+
+    /**
+     * Opens the connection and registers the exchange with the selector.
+     *
+     * @param selector   The selector of the event loop that owns this exchange
+     * @param sslContext The context to create TLS sessions from for https urls
+     * @param readBuffer The event loop's buffer to read response bytes into
+     */
+    void start(Selector selector, SSLContext sslContext, ByteBuffer readBuffer) {
+
+        startedNanos = System.nanoTime();
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            transport = HTTPS.equals(url.getProtocol())
+                    ? new TlsTransport(channel, createSslEngine(sslContext))
+                    : new PlainTransport(channel);
+            request = buildRequest();
+            extendDeadline();
+            hardDeadline = System.nanoTime() + timeoutNanos * DEADLINE_TIMEOUTS;
+            final SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+            if (channel.connect(new InetSocketAddress(address, port()))) {
+                handle(key, readBuffer);
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Moves the exchange on as far as it can go without blocking.
+     *
+     * @param key        The selection key for this exchange's channel
+     * @param readBuffer The event loop's buffer to read response bytes into
+     */
+    void handle(SelectionKey key, ByteBuffer readBuffer) {
+
+        try {
+            switch (state) {
+                case CONNECTING:
+                    if (!channel.finishConnect()) {
+                        return;
+                    }
+                    connectedNanos = System.nanoTime();
+                    extendDeadline();
+                    state = State.HANDSHAKING;
+                    // fall through
+                case HANDSHAKING:
+                    final int interest = transport.handshake();
+                    extendDeadline();
+                    if (interest != 0) {
+                        key.interestOps(interest);
+                        return;
+                    }
+                    handshakenNanos = System.nanoTime();
+                    state = State.WRITING;
+                    // fall through
+                case WRITING:
+                    if (!transport.write(request)) {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    extendDeadline();
+                    state = State.READING;
+                    key.interestOps(SelectionKey.OP_READ);
+                    // fall through
+                case READING:
+                    read(readBuffer);
+                    break;
+                default:
+                    break;
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Fails the exchange if it has gone longer than the timeout without making progress, or has passed its
+     * deadline of twice the timeout since it started.
+     *
+     * @param now The current value of System.nanoTime
+     */
+    void expire(long now) {
+
+        if (state == State.DONE) {
+            return;
+        }
+        if (now - hardDeadline >= 0) {
+            fail(new SocketTimeoutException("Request deadline of "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos * DEADLINE_TIMEOUTS) + "ms passed: " + url));
+        } else if (now - deadline >= 0) {
+            fail(new SocketTimeoutException(state == State.CONNECTING ? "connect timed out" : "Read timed out"));
+        }
+    }
+
+    /**
+     * Ends the exchange with a failure and releases its connection.
+     *
+     * @param failure The cause of the failure
+     */
+    void fail(Throwable failure) {
+
+        if (state != State.DONE) {
+            state = State.DONE;
+            close();
+            result.completeExceptionally(failure);
+        }
+    }
+
+    private void read(ByteBuffer buffer) throws IOException {
+
+        buffer.clear();
+        while (true) {
+            final int read = transport.read(buffer);
+            if (read == 0) {
+                return;
+            }
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file from server");
+            }
+            extendDeadline();
+            if (firstByteNanos == 0) {
+                firstByteNanos = System.nanoTime();
+            }
+            buffer.flip();
+            if (parser.parse(buffer)) {
+                state = State.DONE;
+                close();
+                result.complete(parser.getResponse().withTimings(timings()));
+                return;
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * A plain http connection has no handshake, so its TLS phase is left unmeasured.
+     */
+    private RequestTimings timings() {
+
+        final long doneNanos = System.nanoTime();
+        return new RequestTimings(
+                resolvedNanos - createdNanos,
+                startedNanos - resolvedNanos,
+                connectedNanos - startedNanos,
+                HTTPS.equals(url.getProtocol()) ? handshakenNanos - connectedNanos : RequestTimings.NOT_MEASURED,
+                firstByteNanos - handshakenNanos,
+                doneNanos - createdNanos);
+    }
+
+    private void close() {
+
+        if (transport != null) {
+            transport.close();
+        }
+    }
+
+    private void extendDeadline() {
+
+        deadline = System.nanoTime() + timeoutNanos;
+    }
+
+    private int port() {
+
+        return url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+    }
+
+    private SSLEngine createSslEngine(SSLContext sslContext) {
+
+        final SSLEngine engine = sslContext.createSSLEngine(url.getHost(), port());
+        engine.setUseClientMode(true);
+        final SSLParameters parameters = engine.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        engine.setSSLParameters(parameters);
+        return engine;
+    }
+
+    private ByteBuffer buildRequest() {
+
+        final String path = url.getFile().isEmpty() ? "/" : url.getFile();
+        final String host = url.getPort() == -1 || url.getPort() == url.getDefaultPort()
+                ? url.getHost()
+                : url.getHost() + ":" + url.getPort();
+        return ByteBuffer.wrap((method + " " + path + " HTTP/1.1\r\n" +
+                "Host: " + host + "\r\n" +
+                "User-Agent: " + USER_AGENT + "\r\n" +
+                "Accept: */*\r\n" +
+                "Connection: close\r\n" +
+                "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,148 @@
+package org.neil.main.url.nio;
+
+import org.neil.main.url.HttpResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Incrementally parses the status line and headers of a HTTP/1.x response as the bytes arrive.
+ * Informational (1xx) responses are skipped over so only the final response is returned.
+ */
+class HttpResponseParser {
+
+    private static final int MAX_HEAD_BYTES = 64 * 1024;
+    private static final String HTTP_VERSION_PREFIX = "HTTP/";
+
+    private byte[] bytes = new byte[1024];
+    private int length;
+    private int scanned;
+    private HttpResponse response;
+
+    /**
+     * Adds the bytes in the buffer to the response being parsed.
+     *
+     * @param buffer The newly received bytes, ready to be read from
+     * @return true once the head of the final response has been parsed
+     * @throws IOException If the response is not valid HTTP or its head is too large
+     */
+    boolean parse(ByteBuffer buffer) throws IOException {
+
+        append(buffer);
+        while (response == null) {
+            final int headEnd = findHeadEnd();
+            if (headEnd < 0) {
+                if (length > MAX_HEAD_BYTES) {
+                    throw new IOException("Response headers too large");
+                }
+                return false;
+            }
+            final HttpResponse head = parseHead(new String(bytes, 0, headEnd, StandardCharsets.ISO_8859_1));
+            discard(headEnd);
+            if (head.getStatusCode() >= 200 || head.getStatusCode() == 101) {
+                response = head;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The parsed response, null until parse has returned true
+     */
+    HttpResponse getResponse() {
+
+        return response;
+    }
+
+    private void append(ByteBuffer buffer) {
+
+        final int count = buffer.remaining();
+        if (length + count > bytes.length) {
+            final byte[] larger = new byte[Math.max(bytes.length * 2, length + count)];
+            System.arraycopy(bytes, 0, larger, 0, length);
+            bytes = larger;
+        }
+        buffer.get(bytes, length, count);
+        length += count;
+    }
+
+    /**
+     * Finds the blank line ending the response head, tolerating bare line feeds.
+     *
+     * @return The index just past the blank line or -1 if it has not arrived yet
+     */
+    private int findHeadEnd() {
+
+        for (; scanned < length; scanned++) {
+            if (bytes[scanned] == '\n') {
+                if (scanned + 1 >= length) {
+                    return -1;
+                }
+                if (bytes[scanned + 1] == '\n') {
+                    return scanned + 2;
+                }
+                if (bytes[scanned + 1] == '\r') {
+                    if (scanned + 2 >= length) {
+                        return -1;
+                    }
+                    if (bytes[scanned + 2] == '\n') {
+                        return scanned + 3;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void discard(int count) {
+
+        System.arraycopy(bytes, count, bytes, 0, length - count);
+        length -= count;
+        scanned = 0;
+    }
+
+    private HttpResponse parseHead(String head) throws IOException {
+
+        final String[] lines = head.split("\r?\n");
+        final int statusCode = parseStatusCode(lines[0]);
+        final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        List<String> lastValues = null;
+        for (int i = 1; i < lines.length; i++) {
+            final String line = lines[i];
+            if (line.isEmpty()) {
+                continue;
+            }
+            if ((line.charAt(0) == ' ' || line.charAt(0) == '\t') && lastValues != null) {
+                // Obsolete line folding, the line continues the previous header value
+                final int last = lastValues.size() - 1;
+                lastValues.set(last, lastValues.get(last) + " " + line.trim());
+                continue;
+            }
+            final int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new IOException("Invalid HTTP response header: " + line);
+            }
+            lastValues = headers.computeIfAbsent(line.substring(0, colon).trim(), (x -> new ArrayList<>()));
+            lastValues.add(line.substring(colon + 1).trim());
+        }
+        return new HttpResponse(headers, statusCode);
+    }
+
+    private int parseStatusCode(String statusLine) throws IOException {
+
+        final int space = statusLine.indexOf(' ');
+        if (!statusLine.startsWith(HTTP_VERSION_PREFIX) || space < 0 || statusLine.length() < space + 4) {
+            throw new IOException("Invalid HTTP response status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(space + 1, space + 4));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid HTTP response status line: " + statusLine);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.neil.main.url.nio;
+
+import org.neil.main.url.HttpResponse;
+import org.neil.main.url.dns.HostResolver;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.URL;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non blocking HTTP client that drives every request from a small number of selector event loops, rather than
+ * a thread per request. Host names are looked up by a caching resolver with its own threads, as the JVM resolver
+ * blocks.
+ *
+ * Redirects are not followed, the response to the url itself is returned.
+ */
+public class NioHttpEngine implements AutoCloseable {
+
+    private static final String HTTP = "http";
+    private static final String HTTPS = "https";
+    private static final String GET = "GET";
+    private static final String HEAD = "HEAD";
+
+    private final EventLoop[] eventLoops;
+    private final HostResolver hostResolver;
+    private final AtomicInteger nextEventLoop = new AtomicInteger();
+
+    /**
+     * Creates an engine with an event loop per processor, trusting the JVM's default certificate authorities.
+     *
+     * @throws IOException If a selector could not be opened or TLS is unavailable.
+     */
+    public NioHttpEngine() throws IOException {
+
+        this(Runtime.getRuntime().availableProcessors(), defaultSslContext());
+    }
+
+    /**
+     * @param eventLoopCount The number of selector threads to spread requests over
+     * @param sslContext     The context to create TLS sessions from for https urls
+     * @throws IOException If a selector could not be opened.
+     */
+    public NioHttpEngine(int eventLoopCount, SSLContext sslContext) throws IOException {
+
+        this(eventLoopCount, sslContext, new HostResolver());
+    }
+
+    /**
+     * @param eventLoopCount The number of selector threads to spread requests over
+     * @param sslContext     The context to create TLS sessions from for https urls
+     * @param hostResolver   Looks up and caches the addresses of hosts, closed when the engine is closed
+     * @throws IOException If a selector could not be opened.
+     */
+    public NioHttpEngine(int eventLoopCount, SSLContext sslContext, HostResolver hostResolver) throws IOException {
+
+        this.hostResolver = hostResolver;
+        this.eventLoops = new EventLoop[eventLoopCount];
+        for (int i = 0; i < eventLoopCount; i++) {
+            eventLoops[i] = new EventLoop("nio-http-" + i, sslContext);
+        }
+    }
+
+    /**
+     * Performs a GET request on the url, completing once the status line and headers of the response have arrived.
+     *
+     * @param url     The url to request, must use either the http or https protocol
+     * @param timeout The connect timeout and the longest time to wait between reads, in milliseconds.
+     * @return A future of the response which completes exceptionally if the request fails or times out.
+     */
+    public CompletableFuture<HttpResponse> get(URL url, int timeout) {
+
+        return request(GET, url, timeout);
+    }
+
+    /**
+     * Performs a HEAD request on the url, completing once the status line and headers of the response have arrived.
+     *
+     * @param url     The url to request, must use either the http or https protocol
+     * @param timeout The connect timeout and the longest time to wait between reads, in milliseconds.
+     * @return A future of the response which completes exceptionally if the request fails or times out.
+     */
+    public CompletableFuture<HttpResponse> head(URL url, int timeout) {
+
+        return request(HEAD, url, timeout);
+    }
+
+    private CompletableFuture<HttpResponse> request(String method, URL url, int timeout) {
+
+        final HttpExchange exchange = new HttpExchange(method, url, timeout);
+        if (!url.getProtocol().equals(HTTP) && !url.getProtocol().equals(HTTPS)) {
+            exchange.fail(new IOException("Unsupported protocol: " + url.getProtocol()));
+            return exchange.getResult();
+        }
+        hostResolver.resolve(url.getHost()).whenComplete((address, failure) -> {
+            if (failure != null) {
+                exchange.fail(failure instanceof CompletionException ? failure.getCause() : failure);
+            } else {
+                exchange.setAddress(address);
+                nextEventLoop().submit(exchange);
+            }
+        });
+        return exchange.getResult();
+    }
+
+    /**
+     * Starts looking up the hosts of the urls as they are read, ahead of them being requested.
+     *
+     * @param urls The url strings that will be requested
+     * @return The same url strings
+     */
+    public Iterator<String> prefetchHosts(Iterator<String> urls) {
+
+        return hostResolver.prefetch(urls);
+    }
+
+    /**
+     * Stops the event loops, failing any requests still in progress.
+     */
+    @Override
+    public void close() {
+
+        hostResolver.close();
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.close();
+        }
+    }
+
+    private EventLoop nextEventLoop() {
+
+        return eventLoops[Math.floorMod(nextEventLoop.getAndIncrement(), eventLoops.length)];
+    }
+
+    private static SSLContext defaultSslContext() throws IOException {
+
+        try {
+            return SSLContext.getDefault();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("TLS is not available", e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.neil.main.url.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Transport for plain HTTP, bytes are passed straight through to the socket channel.
+ */
+class PlainTransport implements Transport {
+
+    private final SocketChannel channel;
+
+    PlainTransport(SocketChannel channel) {
+
+        this.channel = channel;
+    }
+
+    @Override
+    public int handshake() {
+
+        return 0;
+    }
+
+    @Override
+    public boolean write(ByteBuffer source) throws IOException {
+
+        channel.write(source);
+        return !source.hasRemaining();
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+
+        return channel.read(destination);
+    }
+
+    @Override
+    public void close() {
+
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing more can be done with a channel that fails to close
+        }
+    }
+}
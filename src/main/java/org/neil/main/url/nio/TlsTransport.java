@@ -0,0 +1,220 @@
+package org.neil.main.url.nio;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Transport for HTTPS, drives an SSLEngine over a non blocking socket channel.
+ */
+class TlsTransport implements Transport {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SocketChannel channel;
+    private final SSLEngine engine;
+    // Encrypted bytes waiting to be written to the socket, always left ready to be read from
+    private ByteBuffer outbound;
+    // Encrypted bytes read from the socket but not yet unwrapped, always left ready to be written to
+    private ByteBuffer inbound;
+    // Decrypted bytes not yet handed to the caller, always left ready to be written to
+    private ByteBuffer application;
+
+    TlsTransport(SocketChannel channel, SSLEngine engine) throws SSLException {
+
+        this.channel = channel;
+        this.engine = engine;
+        this.outbound = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+        this.outbound.flip();
+        this.inbound = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+        this.application = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+        engine.beginHandshake();
+    }
+
+    @Override
+    public int handshake() throws IOException {
+
+        while (true) {
+            if (!flush()) {
+                return SelectionKey.OP_WRITE;
+            }
+            switch (engine.getHandshakeStatus()) {
+                case NEED_WRAP:
+                    wrap(EMPTY);
+                    break;
+                case NEED_UNWRAP:
+                    final int unwrapped = unwrap();
+                    if (unwrapped < 0) {
+                        throw new EOFException("Connection closed during TLS handshake");
+                    }
+                    if (unwrapped == 0) {
+                        return SelectionKey.OP_READ;
+                    }
+                    break;
+                case NEED_TASK:
+                    runDelegatedTasks();
+                    break;
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    @Override
+    public boolean write(ByteBuffer source) throws IOException {
+
+        if (!flush()) {
+            return false;
+        }
+        while (source.hasRemaining()) {
+            wrap(source);
+            if (!flush()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+
+        while (application.position() == 0) {
+            final int unwrapped = unwrap();
+            if (unwrapped <= 0) {
+                return unwrapped;
+            }
+            // Session tickets and key updates can arrive after the handshake has finished
+            final HandshakeStatus status = engine.getHandshakeStatus();
+            if (status != HandshakeStatus.NOT_HANDSHAKING && status != HandshakeStatus.FINISHED) {
+                handshake();
+            }
+        }
+        application.flip();
+        final int count = Math.min(application.remaining(), destination.remaining());
+        final ByteBuffer slice = application.duplicate();
+        slice.limit(slice.position() + count);
+        destination.put(slice);
+        application.position(application.position() + count);
+        application.compact();
+        return count;
+    }
+
+    @Override
+    public void close() {
+
+        try {
+            engine.closeOutbound();
+            wrap(EMPTY);
+            flush();
+        } catch (IOException ignored) {
+            // The close notification is a courtesy, the connection is closed regardless
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing more can be done with a channel that fails to close
+        }
+    }
+
+    /**
+     * Writes out any encrypted bytes waiting to be sent.
+     *
+     * @return true if there are no encrypted bytes left to send.
+     */
+    private boolean flush() throws IOException {
+
+        if (outbound.hasRemaining()) {
+            channel.write(outbound);
+        }
+        return !outbound.hasRemaining();
+    }
+
+    private void wrap(ByteBuffer source) throws IOException {
+
+        outbound.compact();
+        try {
+            while (true) {
+                final SSLEngineResult result = engine.wrap(source, outbound);
+                switch (result.getStatus()) {
+                    case BUFFER_OVERFLOW:
+                        outbound = enlarge(outbound, engine.getSession().getPacketBufferSize());
+                        break;
+                    case CLOSED:
+                        if (!engine.isOutboundDone()) {
+                            throw new SSLException("TLS session closed by peer");
+                        }
+                        return;
+                    default:
+                        return;
+                }
+            }
+        } finally {
+            outbound.flip();
+        }
+    }
+
+    /**
+     * Unwraps the next TLS record, reading more bytes from the socket if a whole record has not arrived yet.
+     *
+     * @return 1 if a record was unwrapped, 0 if more bytes need to arrive first or -1 if the connection has closed.
+     */
+    private int unwrap() throws IOException {
+
+        while (true) {
+            inbound.flip();
+            final SSLEngineResult result;
+            try {
+                result = engine.unwrap(inbound, application);
+            } finally {
+                inbound.compact();
+            }
+            switch (result.getStatus()) {
+                case OK:
+                    return 1;
+                case BUFFER_OVERFLOW:
+                    application = enlarge(application, engine.getSession().getApplicationBufferSize());
+                    break;
+                case BUFFER_UNDERFLOW:
+                    if (!inbound.hasRemaining()) {
+                        inbound = enlarge(inbound, engine.getSession().getPacketBufferSize());
+                    }
+                    final int read = channel.read(inbound);
+                    if (read <= 0) {
+                        return read;
+                    }
+                    break;
+                default:
+                    return -1;
+            }
+        }
+    }
+
+    private void runDelegatedTasks() {
+
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Copies the buffer into a larger buffer.
+     *
+     * @param buffer          The buffer to copy, ready to be written to
+     * @param minimumCapacity The smallest capacity the new buffer may have
+     * @return A larger buffer holding the same bytes, ready to be written to
+     */
+    private static ByteBuffer enlarge(ByteBuffer buffer, int minimumCapacity) {
+
+        final ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, minimumCapacity));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+}
@@ -0,0 +1,44 @@
+package org.neil.main.url.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Non blocking byte transport layered over a socket channel. Hides whether the bytes are sent in the clear or
+ * through TLS from the HTTP exchange.
+ */
+interface Transport {
+
+    /**
+     * Progresses any handshake this transport needs before application data can be sent.
+     *
+     * @return 0 once the handshake is complete, otherwise the selection key interest op to wait on before calling
+     * this method again.
+     * @throws IOException If the handshake fails or the connection is closed part way through.
+     */
+    int handshake() throws IOException;
+
+    /**
+     * Writes as much of the buffer as the socket will currently accept.
+     *
+     * @param source The application bytes to write
+     * @return true only once all of the source bytes and any bytes buffered by the transport have been written.
+     * @throws IOException If the write fails.
+     */
+    boolean write(ByteBuffer source) throws IOException;
+
+    /**
+     * Reads as many application bytes as are currently available into the destination buffer.
+     *
+     * @param destination The buffer to read the bytes into
+     * @return The number of bytes read, 0 if none are available yet or -1 at the end of the stream.
+     * @throws IOException If the read fails.
+     */
+    int read(ByteBuffer destination) throws IOException;
+
+    /**
+     * Closes the transport and the underlying channel, ignoring any failure.
+     */
+    void close();
+
+}
@@ -0,0 +1,42 @@
+package org.neil.main.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A 64 bit hash of a string that is the same in every JVM and every run, unlike String.hashCode which is only 32
+ * bits, for hashes that are kept in files or compared between processes.
+ */
+public final class StableHash {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private StableHash() {
+
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes, with the bits then mixed by the MurmurHash3 finaliser, as FNV alone leaves
+     * similar strings with similar hashes.
+     *
+     * @param text The string to hash
+     * @return The hash of the string
+     */
+    public static long of(String text) {
+
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
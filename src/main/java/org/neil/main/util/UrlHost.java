@@ -0,0 +1,33 @@
+package org.neil.main.util;
+
+import java.util.Locale;
+
+/**
+ * Picks the host out of a url string as it was given, without parsing it, for urls that may not be valid but still
+ * have to be grouped by their host.
+ */
+public final class UrlHost {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private UrlHost() {
+
+    }
+
+    /**
+     * @param url The url as it was given, which need not be valid
+     * @return The text between the scheme and the first port, path, query or fragment, in lower case, the same text
+     * always giving the same host
+     */
+    public static String of(String url) {
+
+        final int schemeEnd = url.indexOf("://");
+        final int start = schemeEnd == -1 ? 0 : schemeEnd + 3;
+        int end = start;
+        while (end < url.length() && "/:?#".indexOf(url.charAt(end)) == -1) {
+            end++;
+        }
+        return url.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+}
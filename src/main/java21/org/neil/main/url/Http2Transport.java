@@ -0,0 +1,205 @@
+package org.neil.main.url;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.neil.main.util.ErrorOutput.logError;
+
+/**
+ * Access to the HTTP/2 transport, which needs Java 21 or later.
+ *
+ * This is the Java 21 version, packaged in the multi-release jar in place of the Java 8 version.
+ */
+final class Http2Transport {
+
+    private Http2Transport() {
+
+    }
+
+    /**
+     * @return true if the running JDK can make HTTP/2 requests
+     */
+    static boolean isSupported() {
+
+        return true;
+    }
+
+    /**
+     * Creates a transport that multiplexes the requests to each host over one HTTP/2 connection.
+     *
+     * @param followRedirects Let the transport follow redirects itself, reporting the response at the end of them
+     * @return The transport
+     */
+    static HttpTransport create(boolean followRedirects) {
+
+        return new ClientTransport(followRedirects);
+    }
+
+    /**
+     * Sends requests with the JDK's HTTP client, which keeps one connection to each host and runs every request to
+     * the host over it as a stream of its own. HTTP/2 is agreed with ALPN during the TLS handshake of a https url,
+     * and by an upgrade to h2c on the first request over a new connection for a http url. A host that doesn't agree
+     * to HTTP/2 is sent HTTP/1.1 over kept alive connections instead.
+     *
+     * The client connects as part of sending the request and doesn't say when it connected, or whether it needed to,
+     * so the connect is counted in the wait for the response. The connect timeout is set on the client, so there is
+     * a client for each timeout, of which a run only uses one. The deadline is the timeout of the request up to the
+     * head of the response, and after that the body is closed once the deadline passes, cutting off a body that is
+     * still being read.
+     */
+    private static final class ClientTransport implements HttpTransport {
+
+        // A request that connects within the timeout and starts its response within the timeout is done well
+        // inside the two timeouts together
+        private static final int DEADLINE_TIMEOUTS = 2;
+
+        private final boolean followRedirects;
+        private final Map<Integer, HttpClient> httpClients = new ConcurrentHashMap<>();
+        private final ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "request-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        /**
+         * @param followRedirects Let the clients follow redirects
+         */
+        ClientTransport(boolean followRedirects) {
+
+            this.followRedirects = followRedirects;
+            deadlines.setRemoveOnCancelPolicy(true);
+        }
+
+        @Override
+        public RequestOutcome send(URL url, int timeout, String method, Map<String, String> requestHeaders,
+                                   PhaseTimer phaseTimer) {
+
+            final long sentNanos = System.nanoTime();
+            final long deadlineMillis = (long) timeout * DEADLINE_TIMEOUTS;
+            try {
+                final HttpRequest.Builder request = HttpRequest.newBuilder(url.toURI())
+                        .method(method, HttpRequest.BodyPublishers.noBody());
+                // A timeout of zero waits forever, so there is no deadline either
+                if (timeout > 0) {
+                    request.timeout(Duration.ofMillis(deadlineMillis));
+                }
+                requestHeaders.forEach(request::header);
+                final java.net.http.HttpResponse<InputStream> response = httpClients
+                        .computeIfAbsent(timeout, this::createClient)
+                        .send(request.build(), java.net.http.HttpResponse.BodyHandlers.ofInputStream());
+                phaseTimer.respondedNanos = System.nanoTime();
+                discard(response.body(), timeout <= 0 ? null
+                        : TimeUnit.MILLISECONDS.toNanos(deadlineMillis) - (phaseTimer.respondedNanos - sentNanos));
+                return RequestOutcome.responded(new HttpResponse(headers(response), response.statusCode())
+                        .withTimings(phaseTimer.toTimings()));
+            } catch (HttpConnectTimeoutException e) {
+                logError(describe(e, url));
+                return RequestOutcome.failed(Failure.TIMEOUT);
+            } catch (HttpTimeoutException e) {
+                logError("Request deadline of " + deadlineMillis + "ms passed: " + url);
+                return RequestOutcome.failed(Failure.DEADLINE);
+            } catch (IOException e) {
+                logError(describe(e, url));
+                return RequestOutcome.failed(Failure.of(e));
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                logError(e.getMessage());
+                return RequestOutcome.failed(Failure.OTHER);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logError("Interrupted while waiting for a response from " + url.getHost());
+                return RequestOutcome.failed(Failure.OTHER);
+            }
+        }
+
+        /**
+         * Requests still in progress fail as the clients' connections close, and bodies still being read are closed.
+         */
+        @Override
+        public void close() {
+
+            deadlines.shutdownNow().forEach(Runnable::run);
+            httpClients.values().forEach(HttpClient::shutdownNow);
+        }
+
+        /**
+         * The client follows every redirect but https to http itself, a little further than HttpURLConnection, which
+         * stays on the same protocol. A timeout of zero waits forever to connect.
+         */
+        private HttpClient createClient(int timeout) {
+
+            final HttpClient.Builder httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .followRedirects(followRedirects ? HttpClient.Redirect.NORMAL : HttpClient.Redirect.NEVER);
+            if (timeout > 0) {
+                httpClient.connectTimeout(Duration.ofMillis(timeout));
+            }
+            return httpClient.build();
+        }
+
+        /**
+         * The client fails some requests, such as a refused connection, without a message.
+         */
+        private String describe(IOException ioException, URL url) {
+
+            return ioException.getMessage() != null
+                    ? ioException.getMessage()
+                    : ioException.getClass().getSimpleName() + ": " + url;
+        }
+
+        /**
+         * HTTP/2 header names are lower case, so the headers are looked up ignoring case as HttpURLConnection's
+         * would be.
+         */
+        private Map<String, List<String>> headers(java.net.http.HttpResponse<?> response) {
+
+            final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            headers.putAll(response.headers().map());
+            return headers;
+        }
+
+        /**
+         * A small body is read to the end, keeping a HTTP/1.1 connection for reuse. Closing a larger body early
+         * only resets its own stream on a HTTP/2 connection, leaving the other requests on the connection running.
+         * A body still being read when the deadline passes is closed, which ends the read.
+         *
+         * @param deadlineNanos How long is left until the deadline, or null for no deadline
+         */
+        private void discard(InputStream body, Long deadlineNanos) {
+
+            final ScheduledFuture<?> deadline = deadlineNanos == null ? null
+                    : deadlines.schedule(() -> closeBody(body), deadlineNanos, TimeUnit.NANOSECONDS);
+            try (InputStream closing = body) {
+                HttpTransport.drain(closing);
+            } catch (IOException e) {
+                // The response has been read, a body that fails part way doesn't change it
+            } finally {
+                if (deadline != null) {
+                    deadline.cancel(false);
+                }
+            }
+        }
+
+        private void closeBody(InputStream body) {
+
+            try {
+                body.close();
+            } catch (IOException e) {
+                // The body is only closed to stop it being read
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.neil.main.url;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads, which need Java 21 or later.
+ *
+ * This is the Java 21 version, packaged in the multi-release jar in place of the Java 8 version.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+
+    }
+
+    /**
+     * @return true if the running JDK can create virtual threads
+     */
+    static boolean isSupported() {
+
+        return true;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     *
+     * @return The executor
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+}
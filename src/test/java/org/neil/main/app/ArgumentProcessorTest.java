@@ -56,6 +56,70 @@ public class ArgumentProcessorTest {
 
     }
 
+    @Test
+    public void returnFileAndDefault_WhenFileShortFlag() {
+
+        final String fileFlag = "-f";
+        final String file = "urls.txt";
+        final Map<String, String> processArguments = argumentProcessor.process(fileFlag, file);
+        assertSoftly(softly -> softly.assertThat(processArguments)
+                .containsOnly(entry("file", file), entry("default", file)));
+
+    }
+
+    @Test
+    public void returnConnectionsAndDefault_WhenConnectionsShortFlag() {
+
+        final String connectionsFlag = "-c";
+        final String connections = "4";
+        final String argument = "Argument";
+        final Map<String, String> processArguments = argumentProcessor.process(connectionsFlag, connections, argument);
+        assertSoftly(softly -> softly.assertThat(processArguments)
+                .containsOnly(entry("connections", connections), entry("default", argument)));
+
+    }
+
+    @Test
+    public void returnInFlightAndDefault_WhenInFlightShortFlag() {
+
+        final String argument = "Argument";
+        final Map<String, String> processArguments = argumentProcessor.process("-i", "200000", argument);
+        assertSoftly(softly -> softly.assertThat(processArguments)
+                .containsOnly(entry("in-flight", "200000"), entry("default", argument)));
+
+    }
+
+    @Test
+    public void returnProbeAndDefault_WhenProbeFullFlag() {
+
+        final String argument = "Argument";
+        final Map<String, String> processArguments = argumentProcessor.process("--probe", argument);
+        assertSoftly(softly -> softly.assertThat(processArguments)
+                .containsOnly(entry("probe", null), entry("default", argument)));
+
+    }
+
+    @Test
+    public void returnCacheAndCacheTtlAndDefault_WhenCacheFlags() {
+
+        final String argument = "Argument";
+        final Map<String, String> processArguments = argumentProcessor.process("--cache", "results.tsv",
+                "-T", "60", argument);
+        assertSoftly(softly -> softly.assertThat(processArguments)
+                .containsOnly(entry("cache", "results.tsv"), entry("cache-ttl", "60"), entry("default", argument)));
+
+    }
+
+    @Test
+    public void returnAllFlags_WhenFlagsOutOfOrder() {
+
+        final Map<String, String> processArguments = argumentProcessor.process("--timeout", "123", "--engine", "nio",
+                "-");
+        assertSoftly(softly -> softly.assertThat(processArguments)
+                .containsOnly(entry("timeout", "123"), entry("engine", "nio"), entry("default", "-")));
+
+    }
+
     @Test
     public void returnHelpAndDefault_WhenHelpFullFlag() {
 
@@ -9,8 +9,10 @@ import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.net.ServerSocket;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Objects;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
@@ -112,9 +114,11 @@ public class MainTest {
                         expectedUrl4, expectedUrl5,
                         expectedUrl6, expectedUrl7)});
 
-        assertThat(extractStandardOutput())
-                .hasSize(5)
-                .containsExactly(
+        // Reports are output as each url finishes, so only the status report is guaranteed a position
+        final String[] standardOutput = extractStandardOutput();
+        assertThat(standardOutput).hasSize(5);
+        assertThat(Arrays.copyOfRange(standardOutput, 0, 4))
+                .containsExactlyInAnyOrder(
                         "{\n" +
                                 "  \"Url\": \"" + expectedUrl1 + "\",\n" +
                                 "  \"Status_code\": " + statusCode + ",\n" +
@@ -138,7 +142,9 @@ public class MainTest {
                                 "  \"Status_code\": " + statusCode + ",\n" +
                                 "  \"Content_length\": " + LENGTH + ",\n" +
                                 "  \"Date\": \"" + expectedDate + "\"\n" +
-                                "}\n",
+                                "}\n");
+        assertThat(standardOutput[4])
+                .isEqualTo(
                         "[\n" +
                                 "  {\n" +
                                 "    \"Status_code\": -1,\n" +
@@ -155,7 +161,7 @@ public class MainTest {
                 .contains(
                         "{\n" +
                                 "  \"Url\": \"" + expectedUrl2 + "\",\n" +
-                                "  \"Error\": \"Url could not be connected to\"\n" +
+                                "  \"Error\": \"Url test timed out\"\n" +
                                 "}\n",
                         "{\n" +
                                 "  \"Url\": \"" + expectedUrl4 + "\",\n" +
@@ -170,6 +176,35 @@ public class MainTest {
 
     }
 
+    @Test
+    public void timingsAndLatencyDocument_WhenLatencyFlag() {
+
+        final String expectedDate = getDate();
+        final String expectedUrl = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        final int statusCode = 200;
+        stubUrl(wireMockServer, TEST_PATH,
+                new HttpHeaders(buildContentLengthHeader(LENGTH), buildDateHeader(expectedDate)), statusCode);
+
+        Main.executeUrlTester(new String[] {TIMEOUT_FLAG, TIMEOUT, "--latency", expectedUrl});
+
+        final String[] standardOutput = extractStandardOutput();
+        assertThat(standardOutput).hasSize(3);
+        assertThat(standardOutput[0])
+                .startsWith("{\n" +
+                        "  \"Url\": \"" + expectedUrl + "\",\n" +
+                        "  \"Status_code\": " + statusCode + ",\n" +
+                        "  \"Content_length\": " + LENGTH + ",\n" +
+                        "  \"Date\": \"" + expectedDate + "\",\n" +
+                        "  \"Timings_us\": {\n" +
+                        "    \"Dns\": ")
+                .containsPattern("\"Connect\": \\d+")
+                .contains("\"Tls\": null")
+                .containsPattern("\"Total\": \\d+");
+        assertThat(standardOutput[2])
+                .contains("\"Status_code\": " + statusCode + ",\n      \"Count\": 1")
+                .contains("\"Host\": \"" + MOCK_SERVER + "\",\n      \"Count\": 1");
+    }
+
     @Test
     public void statusDocument_WhenUrlRedirects() {
 
@@ -295,7 +330,7 @@ public class MainTest {
     public void errorDocument_WhenRequestTimesOut() {
 
         final String expectedUrl = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
-        final String expectedError = "Url could not be connected to";
+        final String expectedError = "Url test timed out";
 
         wireMockServer.stubFor(get(urlEqualTo(TEST_PATH))
                 .willReturn(aResponse()
@@ -336,6 +371,164 @@ public class MainTest {
         assertErrorDocument(expectedUrl, expectedError);
     }
 
+    @Test
+    public void errorDocument_WhenResponseTrickledPastDeadline() throws Exception {
+
+        final String expectedError = "Url test timed out";
+        final long startMillis = System.currentTimeMillis();
+        final String expectedUrl;
+        try (ServerSocket trickleServer = startTrickleServer(50)) {
+            expectedUrl = "http://localhost:" + trickleServer.getLocalPort() + TEST_PATH;
+            Main.executeUrlTester(new String[] {TIMEOUT_FLAG, TIMEOUT, expectedUrl});
+        }
+        final long elapsedMillis = System.currentTimeMillis() - startMillis;
+
+        assertErrorDocument(expectedUrl, expectedError);
+        assertThat(elapsedMillis).isLessThan(Integer.parseInt(TIMEOUT) * 10);
+    }
+
+    @Test
+    public void errorDocument_WhenRunDeadlinePasses() {
+
+        final String expectedUrl = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        final String expectedError = "Url test timed out";
+
+        wireMockServer.stubFor(get(urlEqualTo(TEST_PATH))
+                .willReturn(aResponse()
+                        .withFixedDelay(5000)));
+
+        Main.executeUrlTester(new String[] {TIMEOUT_FLAG, "10000", "--deadline", TIMEOUT, expectedUrl});
+
+        assertErrorDocument(expectedUrl, expectedError);
+    }
+
+    @Test
+    public void redirectChainReported_WhenRedirectsFollowed() {
+
+        final String expectedDate = getDate();
+        final String expectedUrl = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        final String movedUrl = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, "/moved");
+        final String finalUrl = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, "/final");
+        wireMockServer.stubFor(get(urlEqualTo(TEST_PATH))
+                .willReturn(aResponse().withStatus(301).withHeader("Location", "/moved")));
+        wireMockServer.stubFor(get(urlEqualTo("/moved"))
+                .willReturn(aResponse().withStatus(302).withHeader("Location", finalUrl)));
+        stubUrl(wireMockServer, "/final",
+                new HttpHeaders(buildContentLengthHeader(LENGTH), buildDateHeader(expectedDate)), 200);
+
+        Main.executeUrlTester(new String[] {TIMEOUT_FLAG, TIMEOUT, "--redirects", "5", expectedUrl});
+
+        assertThat(extractStandardOutput()[0]).isEqualTo(
+                "{\n" +
+                        "  \"Url\": \"" + expectedUrl + "\",\n" +
+                        "  \"Status_code\": 200,\n" +
+                        "  \"Content_length\": " + LENGTH + ",\n" +
+                        "  \"Date\": \"" + expectedDate + "\",\n" +
+                        "  \"Redirects\": [\n" +
+                        "    {\n" +
+                        "      \"Status_code\": 301,\n" +
+                        "      \"Location\": \"" + movedUrl + "\"\n" +
+                        "    },\n" +
+                        "    {\n" +
+                        "      \"Status_code\": 302,\n" +
+                        "      \"Location\": \"" + finalUrl + "\"\n" +
+                        "    }\n" +
+                        "  ]\n" +
+                        "}\n");
+    }
+
+    @Test
+    public void locationRequestedOnce_WhenUrlsRedirectToSameLocation() {
+
+        final String expectedDate = getDate();
+        final String[] urls = new String[3];
+        for (int index = 0; index < urls.length; index++) {
+            final String path = TEST_PATH + index;
+            urls[index] = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, path);
+            wireMockServer.stubFor(get(urlEqualTo(path))
+                    .willReturn(aResponse().withStatus(301).withHeader("Location", "/final")));
+        }
+        stubUrl(wireMockServer, "/final",
+                new HttpHeaders(buildContentLengthHeader(LENGTH), buildDateHeader(expectedDate)), 200);
+
+        Main.executeUrlTester(new String[] {TIMEOUT_FLAG, TIMEOUT, "--redirects", "5", String.join("\n", urls)});
+
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/final")));
+        assertThat(extractStandardOutput()).contains(
+                "[\n" +
+                        "  {\n" +
+                        "    \"Status_code\": 200,\n" +
+                        "    \"Number_of_responses\": 3\n" +
+                        "  }\n" +
+                        "]\n");
+    }
+
+    @Test
+    public void errorDocument_WhenRedirectLoops() {
+
+        final String expectedUrl = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        wireMockServer.stubFor(get(urlEqualTo(TEST_PATH))
+                .willReturn(aResponse().withStatus(302).withHeader("Location", "/other")));
+        wireMockServer.stubFor(get(urlEqualTo("/other"))
+                .willReturn(aResponse().withStatus(302).withHeader("Location", TEST_PATH)));
+
+        Main.executeUrlTester(new String[] {TIMEOUT_FLAG, TIMEOUT, "--redirects", "5", expectedUrl});
+
+        assertErrorDocument(expectedUrl, "Url redirects in a loop");
+    }
+
+    @Test
+    public void errorDocument_WhenRedirectedWithNoRedirectsAllowed() {
+
+        final String expectedUrl = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        wireMockServer.stubFor(get(urlEqualTo(TEST_PATH))
+                .willReturn(aResponse().withStatus(301).withHeader("Location", "/other")));
+
+        Main.executeUrlTester(new String[] {TIMEOUT_FLAG, TIMEOUT, "--redirects", "0", expectedUrl});
+
+        assertErrorDocument(expectedUrl, "Url redirected too many times");
+    }
+
+    @Test
+    public void reportsMerged_WhenTestedByWorkers() {
+
+        final HttpHeaders expectedHeaders = new HttpHeaders(buildContentLengthHeader(LENGTH),
+                buildDateHeader(getDate()));
+        stubUrl(wireMockServer, "/1", expectedHeaders, 200);
+        stubUrl(wireMockServer, "/2", expectedHeaders, 404);
+        final String localhostUrl1 = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, "/1");
+        final String localhostUrl2 = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, "/2");
+        final String loopbackUrl = buildExpectedHttpUrl(wireMockServer, "127.0.0.1", "/1");
+
+        final boolean successful = Main.executeUrlTester(new String[] {TIMEOUT_FLAG, "5000", "--workers", "2",
+                String.join("\n", localhostUrl1, localhostUrl2, loopbackUrl, "fake.co")});
+
+        // Each worker's reports arrive as its tests finish, so only the merged status report has a position
+        final String[] standardOutput = extractStandardOutput();
+        assertThat(successful).isTrue();
+        assertThat(standardOutput).hasSize(4);
+        assertThat(standardOutput[3]).isEqualTo(
+                "[\n" +
+                        "  {\n" +
+                        "    \"Status_code\": -1,\n" +
+                        "    \"Number_of_responses\": 1\n" +
+                        "  },\n" +
+                        "  {\n" +
+                        "    \"Status_code\": 200,\n" +
+                        "    \"Number_of_responses\": 2\n" +
+                        "  },\n" +
+                        "  {\n" +
+                        "    \"Status_code\": 404,\n" +
+                        "    \"Number_of_responses\": 1\n" +
+                        "  }\n" +
+                        "]\n");
+        assertThat(extractStandardErr()).contains(
+                "{\n" +
+                        "  \"Url\": \"fake.co\",\n" +
+                        "  \"Error\": \"URL Malformed\"\n" +
+                        "}\n");
+    }
+
     // Conforms to the standard defined in RFC7231 for date formatting https://tools.ietf.org/html/rfc7231#section-7.1.1.1
     private String getDate() {
 
@@ -364,7 +557,7 @@ public class MainTest {
                                 "  \"Url\": \"" + expectedUrl + "\",\n" +
                                 "  \"Status_code\": " + statusCode + ",\n" +
                                 "  \"Content_length\": " + expectedLength + ",\n" +
-                                "  \"Date\": \"" + expectedDateFormatted + "\"\n" +
+                                "  \"Date\": " + jsonString(expectedDateFormatted) + "\n" +
                                 "}\n",
                         "[\n" +
                                 "  {\n" +
@@ -376,6 +569,12 @@ public class MainTest {
                 );
     }
 
+    // A missing header is reported as a json null rather than a string
+    private String jsonString(String value) {
+
+        return value == null ? "null" : "\"" + value + "\"";
+    }
+
     private void assertErrorDocument(String expectedUrl, String expectedError) {
 
         assertThat(extractStandardErr())
@@ -0,0 +1,97 @@
+package org.neil.main.app;
+
+import org.junit.Test;
+import org.neil.main.url.ReportSink;
+import org.neil.main.url.SimpleUrlVerifier;
+import org.neil.main.url.UrlBuilder;
+import org.neil.main.url.UrlReport;
+import org.neil.main.url.UrlTestReport;
+import org.neil.main.url.UrlTester;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for checking urls over and over on a schedule.
+ */
+public class UrlMonitorTest {
+
+    private static final int INTERVAL_MILLIS = 500;
+
+    private final List<List<String>> checkedTicks = new CopyOnWriteArrayList<>();
+    private final List<UrlReport> urlReports = new CopyOnWriteArrayList<>();
+    private final UrlTester urlTester = new UrlTester() {
+
+        @Override
+        public List<UrlReport> test(Iterator<String> urls, UrlBuilder urlBuilder, int timeout) {
+
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void test(Iterator<String> urls, UrlBuilder urlBuilder, int timeout, int runTimeout,
+                         ReportSink reportSink) {
+
+            final List<String> tick = new ArrayList<>();
+            urls.forEachRemaining(tick::add);
+            checkedTicks.add(tick);
+            tick.forEach(url -> reportSink.accept(new UrlTestReport(url, 200, null, null)));
+        }
+    };
+
+    @Test
+    public void everyUrlCheckedEachInterval_WhenChecksSpreadAcrossTicks() throws Exception {
+
+        final List<String> urls = new ArrayList<>();
+        for (int index = 0; index < 10; index++) {
+            urls.add("http://localhost/" + index);
+        }
+        final AtomicInteger intervals = new AtomicInteger();
+
+        runFor(urls, INTERVAL_MILLIS * 2 + INTERVAL_MILLIS / 2, intervals);
+
+        final int urlsPerTick = (int) Math.ceil(urls.size() / (double) (INTERVAL_MILLIS / UrlMonitor.TICK_MILLIS));
+        final int largestTick = checkedTicks.stream().mapToInt(List::size).max().orElse(0);
+
+        assertSoftly(softly -> {
+            for (String url : urls) {
+                softly.assertThat(urlReports.stream().filter(urlReport -> urlReport.toJson().contains(url + "\""))
+                        .count()).isBetween(2L, 3L);
+            }
+            softly.assertThat(largestTick).isLessThanOrEqualTo(urlsPerTick);
+            softly.assertThat(intervals.get()).isEqualTo(2);
+        });
+    }
+
+    @Test
+    public void checksStop_WhenMonitorStopped() throws Exception {
+
+        final AtomicInteger intervals = new AtomicInteger();
+
+        runFor(Collections.singletonList("http://localhost/"), INTERVAL_MILLIS / 2, intervals);
+        final int checksWhenStopped = checkedTicks.size();
+        Thread.sleep(INTERVAL_MILLIS * 2);
+
+        assertSoftly(softly -> {
+            softly.assertThat(checksWhenStopped).isEqualTo(1);
+            softly.assertThat(checkedTicks).hasSize(checksWhenStopped);
+            softly.assertThat(intervals.get()).isZero();
+        });
+    }
+
+    private void runFor(List<String> urls, long millis, AtomicInteger intervals) throws InterruptedException {
+
+        final UrlMonitor urlMonitor = new UrlMonitor(urlTester, new SimpleUrlVerifier(), 100, 0, INTERVAL_MILLIS);
+        final Thread monitor = new Thread(() -> urlMonitor.run(urls, urlReports::add, intervals::incrementAndGet));
+        monitor.start();
+        Thread.sleep(millis);
+        urlMonitor.stop();
+        monitor.join();
+    }
+}
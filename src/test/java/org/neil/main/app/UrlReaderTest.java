@@ -0,0 +1,46 @@
+package org.neil.main.app;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+public class UrlReaderTest {
+
+    @Test
+    public void readUrls_WhenLineEndSeparated() {
+
+        final List<String> urls = readAll("https://www.bbc.co.uk\nhttps://www.google.co.uk\r\nhttp://localhost:8080");
+
+        assertSoftly(softly -> softly.assertThat(urls)
+                .containsExactly("https://www.bbc.co.uk", "https://www.google.co.uk", "http://localhost:8080"));
+    }
+
+    @Test
+    public void skipBlankLines_WhenEmptyLinesPresent() {
+
+        final List<String> urls = readAll("\nhttps://www.bbc.co.uk\n\n\nhttps://www.google.co.uk\n");
+
+        assertSoftly(softly -> softly.assertThat(urls)
+                .containsExactly("https://www.bbc.co.uk", "https://www.google.co.uk"));
+    }
+
+    @Test
+    public void returnNoUrls_WhenInputEmpty() {
+
+        final List<String> urls = readAll("");
+
+        assertSoftly(softly -> softly.assertThat(urls).isEmpty());
+    }
+
+    private List<String> readAll(String input) {
+
+        final List<String> urls = new ArrayList<>();
+        new UrlReader(new StringReader(input)).forEachRemaining(urls::add);
+        return urls;
+    }
+
+}
@@ -8,6 +8,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.SoftAssertions.assertSoftly;
@@ -41,6 +42,24 @@ public class UrlTesterApplicationTest {
 
     }
 
+    @Test
+    public void errorMessage_WhenNioEngineGivenUnsupportedArguments() {
+
+        final Map<String, String> arguments = new HashMap<>();
+        arguments.put("engine", "nio");
+        arguments.put("retries", "2");
+        arguments.put("cache", "results.cache");
+        arguments.put("default", "https://www.bbc.co.uk");
+
+        final boolean successful = urlTesterApplication.testUrls(arguments);
+
+        assertSoftly(softly -> {
+            softly.assertThat(successful).isFalse();
+            softly.assertThat(errContent.toString()).contains("The nio engine does not support --retries, --cache");
+            softly.assertThat(outContent.toString()).isEmpty();
+        });
+    }
+
     @Test
     public void multipleUrls_WhenLineEndSeparatedUrls() {
 
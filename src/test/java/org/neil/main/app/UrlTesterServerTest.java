@@ -0,0 +1,228 @@
+package org.neil.main.app;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neil.main.url.ReportSink;
+import org.neil.main.url.UrlBuilder;
+import org.neil.main.url.UrlErrorReport;
+import org.neil.main.url.UrlReport;
+import org.neil.main.url.UrlTestReport;
+import org.neil.main.url.UrlTester;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for submitting batches of urls to the HTTP API and reading their reports.
+ */
+public class UrlTesterServerTest {
+
+    private static final String URLS = "http://localhost/found\nnot a url\n";
+
+    // Holds back the report of the second url until released, so a batch can be read while it is in progress
+    private final CountDownLatch secondReport = new CountDownLatch(1);
+    private final UrlTester urlTester = new UrlTester() {
+
+        @Override
+        public List<UrlReport> test(Iterator<String> urls, UrlBuilder urlBuilder, int timeout) {
+
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void test(Iterator<String> urls, UrlBuilder urlBuilder, int timeout, int runTimeout,
+                         ReportSink reportSink) {
+
+            reportSink.accept(new UrlTestReport(urls.next(), 200, 12L, null));
+            try {
+                secondReport.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reportSink.accept(new UrlErrorReport(urls.next(), "URL Malformed"));
+        }
+    };
+
+    private UrlTesterServer urlTesterServer;
+
+    @Before
+    public void setUp() throws Exception {
+
+        urlTesterServer = new UrlTesterServer(urlTester, 0, 1000, 0);
+        urlTesterServer.start();
+    }
+
+    @After
+    public void tearDown() {
+
+        secondReport.countDown();
+        urlTesterServer.close();
+    }
+
+    @Test
+    public void reportsAndStatus_WhenBatchFinished() throws Exception {
+
+        final Response submitted = request("POST", "/batches", URLS);
+        final Response inProgress = request("GET", "/batches/1", null);
+        secondReport.countDown();
+        final Response reports = awaitDone("/batches/1/reports");
+        final Response laterReports = request("GET", "/batches/1/reports?from=1", null);
+        final Response status = request("GET", "/batches/1/status", null);
+
+        assertSoftly(softly -> {
+            softly.assertThat(submitted.status).isEqualTo(201);
+            softly.assertThat(submitted.location).isEqualTo("/batches/1");
+            softly.assertThat(submitted.body).contains("\"Id\": 1,\n  \"Urls\": 2,");
+            softly.assertThat(inProgress.body).contains("\"Done\": false");
+            softly.assertThat(reports.body)
+                    .contains("\"Url\": \"http://localhost/found\"")
+                    .contains("\"Url\": \"not a url\"");
+            softly.assertThat(laterReports.body)
+                    .doesNotContain("http://localhost/found")
+                    .contains("\"Error\": \"URL Malformed\"");
+            softly.assertThat(status.body)
+                    .contains("\"Status_code\": -1,\n    \"Number_of_responses\": 1")
+                    .contains("\"Status_code\": 200,\n    \"Number_of_responses\": 1");
+        });
+    }
+
+    @Test
+    public void reportPerLine_WhenReportsStreamed() throws Exception {
+
+        request("POST", "/batches", URLS);
+        final HttpURLConnection stream = open("GET", "/batches/1/reports?stream");
+        final InputStream streamBody = stream.getInputStream();
+        final String firstLine = readLine(streamBody);
+        secondReport.countDown();
+        final String rest = read(streamBody);
+
+        assertSoftly(softly -> {
+            softly.assertThat(stream.getContentType()).isEqualTo("application/x-ndjson");
+            softly.assertThat(firstLine)
+                    .isEqualTo("{\"Url\":\"http://localhost/found\",\"Status_code\":200,\"Content_length\":12," +
+                            "\"Date\":null}");
+            softly.assertThat(rest).isEqualTo("{\"Url\":\"not a url\",\"Error\":\"URL Malformed\"}\n");
+        });
+    }
+
+    @Test
+    public void notFound_WhenBatchUnknownOrForgotten() throws Exception {
+
+        request("POST", "/batches", URLS);
+        final Response unknown = request("GET", "/batches/2", null);
+        final Response forgotten = request("DELETE", "/batches/1", null);
+        final Response afterForgotten = request("GET", "/batches/1/reports", null);
+        final Response empty = request("POST", "/batches", "\n");
+
+        assertSoftly(softly -> {
+            softly.assertThat(unknown.status).isEqualTo(404);
+            softly.assertThat(forgotten.status).isEqualTo(204);
+            softly.assertThat(afterForgotten.status).isEqualTo(404);
+            softly.assertThat(afterForgotten.body).contains("\"Error\": \"Batch not found\"");
+            softly.assertThat(empty.status).isEqualTo(400);
+        });
+    }
+
+    @Test
+    public void tooLarge_WhenBatchHasTooManyUrls() throws Exception {
+
+        final StringBuilder urls = new StringBuilder();
+        for (int url = 0; url <= UrlTesterServer.MAX_BATCH_URLS; url++) {
+            urls.append("http://localhost/").append(url).append('\n');
+        }
+
+        final Response tooLarge = request("POST", "/batches", urls.toString());
+        final Response unknown = request("GET", "/batches/1", null);
+
+        assertSoftly(softly -> {
+            softly.assertThat(tooLarge.status).isEqualTo(413);
+            softly.assertThat(tooLarge.body).contains("at most " + UrlTesterServer.MAX_BATCH_URLS + " urls");
+            softly.assertThat(unknown.status).isEqualTo(404);
+        });
+    }
+
+    private Response awaitDone(String reportsPath) throws Exception {
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!request("GET", "/batches/1", null).body.contains("\"Done\": true")
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return request("GET", reportsPath, null);
+    }
+
+    private Response request(String method, String path, String body) throws IOException {
+
+        final HttpURLConnection connection = open(method, path);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream requestBody = connection.getOutputStream()) {
+                requestBody.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        final int status = connection.getResponseCode();
+        final InputStream responseBody = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        return new Response(status, connection.getHeaderField("Location"),
+                responseBody == null ? "" : read(responseBody));
+    }
+
+    private HttpURLConnection open(String method, String path) throws IOException {
+
+        final HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://127.0.0.1:" + urlTesterServer.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setReadTimeout(5000);
+        return connection;
+    }
+
+    private String readLine(InputStream inputStream) throws IOException {
+
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int read;
+        while ((read = inputStream.read()) != -1 && read != '\n') {
+            line.write(read);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private String read(InputStream inputStream) throws IOException {
+
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        inputStream.close();
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The parts of a response the tests look at.
+     */
+    private static class Response {
+
+        private final int status;
+        private final String location;
+        private final String body;
+
+        Response(int status, String location, String body) {
+
+            this.status = status;
+            this.location = location;
+            this.body = body;
+        }
+    }
+}
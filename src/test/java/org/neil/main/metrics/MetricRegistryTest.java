@@ -0,0 +1,122 @@
+package org.neil.main.metrics;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for writing metrics out in the Prometheus text format.
+ */
+public class MetricRegistryTest {
+
+    @Test
+    public void familiesInTextFormat_WhenMetricsUpdated() {
+
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final Counter started = metricRegistry.counter("tests_started_total", "Tests started");
+        final Gauge inFlight = metricRegistry.gauge("tests_in_flight", "Tests in flight");
+        final Histogram dns = metricRegistry.histogram("phase_seconds", "Phase time", "phase", "dns");
+        final Histogram total = metricRegistry.histogram("phase_seconds", "Phase time", "phase", "total");
+        started.add(3);
+        inFlight.increment();
+        inFlight.increment();
+        inFlight.decrement();
+        dns.observe(TimeUnit.MICROSECONDS.toNanos(500));
+        dns.observe(TimeUnit.MILLISECONDS.toNanos(20));
+        total.observe(TimeUnit.SECONDS.toNanos(30));
+
+        final String text = metricRegistry.toText();
+
+        assertSoftly(softly -> {
+            softly.assertThat(text).startsWith(
+                    "# HELP tests_started_total Tests started\n" +
+                            "# TYPE tests_started_total counter\n" +
+                            "tests_started_total 3\n" +
+                            "# HELP tests_in_flight Tests in flight\n" +
+                            "# TYPE tests_in_flight gauge\n" +
+                            "tests_in_flight 1\n" +
+                            "# HELP phase_seconds Phase time\n" +
+                            "# TYPE phase_seconds histogram\n" +
+                            "phase_seconds_bucket{phase=\"dns\",le=\"0.001\"} 1\n" +
+                            "phase_seconds_bucket{phase=\"dns\",le=\"0.0025\"} 1\n");
+            softly.assertThat(text).contains(
+                    "phase_seconds_bucket{phase=\"dns\",le=\"0.01\"} 1\n" +
+                            "phase_seconds_bucket{phase=\"dns\",le=\"0.025\"} 2\n");
+            softly.assertThat(text).contains(
+                    "phase_seconds_bucket{phase=\"dns\",le=\"+Inf\"} 2\n" +
+                            "phase_seconds_sum{phase=\"dns\"} 0.0205\n" +
+                            "phase_seconds_count{phase=\"dns\"} 2\n" +
+                            "phase_seconds_bucket{phase=\"total\",le=\"0.001\"} 0\n");
+            softly.assertThat(text).contains(
+                    "phase_seconds_bucket{phase=\"total\",le=\"10.0\"} 0\n" +
+                            "phase_seconds_bucket{phase=\"total\",le=\"+Inf\"} 1\n");
+            softly.assertThat(text).containsOnlyOnce("# TYPE phase_seconds histogram");
+        });
+    }
+
+    @Test
+    public void countPerStatusCode_WhenStatusCodesCounted() {
+
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final StatusCounter completed = metricRegistry.statusCounter("tests_completed_total", "Tests completed",
+                "status");
+        completed.increment(404);
+        completed.increment(200);
+        completed.increment(200);
+        completed.increment(-1);
+        completed.increment(999);
+
+        assertSoftly(softly -> {
+            softly.assertThat(metricRegistry.toText()).isEqualTo(
+                    "# HELP tests_completed_total Tests completed\n" +
+                            "# TYPE tests_completed_total counter\n" +
+                            "tests_completed_total{status=\"error\"} 1\n" +
+                            "tests_completed_total{status=\"200\"} 2\n" +
+                            "tests_completed_total{status=\"404\"} 1\n" +
+                            "tests_completed_total{status=\"999\"} 1\n");
+            softly.assertThat(completed.get(200)).isEqualTo(2);
+            softly.assertThat(completed.get(500)).isZero();
+        });
+    }
+
+    @Test
+    public void metricsScraped_WhenServed() throws Exception {
+
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        metricRegistry.counter("tests_started_total", "Tests started").increment();
+
+        try (MetricsServer metricsServer = new MetricsServer(metricRegistry, 0)) {
+            metricsServer.start();
+            final HttpURLConnection connection = (HttpURLConnection) new URL(
+                    "http://localhost:" + metricsServer.getPort() + "/metrics").openConnection();
+            connection.setReadTimeout(5000);
+            final int status = connection.getResponseCode();
+            final String body = read(connection.getInputStream());
+
+            assertSoftly(softly -> {
+                softly.assertThat(status).isEqualTo(200);
+                softly.assertThat(connection.getContentType()).isEqualTo(MetricRegistry.CONTENT_TYPE);
+                softly.assertThat(body).endsWith("tests_started_total 1\n");
+            });
+        }
+    }
+
+    private String read(InputStream inputStream) throws Exception {
+
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        inputStream.close();
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
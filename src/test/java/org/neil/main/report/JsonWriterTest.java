@@ -0,0 +1,94 @@
+package org.neil.main.report;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for streaming json documents.
+ */
+public class JsonWriterTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Test
+    public void escapedString_WhenStringHasQuotesBackslashesAndControlCharacters() {
+
+        final String json = JsonWriter.toJson(jsonWriter -> jsonWriter.value("a \"quote\"\\\n\t\u0001"));
+
+        assertSoftly(softly -> softly.assertThat(json).isEqualTo("\"a \\\"quote\\\"\\\\\\n\\t\\u0001\"\n"));
+    }
+
+    @Test
+    public void prettyDocument_WhenNestedArrayAndObjects() {
+
+        final String json = JsonWriter.toJson(jsonWriter -> jsonWriter.beginArray()
+                .beginObject().name("Status_code").value(200).name("Number_of_responses").value(3).endObject()
+                .beginObject().name("Status_code").value(-1).name("Number_of_responses").value((Long) null).endObject()
+                .endArray());
+
+        assertSoftly(softly -> softly.assertThat(json).isEqualTo(
+                "[\n" +
+                        "  {\n" +
+                        "    \"Status_code\": 200,\n" +
+                        "    \"Number_of_responses\": 3\n" +
+                        "  },\n" +
+                        "  {\n" +
+                        "    \"Status_code\": -1,\n" +
+                        "    \"Number_of_responses\": null\n" +
+                        "  }\n" +
+                        "]\n"));
+    }
+
+    @Test
+    public void documentPerLine_WhenNdjson() throws Exception {
+
+        try (JsonWriter jsonWriter = new JsonWriter(Channels.newChannel(output), JsonWriter.Format.NDJSON)) {
+            jsonWriter.write(writer -> writer.beginObject().name("Url").value("http://a").name("Date").value(
+                    (String) null).endObject());
+            jsonWriter.write(writer -> writer.beginArray().value(Long.MAX_VALUE).value(Long.MIN_VALUE).value(0)
+                    .endArray());
+        }
+        final String json = new String(output.toByteArray(), StandardCharsets.UTF_8);
+
+        assertSoftly(softly -> softly.assertThat(json).isEqualTo(
+                "{\"Url\":\"http://a\",\"Date\":null}\n" +
+                        "[9223372036854775807,-9223372036854775808,0]\n"));
+    }
+
+    @Test
+    public void documentWrittenOut_WhenLeftIdle() throws Exception {
+
+        try (JsonWriter jsonWriter = new JsonWriter(Channels.newChannel(output), JsonWriter.Format.NDJSON)) {
+            jsonWriter.write(writer -> writer.beginObject().name("Url").value("http://a").endObject());
+            final long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (output.size() == 0 && System.nanoTime() - deadlineNanos < 0) {
+                Thread.sleep(10);
+            }
+            final String json = new String(output.toByteArray(), StandardCharsets.UTF_8);
+
+            assertSoftly(softly -> softly.assertThat(json).isEqualTo("{\"Url\":\"http://a\"}\n"));
+        }
+    }
+
+    @Test
+    public void wholeDocuments_WhenLargerThanBuffer() throws Exception {
+
+        final StringBuilder expected = new StringBuilder();
+        try (JsonWriter jsonWriter = new JsonWriter(Channels.newChannel(output), JsonWriter.Format.NDJSON)) {
+            for (int i = 0; i < 20000; i++) {
+                final String url = "http://www.bbc.co.uk/news/\u00e9\ud83d\ude00/" + i;
+                jsonWriter.write(writer -> writer.beginObject().name("Url").value(url).endObject());
+                expected.append("{\"Url\":\"").append(url).append("\"}\n");
+            }
+        }
+        final String json = new String(output.toByteArray(), StandardCharsets.UTF_8);
+
+        assertSoftly(softly -> softly.assertThat(json).isEqualTo(expected.toString()));
+    }
+}
@@ -0,0 +1,84 @@
+package org.neil.main.report;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for counting request timings into latency percentiles.
+ */
+public class LatencyReportTest {
+
+    @Test
+    public void percentilesWithinPrecision_WhenLatenciesRecorded() {
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100000; micros++) {
+            histogram.record(micros);
+        }
+
+        assertSoftly(softly -> {
+            softly.assertThat(histogram.getCount()).isEqualTo(100000);
+            softly.assertThat(histogram.getValueAtPercentile(50)).isBetween(50000L, 50000L + 50000 / 32);
+            softly.assertThat(histogram.getValueAtPercentile(90)).isBetween(90000L, 90000L + 90000 / 32);
+            softly.assertThat(histogram.getValueAtPercentile(99)).isBetween(99000L, 99000L + 99000 / 32);
+            softly.assertThat(histogram.getValueAtPercentile(100)).isEqualTo(100000);
+            softly.assertThat(histogram.getMax()).isEqualTo(100000);
+        });
+    }
+
+    @Test
+    public void latencyByStatusCodeAndHost_WhenTimingsRecorded() {
+
+        final LatencyReport latencyReport = new LatencyReport();
+        latencyReport.record(200, "http://Example.com:8080/a", timings(3));
+        latencyReport.record(200, "example.com/b", timings(5));
+        latencyReport.record(404, "https://other.example.com?q", timings(7));
+
+        final String json = latencyReport.toJson();
+
+        assertSoftly(softly -> {
+            softly.assertThat(json).contains(
+                    "  \"Status_codes\": [\n" +
+                            "    {\n" +
+                            "      \"Status_code\": 200,\n" +
+                            "      \"Count\": 2,\n" +
+                            "      \"P50_us\": 3007,\n" +
+                            "      \"P90_us\": 5000,\n" +
+                            "      \"P99_us\": 5000,\n" +
+                            "      \"Max_us\": 5000\n" +
+                            "    },\n");
+            softly.assertThat(json).contains("\"Host\": \"example.com\",\n      \"Count\": 2");
+            softly.assertThat(json).contains("\"Host\": \"other.example.com\",\n      \"Count\": 1");
+            softly.assertThat(json).contains("\"Tls\": {\n      \"Count\": 0");
+        });
+    }
+
+    @Test
+    public void otherHosts_WhenTooManyHosts() {
+
+        final LatencyReport latencyReport = new LatencyReport();
+        for (int host = 0; host <= LatencyReport.MAX_HOSTS; host++) {
+            latencyReport.record(200, "http://host" + host + "/", timings(1));
+        }
+
+        final String json = latencyReport.toJson();
+
+        assertSoftly(softly -> {
+            softly.assertThat(json).contains("\"Host\": \"host999\"");
+            softly.assertThat(json).doesNotContain("\"Host\": \"host1000\"");
+            softly.assertThat(json).contains("\"Host\": \"" + LatencyReport.OTHER_HOSTS + "\",\n      \"Count\": 1");
+        });
+    }
+
+    /**
+     * Timings with the given total and no TLS handshake, as for a plain http url.
+     */
+    private RequestTimings timings(long totalMillis) {
+
+        final long totalNanos = TimeUnit.MILLISECONDS.toNanos(totalMillis);
+        return new RequestTimings(0, 0, 0, RequestTimings.NOT_MEASURED, totalNanos, totalNanos);
+    }
+}
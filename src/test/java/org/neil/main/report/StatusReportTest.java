@@ -0,0 +1,109 @@
+package org.neil.main.report;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for tallying status codes from many threads at once.
+ */
+public class StatusReportTest {
+
+    private static final int THREADS = 8;
+    private static final int INCREMENTS = 10000;
+
+    @Test
+    public void everyIncrementCounted_WhenCountedFromManyThreads() throws Exception {
+
+        final StatusReport statusReport = new StatusReport();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int thread = 0; thread < THREADS; thread++) {
+            final int status = thread % 2 == 0 ? 200 : 404;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int increment = 0; increment < INCREMENTS; increment++) {
+                    statusReport.incrementStatus(status);
+                }
+            });
+        }
+        start.countDown();
+        final long totalWhileCounting = statusReport.getTotal();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertSoftly(softly -> {
+            softly.assertThat(totalWhileCounting).isBetween(0L, (long) THREADS * INCREMENTS);
+            softly.assertThat(statusReport.getCount(200)).isEqualTo(THREADS / 2 * INCREMENTS);
+            softly.assertThat(statusReport.getCount(404)).isEqualTo(THREADS / 2 * INCREMENTS);
+            softly.assertThat(statusReport.getTotal()).isEqualTo(THREADS * INCREMENTS);
+        });
+    }
+
+    @Test
+    public void statusesInOrder_WhenStatusesOutsideRange() {
+
+        final StatusReport statusReport = new StatusReport();
+        statusReport.incrementStatus(999);
+        statusReport.incrementStatus(200);
+        statusReport.incrementStatus(0);
+        statusReport.incrementStatus(-1);
+        statusReport.incrementStatus(-1);
+
+        assertSoftly(softly -> {
+            softly.assertThat(statusReport.toJson()).isEqualTo(
+                    "[\n" +
+                            "  {\n" +
+                            "    \"Status_code\": -1,\n" +
+                            "    \"Number_of_responses\": 2\n" +
+                            "  },\n" +
+                            "  {\n" +
+                            "    \"Status_code\": 0,\n" +
+                            "    \"Number_of_responses\": 1\n" +
+                            "  },\n" +
+                            "  {\n" +
+                            "    \"Status_code\": 200,\n" +
+                            "    \"Number_of_responses\": 1\n" +
+                            "  },\n" +
+                            "  {\n" +
+                            "    \"Status_code\": 999,\n" +
+                            "    \"Number_of_responses\": 1\n" +
+                            "  }\n" +
+                            "]\n");
+            softly.assertThat(statusReport.getCount(999)).isEqualTo(1);
+            softly.assertThat(statusReport.getCount(500)).isZero();
+        });
+    }
+
+    @Test
+    public void talliesAdded_WhenReportsMerged() {
+
+        final StatusReport firstReport = new StatusReport();
+        firstReport.incrementStatus(200);
+        firstReport.incrementStatus(-1);
+        final StatusReport secondReport = new StatusReport();
+        secondReport.addStatus(200, 3);
+        secondReport.addStatus(999, 2);
+
+        final StatusReport mergedReport = new StatusReport();
+        mergedReport.merge(firstReport);
+        mergedReport.merge(secondReport);
+
+        assertSoftly(softly -> {
+            softly.assertThat(mergedReport.getCount(200)).isEqualTo(4);
+            softly.assertThat(mergedReport.getCount(-1)).isEqualTo(1);
+            softly.assertThat(mergedReport.getCount(999)).isEqualTo(2);
+            softly.assertThat(mergedReport.getTotal()).isEqualTo(7);
+            softly.assertThat(secondReport.getTotal()).isEqualTo(5);
+        });
+    }
+}
@@ -0,0 +1,69 @@
+package org.neil.main.shard;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for splitting urls between shards by host.
+ */
+public class ShardRingTest {
+
+    private static final int HOSTS = 10000;
+
+    @Test
+    public void sameShard_WhenUrlsShareHost() {
+
+        final ShardRing shardRing = new ShardRing(8);
+        final int shard = shardRing.shard("http://www.example.com");
+
+        assertSoftly(softly -> {
+            softly.assertThat(shardRing.shard("https://www.example.com/a/b?c=d")).isEqualTo(shard);
+            softly.assertThat(shardRing.shard("http://WWW.Example.com:8080/")).isEqualTo(shard);
+            softly.assertThat(shardRing.shard("www.example.com#top")).isEqualTo(shard);
+            softly.assertThat(new ShardRing(8).shard("http://www.example.com/other")).isEqualTo(shard);
+        });
+    }
+
+    @Test
+    public void hostsSpreadEvenly_WhenManyHosts() {
+
+        final ShardRing shardRing = new ShardRing(4);
+        final int[] hosts = new int[shardRing.getShards()];
+        for (int host = 0; host < HOSTS; host++) {
+            hosts[shardRing.shard("http://host" + host + ".example.com/")]++;
+        }
+
+        assertSoftly(softly -> {
+            for (int shardHosts : hosts) {
+                softly.assertThat(shardHosts).isBetween(HOSTS / 4 * 8 / 10, HOSTS / 4 * 12 / 10);
+            }
+        });
+    }
+
+    @Test
+    public void onlyHostsOfNewShardMoved_WhenShardAdded() {
+
+        final ShardRing fourShards = new ShardRing(4);
+        final ShardRing fiveShards = new ShardRing(5);
+        int moved = 0;
+        int movedElsewhere = 0;
+        for (int host = 0; host < HOSTS; host++) {
+            final String url = "http://host" + host + ".example.com/";
+            final int shard = fiveShards.shard(url);
+            if (shard != fourShards.shard(url)) {
+                moved++;
+                if (shard != 4) {
+                    movedElsewhere++;
+                }
+            }
+        }
+        final int totalMoved = moved;
+        final int totalMovedElsewhere = movedElsewhere;
+
+        assertSoftly(softly -> {
+            softly.assertThat(totalMoved).isBetween(HOSTS / 5 * 8 / 10, HOSTS / 5 * 12 / 10);
+            softly.assertThat(totalMovedElsewhere).isZero();
+        });
+    }
+}
@@ -0,0 +1,54 @@
+package org.neil.main.url;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for sharing the test of a url with its duplicates, while it is in progress and after it has finished.
+ */
+public class DuplicateUrlsTest {
+
+    private static final String NORMALIZED_URL = "http://example.com/";
+
+    @Test
+    public void reportForEveryDuplicate_WhenDuplicatesBeforeAndAfterTestFinished() {
+
+        final DuplicateUrls duplicateUrls = new DuplicateUrls();
+        final AtomicInteger started = new AtomicInteger();
+        final CompletableFuture<UrlReport> test = new CompletableFuture<>();
+
+        final CompletableFuture<UrlReport> first = duplicateUrls.testOnce(NORMALIZED_URL, "http://example.com",
+                () -> {
+                    started.incrementAndGet();
+                    return test;
+                });
+        final CompletableFuture<UrlReport> inProgress = duplicateUrls.testOnce(NORMALIZED_URL,
+                "http://EXAMPLE.com", () -> startAgain(started));
+        test.complete(new UrlTestReport("http://example.com", 200, 12L, null));
+        final CompletableFuture<UrlReport> finished = duplicateUrls.testOnce(NORMALIZED_URL,
+                "http://example.com:80/", () -> startAgain(started));
+        final CompletableFuture<UrlReport> other = duplicateUrls.testOnce("http://example.org/",
+                "http://example.org", () -> {
+                    started.incrementAndGet();
+                    return CompletableFuture.completedFuture(new UrlErrorReport("http://example.org", "URL Malformed"));
+                });
+
+        assertSoftly(softly -> {
+            softly.assertThat(started.get()).isEqualTo(2);
+            softly.assertThat(first.join()).isEqualTo(new UrlTestReport("http://example.com", 200, 12L, null));
+            softly.assertThat(inProgress.join()).isEqualTo(new UrlTestReport("http://EXAMPLE.com", 200, 12L, null));
+            softly.assertThat(finished.join()).isEqualTo(new UrlTestReport("http://example.com:80/", 200, 12L, null));
+            softly.assertThat(other.join()).isEqualTo(new UrlErrorReport("http://example.org", "URL Malformed"));
+        });
+    }
+
+    private CompletableFuture<UrlReport> startAgain(AtomicInteger started) {
+
+        started.incrementAndGet();
+        return new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,148 @@
+package org.neil.main.url;
+
+import org.junit.Test;
+import org.neil.main.metrics.TesterMetrics;
+
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for limiting the connections open to each host.
+ */
+public class HostConnectionPoolTest {
+
+    private static final int MAX_CONNECTIONS_PER_HOST = 1;
+
+    private final HostConnectionPool connectionPool = new HostConnectionPool(MAX_CONNECTIONS_PER_HOST, 5);
+
+    @Test
+    public void acquireWaits_WhenHostHasNoFreeConnection() throws Exception {
+
+        final URL url = new URL("http://www.bbc.co.uk/news");
+        connectionPool.acquire(url);
+        final long startNanos = System.nanoTime();
+
+        final CountDownLatch acquired = acquireOnNewThread(new URL("http://www.bbc.co.uk/sport"));
+        final boolean acquiredBeforeRelease = acquired.await(200, TimeUnit.MILLISECONDS);
+        connectionPool.release(url, startNanos, false);
+        final boolean acquiredAfterRelease = acquired.await(1, TimeUnit.SECONDS);
+
+        assertSoftly(softly -> {
+            softly.assertThat(acquiredBeforeRelease).isFalse();
+            softly.assertThat(acquiredAfterRelease).isTrue();
+        });
+    }
+
+    @Test
+    public void acquireDoesNotWait_WhenDifferentHost() throws Exception {
+
+        connectionPool.acquire(new URL("http://www.bbc.co.uk"));
+
+        final CountDownLatch acquired = acquireOnNewThread(new URL("http://www.google.co.uk"));
+        final boolean acquiredWithoutRelease = acquired.await(1, TimeUnit.SECONDS);
+
+        assertSoftly(softly -> softly.assertThat(acquiredWithoutRelease).isTrue());
+    }
+
+    @Test
+    public void acquireDoesNotWait_WhenDifferentProtocol() throws Exception {
+
+        connectionPool.acquire(new URL("http://www.bbc.co.uk"));
+
+        final CountDownLatch acquired = acquireOnNewThread(new URL("https://www.bbc.co.uk"));
+        final boolean acquiredWithoutRelease = acquired.await(1, TimeUnit.SECONDS);
+
+        assertSoftly(softly -> softly.assertThat(acquiredWithoutRelease).isTrue());
+    }
+
+    @Test
+    public void limitHalves_WhenHostOverloaded() throws Exception {
+
+        final HostConnectionPool adaptivePool = new HostConnectionPool(20, 5);
+        final URL url = new URL("http://www.bbc.co.uk");
+        final int initialLimit = adaptivePool.getLimit(url);
+
+        adaptivePool.acquire(url);
+        adaptivePool.release(url, System.nanoTime(), true);
+
+        assertSoftly(softly -> softly.assertThat(adaptivePool.getLimit(url)).isEqualTo(initialLimit / 2));
+    }
+
+    @Test
+    public void limitHalvesOnce_WhenRequestsInFlightTogetherOverloaded() throws Exception {
+
+        final HostConnectionPool adaptivePool = new HostConnectionPool(20, 5);
+        final URL url = new URL("http://www.bbc.co.uk");
+        final int initialLimit = adaptivePool.getLimit(url);
+
+        adaptivePool.acquire(url);
+        adaptivePool.acquire(url);
+        final long startNanos = System.nanoTime();
+        adaptivePool.release(url, startNanos, true);
+        adaptivePool.release(url, startNanos, true);
+
+        assertSoftly(softly -> softly.assertThat(adaptivePool.getLimit(url)).isEqualTo(initialLimit / 2));
+    }
+
+    @Test
+    public void limitGrowsToMax_WhenRequestsSucceed() throws Exception {
+
+        final int maxConnections = 6;
+        final HostConnectionPool adaptivePool = new HostConnectionPool(maxConnections, 5);
+        final URL url = new URL("http://www.bbc.co.uk");
+        final URL otherUrl = new URL("http://www.google.co.uk");
+
+        for (int i = 0; i < 1000; i++) {
+            adaptivePool.acquire(url);
+            adaptivePool.release(url, System.nanoTime(), false);
+        }
+
+        assertSoftly(softly -> {
+            softly.assertThat(adaptivePool.getLimit(url)).isEqualTo(maxConnections);
+            softly.assertThat(adaptivePool.getLimit(otherUrl)).isLessThan(maxConnections);
+        });
+    }
+
+    @Test
+    public void idleHostForgotten_WhenIdleLongerThanKeepAlive() throws Exception {
+
+        final HostConnectionPool idlePool = new HostConnectionPool(20, 1);
+        final URL idleUrl = new URL("http://www.bbc.co.uk");
+        final URL busyUrl = new URL("http://www.google.co.uk");
+        final long limitsBefore = TesterMetrics.CONNECTION_LIMIT.get();
+        final int initialLimit = idlePool.getLimit(idleUrl);
+        idlePool.acquire(idleUrl);
+        idlePool.release(idleUrl, System.nanoTime(), true);
+        idlePool.acquire(busyUrl);
+
+        Thread.sleep(1100);
+        final int busyLimit = idlePool.getLimit(busyUrl);
+        final long limitsAfterIdle = TesterMetrics.CONNECTION_LIMIT.get();
+        final int limitAfterIdle = idlePool.getLimit(idleUrl);
+        idlePool.release(busyUrl, System.nanoTime(), false);
+
+        assertSoftly(softly -> {
+            softly.assertThat(limitsAfterIdle).isEqualTo(limitsBefore + busyLimit);
+            softly.assertThat(limitAfterIdle).isEqualTo(initialLimit);
+        });
+    }
+
+    private CountDownLatch acquireOnNewThread(URL url) {
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final Thread thread = new Thread(() -> {
+            try {
+                connectionPool.acquire(url);
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return acquired;
+    }
+}
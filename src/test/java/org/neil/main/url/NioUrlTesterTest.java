@@ -0,0 +1,324 @@
+package org.neil.main.url;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.http.HttpHeaders;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neil.main.url.nio.NioHttpEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.neil.main.utils.HttpTestUtils.*;
+
+/**
+ * Tests for the non blocking UrlTester against a mock server.
+ */
+public class NioUrlTesterTest {
+
+    private static final String MOCK_SERVER = "localhost";
+    private static final String TEST_PATH = "/test";
+    private static final long LENGTH = 12345L;
+    private static final String DATE = "Tue, 25 Jul 2017 17:00:55 GMT";
+    // Generous timeout as the first request to the mock server is slow while it warms up
+    private static final int TIMEOUT = 1000;
+
+    private final ByteArrayOutputStream errContent = new ByteArrayOutputStream();
+    private final UrlBuilder urlBuilder = new SimpleUrlVerifier();
+
+    private WireMockServer wireMockServer;
+    private UrlTester urlTester;
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setErr(new PrintStream(errContent));
+        wireMockServer = startMockServer(MOCK_SERVER);
+        urlTester = new NioUrlTester(new NioHttpEngine(2, trustAllSslContext()), 100);
+    }
+
+    @After
+    public void tearDown() {
+
+        urlTester.close();
+        wireMockServer.stop();
+        System.setErr(null);
+    }
+
+    @Test
+    public void urlReport_WhenRequestComplete() {
+
+        final String url = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        stubUrl(wireMockServer, TEST_PATH,
+                new HttpHeaders(buildContentLengthHeader(LENGTH), buildDateHeader(DATE)), 200);
+
+        final List<UrlReport> urlReports = urlTester.test(singletonList(url), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> softly.assertThat(urlReports)
+                .containsExactly(new UrlTestReport(url, 200, LENGTH, DATE)));
+    }
+
+    @Test
+    public void urlReport_WhenHttpsRequestComplete() {
+
+        final String url = buildExpectedHttpsUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        stubUrl(wireMockServer, TEST_PATH,
+                new HttpHeaders(buildContentLengthHeader(LENGTH), buildDateHeader(DATE)), 200);
+
+        final List<UrlReport> urlReports = urlTester.test(singletonList(url), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> softly.assertThat(urlReports)
+                .containsExactly(new UrlTestReport(url, 200, LENGTH, DATE)));
+    }
+
+    @Test
+    public void timedReports_WhenHttpAndHttpsRequestsComplete() {
+
+        final String httpUrl = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        final String httpsUrl = buildExpectedHttpsUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        stubUrl(wireMockServer, TEST_PATH,
+                new HttpHeaders(buildContentLengthHeader(LENGTH), buildDateHeader(DATE)), 200);
+
+        final List<UrlReport> urlReports = urlTester.test(Arrays.asList(httpUrl, httpsUrl), urlBuilder, TIMEOUT);
+        final String httpTimings = ((UrlTestReport) urlReports.get(0)).getTimings().map(Object::toString).orElse("");
+        final String httpsTimings = ((UrlTestReport) urlReports.get(1)).getTimings().map(Object::toString).orElse("");
+
+        assertSoftly(softly -> {
+            softly.assertThat(httpTimings).contains("\"Tls\": null").containsPattern("\"Total\": \\d+");
+            softly.assertThat(httpsTimings).containsPattern("\"Tls\": \\d+").containsPattern("\"Total\": \\d+");
+        });
+    }
+
+    @Test
+    public void urlReport_WhenPageNotFound() {
+
+        final String url = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        stubUrl(wireMockServer, TEST_PATH, new HttpHeaders(buildDateHeader(DATE)), 404);
+
+        final List<UrlReport> urlReports = urlTester.test(singletonList(url), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> softly.assertThat(urlReports)
+                .containsExactly(new UrlTestReport(url, 404, null, DATE)));
+    }
+
+    @Test
+    public void errorReport_WhenRequestTimesOut() {
+
+        final String url = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        wireMockServer.stubFor(get(urlEqualTo(TEST_PATH))
+                .willReturn(aResponse()
+                        .withFixedDelay(3000)));
+
+        final List<UrlReport> urlReports = urlTester.test(singletonList(url), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> softly.assertThat(urlReports)
+                .containsExactly(new UrlErrorReport(url, "Url test timed out")));
+    }
+
+    @Test
+    public void errorReport_WhenConnectionReset() {
+
+        final String url = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        wireMockServer.stubFor(get(urlEqualTo(TEST_PATH))
+                .willReturn(aResponse()
+                        .withFault(Fault.CONNECTION_RESET_BY_PEER)));
+
+        final List<UrlReport> urlReports = urlTester.test(singletonList(url), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> softly.assertThat(urlReports)
+                .containsExactly(new UrlErrorReport(url, "Url could not be connected to")));
+    }
+
+    @Test
+    public void errorReport_WhenResponseEmpty() {
+
+        final String url = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        wireMockServer.stubFor(get(urlEqualTo(TEST_PATH))
+                .willReturn(aResponse()
+                        .withFault(Fault.EMPTY_RESPONSE)));
+
+        final List<UrlReport> urlReports = urlTester.test(singletonList(url), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> softly.assertThat(urlReports)
+                .containsExactly(new UrlErrorReport(url, "Url could not be connected to")));
+    }
+
+    @Test
+    public void reportList_WhenMultipleUrls() {
+
+        final String url1 = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, "/1");
+        final String url2 = "ftp://me";
+        final String url3 = buildExpectedHttpsUrl(wireMockServer, MOCK_SERVER, "/3?foo=bar");
+        final HttpHeaders headers = new HttpHeaders(buildContentLengthHeader(LENGTH), buildDateHeader(DATE));
+        stubUrl(wireMockServer, "/1", headers, 200);
+        stubUrl(wireMockServer, "/3?foo=bar", headers, 200);
+
+        final List<UrlReport> urlReports = urlTester.test(Arrays.asList(url1, url2, url3), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> softly.assertThat(urlReports)
+                .containsExactly(
+                        new UrlTestReport(url1, 200, LENGTH, DATE),
+                        new UrlErrorReport(url2, "URL Malformed"),
+                        new UrlTestReport(url3, 200, LENGTH, DATE)));
+    }
+
+    @Test
+    public void reportSink_WhenSlowUrlFirst() {
+
+        final String slowUrl = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, "/slow");
+        final String fastUrl = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, "/fast");
+        final HttpHeaders headers = new HttpHeaders(buildContentLengthHeader(LENGTH), buildDateHeader(DATE));
+        wireMockServer.stubFor(get(urlEqualTo("/slow"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeaders(headers)
+                        .withFixedDelay(500)));
+        stubUrl(wireMockServer, "/fast", headers, 200);
+
+        final List<UrlReport> urlReports = new CopyOnWriteArrayList<>();
+        urlTester.test(Arrays.asList(slowUrl, fastUrl).iterator(), urlBuilder, TIMEOUT, urlReports::add);
+
+        assertSoftly(softly -> softly.assertThat(urlReports)
+                .containsExactly(
+                        new UrlTestReport(fastUrl, 200, LENGTH, DATE),
+                        new UrlTestReport(slowUrl, 200, LENGTH, DATE)));
+    }
+
+    @Test
+    public void urlReport_WhenProbeHeadComplete() throws Exception {
+
+        final String url = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        wireMockServer.stubFor(request("HEAD", urlEqualTo(TEST_PATH))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeaders(new HttpHeaders(buildContentLengthHeader(LENGTH), buildDateHeader(DATE)))));
+
+        final List<UrlReport> urlReports;
+        try (UrlTester probeTester = new NioUrlTester(new NioHttpEngine(1, trustAllSslContext()), 100, true)) {
+            urlReports = probeTester.test(singletonList(url), urlBuilder, TIMEOUT);
+        }
+
+        assertSoftly(softly -> {
+            softly.assertThat(urlReports).containsExactly(new UrlTestReport(url, 200, LENGTH, DATE));
+            softly.assertThat(wireMockServer.findAll(getRequestedFor(urlEqualTo(TEST_PATH)))).isEmpty();
+        });
+    }
+
+    @Test
+    public void urlReport_WhenProbeHeadRejected() throws Exception {
+
+        final String url = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        wireMockServer.stubFor(request("HEAD", urlEqualTo(TEST_PATH))
+                .willReturn(aResponse()
+                        .withStatus(405)
+                        .withHeaders(new HttpHeaders(buildContentLengthHeader(0L), buildDateHeader(DATE)))));
+        stubUrl(wireMockServer, TEST_PATH,
+                new HttpHeaders(buildContentLengthHeader(LENGTH), buildDateHeader(DATE)), 200);
+
+        final List<UrlReport> urlReports;
+        try (UrlTester probeTester = new NioUrlTester(new NioHttpEngine(1, trustAllSslContext()), 100, true)) {
+            urlReports = probeTester.test(singletonList(url), urlBuilder, TIMEOUT);
+        }
+
+        assertSoftly(softly -> softly.assertThat(urlReports)
+                .containsExactly(new UrlTestReport(url, 200, LENGTH, DATE)));
+    }
+
+    @Test
+    public void urlReportForEveryDuplicate_WhenDuplicateUrlsRequestedOnce() {
+
+        final String url = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        final String duplicateUrl = url.replace("http://localhost", "HTTP://LocalHost") + "/#fragment";
+        stubUrl(wireMockServer, TEST_PATH,
+                new HttpHeaders(buildContentLengthHeader(LENGTH), buildDateHeader(DATE)), 200);
+
+        final List<UrlReport> urlReports = urlTester.test(Arrays.asList(url, duplicateUrl), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> {
+            softly.assertThat(urlReports).containsExactly(
+                    new UrlTestReport(url, 200, LENGTH, DATE), new UrlTestReport(duplicateUrl, 200, LENGTH, DATE));
+            softly.assertThat(wireMockServer.findAll(getRequestedFor(urlEqualTo(TEST_PATH)))).hasSize(1);
+        });
+    }
+
+    @Test
+    public void errorReport_WhenResponseTrickledPastDeadline() throws Exception {
+
+        final List<UrlReport> urlReports;
+        final long startMillis = System.currentTimeMillis();
+        try (ServerSocket trickleServer = startTrickleServer(50)) {
+            final String url = "http://localhost:" + trickleServer.getLocalPort() + TEST_PATH;
+            urlReports = urlTester.test(singletonList(url), urlBuilder, TIMEOUT);
+        }
+        final long elapsedMillis = System.currentTimeMillis() - startMillis;
+
+        assertSoftly(softly -> {
+            softly.assertThat(urlReports).hasOnlyElementsOfType(UrlErrorReport.class).hasSize(1);
+            softly.assertThat(elapsedMillis).isLessThan(TIMEOUT * 4);
+            softly.assertThat(errContent.toString()).contains("Request deadline of " + TIMEOUT * 2 + "ms passed");
+        });
+    }
+
+    @Test
+    public void timedOutReport_WhenRunTimeoutPasses() {
+
+        final String url = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        wireMockServer.stubFor(get(urlEqualTo(TEST_PATH))
+                .willReturn(aResponse()
+                        .withFixedDelay(TIMEOUT / 2)));
+        final List<UrlReport> urlReports = new CopyOnWriteArrayList<>();
+
+        urlTester.test(singletonList(url).iterator(), urlBuilder, TIMEOUT, TIMEOUT / 10, urlReports::add);
+
+        assertSoftly(softly -> softly.assertThat(urlReports)
+                .containsExactly(new UrlErrorReport(url, "Url test timed out")));
+    }
+
+    @Test
+    public void reportForEveryUrl_WhenRunTimeoutPassesBeforeUrlsRead() throws Exception {
+
+        final String url = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        wireMockServer.stubFor(get(urlEqualTo(TEST_PATH))
+                .willReturn(aResponse()
+                        .withFixedDelay(TIMEOUT / 2)));
+        final List<UrlReport> urlReports = new CopyOnWriteArrayList<>();
+
+        try (UrlTester oneAtATime = new NioUrlTester(new NioHttpEngine(1, trustAllSslContext()), 1)) {
+            oneAtATime.test(Arrays.asList(url, url + "?second", url + "?third").iterator(), urlBuilder, TIMEOUT,
+                    TIMEOUT / 10, urlReports::add);
+        }
+
+        // The second url is still waiting for the first to finish when the run times out, so is never started
+        assertSoftly(softly -> softly.assertThat(urlReports).containsExactly(
+                new UrlErrorReport(url, "Url test timed out"),
+                new UrlErrorReport(url + "?second", "Url not tested before the run timeout"),
+                new UrlErrorReport(url + "?third", "Url not tested before the run timeout")));
+    }
+
+    @Test
+    public void failureLogged_WhenReportSinkFails() {
+
+        final String url = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        stubUrl(wireMockServer, TEST_PATH,
+                new HttpHeaders(buildContentLengthHeader(LENGTH), buildDateHeader(DATE)), 200);
+
+        urlTester.test(singletonList(url).iterator(), urlBuilder, TIMEOUT, 0, urlReport -> {
+            throw new UncheckedIOException(new IOException("Broken pipe"));
+        });
+
+        assertSoftly(softly -> softly.assertThat(errContent.toString())
+                .contains("Report of " + url + " could not be passed on: java.io.IOException: Broken pipe"));
+    }
+
+}
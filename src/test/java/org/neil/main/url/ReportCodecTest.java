@@ -0,0 +1,74 @@
+package org.neil.main.url;
+
+import org.junit.Test;
+import org.neil.main.report.RequestTimings;
+import org.neil.main.report.StatusReport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for writing urls and reports in binary and reading them back.
+ */
+public class ReportCodecTest {
+
+    private static final String DATE = "Tue, 03 Jun 2008 11:05:30 GMT";
+
+    @Test
+    public void reportsReadBackAsSent_WhenWritten() throws IOException {
+
+        final RequestTimings timings = new RequestTimings(1000, RequestTimings.NOT_MEASURED, 3000, 4000, 5000, 6000);
+        final List<UrlReport> urlReports = Arrays.asList(
+                new UrlTestReport("http://example.com/a", 200, 12345L, DATE),
+                new UrlTestReport("http://example.com/\u00e4", 404, null, null, timings, 2),
+                new UrlErrorReport("not a url", "URL Malformed"),
+                new UrlErrorReport("http://example.com/c", "Url could not be connected to", 3),
+                new UrlTestReport("http://example.com/d", 200, 10L, DATE, null, 0,
+                        Arrays.asList(new Redirect(301, "https://example.com/d"))));
+        final StatusReport statusReport = new StatusReport();
+        statusReport.addStatus(200, 2);
+        statusReport.addStatus(-1, 2);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        for (UrlReport urlReport : urlReports) {
+            ReportCodec.writeReport(output, urlReport);
+        }
+        ReportCodec.writeStatusReport(output, statusReport);
+
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        final List<UrlReport> readReports = new ArrayList<>();
+        int frame;
+        while ((frame = input.read()) != ReportCodec.STATUS_REPORT) {
+            readReports.add(ReportCodec.readReport(input, frame));
+        }
+        final StatusReport readStatusReport = ReportCodec.readStatusReport(input);
+
+        assertSoftly(softly -> {
+            softly.assertThat(readReports).isEqualTo(urlReports);
+            softly.assertThat(((UrlTestReport) readReports.get(1)).getTimings().map(RequestTimings::toString))
+                    .contains(timings.toString());
+            softly.assertThat(readStatusReport.toJson()).isEqualTo(statusReport.toJson());
+        });
+    }
+
+    @Test(expected = EOFException.class)
+    public void urlsEnd_WhenStreamEnds() throws IOException {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReportCodec.writeString(new DataOutputStream(bytes), "http://example.com");
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertThat(ReportCodec.readString(input)).isEqualTo("http://example.com");
+        ReportCodec.readString(input);
+    }
+}
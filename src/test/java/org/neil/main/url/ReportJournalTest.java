@@ -0,0 +1,155 @@
+package org.neil.main.url;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for recording reports as a run goes and resuming the run from them.
+ */
+public class ReportJournalTest {
+
+    private static final String DATE = "Tue, 03 Jun 2008 11:05:30 GMT";
+    private static final int HEADER_BYTES = 4;
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void recordedUrlsSkipped_WhenResumed() throws IOException {
+
+        final Path journalFile = temporaryFolder.getRoot().toPath().resolve("run.journal");
+        final List<UrlReport> urlReports = Arrays.asList(
+                new UrlTestReport("http://example.com/a", 200, 12345L, DATE),
+                new UrlErrorReport("not a url", "URL Malformed"),
+                new UrlTestReport("http://example.com/a", 200, 12345L, DATE));
+        try (ReportJournal reportJournal = ReportJournal.create(journalFile)) {
+            urlReports.forEach(reportJournal::record);
+        }
+
+        final List<UrlReport> recorded = new ArrayList<>();
+        final List<String> remaining = new ArrayList<>();
+        try (ReportJournal reportJournal = ReportJournal.resume(journalFile, recorded::add)) {
+            reportJournal.skipRecorded(Arrays.asList("http://example.com/a", "http://example.com/b", "not a url",
+                    "http://example.com/a", "http://example.com/a").iterator()).forEachRemaining(remaining::add);
+        }
+
+        assertSoftly(softly -> {
+            softly.assertThat(recorded).isEqualTo(urlReports);
+            softly.assertThat(remaining).containsExactly("http://example.com/b", "http://example.com/a");
+        });
+    }
+
+    @Test
+    public void unsettledUrlsTestedAgain_WhenResumedAfterTimeout() throws IOException {
+
+        final Path journalFile = temporaryFolder.getRoot().toPath().resolve("run.journal");
+        final UrlReport settled = new UrlTestReport("http://example.com/a", 200, 12345L, DATE);
+        final UrlReport hostNotFound = new UrlErrorReport("http://example.com/e",
+                AbstractUrlTester.URL_HOST_NOT_FOUND);
+        try (ReportJournal reportJournal = ReportJournal.create(journalFile)) {
+            reportJournal.record(settled);
+            reportJournal.record(hostNotFound);
+            reportJournal.record(new UrlErrorReport("http://example.com/b", AbstractUrlTester.URL_TIMED_OUT));
+            reportJournal.record(new UrlErrorReport("http://example.com/c", AbstractUrlTester.URL_NOT_TESTED));
+            reportJournal.record(new UrlErrorReport("http://example.com/d", AbstractUrlTester.URL_NOT_CONNECTED, 3));
+        }
+
+        final List<UrlReport> recorded = new ArrayList<>();
+        final List<String> remaining = new ArrayList<>();
+        try (ReportJournal reportJournal = ReportJournal.resume(journalFile, recorded::add)) {
+            reportJournal.skipRecorded(Arrays.asList("http://example.com/a", "http://example.com/b",
+                    "http://example.com/c", "http://example.com/d", "http://example.com/e").iterator())
+                    .forEachRemaining(remaining::add);
+        }
+
+        assertSoftly(softly -> {
+            softly.assertThat(recorded).containsExactly(settled, hostNotFound);
+            softly.assertThat(remaining).containsExactly("http://example.com/b", "http://example.com/c",
+                    "http://example.com/d");
+        });
+    }
+
+    @Test
+    public void tornRecordDropped_WhenJournalCutShort() throws IOException {
+
+        final Path journalFile = temporaryFolder.getRoot().toPath().resolve("run.journal");
+        final UrlReport first = new UrlTestReport("http://example.com/1", 200, 10L, DATE);
+        final UrlReport torn = new UrlTestReport("http://example.com/2", 404, null, null);
+        final UrlReport resumed = new UrlTestReport("http://example.com/3", 503, null, DATE);
+        try (ReportJournal reportJournal = ReportJournal.create(journalFile)) {
+            reportJournal.record(first);
+            reportJournal.record(torn);
+        }
+        // Spoils the last byte of the second record, as if the crash came part way through writing it
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(length, HEADER_BYTES);
+            final long tornStart = HEADER_BYTES + RECORD_HEADER_BYTES + length.getInt(0);
+            length.clear();
+            channel.read(length, tornStart);
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), tornStart + RECORD_HEADER_BYTES + length.getInt(0) - 1);
+        }
+
+        final List<UrlReport> recordedBeforeResume = new ArrayList<>();
+        final Iterator<String> remaining;
+        try (ReportJournal reportJournal = ReportJournal.resume(journalFile, recordedBeforeResume::add)) {
+            remaining = reportJournal.skipRecorded(Arrays.asList("http://example.com/1", "http://example.com/2",
+                    "http://example.com/3").iterator());
+            remaining.next();
+            reportJournal.record(resumed);
+        }
+        final List<UrlReport> recordedAfterResume = new ArrayList<>();
+        ReportJournal.resume(journalFile, recordedAfterResume::add).close();
+
+        assertSoftly(softly -> {
+            softly.assertThat(recordedBeforeResume).containsExactly(first);
+            softly.assertThat(remaining.next()).isEqualTo("http://example.com/3");
+            softly.assertThat(recordedAfterResume).containsExactly(first, resumed);
+        });
+    }
+
+    @Test
+    public void recordsRead_WhenJournalNotClosed() throws IOException {
+
+        final Path journalFile = temporaryFolder.getRoot().toPath().resolve("run.journal");
+        final Path crashedFile = temporaryFolder.getRoot().toPath().resolve("crashed.journal");
+        final UrlReport first = new UrlTestReport("http://example.com/1", 200, 10L, DATE);
+        final UrlReport second = new UrlTestReport("http://example.com/2", 301, null, DATE);
+        final UrlReport resumed = new UrlTestReport("http://example.com/3", 404, null, DATE);
+        // A copy taken while the journal is open is what a crash leaves, the records and the zeroes of the region
+        try (ReportJournal reportJournal = ReportJournal.create(journalFile)) {
+            reportJournal.record(first);
+            reportJournal.record(second);
+            Files.copy(journalFile, crashedFile);
+        }
+
+        final List<UrlReport> recordedBeforeResume = new ArrayList<>();
+        final long crashedSize = Files.size(crashedFile);
+        try (ReportJournal reportJournal = ReportJournal.resume(crashedFile, recordedBeforeResume::add)) {
+            reportJournal.record(resumed);
+        }
+        final List<UrlReport> recordedAfterResume = new ArrayList<>();
+        ReportJournal.resume(crashedFile, recordedAfterResume::add).close();
+
+        assertSoftly(softly -> {
+            softly.assertThat(crashedSize).isGreaterThanOrEqualTo(16L << 20);
+            softly.assertThat(recordedBeforeResume).containsExactly(first, second);
+            softly.assertThat(recordedAfterResume).containsExactly(first, second, resumed);
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package org.neil.main.url;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for keeping reports in columns and reading them back.
+ */
+public class ReportStoreTest {
+
+    private static final String DATE = "Tue, 03 Jun 2008 11:05:30 GMT";
+
+    @Test
+    public void reportsReadBackAsAdded_WhenStored() {
+
+        final List<UrlReport> urlReports = Arrays.asList(
+                new UrlTestReport("http://example.com/a", 200, 12345L, DATE),
+                new UrlTestReport("http://example.com/\u00e4", 404, null, null),
+                new UrlErrorReport("not a url", "URL Malformed"),
+                new UrlTestReport("http://example.com/b", 200, 0L, "yesterday"),
+                new UrlErrorReport("http://example.com/c", "URL Malformed"),
+                new UrlTestReport("http://example.com/d", 304, 10L, "Mon, 03 Jun 2008 11:05:30 GMT"),
+                new UrlTestReport("http://example.com/e", 200, 10L, DATE, null, 3),
+                new UrlErrorReport("http://example.com/f", "Url could not be connected to", 4),
+                new UrlTestReport("http://example.com/g", 200, 10L, DATE, null, 0,
+                        Arrays.asList(new Redirect(301, "https://example.com/g"),
+                                new Redirect(302, "https://example.com/"))));
+        final ReportStore reportStore = new ReportStore();
+        urlReports.forEach(reportStore::add);
+
+        assertSoftly(softly -> {
+            softly.assertThat(reportStore.size()).isEqualTo(urlReports.size());
+            softly.assertThat(reportStore.subList(0, reportStore.size())).isEqualTo(urlReports);
+            softly.assertThat(reportStore.subList(4, 6)).isEqualTo(urlReports.subList(4, 6));
+            softly.assertThat(reportStore.getStatusCode(2)).isEqualTo(-1);
+            softly.assertThat(reportStore.get(0).toJson()).isEqualTo(urlReports.get(0).toJson());
+        });
+    }
+
+    @Test
+    public void everyReportKept_WhenColumnsGrow() {
+
+        final List<UrlReport> urlReports = new ArrayList<>();
+        final ReportStore reportStore = new ReportStore();
+        for (int index = 0; index < 10000; index++) {
+            final UrlReport urlReport = index % 10 == 0
+                    ? new UrlErrorReport("http://example.com/" + index, "Url could not be connected to")
+                    : new UrlTestReport("http://example.com/" + index, 200, (long) index, DATE);
+            urlReports.add(urlReport);
+            reportStore.add(urlReport);
+        }
+
+        assertSoftly(softly -> {
+            softly.assertThat(reportStore.subList(0, reportStore.size())).isEqualTo(urlReports);
+            softly.assertThat(reportStore.get(9999)).isEqualTo(urlReports.get(9999));
+        });
+    }
+}
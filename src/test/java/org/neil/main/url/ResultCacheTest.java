@@ -0,0 +1,144 @@
+package org.neil.main.url;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for caching the results of urls between runs.
+ */
+public class ResultCacheTest {
+
+    private static final String DATE = "Mon, 12 Oct 2026 10:00:00 GMT";
+    private static final String LAST_MODIFIED = "Sun, 11 Oct 2026 10:00:00 GMT";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sameResult_WhenCacheSavedAndLoaded() throws Exception {
+
+        final Path cacheFile = temporaryFolder.getRoot().toPath().resolve("results.tsv");
+        final ResultCache resultCache = ResultCache.load(cacheFile, 60);
+        resultCache.put(new URL("http://localhost/page"), response(200, "\"v1\""));
+        resultCache.save();
+
+        final Optional<ResultCache.Entry> entry = ResultCache.load(cacheFile, 60).get(new URL("http://localhost/page"));
+
+        assertSoftly(softly -> {
+            softly.assertThat(entry).isPresent();
+            softly.assertThat(entry.get().isFresh()).isTrue();
+            softly.assertThat(entry.get().toReport("localhost/page"))
+                    .isEqualTo(new UrlTestReport("localhost/page", 200, 12L, DATE));
+        });
+    }
+
+    @Test
+    public void sameEntry_WhenUrlDiffersOnlyInCaseDefaultPortOrFragment() throws Exception {
+
+        final ResultCache resultCache = ResultCache.load(temporaryFolder.getRoot().toPath().resolve("results.tsv"), 60);
+        resultCache.put(new URL("http://localhost/"), response(200, null));
+
+        final Optional<ResultCache.Entry> entry = resultCache.get(new URL("HTTP://LocalHost:80#top"));
+
+        assertSoftly(softly -> softly.assertThat(entry).isPresent());
+    }
+
+    @Test
+    public void validators_WhenEntryExpired() throws Exception {
+
+        final ResultCache resultCache = ResultCache.load(temporaryFolder.getRoot().toPath().resolve("results.tsv"), 0);
+        resultCache.put(new URL("http://localhost/page"), response(200, "\"v1\""));
+
+        final ResultCache.Entry entry = resultCache.get(new URL("http://localhost/page")).get();
+
+        assertSoftly(softly -> {
+            softly.assertThat(entry.isFresh()).isFalse();
+            softly.assertThat(entry.getValidators())
+                    .hasSize(2)
+                    .containsEntry("If-None-Match", "\"v1\"")
+                    .containsEntry("If-Modified-Since", LAST_MODIFIED);
+        });
+    }
+
+    @Test
+    public void entryDropped_WhenSavedPastRetention() throws Exception {
+
+        final Path cacheFile = temporaryFolder.getRoot().toPath().resolve("results.tsv");
+        final long pastRetentionMillis = System.currentTimeMillis() - ResultCache.RETENTION_MILLIS - 1000;
+        Files.write(cacheFile, Arrays.asList(
+                "# url-tester result cache v1",
+                "http://localhost/old\t200\t12\t\t\t\t" + pastRetentionMillis), StandardCharsets.UTF_8);
+        final ResultCache resultCache = ResultCache.load(cacheFile, 0);
+        resultCache.put(new URL("http://localhost/expired"), response(200, "\"v1\""));
+        final boolean oldLoaded = resultCache.get(new URL("http://localhost/old")).isPresent();
+        resultCache.save();
+
+        final ResultCache savedCache = ResultCache.load(cacheFile, 0);
+        final Optional<ResultCache.Entry> oldEntry = savedCache.get(new URL("http://localhost/old"));
+        final Optional<ResultCache.Entry> expiredEntry = savedCache.get(new URL("http://localhost/expired"));
+
+        assertSoftly(softly -> {
+            softly.assertThat(oldLoaded).isTrue();
+            softly.assertThat(oldEntry).isEmpty();
+            softly.assertThat(expiredEntry).isPresent();
+        });
+    }
+
+    @Test
+    public void noEntry_WhenServerError() throws Exception {
+
+        final ResultCache resultCache = ResultCache.load(temporaryFolder.getRoot().toPath().resolve("results.tsv"), 60);
+        resultCache.put(new URL("http://localhost/error"), response(500, null));
+        resultCache.put(new URL("http://localhost/busy"), response(429, null));
+
+        final Optional<ResultCache.Entry> errorEntry = resultCache.get(new URL("http://localhost/error"));
+        final Optional<ResultCache.Entry> busyEntry = resultCache.get(new URL("http://localhost/busy"));
+
+        assertSoftly(softly -> {
+            softly.assertThat(errorEntry).isEmpty();
+            softly.assertThat(busyEntry).isEmpty();
+        });
+    }
+
+    @Test
+    public void freshEntry_WhenRevalidated() throws Exception {
+
+        final ResultCache resultCache = ResultCache.load(temporaryFolder.getRoot().toPath().resolve("results.tsv"), 0);
+        final URL url = new URL("http://localhost/page");
+        resultCache.put(url, response(200, "\"v1\""));
+        final Map<String, List<String>> notModifiedHeaders = new HashMap<>();
+        notModifiedHeaders.put("Date", Collections.singletonList("Tue, 13 Oct 2026 10:00:00 GMT"));
+
+        final ResultCache.Entry entry = resultCache.revalidate(url, resultCache.get(url).get(),
+                new HttpResponse(notModifiedHeaders, 304));
+
+        assertSoftly(softly -> softly.assertThat(entry.toReport("localhost/page"))
+                .isEqualTo(new UrlTestReport("localhost/page", 200, 12L, "Tue, 13 Oct 2026 10:00:00 GMT")));
+    }
+
+    private HttpResponse response(int statusCode, String eTag) {
+
+        final Map<String, List<String>> headers = new HashMap<>();
+        headers.put("Content-Length", Collections.singletonList("12"));
+        headers.put("Date", Collections.singletonList(DATE));
+        headers.put("Last-Modified", Collections.singletonList(LAST_MODIFIED));
+        if (eTag != null) {
+            headers.put("ETag", Collections.singletonList(eTag));
+        }
+        return new HttpResponse(headers, statusCode);
+    }
+}
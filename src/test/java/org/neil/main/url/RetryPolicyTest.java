@@ -0,0 +1,101 @@
+package org.neil.main.url;
+
+import org.junit.Test;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.EOFException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for deciding which failed requests are retried and how long to wait first.
+ */
+public class RetryPolicyTest {
+
+    private static final long BASE_DELAY_MILLIS = 100;
+    private static final long MAX_DELAY_MILLIS = 250;
+    private static final long MAX_RETRY_AFTER_MILLIS = 10000;
+
+    @Test
+    public void onlyTransientFailuresRetried_WhenRequestsFail() {
+
+        final RetryPolicy retryPolicy = new RetryPolicy(3, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS,
+                MAX_RETRY_AFTER_MILLIS, 0.1, 100);
+
+        assertSoftly(softly -> {
+            softly.assertThat(Failure.of(new UnknownHostException("bogus.co"))).isEqualTo(Failure.DNS);
+            softly.assertThat(Failure.of(new ConnectException("Connection refused"))).isEqualTo(Failure.REFUSED);
+            softly.assertThat(Failure.of(new SocketException("Connection reset"))).isEqualTo(Failure.RESET);
+            softly.assertThat(Failure.of(new EOFException())).isEqualTo(Failure.RESET);
+            softly.assertThat(Failure.of(new SocketTimeoutException("Read timed out"))).isEqualTo(Failure.TIMEOUT);
+            softly.assertThat(Failure.of(new SSLHandshakeException("PKIX path building failed")))
+                    .isEqualTo(Failure.TLS);
+            softly.assertThat(retryPolicy.retryDelayMillis(1, Failure.TLS)).isEqualTo(RetryPolicy.NO_RETRY);
+            softly.assertThat(retryPolicy.retryDelayMillis(1, Failure.DNS)).isEqualTo(RetryPolicy.NO_RETRY);
+            softly.assertThat(retryPolicy.retryDelayMillis(1, Failure.DEADLINE)).isEqualTo(RetryPolicy.NO_RETRY);
+            softly.assertThat(retryPolicy.retryDelayMillis(1, Failure.RESET)).isBetween(0L, BASE_DELAY_MILLIS);
+            softly.assertThat(retryPolicy.retryDelayMillis(3, Failure.TIMEOUT)).isBetween(0L, MAX_DELAY_MILLIS);
+            softly.assertThat(retryPolicy.retryDelayMillis(4, Failure.REFUSED)).isEqualTo(RetryPolicy.NO_RETRY);
+            softly.assertThat(retryPolicy.retryDelayMillis(1, response(500))).isEqualTo(RetryPolicy.NO_RETRY);
+            softly.assertThat(retryPolicy.retryDelayMillis(1, response(404))).isEqualTo(RetryPolicy.NO_RETRY);
+            softly.assertThat(retryPolicy.retryDelayMillis(1, response(502))).isBetween(0L, BASE_DELAY_MILLIS);
+            softly.assertThat(RetryPolicy.none().retryDelayMillis(1, Failure.RESET)).isEqualTo(RetryPolicy.NO_RETRY);
+        });
+    }
+
+    @Test
+    public void retryAfterWaitedFor_WhenServerAsks() {
+
+        final RetryPolicy retryPolicy = new RetryPolicy(3, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS,
+                MAX_RETRY_AFTER_MILLIS, 0.1, 100);
+
+        assertSoftly(softly -> {
+            softly.assertThat(retryPolicy.retryDelayMillis(1, response(429, "2"))).isEqualTo(2000);
+            softly.assertThat(retryPolicy.retryDelayMillis(1, response(503, "60"))).isEqualTo(RetryPolicy.NO_RETRY);
+            softly.assertThat(retryPolicy.retryDelayMillis(1, response(503, "Tue, 03 Jun 2008 11:05:30 GMT")))
+                    .isZero();
+            softly.assertThat(retryPolicy.retryDelayMillis(1, response(503, "soon")))
+                    .isBetween(0L, BASE_DELAY_MILLIS);
+        });
+    }
+
+    @Test
+    public void retriesLimited_WhenBudgetSpent() {
+
+        final RetryPolicy retryPolicy = new RetryPolicy(3, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS,
+                MAX_RETRY_AFTER_MILLIS, 0.5, 1);
+
+        final long firstRetry = retryPolicy.retryDelayMillis(1, Failure.RESET);
+        final long budgetSpent = retryPolicy.retryDelayMillis(1, Failure.RESET);
+        retryPolicy.recordRequest();
+        final long halfEarned = retryPolicy.retryDelayMillis(1, Failure.RESET);
+        retryPolicy.recordRequest();
+        final long wholeEarned = retryPolicy.retryDelayMillis(1, Failure.RESET);
+
+        assertSoftly(softly -> {
+            softly.assertThat(firstRetry).isNotEqualTo(RetryPolicy.NO_RETRY);
+            softly.assertThat(budgetSpent).isEqualTo(RetryPolicy.NO_RETRY);
+            softly.assertThat(halfEarned).isEqualTo(RetryPolicy.NO_RETRY);
+            softly.assertThat(wholeEarned).isNotEqualTo(RetryPolicy.NO_RETRY);
+        });
+    }
+
+    private HttpResponse response(int statusCode) {
+
+        return new HttpResponse(Collections.emptyMap(), statusCode);
+    }
+
+    private HttpResponse response(int statusCode, String retryAfter) {
+
+        final Map<String, List<String>> headers = Collections.singletonMap("Retry-After",
+                Collections.singletonList(retryAfter));
+        return new HttpResponse(headers, statusCode);
+    }
+}
@@ -80,6 +80,30 @@ public class UrlBuilderVerificationTest {
         assertTrue(urlBuilder.verify(url));
     }
 
+    @Test
+    public void returnTrue_WhenUpperCaseProtocol() {
+
+        final String url = "HTTPS://www.bbc.co.uk";
+
+        assertTrue(urlBuilder.verify(url));
+    }
+
+    @Test
+    public void returnTrue_WhenUserInfoAndIpv6Host() {
+
+        final String url = "http://user:pass@[2001:db8::1]:8080/path";
+
+        assertTrue(urlBuilder.verify(url));
+    }
+
+    @Test
+    public void returnTrue_WhenNonAsciiPath() {
+
+        final String url = "http://www.bbc.co.uk/caf\u00e9?q=\u00fc";
+
+        assertTrue(urlBuilder.verify(url));
+    }
+
     // ################# NEGATIVE TESTS #########################
 
     @Test
@@ -114,4 +138,36 @@ public class UrlBuilderVerificationTest {
         assertFalse(urlBuilder.verify(url));
     }
 
+    @Test
+    public void returnFalse_WhenBadPercentEncoding() {
+
+        final String url = "http://www.bbc.co.uk/foo%2";
+
+        assertFalse(urlBuilder.verify(url));
+    }
+
+    @Test
+    public void returnFalse_WhenPortOutOfRange() {
+
+        final String url = "http://www.bbc.co.uk:65536/";
+
+        assertFalse(urlBuilder.verify(url));
+    }
+
+    @Test
+    public void returnFalse_WhenHostMissing() {
+
+        final String url = "http://user@/path";
+
+        assertFalse(urlBuilder.verify(url));
+    }
+
+    @Test
+    public void returnFalse_WhenSpace() {
+
+        final String url = "http://www.bbc.co.uk/foo bar";
+
+        assertFalse(urlBuilder.verify(url));
+    }
+
 }
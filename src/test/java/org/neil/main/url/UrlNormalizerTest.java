@@ -0,0 +1,57 @@
+package org.neil.main.url;
+
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for reducing urls to a single form.
+ */
+public class UrlNormalizerTest {
+
+    private final UrlBuilder urlBuilder = new SimpleUrlVerifier();
+
+    @Test
+    public void sameUrl_WhenUrlsDifferInCasePortSlashOrFragment() {
+
+        final Optional<String> normalizedUrl = UrlNormalizer.normalize("http://www.bbc.co.uk/news", urlBuilder);
+        final Optional<String> upperCaseUrl = UrlNormalizer.normalize("HTTP://WWW.BBC.CO.UK/news", urlBuilder);
+        final Optional<String> defaultPortUrl = UrlNormalizer.normalize("http://www.bbc.co.uk:80/news", urlBuilder);
+        final Optional<String> trailingSlashUrl = UrlNormalizer.normalize("http://www.bbc.co.uk/news/", urlBuilder);
+        final Optional<String> fragmentUrl = UrlNormalizer.normalize("http://www.bbc.co.uk/news#top", urlBuilder);
+
+        assertSoftly(softly -> {
+            softly.assertThat(normalizedUrl).contains("http://www.bbc.co.uk/news");
+            softly.assertThat(upperCaseUrl).isEqualTo(normalizedUrl);
+            softly.assertThat(defaultPortUrl).isEqualTo(normalizedUrl);
+            softly.assertThat(trailingSlashUrl).isEqualTo(normalizedUrl);
+            softly.assertThat(fragmentUrl).isEqualTo(normalizedUrl);
+        });
+    }
+
+    @Test
+    public void differentUrl_WhenPathCasePortOrQueryDiffers() {
+
+        final Optional<String> pathCaseUrl = UrlNormalizer.normalize("https://www.bbc.co.uk/News", urlBuilder);
+        final Optional<String> portUrl = UrlNormalizer.normalize("https://www.bbc.co.uk:8443/news", urlBuilder);
+        final Optional<String> queryUrl = UrlNormalizer.normalize("https://www.bbc.co.uk/news/?page=2", urlBuilder);
+        final Optional<String> emptyPathUrl = UrlNormalizer.normalize("https://www.bbc.co.uk", urlBuilder);
+
+        assertSoftly(softly -> {
+            softly.assertThat(pathCaseUrl).contains("https://www.bbc.co.uk/News");
+            softly.assertThat(portUrl).contains("https://www.bbc.co.uk:8443/news");
+            softly.assertThat(queryUrl).contains("https://www.bbc.co.uk/news?page=2");
+            softly.assertThat(emptyPathUrl).contains("https://www.bbc.co.uk/");
+        });
+    }
+
+    @Test
+    public void noUrl_WhenUrlMalformed() {
+
+        final Optional<String> normalizedUrl = UrlNormalizer.normalize("ftp://www.bbc.co.uk", urlBuilder);
+
+        assertSoftly(softly -> softly.assertThat(normalizedUrl).isEmpty());
+    }
+}
@@ -4,7 +4,10 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.neil.main.url.dns.HostResolver;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -14,24 +17,32 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ConnectException;
 import java.net.MalformedURLException;
+import java.net.SocketException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
  * Tests for the UrlTester implementations and building reports.
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({URL.class, URLConnection.class, GetRequest.class})
+@PrepareForTest({URL.class, URLConnection.class, GetRequest.class, UrlConnectionTransport.class})
 public class UrlTesterTest {
 
-    @Mock
+    // Parsing is left to the interface, which verifies then builds with the stubs
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private UrlBuilder urlBuilder;
 
     private UrlTester urlTester = new ThreadedUrlTester();
@@ -99,6 +110,114 @@ public class UrlTesterTest {
         assertSoftly(softly -> softly.assertThat(urlReports).containsExactly(expectedReport));
     }
 
+    @Test
+    public void urlReport_WhenVirtualThreadsRequested() throws Exception {
+
+        final String url = "http://www.bbc.co.uk";
+        final UrlTestReport expectedReport = new UrlTestReport(url, 200, 12345L, "date");
+        final URL mockUrl = PowerMockito.mock(URL.class);
+        final HttpURLConnection mockHttpConnection = PowerMockito.mock(HttpURLConnection.class);
+        final Map<String, List<String>> mockHeaders = new HashMap<>();
+        mockHeaders.put("Content-Length", Collections.singletonList("12345"));
+        mockHeaders.put("Date", Collections.singletonList("date"));
+
+        when(urlBuilder.verify(url)).thenReturn(true);
+        when(urlBuilder.build(url)).thenReturn(mockUrl);
+        PowerMockito.when(mockUrl.getProtocol()).thenReturn("http");
+        PowerMockito.when(mockUrl.openConnection()).thenReturn(mockHttpConnection);
+        PowerMockito.when(mockHttpConnection.getResponseCode()).thenReturn(200);
+        PowerMockito.when(mockHttpConnection.getHeaderFields()).thenReturn(mockHeaders);
+
+        // Falls back to the thread pool on JDKs without virtual threads
+        final List<UrlReport> urlReports = new ThreadedUrlTester(true).test(singletonList(url), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> softly.assertThat(urlReports).containsExactly(expectedReport));
+    }
+
+    @Test
+    public void urlReport_WhenProbeHeadRejected() throws Exception {
+
+        final String url = "http://www.bbc.co.uk";
+        final UrlTestReport expectedReport = new UrlTestReport(url, 200, 12345L, "date");
+        final URL mockUrl = PowerMockito.mock(URL.class);
+        final HttpURLConnection mockHttpConnection = PowerMockito.mock(HttpURLConnection.class);
+        final Map<String, List<String>> mockHeaders = new HashMap<>();
+        mockHeaders.put("Content-Length", Collections.singletonList("12345"));
+        mockHeaders.put("Date", Collections.singletonList("date"));
+
+        when(urlBuilder.verify(url)).thenReturn(true);
+        when(urlBuilder.build(url)).thenReturn(mockUrl);
+        PowerMockito.when(mockUrl.getProtocol()).thenReturn("http");
+        PowerMockito.when(mockUrl.openConnection()).thenReturn(mockHttpConnection);
+        PowerMockito.when(mockHttpConnection.getResponseCode()).thenReturn(405, 200);
+        PowerMockito.when(mockHttpConnection.getHeaderFields()).thenReturn(mockHeaders);
+
+        final UrlTester probeTester = new ThreadedUrlTester(false,
+                new GetRequest(new HostConnectionPool(), new HostResolver(), true));
+        final List<UrlReport> urlReports = probeTester.test(singletonList(url), urlBuilder, TIMEOUT);
+
+        final InOrder requestMethods = inOrder(mockHttpConnection);
+        requestMethods.verify(mockHttpConnection).setRequestMethod("HEAD");
+        requestMethods.verify(mockHttpConnection).setRequestMethod("GET");
+        assertSoftly(softly -> softly.assertThat(urlReports).containsExactly(expectedReport));
+    }
+
+    @Test
+    public void urlReportFromHead_WhenProbedHeadersLowercase() throws Exception {
+
+        final String url = "http://www.bbc.co.uk";
+        final UrlTestReport expectedReport = new UrlTestReport(url, 200, 12345L, "date");
+        final URL mockUrl = PowerMockito.mock(URL.class);
+        final HttpURLConnection mockHttpConnection = PowerMockito.mock(HttpURLConnection.class);
+        final Map<String, List<String>> mockHeaders = new HashMap<>();
+        mockHeaders.put("content-length", Collections.singletonList("12345"));
+        mockHeaders.put("date", Collections.singletonList("date"));
+
+        when(urlBuilder.verify(url)).thenReturn(true);
+        when(urlBuilder.build(url)).thenReturn(mockUrl);
+        PowerMockito.when(mockUrl.getProtocol()).thenReturn("http");
+        PowerMockito.when(mockUrl.openConnection()).thenReturn(mockHttpConnection);
+        PowerMockito.when(mockHttpConnection.getResponseCode()).thenReturn(200);
+        PowerMockito.when(mockHttpConnection.getHeaderFields()).thenReturn(mockHeaders);
+
+        final UrlTester probeTester = new ThreadedUrlTester(false,
+                new GetRequest(new HostConnectionPool(), new HostResolver(), true));
+        final List<UrlReport> urlReports = probeTester.test(singletonList(url), urlBuilder, TIMEOUT);
+
+        verify(mockHttpConnection).setRequestMethod("HEAD");
+        verify(mockHttpConnection, never()).setRequestMethod("GET");
+        assertSoftly(softly -> softly.assertThat(urlReports).containsExactly(expectedReport));
+    }
+
+    @Test
+    public void urlReportOverHttp1_WhenHttp2NotSupported() throws Exception {
+
+        final String url = "http://www.bbc.co.uk";
+        final UrlTestReport expectedReport = new UrlTestReport(url, 200, 12345L, "date");
+        final URL mockUrl = PowerMockito.mock(URL.class);
+        final HttpURLConnection mockHttpConnection = PowerMockito.mock(HttpURLConnection.class);
+        final Map<String, List<String>> mockHeaders = new HashMap<>();
+        mockHeaders.put("Content-Length", Collections.singletonList("12345"));
+        mockHeaders.put("Date", Collections.singletonList("date"));
+
+        when(urlBuilder.verify(url)).thenReturn(true);
+        when(urlBuilder.build(url)).thenReturn(mockUrl);
+        PowerMockito.when(mockUrl.getProtocol()).thenReturn("http");
+        PowerMockito.when(mockUrl.openConnection()).thenReturn(mockHttpConnection);
+        PowerMockito.when(mockHttpConnection.getResponseCode()).thenReturn(200);
+        PowerMockito.when(mockHttpConnection.getHeaderFields()).thenReturn(mockHeaders);
+
+        // The tests run against the Java 8 classes, which have no HTTP/2 client
+        final UrlTester http2Tester = new ThreadedUrlTester(false, new GetRequest(new HostConnectionPool(),
+                new HostResolver(), false, RetryPolicy.none(), true));
+        final List<UrlReport> urlReports = http2Tester.test(singletonList(url), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> {
+            softly.assertThat(urlReports).containsExactly(expectedReport);
+            softly.assertThat(errContent.toString()).contains("HTTP/2 needs Java 21 or later, using HTTP/1.1 instead");
+        });
+    }
+
     @Test
     public void errorReport_WhenRequestFails() throws Exception {
 
@@ -117,6 +236,88 @@ public class UrlTesterTest {
         assertSoftly(softly -> softly.assertThat(urlReports).containsExactly(expectedReport));
     }
 
+    @Test
+    public void timedOutReport_WhenHostLookupHangs() throws Exception {
+
+        final String url = "http://www.bbc.co.uk";
+        final UrlErrorReport expectedReport = new UrlErrorReport(url, "Url test timed out");
+        final URL mockUrl = PowerMockito.mock(URL.class);
+
+        when(urlBuilder.verify(url)).thenReturn(true);
+        when(urlBuilder.build(url)).thenReturn(mockUrl);
+        PowerMockito.when(mockUrl.getProtocol()).thenReturn("http");
+        PowerMockito.when(mockUrl.getHost()).thenReturn("www.bbc.co.uk");
+
+        // A lookup stuck in the OS resolver never completes
+        final HostResolver hangingResolver = new HostResolver() {
+            @Override
+            public CompletableFuture<InetAddress> resolve(String host) {
+
+                return new CompletableFuture<>();
+            }
+        };
+        final UrlTester hangingTester = new ThreadedUrlTester(false, new GetRequest(new HostConnectionPool(),
+                hangingResolver, false, RetryPolicy.none()));
+        final List<UrlReport> urlReports = hangingTester.test(singletonList(url), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> {
+            softly.assertThat(urlReports).containsExactly(expectedReport);
+            softly.assertThat(errContent.toString()).contains("Lookup of www.bbc.co.uk took longer than 10ms");
+        });
+    }
+
+    @Test
+    public void urlReportWithAttempts_WhenRetriedAfterReset() throws Exception {
+
+        final String url = "http://www.bbc.co.uk";
+        final UrlTestReport expectedReport = new UrlTestReport(url, 200, 12345L, "date", null, 2);
+        final URL mockUrl = PowerMockito.mock(URL.class);
+        final HttpURLConnection mockHttpConnection = PowerMockito.mock(HttpURLConnection.class);
+        final Map<String, List<String>> mockHeaders = new HashMap<>();
+        mockHeaders.put("Content-Length", Collections.singletonList("12345"));
+        mockHeaders.put("Date", Collections.singletonList("date"));
+
+        when(urlBuilder.verify(url)).thenReturn(true);
+        when(urlBuilder.build(url)).thenReturn(mockUrl);
+        PowerMockito.when(mockUrl.getProtocol()).thenReturn("http");
+        PowerMockito.when(mockUrl.openConnection()).thenReturn(mockHttpConnection);
+        PowerMockito.when(mockHttpConnection.getResponseCode())
+                .thenThrow(new SocketException("Connection reset"))
+                .thenReturn(200);
+        PowerMockito.when(mockHttpConnection.getHeaderFields()).thenReturn(mockHeaders);
+
+        final UrlTester retryingTester = new ThreadedUrlTester(false, new GetRequest(new HostConnectionPool(),
+                new HostResolver(), false, new RetryPolicy(2, 1, 1, 1000, 0.1, 10)));
+        final List<UrlReport> urlReports = retryingTester.test(singletonList(url), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> softly.assertThat(urlReports).containsExactly(expectedReport));
+    }
+
+    @Test
+    public void errorReportWithAttempts_WhenRetryBudgetSpent() throws Exception {
+
+        final String url = "http://www.bbc.co.uk";
+        final URL mockUrl = PowerMockito.mock(URL.class);
+
+        when(urlBuilder.verify(url)).thenReturn(true);
+        when(urlBuilder.build(url)).thenReturn(mockUrl);
+        PowerMockito.when(mockUrl.getProtocol()).thenReturn("http");
+        PowerMockito.when(mockUrl.openConnection()).thenThrow(new ConnectException("Connection refused"));
+
+        // One retry to start with and none earned by requests, so the url is only retried the first time
+        final UrlTester retryingTester = new ThreadedUrlTester(false, new GetRequest(new HostConnectionPool(),
+                new HostResolver(), false, new RetryPolicy(5, 1, 1, 1000, 0, 1)));
+        final List<UrlReport> retriedReports = retryingTester.test(singletonList(url), urlBuilder, TIMEOUT);
+        final List<UrlReport> budgetSpentReports = retryingTester.test(singletonList(url), urlBuilder, TIMEOUT);
+
+        assertSoftly(softly -> {
+            softly.assertThat(retriedReports).containsExactly(
+                    new UrlErrorReport(url, "Url could not be connected to", 2));
+            softly.assertThat(budgetSpentReports).containsExactly(
+                    new UrlErrorReport(url, "Url could not be connected to", 1));
+        });
+    }
+
     @Test
     public void errorReport_WhenMalformedUrl() throws Exception {
 
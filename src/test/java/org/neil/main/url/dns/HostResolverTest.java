@@ -0,0 +1,108 @@
+package org.neil.main.url.dns;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+/**
+ * Tests for looking up and caching host addresses.
+ */
+public class HostResolverTest {
+
+    private final HostResolver hostResolver = new HostResolver();
+
+    @After
+    public void tearDown() {
+
+        hostResolver.close();
+    }
+
+    @Test
+    public void address_WhenHostResolved() throws Exception {
+
+        final InetAddress address = hostResolver.resolve("127.0.0.1").join();
+        final InetAddress expectedAddress = InetAddress.getByName("127.0.0.1");
+
+        assertSoftly(softly -> softly.assertThat(address).isEqualTo(expectedAddress));
+    }
+
+    @Test
+    public void sameLookup_WhenHostResolvedAgain() {
+
+        final CompletableFuture<InetAddress> firstLookup = hostResolver.resolve("localhost");
+        firstLookup.join();
+        final CompletableFuture<InetAddress> secondLookup = hostResolver.resolve("localhost");
+
+        assertSoftly(softly -> softly.assertThat(secondLookup).isSameAs(firstLookup));
+    }
+
+    @Test
+    public void cachedFailure_WhenHostUnknown() {
+
+        final CompletableFuture<InetAddress> firstLookup = hostResolver.resolve("unknown.invalid");
+        Throwable failure = null;
+        try {
+            firstLookup.join();
+        } catch (CompletionException e) {
+            failure = e.getCause();
+        }
+        final Throwable lookupFailure = failure;
+        final CompletableFuture<InetAddress> secondLookup = hostResolver.resolve("unknown.invalid");
+
+        assertSoftly(softly -> {
+            softly.assertThat(lookupFailure).isInstanceOf(UnknownHostException.class);
+            softly.assertThat(secondLookup).isSameAs(firstLookup);
+        });
+    }
+
+    @Test
+    public void sameUrlsInOrder_WhenPrefetched() {
+
+        final List<String> urls = Arrays.asList("http://localhost/1", "not a url", "http://127.0.0.1/2", "");
+        final List<String> prefetchedUrls = new ArrayList<>();
+
+        hostResolver.prefetch(urls.iterator()).forEachRemaining(prefetchedUrls::add);
+
+        assertSoftly(softly -> softly.assertThat(prefetchedUrls).containsExactlyElementsOf(urls));
+    }
+
+    @Test
+    public void readFailure_WhenPrefetchedUrlsCannotBeRead() {
+
+        final Iterator<String> failingUrls = new Iterator<String>() {
+
+            @Override
+            public boolean hasNext() {
+
+                throw new UncheckedIOException(new IOException("Stream closed"));
+            }
+
+            @Override
+            public String next() {
+
+                return null;
+            }
+        };
+        Throwable failure = null;
+        try {
+            hostResolver.prefetch(failingUrls).hasNext();
+        } catch (UncheckedIOException e) {
+            failure = e;
+        }
+        final Throwable readFailure = failure;
+
+        assertSoftly(softly -> softly.assertThat(readFailure).hasMessageContaining("Stream closed"));
+    }
+}
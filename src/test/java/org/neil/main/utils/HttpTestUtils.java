@@ -4,6 +4,23 @@ import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.http.HttpHeader;
 import com.github.tomakehurst.wiremock.http.HttpHeaders;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.function.Consumer;
+
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
 
@@ -24,9 +41,107 @@ public final class HttpTestUtils {
         WireMockServer wireMockServer = new WireMockServer(
                 options().bindAddress("localhost").dynamicPort().dynamicHttpsPort());
         wireMockServer.start();
+        warmUp(wireMockServer);
         return wireMockServer;
     }
 
+    /**
+     * The first request a mock server handles is slow while its request handling code loads, so is made here
+     * rather than by a test with a short timeout.
+     */
+    private static void warmUp(WireMockServer wireMockServer) {
+
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(
+                    "http://localhost:" + wireMockServer.port() + "/__warm-up").openConnection();
+            connection.getResponseCode();
+            connection.disconnect();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        wireMockServer.resetRequests();
+    }
+
+    /**
+     * Starts a server that sends the head of every response one byte at a time, so a request keeps receiving data
+     * well within its read timeout but takes far longer than its deadline to finish. Close the returned socket to
+     * stop the server.
+     *
+     * @param byteIntervalMillis The wait before sending each byte
+     * @return The socket the server accepts connections on
+     */
+    public static ServerSocket startTrickleServer(int byteIntervalMillis) throws IOException {
+
+        return startSocketServer(socket -> trickle(socket, "", trickleHead(), byteIntervalMillis));
+    }
+
+    /**
+     * Starts a server that sends the head of every response at once, followed by a body of a few kilobytes one byte
+     * at a time, so a request has its response well within its deadline but would take far longer than the
+     * deadline to read the body. Close the returned socket to stop the server.
+     *
+     * @param byteIntervalMillis The wait before sending each byte of the body
+     * @return The socket the server accepts connections on
+     */
+    public static ServerSocket startBodyTrickleServer(int byteIntervalMillis) throws IOException {
+
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 4000; i++) {
+            body.append('x');
+        }
+        final String head = "HTTP/1.1 200 OK\r\nContent-Length: " + body.length() + "\r\n\r\n";
+        return startSocketServer(socket -> trickle(socket, head, body.toString(), byteIntervalMillis));
+    }
+
+    private static ServerSocket startSocketServer(Consumer<Socket> handler) throws IOException {
+
+        final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    final Socket socket = serverSocket.accept();
+                    final Thread trickler = new Thread(() -> handler.accept(socket));
+                    trickler.setDaemon(true);
+                    trickler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return serverSocket;
+    }
+
+    private static String trickleHead() {
+
+        final StringBuilder head = new StringBuilder("HTTP/1.1 200 OK\r\nX-Trickle: ");
+        for (int i = 0; i < 1000; i++) {
+            head.append('x');
+        }
+        return head.append("\r\nContent-Length: 0\r\n\r\n").toString();
+    }
+
+    /**
+     * Sends the start of the response at once and the rest one byte at a time.
+     */
+    private static void trickle(Socket socket, String start, String trickled, int byteIntervalMillis) {
+
+        try (Socket client = socket; OutputStream output = client.getOutputStream()) {
+            output.write(start.getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+            for (byte trickledByte : trickled.getBytes(StandardCharsets.US_ASCII)) {
+                Thread.sleep(byteIntervalMillis);
+                output.write(trickledByte);
+                output.flush();
+            }
+        } catch (IOException e) {
+            // The client gave up on the response
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public static String buildExpectedHttpsUrl(WireMockServer wireMockServer, String serverAddress, String path) {
 
         return "https://" + serverAddress + ":" + wireMockServer.httpsPort() + path;
@@ -57,4 +172,52 @@ public final class HttpTestUtils {
                         .withHeaders(expectedHeaders)));
     }
 
+    /**
+     * Builds a SSL context that trusts any certificate, so requests can be made to the mock server's self signed
+     * https port.
+     */
+    public static SSLContext trustAllSslContext() throws GeneralSecurityException {
+
+        final SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[] {new X509ExtendedTrustManager() {
+
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {
+
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {
+
+            }
+
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+
+            }
+
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+
+                return new X509Certificate[0];
+            }
+        }}, null);
+        return sslContext;
+    }
+
 }
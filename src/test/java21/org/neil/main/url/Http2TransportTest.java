@@ -0,0 +1,162 @@
+package org.neil.main.url;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.http.HttpHeaders;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neil.main.url.dns.HostResolver;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.neil.main.utils.HttpTestUtils.*;
+
+/**
+ * Tests for the Java 21 HTTP/2 transport against a mock server, which answers the upgrade to h2c over HTTP/1.1.
+ */
+public class Http2TransportTest {
+
+    private static final String MOCK_SERVER = "localhost";
+    private static final String TEST_PATH = "/test";
+    private static final String TARGET_PATH = "/target";
+    private static final String BODY = "Message";
+    private static final String DATE = "Tue, 25 Jul 2017 17:00:55 GMT";
+    // Generous timeout as the first request to the mock server is slow while it warms up
+    private static final int TIMEOUT = 1000;
+    // A deadline of twice this passes long before a trickled body has been read
+    private static final int SHORT_TIMEOUT = 200;
+
+    private WireMockServer wireMockServer;
+
+    @Before
+    public void setUp() {
+
+        wireMockServer = startMockServer(MOCK_SERVER);
+    }
+
+    @After
+    public void tearDown() {
+
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void statusAndLength_WhenRequestComplete() throws Exception {
+
+        final URL url = URI.create(buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH)).toURL();
+        stubUrl(wireMockServer, TEST_PATH,
+                new HttpHeaders(buildContentLengthHeader(BODY.length()), buildDateHeader(DATE)), 200);
+
+        final Optional<HttpResponse> response = send(Http2Transport.create(false), url);
+
+        assertSoftly(softly -> {
+            softly.assertThat(response.map(HttpResponse::getStatusCode)).contains(200);
+            softly.assertThat(response.flatMap(HttpResponse::geContentLengthHeader))
+                    .contains(Integer.toString(BODY.length()));
+            softly.assertThat(response.flatMap(HttpResponse::getDateHeader)).contains(DATE);
+            softly.assertThat(response.flatMap(HttpResponse::getTimings)).isPresent();
+        });
+    }
+
+    @Test
+    public void redirectResponse_WhenNotFollowingRedirects() throws Exception {
+
+        final URL url = URI.create(buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH)).toURL();
+        stubRedirect();
+
+        final Optional<HttpResponse> response = send(Http2Transport.create(false), url);
+
+        assertSoftly(softly -> {
+            softly.assertThat(response.map(HttpResponse::getStatusCode)).contains(302);
+            softly.assertThat(response.flatMap(HttpResponse::getLocationHeader)).contains(TARGET_PATH);
+            softly.assertThat(wireMockServer.findAll(getRequestedFor(urlEqualTo(TARGET_PATH)))).isEmpty();
+        });
+    }
+
+    @Test
+    public void targetResponse_WhenFollowingRedirects() throws Exception {
+
+        final URL url = URI.create(buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH)).toURL();
+        stubRedirect();
+
+        final Optional<HttpResponse> response = send(Http2Transport.create(true), url);
+
+        assertSoftly(softly -> softly.assertThat(response.map(HttpResponse::getStatusCode)).contains(200));
+    }
+
+    @Test
+    public void responseWithinDeadline_WhenBodyTrickled() throws Exception {
+
+        final Optional<HttpResponse> response;
+        final long elapsedMillis;
+        try (ServerSocket trickleServer = startBodyTrickleServer(50)) {
+            final URL url = URI.create("http://localhost:" + trickleServer.getLocalPort() + TEST_PATH).toURL();
+            final HttpTransport transport = Http2Transport.create(false);
+            final long startNanos = System.nanoTime();
+            try {
+                response = transport.send(url, SHORT_TIMEOUT, "GET", Collections.emptyMap(),
+                        new PhaseTimer(startNanos)).getResponse();
+            } finally {
+                transport.close();
+            }
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        assertSoftly(softly -> {
+            softly.assertThat(response.map(HttpResponse::getStatusCode)).contains(200);
+            // The whole body would take over three minutes to trickle
+            softly.assertThat(elapsedMillis).isLessThan(SHORT_TIMEOUT * 10L);
+        });
+    }
+
+    @Test
+    public void getResponse_WhenProbedHeadNotAllowed() throws Exception {
+
+        final URL url = URI.create(buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH)).toURL();
+        wireMockServer.stubFor(head(urlEqualTo(TEST_PATH)).willReturn(aResponse().withStatus(405)));
+        stubUrl(wireMockServer, TEST_PATH,
+                new HttpHeaders(buildContentLengthHeader(BODY.length()), buildDateHeader(DATE)), 200);
+        final GetRequest getRequest = new GetRequest(new HostConnectionPool(), new HostResolver(), true,
+                RetryPolicy.none(), RedirectPolicy.none(), Http2Transport.create(false));
+
+        final Optional<HttpResponse> response;
+        try {
+            response = getRequest.getUrl(url, TIMEOUT).getResponse();
+        } finally {
+            getRequest.close();
+        }
+
+        assertSoftly(softly -> {
+            softly.assertThat(response.map(HttpResponse::getStatusCode)).contains(200);
+            softly.assertThat(response.flatMap(HttpResponse::geContentLengthHeader))
+                    .contains(Integer.toString(BODY.length()));
+            softly.assertThat(wireMockServer.findAll(headRequestedFor(urlEqualTo(TEST_PATH)))).hasSize(1);
+            softly.assertThat(wireMockServer.findAll(getRequestedFor(urlEqualTo(TEST_PATH)))).hasSize(1);
+        });
+    }
+
+    private void stubRedirect() {
+
+        wireMockServer.stubFor(get(urlEqualTo(TEST_PATH))
+                .willReturn(aResponse().withStatus(302).withHeader("Location", TARGET_PATH)));
+        stubUrl(wireMockServer, TARGET_PATH,
+                new HttpHeaders(buildContentLengthHeader(BODY.length()), buildDateHeader(DATE)), 200);
+    }
+
+    private Optional<HttpResponse> send(HttpTransport transport, URL url) {
+
+        try {
+            return transport.send(url, TIMEOUT, "GET", Collections.emptyMap(), new PhaseTimer(System.nanoTime()))
+                    .getResponse();
+        } finally {
+            transport.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.neil.main.url;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.http.HttpHeaders;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neil.main.url.dns.HostResolver;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.neil.main.utils.HttpTestUtils.*;
+
+/**
+ * Tests for the threaded tester running its requests on virtual threads, which the Java 8 tests can only fall back
+ * from.
+ */
+public class ThreadedUrlTesterTest {
+
+    private static final String MOCK_SERVER = "localhost";
+    private static final String TEST_PATH = "/test";
+    private static final String BODY = "Message";
+    private static final String DATE = "Tue, 25 Jul 2017 17:00:55 GMT";
+    // Generous timeout as the first request to the mock server is slow while it warms up
+    private static final int TIMEOUT = 1000;
+
+    private WireMockServer wireMockServer;
+
+    @Before
+    public void setUp() {
+
+        wireMockServer = startMockServer(MOCK_SERVER);
+    }
+
+    @After
+    public void tearDown() {
+
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void urlReportOnVirtualThread_WhenVirtualThreadsRequested() {
+
+        final String url = buildExpectedHttpUrl(wireMockServer, MOCK_SERVER, TEST_PATH);
+        stubUrl(wireMockServer, TEST_PATH,
+                new HttpHeaders(buildContentLengthHeader(BODY.length()), buildDateHeader(DATE)), 200);
+        final List<Thread> requestThreads = new CopyOnWriteArrayList<>();
+        final UrlTester virtualTester = new ThreadedUrlTester(true, new GetRequest(new HostConnectionPool(),
+                new HostResolver(), false, RetryPolicy.none(), RedirectPolicy.none(),
+                new ThreadRecordingTransport(new UrlConnectionTransport(true), requestThreads)));
+
+        final List<UrlReport> urlReports;
+        try {
+            urlReports = virtualTester.test(singletonList(url), new SimpleUrlVerifier(), TIMEOUT);
+        } finally {
+            virtualTester.close();
+        }
+
+        assertSoftly(softly -> {
+            softly.assertThat(urlReports).extracting(UrlReport::getUrl, UrlReport::getStatusCode)
+                    .containsExactly(tuple(url, 200));
+            softly.assertThat(requestThreads).hasSize(1);
+            softly.assertThat(requestThreads).allMatch(Thread::isVirtual);
+        });
+    }
+
+    /**
+     * Notes the thread each request is sent on before handing it to the transport that sends it.
+     */
+    private static final class ThreadRecordingTransport implements HttpTransport {
+
+        private final HttpTransport transport;
+        private final List<Thread> requestThreads;
+
+        private ThreadRecordingTransport(HttpTransport transport, List<Thread> requestThreads) {
+
+            this.transport = transport;
+            this.requestThreads = requestThreads;
+        }
+
+        @Override
+        public RequestOutcome send(URL url, int timeout, String method, Map<String, String> requestHeaders,
+                                   PhaseTimer phaseTimer) {
+
+            requestThreads.add(Thread.currentThread());
+            return transport.send(url, timeout, method, requestHeaders, phaseTimer);
+        }
+
+        @Override
+        public void close() {
+
+            transport.close();
+        }
+    }
+}